@@ -0,0 +1,42 @@
+package com.example.flowbase_backend.admission;
+
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+
+/**
+ * Keeps the remote address of a WebSocket client in its session attributes, where
+ * {@link TriggerAdmissionInterceptor} finds it for every frame of the session
+ * <p>
+ * The address is taken from the servlet request, as for HTTP triggers, so the forwarded headers
+ * of trusted proxies apply to both alike.
+ */
+public class ClientAddressHandshakeInterceptor implements HandshakeInterceptor {
+
+    public static final String CLIENT_ADDRESS_ATTRIBUTE = "flowbase.clientAddress";
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        if (request instanceof ServletServerHttpRequest servletRequest) {
+            attributes.put(CLIENT_ADDRESS_ATTRIBUTE, servletRequest.getServletRequest().getRemoteAddr());
+            return true;
+        }
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        if (remoteAddress != null && remoteAddress.getAddress() != null) {
+            // The same form as HttpServletRequest#getRemoteAddr
+            attributes.put(CLIENT_ADDRESS_ATTRIBUTE, remoteAddress.getAddress().getHostAddress());
+        }
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.flowbase_backend.admission;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets by key that take tokens without locking
+ * <p>
+ * A bucket is one {@link AtomicLong} holding the time at which it is full again (the generic
+ * cell rate algorithm). Taking a token moves that time one interval ({@code 1 / rate}) further,
+ * with a compare-and-set; the token is refused if the time would end up more than {@code burst}
+ * intervals from now. So a key gets {@code burst} tokens at once and then one per interval.
+ * <p>
+ * A bucket whose time has passed is full, the same as having none. Once there are
+ * {@code maxKeys} buckets, full ones are removed, at most once per {@code burst} intervals;
+ * if none is full, new keys are refused until one is.
+ */
+public class TokenBucketLimiter {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final int maxKeys;
+    private final LongSupplier nanoClock;
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweep;
+
+    /**
+     * Create a limiter driven by {@link System#nanoTime()}
+     * @param tokensPerSecond tokens added to every bucket per second
+     * @param burst tokens a bucket holds when full
+     * @param maxKeys buckets kept at most
+     */
+    public TokenBucketLimiter(double tokensPerSecond, int burst, int maxKeys) {
+        this(tokensPerSecond, burst, maxKeys, System::nanoTime);
+    }
+
+    /**
+     * @param tokensPerSecond tokens added to every bucket per second
+     * @param burst tokens a bucket holds when full
+     * @param maxKeys buckets kept at most
+     * @param nanoClock monotonic time source in nanoseconds
+     */
+    public TokenBucketLimiter(double tokensPerSecond, int burst, int maxKeys, LongSupplier nanoClock) {
+        if (!(tokensPerSecond > 0) || burst < 1 || maxKeys < 1) {
+            throw new IllegalArgumentException("Rate, burst and maximum number of keys must be positive");
+        }
+        this.intervalNanos = Math.max(1, Math.round(1e9 / tokensPerSecond));
+        this.burstNanos = intervalNanos * burst;
+        this.maxKeys = maxKeys;
+        this.nanoClock = nanoClock;
+        this.nextSweep = new AtomicLong(nanoClock.getAsLong());
+    }
+
+    /**
+     * Take a token from the bucket of a key
+     * @param key the key, e.g. a client and what it asks for
+     * @return true if a token was taken, false if the bucket is empty or there are too many buckets
+     */
+    public boolean tryAcquire(String key) {
+        long now = nanoClock.getAsLong();
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= maxKeys && !sweep(now)) {
+                return false;
+            }
+            bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        }
+        while (true) {
+            long fullAt = bucket.get();
+            long next = (fullAt - now > 0 ? fullAt : now) + intervalNanos;
+            if (next - now > burstNanos) {
+                return false;
+            }
+            if (bucket.compareAndSet(fullAt, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return how long an empty bucket takes to get a token again, at most
+     */
+    public Duration getInterval() {
+        return Duration.ofNanos(intervalNanos);
+    }
+
+    /**
+     * @return number of buckets kept
+     */
+    public int getKeyCount() {
+        return buckets.size();
+    }
+
+    /**
+     * Remove the full buckets, unless that was done less than {@code burst} intervals ago; any
+     * bucket not used since then is full
+     * @return true if there is room for another bucket
+     */
+    private boolean sweep(long now) {
+        long due = nextSweep.get();
+        if (now - due >= 0 && nextSweep.compareAndSet(due, now + burstNanos)) {
+            // A token taken from a bucket while it is removed is lost to the limit, once
+            buckets.values().removeIf(bucket -> now - bucket.get() >= 0);
+        }
+        return buckets.size() < maxKeys;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.flowbase_backend.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+import java.time.Duration;
+
+/**
+ * Admission of node triggers, shared by the HTTP endpoints and STOMP
+ * <p>
+ * Every client has a token bucket per node: a trigger takes a token and is rejected at once
+ * when there is none, before any work is scheduled. Clients are identified by {@link #clientId}:
+ * an authenticated user by name, anyone else by remote address, the same for a STOMP session
+ * ({@link ClientAddressHandshakeInterceptor}) as for HTTP requests, so both draw from one bucket.
+ * Behind a reverse proxy the remote address is the one the proxy forwarded, as long as the
+ * proxy is trusted ({@code server.tomcat.remoteip.internal-proxies}).
+ * <p>
+ * Triggers of a node that is already RUNNING, or whose activation is already scheduled, are
+ * admitted but ignored by the node service; they are counted here as duplicates.
+ */
+@Component
+public class TriggerAdmission {
+
+    private final TokenBucketLimiter limiter;
+    private final Counter admitted;
+    private final Counter rejected;
+    private final Counter duplicates;
+
+    /**
+     * Create an admission that counts in the global registry
+     * @param limiter buckets by client and node
+     */
+    public TriggerAdmission(TokenBucketLimiter limiter) {
+        this(limiter, Metrics.globalRegistry);
+    }
+
+    @Autowired
+    public TriggerAdmission(@Value("${flowbase.trigger.rate:2}") double triggersPerSecond,
+                            @Value("${flowbase.trigger.burst:5}") int burst,
+                            @Value("${flowbase.trigger.max-clients:100000}") int maxClients,
+                            MeterRegistry meterRegistry) {
+        this(new TokenBucketLimiter(triggersPerSecond, burst, maxClients), meterRegistry);
+    }
+
+    /**
+     * @param limiter buckets by client and node
+     * @param meterRegistry registry in which the outcomes are counted
+     */
+    public TriggerAdmission(TokenBucketLimiter limiter, MeterRegistry meterRegistry) {
+        this.limiter = limiter;
+        this.admitted = triggerCounter("admitted", meterRegistry);
+        this.rejected = triggerCounter("rejected", meterRegistry);
+        this.duplicates = triggerCounter("duplicate", meterRegistry);
+        Gauge.builder("flowbase.trigger.clients", limiter, TokenBucketLimiter::getKeyCount)
+                .description("Token buckets of clients and nodes kept for trigger admission")
+                .register(meterRegistry);
+    }
+
+    private static Counter triggerCounter(String outcome, MeterRegistry meterRegistry) {
+        return Counter.builder("flowbase.trigger.admission")
+                .description("Node triggers by admission outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param principal the authenticated user, or null
+     * @param remoteAddress the client's address, resolved from the forwarded headers of trusted proxies
+     * @return the client ID under which the user, or else the address, takes tokens
+     */
+    public static String clientId(@Nullable Principal principal, String remoteAddress) {
+        // Prefixed so that no user name can take the bucket of an address
+        return principal != null ? "user:" + principal.getName() : remoteAddress;
+    }
+
+    /**
+     * Take a token for a trigger
+     * @param clientId the ID of the client, see {@link #clientId}
+     * @param nodeId the ID of the triggered node
+     * @return true if the trigger may go ahead, false if it must be rejected
+     */
+    public boolean tryAdmit(String clientId, String nodeId) {
+        if (limiter.tryAcquire(clientId + ' ' + nodeId)) {
+            admitted.increment();
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * Count an admitted trigger that the node service ignored
+     */
+    public void recordDuplicate() {
+        duplicates.increment();
+    }
+
+    /**
+     * @return how long a rejected client should wait before triggering the node again
+     */
+    public Duration getRetryAfter() {
+        return limiter.getInterval();
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.flowbase_backend.admission;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+
+import java.util.Map;
+
+/**
+ * Admits STOMP SENDs to trigger destinations before they reach the inbound channel's queue
+ * <p>
+ * A rejected SEND is dropped on the session's own I/O thread, so it never takes a place in the
+ * queue or a thread of the inbound channel. The session stays open: the client gets a message on
+ * {@code /user/queue/errors} naming the destination and when to retry.
+ */
+public class TriggerAdmissionInterceptor implements ChannelInterceptor {
+
+    public static final String ERROR_DESTINATION = "/queue/errors";
+
+    private final TriggerAdmission admission;
+    private final Map<String, String> triggerDestinations;
+    private final SimpMessageSendingOperations messagingTemplate;
+
+    /**
+     * @param admission admission shared with the HTTP endpoints
+     * @param triggerDestinations node ID triggered by each destination, e.g. {@code /app/trigger/nodeA}
+     * @param messagingTemplate template through which rejections are sent to the session
+     */
+    public TriggerAdmissionInterceptor(TriggerAdmission admission, Map<String, String> triggerDestinations,
+                                       SimpMessageSendingOperations messagingTemplate) {
+        this.admission = admission;
+        this.triggerDestinations = Map.copyOf(triggerDestinations);
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+            return message;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        String nodeId = destination != null ? triggerDestinations.get(destination) : null;
+        if (nodeId == null) {
+            return message;
+        }
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        Map<String, Object> attributes = SimpMessageHeaderAccessor.getSessionAttributes(message.getHeaders());
+        Object clientAddress = attributes != null ? attributes.get(ClientAddressHandshakeInterceptor.CLIENT_ADDRESS_ATTRIBUTE) : null;
+        String clientId = TriggerAdmission.clientId(SimpMessageHeaderAccessor.getUser(message.getHeaders()),
+                clientAddress != null ? clientAddress.toString() : sessionId);
+        if (admission.tryAdmit(clientId, nodeId)) {
+            return message;
+        }
+        if (sessionId != null) {
+            long retryAfterMillis = admission.getRetryAfter().toMillis();
+            // Addressed by session ID, so it reaches this session whether or not it has a user
+            SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            headers.setSessionId(sessionId);
+            headers.setLeaveMutable(true);
+            messagingTemplate.convertAndSendToUser(sessionId, ERROR_DESTINATION, Map.of(
+                    "destination", destination,
+                    "message", "Too many triggers of " + nodeId + ", retry after " + retryAfterMillis + " ms",
+                    "retryAfterMs", retryAfterMillis), headers.getMessageHeaders());
+        }
+        // Dropped: the inbound channel does not send it on, and the session is not closed
+        return null;
+    }
+}
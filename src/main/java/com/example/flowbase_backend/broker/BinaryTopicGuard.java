@@ -0,0 +1,70 @@
+package com.example.flowbase_backend.broker;
+
+import com.example.flowbase_backend.service.WebSocketService;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.Map;
+
+/**
+ * Keeps the binary node state topic off SockJS sessions
+ * <p>
+ * SockJS carries every frame as text, so the octet-stream frames of
+ * {@link WebSocketService#NODE_STATE_BINARY_TOPIC} would reach its clients re-encoded as UTF-8.
+ * As a handshake interceptor of the plain WebSocket endpoint, this marks the sessions opened there;
+ * as an inbound channel interceptor, it refuses every SUBSCRIBE whose destination matches the
+ * binary topic from a session without the mark. The client gets an ERROR frame naming the endpoint
+ * to use instead.
+ */
+public class BinaryTopicGuard implements HandshakeInterceptor, ChannelInterceptor {
+
+    public static final String NATIVE_WEBSOCKET_ATTRIBUTE = "flowbase.nativeWebSocket";
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final String nativeEndpoint;
+
+    /**
+     * @param nativeEndpoint path of the endpoint without SockJS, named in the ERROR frame
+     */
+    public BinaryTopicGuard(String nativeEndpoint) {
+        this.nativeEndpoint = nativeEndpoint;
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        attributes.put(NATIVE_WEBSOCKET_ATTRIBUTE, Boolean.TRUE);
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.SUBSCRIBE) {
+            return message;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination == null || !pathMatcher.match(destination, WebSocketService.NODE_STATE_BINARY_TOPIC)) {
+            return message;
+        }
+        Map<String, Object> attributes = SimpMessageHeaderAccessor.getSessionAttributes(message.getHeaders());
+        if (attributes == null || !Boolean.TRUE.equals(attributes.get(NATIVE_WEBSOCKET_ATTRIBUTE))) {
+            throw new MessageDeliveryException(message, destination + " includes the binary topic "
+                    + WebSocketService.NODE_STATE_BINARY_TOPIC + ", which is only served on " + nativeEndpoint);
+        }
+        return message;
+    }
+}
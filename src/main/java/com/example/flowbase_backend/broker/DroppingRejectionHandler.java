@@ -0,0 +1,113 @@
+package com.example.flowbase_backend.broker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Drops the messages that do not fit into a full client channel executor, and counts them
+ * <p>
+ * As an interceptor of the channel, this drops a message before it is handed to an executor
+ * whose threads and queue are all taken, so the send returns false. The broker's
+ * {@link org.springframework.messaging.simp.broker.OrderedMessageChannelDecorator} then removes
+ * the message from the session's queue and sends the next one. A message that loses the race for
+ * the last queue slot reaches this as the rejection handler of the executor, which hands it back:
+ * the channel then sends it on the calling thread. Swallowing it instead would make the send
+ * return true for a task that never runs, and the decorator would wait for it forever, leaving
+ * the session without any further messages.
+ * <p>
+ * One warning per {@code logInterval} is logged with the number of messages dropped since the
+ * last one. The total is published as {@code flowbase.websocket.messages.dropped} by
+ * {@link com.example.flowbase_backend.service.WebSocketBrokerMetrics}.
+ */
+public class DroppingRejectionHandler implements RejectedExecutionHandler, ChannelInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(DroppingRejectionHandler.class);
+
+    private final String channel;
+    private final long logIntervalNanos;
+    private final LongSupplier nanoClock;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong droppedSinceLog = new AtomicLong();
+    private final AtomicLong nextLogNanos;
+    private final AtomicLong logged = new AtomicLong();
+
+    /**
+     * @param channel name of the channel, for the log
+     * @param logInterval shortest time between two warnings
+     */
+    public DroppingRejectionHandler(String channel, Duration logInterval) {
+        this(channel, logInterval, System::nanoTime);
+    }
+
+    /**
+     * @param channel name of the channel, for the log
+     * @param logInterval shortest time between two warnings
+     * @param nanoClock monotonic time source in nanoseconds
+     */
+    public DroppingRejectionHandler(String channel, Duration logInterval, LongSupplier nanoClock) {
+        this.channel = channel;
+        this.logIntervalNanos = logInterval.toNanos();
+        this.nanoClock = nanoClock;
+        this.nextLogNanos = new AtomicLong(nanoClock.getAsLong());
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (channel instanceof ExecutorSubscribableChannel executorChannel
+                && executorChannel.getExecutor() instanceof ThreadPoolTaskExecutor taskExecutor) {
+            ThreadPoolExecutor executor = taskExecutor.getThreadPoolExecutor();
+            if (executor.getQueue().remainingCapacity() == 0 && executor.getPoolSize() >= executor.getMaximumPoolSize()) {
+                drop(executor);
+                return null;
+            }
+        }
+        return message;
+    }
+
+    @Override
+    public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+        throw new RejectedExecutionException("Client " + channel + " channel queue full");
+    }
+
+    private void drop(ThreadPoolExecutor executor) {
+        dropped.incrementAndGet();
+        droppedSinceLog.incrementAndGet();
+        long now = nanoClock.getAsLong();
+        long next = nextLogNanos.get();
+        // Only the thread that moves the deadline logs
+        if (now - next >= 0 && nextLogNanos.compareAndSet(next, now + logIntervalNanos)) {
+            logged.incrementAndGet();
+            log.atWarn()
+               .addKeyValue("channel", channel)
+               .addKeyValue("dropped", droppedSinceLog.getAndSet(0))
+               .addKeyValue("queueCapacity", executor.getQueue().size() + executor.getQueue().remainingCapacity())
+               .log("Client channel queue full, messages dropped");
+        }
+    }
+
+    /**
+     * @return number of messages dropped so far
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return number of warnings logged so far
+     */
+    public long getWarningsLogged() {
+        return logged.get();
+    }
+}
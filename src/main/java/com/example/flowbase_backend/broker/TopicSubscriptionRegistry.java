@@ -0,0 +1,247 @@
+package com.example.flowbase_backend.broker;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.broker.AbstractSubscriptionRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+
+/**
+ * Subscription registry of the simple broker that indexes destinations segment by segment
+ * <p>
+ * Subscriptions are kept in a tree with one level per {@code /}-separated segment of their
+ * destination. A {@code *} segment matches any one segment, and a trailing {@code **} matches
+ * the rest of the destination, including nothing. Looking up a destination follows the literal
+ * child and the {@code *} child of each level, so its cost grows with the depth of the destination
+ * and the subscriptions that match, not with the number of sessions. Spring's default registry
+ * scans every subscription of every session whenever a destination is not in its cache.
+ * <p>
+ * Other patterns, such as {@code node-*} or {@code **} before the last segment, are matched
+ * with an {@link AntPathMatcher} on every lookup. STOMP selector headers are not supported.
+ * <p>
+ * Lookups do not lock. Changes are serialized, and segments left without subscriptions are removed.
+ * When all subscribers of a destination sit at one segment, as with thousands of sessions on one
+ * topic, the broker gets a read-only view of that segment's map instead of a copy.
+ */
+@Component
+public class TopicSubscriptionRegistry extends AbstractSubscriptionRegistry {
+
+    private static final String ANY_SEGMENT = "*";
+    private static final String ANY_REST = "**";
+
+    private final Segment root = new Segment();
+    // Destination of every subscription by session ID and subscription ID, used to remove them
+    private final Map<String, Map<String, String>> sessions = new ConcurrentHashMap<>();
+    // Subscriptions the tree cannot hold: session ID -> subscription ID -> pattern
+    private final Map<String, Map<String, String>> patterns = new ConcurrentHashMap<>();
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final Object writeLock = new Object();
+
+    /**
+     * One level of the tree. Subscriber maps go from session ID to subscription IDs.
+     */
+    private static final class Segment {
+        final Map<String, Segment> children = new ConcurrentHashMap<>();
+        volatile Segment anySegment;
+        // Subscriptions whose destination ends at this segment
+        final Map<String, List<String>> endingHere = new ConcurrentHashMap<>();
+        // Subscriptions ending in "**" after this segment
+        final Map<String, List<String>> anyRest = new ConcurrentHashMap<>();
+
+        boolean isEmpty() {
+            return children.isEmpty() && anySegment == null && endingHere.isEmpty() && anyRest.isEmpty();
+        }
+    }
+
+    @Override
+    protected void addSubscriptionInternal(String sessionId, String subscriptionId, String destination,
+                                           Message<?> message) {
+        synchronized (writeLock) {
+            String previous = sessions.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>())
+                    .put(subscriptionId, destination);
+            if (previous != null) {
+                // The client reused the subscription ID
+                remove(sessionId, subscriptionId, previous);
+            }
+            String[] segments = treeSegments(destination);
+            if (segments == null) {
+                patterns.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>()).put(subscriptionId, destination);
+                return;
+            }
+            Segment segment = root;
+            int last = segments.length - 1;
+            boolean anyRest = segments[last].equals(ANY_REST);
+            for (int i = 0; i < (anyRest ? last : segments.length); i++) {
+                segment = child(segment, segments[i]);
+            }
+            (anyRest ? segment.anyRest : segment.endingHere)
+                    .computeIfAbsent(sessionId, id -> new CopyOnWriteArrayList<>())
+                    .add(subscriptionId);
+        }
+    }
+
+    @Override
+    protected void removeSubscriptionInternal(String sessionId, String subscriptionId, Message<?> message) {
+        synchronized (writeLock) {
+            Map<String, String> subscriptions = sessions.get(sessionId);
+            String destination = subscriptions != null ? subscriptions.remove(subscriptionId) : null;
+            if (destination != null) {
+                remove(sessionId, subscriptionId, destination);
+                if (subscriptions.isEmpty()) {
+                    sessions.remove(sessionId);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void unregisterAllSubscriptions(String sessionId) {
+        synchronized (writeLock) {
+            Map<String, String> subscriptions = sessions.remove(sessionId);
+            if (subscriptions != null) {
+                subscriptions.forEach((subscriptionId, destination) -> remove(sessionId, subscriptionId, destination));
+            }
+        }
+    }
+
+    @Override
+    protected MultiValueMap<String, String> findSubscriptionsInternal(String destination, Message<?> message) {
+        List<Map<String, List<String>>> matches = new ArrayList<>(2);
+        visit(destination, matches::add);
+        if (matches.size() == 1) {
+            return CollectionUtils.unmodifiableMultiValueMap(CollectionUtils.toMultiValueMap(matches.get(0)));
+        }
+        MultiValueMap<String, String> result = new LinkedMultiValueMap<>();
+        for (Map<String, List<String>> subscribers : matches) {
+            subscribers.forEach(result::addAll);
+        }
+        return result;
+    }
+
+    /**
+     * Cheaper than finding the subscriptions: stops at the first match and allocates no result
+     * @param destination a destination without wildcards
+     * @return true if at least one subscription matches the destination
+     */
+    public boolean hasSubscriptions(String destination) {
+        return !visit(destination, Map::isEmpty);
+    }
+
+    /**
+     * @return the number of subscriptions of all sessions
+     */
+    public int getSubscriptionCount() {
+        return sessions.values().stream().mapToInt(Map::size).sum();
+    }
+
+    /**
+     * Pass the subscriber maps that match a destination to a visitor
+     * @param visitor returns false to stop the walk
+     * @return false if the visitor stopped the walk
+     */
+    private boolean visit(String destination, Predicate<Map<String, List<String>>> visitor) {
+        if (!visit(root, destination.split("/", -1), 0, visitor)) {
+            return false;
+        }
+        for (Map.Entry<String, Map<String, String>> session : patterns.entrySet()) {
+            for (Map.Entry<String, String> subscription : session.getValue().entrySet()) {
+                if (pathMatcher.match(subscription.getValue(), destination)
+                        && !visitor.test(Map.of(session.getKey(), List.of(subscription.getKey())))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean visit(Segment segment, String[] segments, int index,
+                          Predicate<Map<String, List<String>>> visitor) {
+        if (!segment.anyRest.isEmpty() && !visitor.test(segment.anyRest)) {
+            return false;
+        }
+        if (index == segments.length) {
+            return segment.endingHere.isEmpty() || visitor.test(segment.endingHere);
+        }
+        Segment literal = segment.children.get(segments[index]);
+        if (literal != null && !visit(literal, segments, index + 1, visitor)) {
+            return false;
+        }
+        Segment any = segment.anySegment;
+        return any == null || visit(any, segments, index + 1, visitor);
+    }
+
+    private void remove(String sessionId, String subscriptionId, String destination) {
+        String[] segments = treeSegments(destination);
+        if (segments == null) {
+            Map<String, String> sessionPatterns = patterns.get(sessionId);
+            if (sessionPatterns != null) {
+                sessionPatterns.remove(subscriptionId);
+                if (sessionPatterns.isEmpty()) {
+                    patterns.remove(sessionId);
+                }
+            }
+            return;
+        }
+        int last = segments.length - 1;
+        boolean anyRest = segments[last].equals(ANY_REST);
+        int depth = anyRest ? last : segments.length;
+        Segment[] path = new Segment[depth + 1];
+        path[0] = root;
+        for (int i = 0; i < depth; i++) {
+            path[i + 1] = segments[i].equals(ANY_SEGMENT) ? path[i].anySegment : path[i].children.get(segments[i]);
+            if (path[i + 1] == null) {
+                return;
+            }
+        }
+        Map<String, List<String>> subscribers = anyRest ? path[depth].anyRest : path[depth].endingHere;
+        List<String> subscriptionIds = subscribers.get(sessionId);
+        if (subscriptionIds == null || !subscriptionIds.remove(subscriptionId)) {
+            return;
+        }
+        if (subscriptionIds.isEmpty()) {
+            subscribers.remove(sessionId);
+        }
+        // Drop the segments that no subscription needs anymore, deepest first
+        for (int i = depth; i > 0 && path[i].isEmpty(); i--) {
+            if (segments[i - 1].equals(ANY_SEGMENT)) {
+                path[i - 1].anySegment = null;
+            } else {
+                path[i - 1].children.remove(segments[i - 1]);
+            }
+        }
+    }
+
+    private static Segment child(Segment parent, String name) {
+        if (name.equals(ANY_SEGMENT)) {
+            if (parent.anySegment == null) {
+                parent.anySegment = new Segment();
+            }
+            return parent.anySegment;
+        }
+        return parent.children.computeIfAbsent(name, key -> new Segment());
+    }
+
+    /**
+     * @return the segments of a destination the tree can hold, or null if it needs the path matcher
+     */
+    private static String[] treeSegments(String destination) {
+        String[] segments = destination.split("/", -1);
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            boolean wildcard = segment.equals(ANY_SEGMENT) || (segment.equals(ANY_REST) && i == segments.length - 1);
+            if (!wildcard && (segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0 || segment.indexOf('{') >= 0)) {
+                return null;
+            }
+        }
+        return segments;
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.flowbase_backend.cluster;
+
+import java.util.Set;
+
+/**
+ * Carries {@link ClusterEvent}s between the backend instances behind a load balancer
+ * <p>
+ * Events published by one instance reach every other live instance, in the order they were
+ * published. Nothing is stored: an instance that is down misses the events of that time and
+ * catches up from the resync the others publish when it joins.
+ */
+public interface ClusterBus {
+
+    /**
+     * @return the ID of this instance, unique in the cluster
+     */
+    String getInstanceId();
+
+    /**
+     * @return the IDs of all live instances, this one included
+     */
+    Set<String> getMembers();
+
+    /**
+     * Send an event to every other live instance. Does not block on the network.
+     * @param event the event
+     */
+    void publish(ClusterEvent event);
+
+    /**
+     * @param listener callback for events of other instances and membership changes
+     */
+    void addListener(ClusterListener listener);
+}
@@ -0,0 +1,170 @@
+package com.example.flowbase_backend.cluster;
+
+import com.example.flowbase_backend.engine.NodeDefinition;
+import com.example.flowbase_backend.engine.NodeState;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An event exchanged between the instances of a cluster
+ * <p>
+ * {@link Type#STATE} announces a transition raised by the engine of the instance that owns the
+ * node, {@link Type#ACTIVATE} asks the owner to start a node, and {@link Type#REGISTER} hands a
+ * node definition to every instance. Definitions travel without their action, so only nodes
+ * that run for a fixed duration can be registered in a cluster.
+ */
+public final class ClusterEvent {
+
+    public enum Type {
+        STATE, ACTIVATE, REGISTER
+    }
+
+    private static final NodeState[] STATES = NodeState.values();
+    private static final Type[] TYPES = Type.values();
+
+    private final Type type;
+    private final String origin;
+    private final String flowId;
+    private final String nodeId;
+    // STATE only
+    private final NodeState state;
+    // ACTIVATE: delay before the node starts; REGISTER: running duration
+    private final long millis;
+    // REGISTER only
+    private final List<String> dependencies;
+
+    private ClusterEvent(Type type, String origin, String flowId, String nodeId, NodeState state, long millis,
+                         List<String> dependencies) {
+        this.type = type;
+        this.origin = Objects.requireNonNull(origin, "origin");
+        this.flowId = Objects.requireNonNull(flowId, "flowId");
+        this.nodeId = Objects.requireNonNull(nodeId, "nodeId");
+        this.state = state;
+        this.millis = millis;
+        this.dependencies = dependencies;
+    }
+
+    /**
+     * @param origin the ID of the instance that raised the transition
+     * @param flowId the flow of the node
+     * @param nodeId the ID of the node
+     * @param state the new state of the node
+     * @return an event announcing the transition
+     */
+    public static ClusterEvent state(String origin, String flowId, String nodeId, NodeState state) {
+        return new ClusterEvent(Type.STATE, origin, flowId, nodeId, Objects.requireNonNull(state, "state"), 0,
+                List.of());
+    }
+
+    /**
+     * @param origin the ID of the instance that received the activation request
+     * @param flowId the flow of the node
+     * @param nodeId the ID of the node
+     * @param delay how long the owner waits before it starts the node
+     * @return an event asking the owner of the node to start it
+     */
+    public static ClusterEvent activate(String origin, String flowId, String nodeId, Duration delay) {
+        return new ClusterEvent(Type.ACTIVATE, origin, flowId, nodeId, null, delay.toMillis(), List.of());
+    }
+
+    /**
+     * @param origin the ID of the instance the node was registered on
+     * @param definition the node definition, without an action
+     * @return an event registering the node on every instance
+     * @throws IllegalArgumentException if the definition has an action
+     */
+    public static ClusterEvent register(String origin, NodeDefinition definition) {
+        if (definition.getAction() != null) {
+            throw new IllegalArgumentException("Node " + definition.getId() + " has an action and cannot be replicated");
+        }
+        return new ClusterEvent(Type.REGISTER, origin, definition.getFlowId(), definition.getId(), null,
+                definition.getRunningDuration().toMillis(), definition.getDependencies());
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public String getFlowId() {
+        return flowId;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public NodeState getState() {
+        return state;
+    }
+
+    /**
+     * @return how long the owner waits before it starts the node of an ACTIVATE event
+     */
+    public Duration getDelay() {
+        return Duration.ofMillis(millis);
+    }
+
+    /**
+     * @return the node definition carried by a REGISTER event
+     */
+    public NodeDefinition toDefinition() {
+        return NodeDefinition.of(nodeId).inFlow(flowId).dependsOn(dependencies).runningFor(Duration.ofMillis(millis));
+    }
+
+    /**
+     * Write the event in the layout read by {@link #readFrom}
+     * @param out the stream to write to
+     * @throws IOException if writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeByte(type.ordinal());
+        out.writeUTF(origin);
+        out.writeUTF(flowId);
+        out.writeUTF(nodeId);
+        out.writeByte(state != null ? state.ordinal() : -1);
+        out.writeLong(millis);
+        out.writeShort(dependencies.size());
+        for (String dependency : dependencies) {
+            out.writeUTF(dependency);
+        }
+    }
+
+    /**
+     * @param in a stream positioned at an event written by {@link #writeTo}
+     * @return the event
+     * @throws IOException if reading fails or the event has an unknown type or state
+     */
+    public static ClusterEvent readFrom(DataInput in) throws IOException {
+        int type = in.readByte();
+        String origin = in.readUTF();
+        String flowId = in.readUTF();
+        String nodeId = in.readUTF();
+        int state = in.readByte();
+        long millis = in.readLong();
+        int dependencyCount = in.readUnsignedShort();
+        List<String> dependencies = new ArrayList<>(dependencyCount);
+        for (int i = 0; i < dependencyCount; i++) {
+            dependencies.add(in.readUTF());
+        }
+        if (type < 0 || type >= TYPES.length || state < -1 || state >= STATES.length) {
+            throw new IOException("Invalid cluster event of node " + nodeId);
+        }
+        return new ClusterEvent(TYPES[type], origin, flowId, nodeId, state >= 0 ? STATES[state] : null, millis,
+                List.copyOf(dependencies));
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + flowId + "/" + nodeId + (state != null ? " " + state : "") + " from " + origin;
+    }
+}
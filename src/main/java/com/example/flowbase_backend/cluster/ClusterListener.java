@@ -0,0 +1,22 @@
+package com.example.flowbase_backend.cluster;
+
+import java.util.Set;
+
+/**
+ * Callback for events and membership changes of a {@link ClusterBus}
+ */
+public interface ClusterListener {
+
+    /**
+     * Called for every event published by another instance. Runs on the bus's threads.
+     * @param event the event
+     */
+    void onEvent(ClusterEvent event);
+
+    /**
+     * Called after an instance joined or left the cluster
+     * @param members the IDs of all live instances, this one included
+     */
+    default void onMembershipChange(Set<String> members) {
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.flowbase_backend.cluster;
+
+/**
+ * Decides which instance of a cluster runs the nodes of a flow
+ * <p>
+ * Flows are assigned by rendezvous hashing: every live instance gets a score per flow and the
+ * highest score wins. All instances that see the same members agree on the owner without
+ * talking to each other, and when an instance joins or leaves, only the flows it wins or held
+ * move. A whole flow has one owner, so the engine that completes a node also holds its
+ * successors and releases them itself.
+ */
+public class NodeOwnership {
+
+    private final ClusterBus bus;
+
+    /**
+     * @param bus the bus whose members share the flows
+     */
+    public NodeOwnership(ClusterBus bus) {
+        this.bus = bus;
+    }
+
+    /**
+     * @param flowId the ID of a flow
+     * @return the ID of the instance that runs the flow's nodes
+     */
+    public String ownerOf(String flowId) {
+        String owner = null;
+        long ownerScore = 0;
+        for (String member : bus.getMembers()) {
+            long score = score(member, flowId);
+            if (owner == null || score > ownerScore || (score == ownerScore && member.compareTo(owner) < 0)) {
+                owner = member;
+                ownerScore = score;
+            }
+        }
+        return owner != null ? owner : bus.getInstanceId();
+    }
+
+    /**
+     * @param flowId the ID of a flow
+     * @return true if this instance runs the flow's nodes
+     */
+    public boolean isLocal(String flowId) {
+        return ownerOf(flowId).equals(bus.getInstanceId());
+    }
+
+    private static long score(String member, String flowId) {
+        // Finalizer of MurmurHash3: spreads the combined hashes over all 64 bits
+        long h = ((long) member.hashCode() << 32) ^ (flowId.hashCode() & 0xffffffffL);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
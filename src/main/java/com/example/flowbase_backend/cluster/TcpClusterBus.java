@@ -0,0 +1,528 @@
+package com.example.flowbase_backend.cluster;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Cluster bus over plain TCP connections between the instances, without an external broker
+ * <p>
+ * Every instance listens on its cluster port and keeps one outgoing connection to each
+ * configured peer. An outgoing connection starts with the instance ID and carries events and
+ * a heartbeat every {@code heartbeatInterval}; incoming connections are only read. A peer is a
+ * member while its connection to this instance is open and a frame arrived within three
+ * heartbeat intervals. Peers that are down are dialled again at every heartbeat, on their own
+ * sender thread, so a peer that does not answer delays no heartbeat to the others.
+ * <p>
+ * Connections are authenticated with a secret shared by all instances: the accepting instance
+ * sends a random challenge, and the connecting one answers with its instance ID and an
+ * HMAC-SHA256 of both under the secret. Connections that fail the handshake are closed before
+ * any event is read. The secret does not encrypt the traffic, so the cluster port belongs on a
+ * private network; {@code bindAddress} keeps it off the others.
+ * <p>
+ * Published events are encoded once and queued for every connected peer. Each peer has its own
+ * sender thread, so the engine's threads never wait for the network, every peer gets the events
+ * in publish order, and a slow peer only holds up its own queue. When more than
+ * {@code queueCapacity} events wait for a peer, new ones are dropped for that peer and counted.
+ * A write that has not finished after {@code writeTimeout} closes the connection, checked at
+ * every heartbeat; the peer is dialled again and its queued events are discarded.
+ * Members only agree on the owners of flows if every instance lists all the others as peers.
+ */
+public class TcpClusterBus implements ClusterBus, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(TcpClusterBus.class);
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+    public static final Duration DEFAULT_WRITE_TIMEOUT = Duration.ofSeconds(5);
+
+    private static final String HMAC = "HmacSHA256";
+    private static final int CHALLENGE_BYTES = 16;
+    private static final int PROOF_BYTES = 32;
+
+    private static final byte HELLO = 0;
+    private static final byte HEARTBEAT = 1;
+    private static final byte EVENT = 2;
+    private static final byte[] HEARTBEAT_FRAME = {HEARTBEAT};
+    // Queued for a peer that is down; its sender thread dials it instead of writing
+    private static final byte[] DIAL = new byte[0];
+
+    private final String instanceId;
+    private final InetAddress bindAddress;
+    private final int port;
+    private final Duration heartbeatInterval;
+    private final long writeTimeoutNanos;
+    private final int queueCapacity;
+    private final SecretKeySpec secret;
+    private final SecureRandom random = new SecureRandom();
+    private final List<ClusterListener> listeners = new CopyOnWriteArrayList<>();
+    // Outgoing connections by peer address
+    private final Map<InetSocketAddress, Peer> peers = new ConcurrentHashMap<>();
+    // Incoming connections by instance ID
+    private final Map<String, Socket> incoming = new ConcurrentHashMap<>();
+    private final Object membershipLock = new Object();
+    private volatile Set<String> members;
+    private final ScheduledExecutorService heartbeats;
+    private ServerSocket serverSocket;
+    private volatile boolean closed;
+
+    private final Counter sentEvents;
+    private final Counter receivedEvents;
+    private final Counter droppedEvents;
+    private final Counter rejectedConnections;
+
+    /**
+     * An outgoing connection, with the frames waiting for it and the thread that writes them
+     */
+    private static final class Peer {
+        final InetSocketAddress address;
+        final BlockingQueue<byte[]> queue;
+        volatile Socket socket;
+        volatile DataOutputStream out;
+        volatile Thread sender;
+        // Start of the write in progress; only meaningful while writing is true
+        volatile long writeStartedNanos;
+        volatile boolean writing;
+        // True from queueing a dial until the attempt is over
+        volatile boolean dialling;
+
+        Peer(InetSocketAddress address, int queueCapacity) {
+            this.address = address;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+    }
+
+    /**
+     * Create a bus on all interfaces that records its meters in the global registry
+     * @param instanceId the ID of this instance, unique in the cluster
+     * @param port port to listen on, 0 for any free port
+     * @param heartbeatInterval how often peers are told this instance is alive
+     * @param secret secret shared by all instances of the cluster
+     */
+    public TcpClusterBus(String instanceId, int port, Duration heartbeatInterval, String secret) {
+        this(instanceId, null, port, heartbeatInterval, DEFAULT_WRITE_TIMEOUT, DEFAULT_QUEUE_CAPACITY, secret,
+                Metrics.globalRegistry);
+    }
+
+    /**
+     * @param instanceId the ID of this instance, unique in the cluster
+     * @param bindAddress address to listen on, null for all interfaces
+     * @param port port to listen on, 0 for any free port
+     * @param heartbeatInterval how often peers are told this instance is alive
+     * @param writeTimeout how long a write to a peer may take before its connection is closed
+     * @param queueCapacity events that may wait for each peer's sender thread
+     * @param secret secret shared by all instances of the cluster
+     * @param meterRegistry registry for the event counters and the member gauge
+     * @throws IllegalArgumentException if the secret is empty
+     */
+    public TcpClusterBus(String instanceId, InetAddress bindAddress, int port, Duration heartbeatInterval,
+                         Duration writeTimeout, int queueCapacity, String secret, MeterRegistry meterRegistry) {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalArgumentException("The cluster bus needs a shared secret");
+        }
+        this.instanceId = instanceId;
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.heartbeatInterval = heartbeatInterval;
+        this.writeTimeoutNanos = writeTimeout.toNanos();
+        this.queueCapacity = queueCapacity;
+        this.secret = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC);
+        this.members = Set.of(instanceId);
+        this.heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> daemon("cluster-heartbeat", runnable));
+        this.sentEvents = eventCounter("sent", meterRegistry);
+        this.receivedEvents = eventCounter("received", meterRegistry);
+        this.droppedEvents = eventCounter("dropped", meterRegistry);
+        this.rejectedConnections = Counter.builder("flowbase.cluster.connections.rejected")
+                .description("Incoming cluster connections that failed the shared-secret handshake")
+                .baseUnit("connections")
+                .register(meterRegistry);
+        Gauge.builder("flowbase.cluster.members", this, bus -> bus.getMembers().size())
+                .description("Live instances in the cluster, this one included")
+                .register(meterRegistry);
+    }
+
+    private static Counter eventCounter(String outcome, MeterRegistry meterRegistry) {
+        return Counter.builder("flowbase.cluster.events")
+                .description("Events exchanged with the other instances of the cluster")
+                .tag("outcome", outcome)
+                .baseUnit("events")
+                .register(meterRegistry);
+    }
+
+    private static Thread daemon(String name, Runnable runnable) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Listen on the cluster port and start dialling the peers
+     * @throws IOException if the port cannot be opened
+     */
+    public void start() throws IOException {
+        serverSocket = new ServerSocket(port, 50, bindAddress);
+        daemon("cluster-acceptor", this::accept).start();
+        long intervalNanos = heartbeatInterval.toNanos();
+        heartbeats.scheduleWithFixedDelay(this::heartbeat, 0, intervalNanos, TimeUnit.NANOSECONDS);
+        log.atInfo().addKeyValue("instanceId", instanceId).addKeyValue("port", getPort()).log("Cluster bus started");
+    }
+
+    /**
+     * @param address cluster port of another instance; this instance connects to it at the next heartbeat
+     */
+    public void addPeer(InetSocketAddress address) {
+        Peer peer = new Peer(address, queueCapacity);
+        if (peers.putIfAbsent(address, peer) == null) {
+            peer.sender = daemon("cluster-sender-" + address.getHostString() + ":" + address.getPort(), () -> send(peer));
+            peer.sender.start();
+        }
+    }
+
+    /**
+     * @return the port this instance listens on
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    @Override
+    public Set<String> getMembers() {
+        return members;
+    }
+
+    @Override
+    public void addListener(ClusterListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void publish(ClusterEvent event) {
+        if (closed) {
+            return;
+        }
+        byte[] frame = encode(event);
+        for (Peer peer : peers.values()) {
+            if (peer.out != null && !peer.queue.offer(frame)) {
+                dropped(peer);
+            }
+        }
+        sentEvents.increment();
+    }
+
+    private static byte[] encode(ClusterEvent event) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(EVENT);
+            event.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void dropped(Peer peer) {
+        droppedEvents.increment();
+        log.atWarn().addKeyValue("peer", peer.address).log("Cluster send queue full, event dropped");
+    }
+
+    /**
+     * Runs on the heartbeat thread: close connections whose write is past its deadline, have the
+     * peers that are not connected dialled, and queue a heartbeat behind the pending events of the
+     * others. Nothing here waits for the network.
+     */
+    private void heartbeat() {
+        long now = System.nanoTime();
+        for (Peer peer : peers.values()) {
+            if (peer.writing && now - peer.writeStartedNanos > writeTimeoutNanos) {
+                log.atWarn().addKeyValue("peer", peer.address).log("Cluster peer stopped reading, closing its connection");
+                // Fails the blocked write on the peer's sender thread, which then drops the connection
+                closeQuietly(peer.socket);
+            }
+            if (peer.out != null) {
+                peer.queue.offer(HEARTBEAT_FRAME);
+            } else if (!closed && !peer.dialling) {
+                peer.dialling = true;
+                if (!peer.queue.offer(DIAL)) {
+                    peer.dialling = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs on the peer's sender thread; takes up to two heartbeat intervals if the peer does not answer
+     */
+    private void connect(Peer peer) {
+        if (peer.out != null || closed) {
+            return;
+        }
+        Socket socket = new Socket();
+        try {
+            // Resolved at every attempt, so a peer that comes back under a new address is found
+            InetSocketAddress address = new InetSocketAddress(peer.address.getHostString(), peer.address.getPort());
+            socket.connect(address, (int) heartbeatInterval.toMillis());
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout((int) heartbeatInterval.toMillis());
+            byte[] challenge = new byte[CHALLENGE_BYTES];
+            new DataInputStream(socket.getInputStream()).readFully(challenge);
+            // Nothing is read after the handshake
+            socket.setSoTimeout(0);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeByte(HELLO);
+            out.writeUTF(instanceId);
+            out.write(proof(challenge, instanceId));
+            out.flush();
+            peer.queue.clear();
+            peer.socket = socket;
+            peer.out = out;
+            log.atInfo().addKeyValue("peer", peer.address).log("Connected to cluster peer");
+        } catch (IOException e) {
+            closeQuietly(socket);
+            log.atDebug().addKeyValue("peer", peer.address).setCause(e).log("Cluster peer not reachable");
+        }
+    }
+
+    /**
+     * @return HMAC of the challenge and the connecting instance's ID under the shared secret
+     */
+    private byte[] proof(byte[] challenge, String connectingId) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(secret);
+            mac.update(challenge);
+            return mac.doFinal(connectingId.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(HMAC + " is not available", e);
+        }
+    }
+
+    /**
+     * Runs on the peer's own sender thread until the bus is closed
+     */
+    private void send(Peer peer) {
+        try {
+            while (true) {
+                byte[] frame = peer.queue.take();
+                if (frame == DIAL) {
+                    try {
+                        connect(peer);
+                    } finally {
+                        peer.dialling = false;
+                    }
+                } else {
+                    write(peer, frame);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Closed
+        }
+    }
+
+    private void write(Peer peer, byte[] frame) {
+        DataOutputStream out = peer.out;
+        if (out == null) {
+            return;
+        }
+        peer.writeStartedNanos = System.nanoTime();
+        peer.writing = true;
+        try {
+            out.write(frame);
+            out.flush();
+        } catch (IOException e) {
+            log.atInfo().addKeyValue("peer", peer.address).log("Lost connection to cluster peer");
+            // Cleared first: once out is null, the heartbeat queues a dial that must not be lost
+            peer.queue.clear();
+            peer.out = null;
+            closeQuietly(peer.socket);
+        } finally {
+            peer.writing = false;
+        }
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                daemon("cluster-reader", () -> read(socket)).start();
+            } catch (IOException e) {
+                if (!closed) {
+                    log.atWarn().setCause(e).log("Cluster bus stopped accepting connections");
+                }
+                return;
+            }
+        }
+    }
+
+    private void read(Socket socket) {
+        String memberId = null;
+        try (socket) {
+            socket.setSoTimeout((int) heartbeatInterval.toMillis() * 3);
+            byte[] challenge = new byte[CHALLENGE_BYTES];
+            random.nextBytes(challenge);
+            socket.getOutputStream().write(challenge);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            if (in.readByte() != HELLO) {
+                throw new IOException("Cluster connection did not start with an instance ID");
+            }
+            String peerId = in.readUTF();
+            byte[] proof = new byte[PROOF_BYTES];
+            in.readFully(proof);
+            if (!MessageDigest.isEqual(proof, proof(challenge, peerId))) {
+                rejectedConnections.increment();
+                log.atWarn().addKeyValue("remoteAddress", socket.getRemoteSocketAddress()).addKeyValue("peerId", peerId)
+                        .log("Cluster connection failed the shared-secret handshake");
+                return;
+            }
+            if (peerId.equals(instanceId)) {
+                // This instance is in its own peer list
+                return;
+            }
+            memberId = peerId;
+            join(memberId, socket);
+            while (!closed) {
+                byte kind = in.readByte();
+                if (kind == EVENT) {
+                    dispatch(ClusterEvent.readFrom(in));
+                } else if (kind != HEARTBEAT) {
+                    throw new IOException("Unknown cluster frame " + kind);
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                log.atDebug().addKeyValue("memberId", memberId).setCause(e).log("Cluster connection closed");
+            }
+        } finally {
+            if (memberId != null) {
+                leave(memberId, socket);
+            }
+        }
+    }
+
+    private void dispatch(ClusterEvent event) {
+        receivedEvents.increment();
+        for (ClusterListener listener : listeners) {
+            try {
+                listener.onEvent(event);
+            } catch (RuntimeException e) {
+                log.atError().addKeyValue("event", event).setCause(e).log("Cluster listener failed");
+            }
+        }
+    }
+
+    private void join(String memberId, Socket socket) {
+        synchronized (membershipLock) {
+            Socket previous = incoming.put(memberId, socket);
+            // A restarted peer reconnects before its old connection times out
+            closeQuietly(previous);
+            updateMembers();
+        }
+    }
+
+    private void leave(String memberId, Socket socket) {
+        synchronized (membershipLock) {
+            if (incoming.remove(memberId, socket)) {
+                updateMembers();
+            }
+        }
+    }
+
+    /**
+     * Called with the membership lock held, so listeners see the changes in order
+     */
+    private void updateMembers() {
+        Set<String> updated = new TreeSet<>(incoming.keySet());
+        updated.add(instanceId);
+        if (updated.equals(members)) {
+            return;
+        }
+        members = Collections.unmodifiableSet(updated);
+        log.atInfo().addKeyValue("members", updated).log("Cluster membership changed");
+        for (ClusterListener listener : listeners) {
+            try {
+                listener.onMembershipChange(members);
+            } catch (RuntimeException e) {
+                log.atError().setCause(e).log("Cluster listener failed");
+            }
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Already broken
+        }
+    }
+
+    /**
+     * Stop heartbeats and close all connections; the peers see this instance leave
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        heartbeats.shutdownNow();
+        // Give events already queued a moment to go out
+        long deadline = System.nanoTime() + heartbeatInterval.toNanos();
+        try {
+            for (Peer peer : peers.values()) {
+                while ((!peer.queue.isEmpty() || peer.writing) && peer.out != null && System.nanoTime() < deadline) {
+                    Thread.sleep(1);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+        for (Peer peer : peers.values()) {
+            closeQuietly(peer.socket);
+            if (peer.sender != null) {
+                peer.sender.interrupt();
+            }
+        }
+        incoming.values().forEach(TcpClusterBus::closeQuietly);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.flowbase_backend.config;
+
+import com.example.flowbase_backend.cluster.TcpClusterBus;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Configuration for running several backend instances as one cluster
+ * <p>
+ * Without {@code flowbase.cluster.enabled=true} there is no cluster bus, and the instance runs
+ * every node itself and only tells its own clients about them.
+ */
+@Configuration
+@ConditionalOnProperty(name = "flowbase.cluster.enabled", havingValue = "true")
+public class ClusterConfig {
+
+    /**
+     * Bus over which the instances exchange node transitions, activations and registrations
+     * @param instanceId the ID of this instance; empty for a random one
+     * @param bindAddress address on which this instance accepts connections of its peers; empty for all
+     * @param port port on which this instance accepts connections of its peers
+     * @param peers comma-separated {@code host:port} of the other instances
+     * @param heartbeat how often peers are told this instance is alive
+     * @param writeTimeout how long a write to a peer may take before its connection is closed
+     * @param queueCapacity events that may wait to be sent to a peer before new ones are dropped
+     * @param secret secret shared by all instances, required
+     * @param meterRegistry registry for the event counters and the member gauge
+     * @return the started bus
+     * @throws IOException if the cluster port cannot be opened
+     * @throws IllegalArgumentException if the secret is empty
+     */
+    @Bean(destroyMethod = "close")
+    public TcpClusterBus clusterBus(@Value("${flowbase.cluster.instance-id:}") String instanceId,
+                                    @Value("${flowbase.cluster.bind-address:}") String bindAddress,
+                                    @Value("${flowbase.cluster.port:7400}") int port,
+                                    @Value("${flowbase.cluster.peers:}") String peers,
+                                    @Value("${flowbase.cluster.heartbeat:1s}") Duration heartbeat,
+                                    @Value("${flowbase.cluster.write-timeout:5s}") Duration writeTimeout,
+                                    @Value("${flowbase.cluster.queue-capacity:10000}") int queueCapacity,
+                                    @Value("${flowbase.cluster.secret:}") String secret,
+                                    MeterRegistry meterRegistry) throws IOException {
+        String id = StringUtils.hasText(instanceId) ? instanceId : UUID.randomUUID().toString();
+        InetAddress address = StringUtils.hasText(bindAddress) ? InetAddress.getByName(bindAddress.trim()) : null;
+        TcpClusterBus bus = new TcpClusterBus(id, address, port, heartbeat, writeTimeout, queueCapacity, secret,
+                meterRegistry);
+        for (String peer : StringUtils.commaDelimitedListToStringArray(peers)) {
+            if (StringUtils.hasText(peer)) {
+                String hostAndPort = peer.trim();
+                int colon = hostAndPort.lastIndexOf(':');
+                if (colon <= 0) {
+                    throw new IllegalArgumentException("Cluster peer is not host:port: " + hostAndPort);
+                }
+                bus.addPeer(InetSocketAddress.createUnresolved(hostAndPort.substring(0, colon),
+                        Integer.parseInt(hostAndPort.substring(colon + 1))));
+            }
+        }
+        bus.start();
+        return bus;
+    }
+}
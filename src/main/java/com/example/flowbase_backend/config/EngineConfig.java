@@ -0,0 +1,69 @@
+package com.example.flowbase_backend.config;
+
+import com.example.flowbase_backend.engine.JournalNodeStateStore;
+import com.example.flowbase_backend.engine.NodeExecutionEngine;
+import com.example.flowbase_backend.engine.NodeStateStore;
+import com.example.flowbase_backend.scheduling.TimerWheel;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Configuration for the node execution engine
+ */
+@Configuration
+public class EngineConfig {
+
+    /**
+     * Work-stealing pool on which released nodes and node actions run
+     * @param parallelism number of worker threads, 0 for one per available processor
+     * @return the executor
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool nodeExecutor(@Value("${flowbase.engine.parallelism:0}") int parallelism) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        // asyncMode: released nodes are independent events, FIFO order keeps them fair
+        return new ForkJoinPool(threads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+    }
+
+    /**
+     * Journal of node state transitions, replayed on startup to restore RUNNING deadlines
+     * @param enabled false to keep node states in memory only
+     * @param directory directory of the journal segments and snapshots
+     * @param segmentSizeMb size of each journal segment
+     * @param syncInterval how often appended transitions are forced to disk, 0 for every transition
+     * @return the state store
+     * @throws IOException if the journal cannot be opened
+     */
+    @Bean(destroyMethod = "close")
+    public NodeStateStore nodeStateStore(@Value("${flowbase.engine.journal.enabled:true}") boolean enabled,
+                                         @Value("${flowbase.engine.journal.directory:${java.io.tmpdir}/flowbase-journal}") Path directory,
+                                         @Value("${flowbase.engine.journal.segment-size-mb:16}") int segmentSizeMb,
+                                         @Value("${flowbase.engine.journal.sync-interval:10ms}") Duration syncInterval) throws IOException {
+        if (!enabled) {
+            return NodeStateStore.NONE;
+        }
+        return new JournalNodeStateStore(directory, segmentSizeMb * 1024 * 1024, syncInterval);
+    }
+
+    /**
+     * @param timerWheel timer wheel for fixed-duration nodes
+     * @param nodeExecutor executor for released nodes
+     * @param capacity maximum number of nodes
+     * @param meterRegistry registry for activation and RUNNING timers
+     * @param nodeStateStore store for transitions and recovered states
+     * @return the node execution engine
+     */
+    @Bean
+    public NodeExecutionEngine nodeExecutionEngine(TimerWheel timerWheel, ForkJoinPool nodeExecutor,
+                                                   @Value("${flowbase.engine.capacity:4096}") int capacity,
+                                                   MeterRegistry meterRegistry, NodeStateStore nodeStateStore) {
+        return new NodeExecutionEngine(timerWheel, nodeExecutor, capacity, meterRegistry, nodeStateStore);
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.flowbase_backend.config;
+
+import com.example.flowbase_backend.scheduling.TimerWheel;
+import com.example.flowbase_backend.trigger.FileWatcher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.FileSystems;
+import java.time.Duration;
+
+/**
+ * Configuration for the file watcher behind file-triggered nodes
+ */
+@Configuration
+public class FileTriggerConfig {
+
+    /**
+     * File watcher shared by all file triggers
+     * @param timerWheel timer wheel on which directory polls are scheduled
+     * @param minPollInterval poll interval of a directory that just changed
+     * @param maxPollInterval poll interval of a directory that has not changed for a while
+     * @return the started file watcher
+     */
+    @Bean(destroyMethod = "stop")
+    public FileWatcher nodeFileWatcher(TimerWheel timerWheel,
+                                       @Value("${flowbase.file-trigger.min-poll-interval:100ms}") Duration minPollInterval,
+                                       @Value("${flowbase.file-trigger.max-poll-interval:5s}") Duration maxPollInterval) {
+        FileWatcher fileWatcher = new FileWatcher(FileWatcher.nativeWatchService(FileSystems.getDefault()),
+                timerWheel, minPollInterval, maxPollInterval);
+        fileWatcher.start("file-trigger-watcher");
+        return fileWatcher;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.flowbase_backend.config;
+
+import com.example.flowbase_backend.git.MirrorCache;
+import com.example.flowbase_backend.git.RepositoryHandleCache;
+import com.example.flowbase_backend.git.RepositoryLockManager;
+import com.example.flowbase_backend.git.RepositoryTrash;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Configuration for JGit: the repository handle cache, the mirror cache, JGit's process-wide
+ * pack cache, the executor for Git jobs, background deletion of repositories and repository locks
+ */
+@Configuration
+public class GitConfig {
+
+    /**
+     * Repositories kept open between Git requests
+     * @param maxOpenRepositories number of idle repositories kept open
+     * @param windowCacheConfig pack cache settings, installed before any repository is opened
+     * @return the repository handle cache
+     */
+    @Bean(destroyMethod = "clear")
+    public RepositoryHandleCache repositoryHandleCache(@Value("${flowbase.git.max-open-repositories:32}") int maxOpenRepositories,
+                                                       WindowCacheConfig windowCacheConfig) {
+        return new RepositoryHandleCache(maxOpenRepositories);
+    }
+
+    /**
+     * Bare mirrors of cloned remotes, shared by all full clones and pulls of the same URL.
+     * Off unless enabled: the first clone of a remote fetches every ref into the mirror, which
+     * only pays off when the same remotes are cloned again and again.
+     * @param directory directory that holds the mirrors
+     * @param diskBudgetMb size above which the least recently used mirrors are deleted
+     * @param windowCacheConfig pack cache settings, installed before any mirror is opened
+     * @param repositoryTrash deletes evicted mirrors
+     * @return the mirror cache
+     * @throws IOException if the directory cannot be created or read
+     */
+    @Bean
+    @ConditionalOnProperty(name = "flowbase.git.mirror.enabled", havingValue = "true")
+    public MirrorCache mirrorCache(@Value("${flowbase.git.mirror.directory:${java.io.tmpdir}/flowbase-git-mirrors}") Path directory,
+                                   @Value("${flowbase.git.mirror.disk-budget-mb:2048}") long diskBudgetMb,
+                                   WindowCacheConfig windowCacheConfig, RepositoryTrash repositoryTrash) throws IOException {
+        return new MirrorCache(directory, diskBudgetMb * WindowCacheConfig.MB, repositoryTrash);
+    }
+
+    /**
+     * JGit's WindowCache holds pack file windows and indexes for all repositories. Strong
+     * references to pack indexes keep them loaded between requests instead of leaving them
+     * to the garbage collector.
+     * @return the installed configuration
+     */
+    @Bean
+    public WindowCacheConfig windowCacheConfig(@Value("${flowbase.git.window-cache.packed-git-limit-mb:64}") int packedGitLimitMb,
+                                               @Value("${flowbase.git.window-cache.packed-git-open-files:256}") int packedGitOpenFiles,
+                                               @Value("${flowbase.git.window-cache.delta-base-cache-limit-mb:16}") int deltaBaseCacheLimitMb,
+                                               @Value("${flowbase.git.window-cache.stream-file-threshold-mb:16}") int streamFileThresholdMb) {
+        WindowCacheConfig config = new WindowCacheConfig();
+        config.setPackedGitLimit((long) packedGitLimitMb * WindowCacheConfig.MB);
+        config.setPackedGitOpenFiles(packedGitOpenFiles);
+        config.setDeltaBaseCacheLimit(deltaBaseCacheLimitMb * WindowCacheConfig.MB);
+        config.setStreamFileThreshold(streamFileThresholdMb * WindowCacheConfig.MB);
+        config.setPackedIndexGitUseStrongRefs(true);
+        config.install();
+        return config;
+    }
+
+    /**
+     * Executor for Git jobs. Its size is the number of Git operations that run at the same
+     * time; GitJobService bounds the number of jobs waiting for it.
+     * @param concurrency number of Git jobs that run at the same time
+     * @return the executor
+     */
+    @Bean
+    public ThreadPoolTaskExecutor gitJobExecutor(@Value("${flowbase.git.jobs.concurrency:4}") int concurrency) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        executor.setThreadNamePrefix("git-job-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Deletes repositories in the background on its own fork-join pool, so large deletions do
+     * not compete with parallel streams on the common pool
+     * @param parallelism number of threads deleting files at the same time
+     * @return the repository trash
+     */
+    @Bean
+    public RepositoryTrash repositoryTrash(@Value("${flowbase.git.delete.parallelism:4}") int parallelism) {
+        return new RepositoryTrash(new ForkJoinPool(parallelism));
+    }
+
+    /**
+     * Read/write locks per repository for GitService
+     * @param timeout how long an operation waits for a repository before it fails
+     * @return the lock manager
+     */
+    @Bean
+    public RepositoryLockManager repositoryLockManager(@Value("${flowbase.git.lock-timeout:30s}") Duration timeout) {
+        return new RepositoryLockManager(timeout);
+    }
+}
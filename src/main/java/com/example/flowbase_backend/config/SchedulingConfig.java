@@ -0,0 +1,29 @@
+package com.example.flowbase_backend.config;
+
+import com.example.flowbase_backend.scheduling.TimerWheel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuration for the timer wheel that drives node lifecycle deadlines
+ */
+@Configuration
+public class SchedulingConfig {
+
+    /**
+     * Timer wheel on which each node's RUNNING to DONE deadline is scheduled
+     * @param tick resolution of the wheel, i.e. the maximum lateness of a deadline
+     * @param wheelSize number of buckets in the wheel
+     * @return the started timer wheel
+     */
+    @Bean(destroyMethod = "stop")
+    public TimerWheel nodeTimerWheel(@Value("${flowbase.scheduler.tick:10ms}") Duration tick,
+                                     @Value("${flowbase.scheduler.wheel-size:512}") int wheelSize) {
+        TimerWheel timerWheel = new TimerWheel(tick, wheelSize);
+        timerWheel.start("node-timer-wheel");
+        return timerWheel;
+    }
+}
@@ -4,11 +4,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.Customizer;
+import org.springframework.security.config.annotation.ObjectPostProcessor;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.access.AccessDeniedHandler;
+import org.springframework.security.web.header.HeaderWriterFilter;
 import org.springframework.security.web.AuthenticationEntryPoint;
 
 @Configuration
@@ -26,8 +28,10 @@ public class SecurityConfig {
         http
                 .cors(Customizer.withDefaults())               // CORS AN
                 .csrf(AbstractHttpConfigurer::disable)         // CSRF AUS
+                .headers(headers -> headers.addObjectPostProcessor(eagerHeaderWriter()))  // Header VOR der Kette
                 .authorizeHttpRequests(auth -> auth
-                        .requestMatchers("/ws/**", "/topic/**", "/app/**", "/api/git/**", "/activate/**", "/activate-node-a", "/trigger/**", "/node-status", "/error").permitAll()
+                        .requestMatchers("/ws/**", "/ws-native", "/topic/**", "/app/**", "/api/git/**", "/activate/**", "/activate-node-a", "/trigger/**", "/nodes/**", "/node-status", "/node-state", "/node-state/stream", "/broker-stats", "/error").permitAll()
+                        .requestMatchers("/actuator/health").permitAll()
                         .anyRequest().authenticated()
                 )
                 .exceptionHandling(exceptionHandling -> exceptionHandling
@@ -38,4 +42,19 @@ public class SecurityConfig {
         return http.build();
     }
 
+    /**
+     * Writes the security headers before the request is handled instead of after it. Server-Sent
+     * Events are written by other threads as soon as the stream is opened, so headers added once
+     * the filter chain returns would race with them.
+     */
+    private static ObjectPostProcessor<HeaderWriterFilter> eagerHeaderWriter() {
+        return new ObjectPostProcessor<>() {
+            @Override
+            public <O extends HeaderWriterFilter> O postProcess(O filter) {
+                filter.setShouldWriteHeadersEagerly(true);
+                return filter;
+            }
+        };
+    }
+
 }
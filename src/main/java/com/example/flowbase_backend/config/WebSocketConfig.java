@@ -1,26 +1,162 @@
 package com.example.flowbase_backend.config;
 
+import com.example.flowbase_backend.admission.ClientAddressHandshakeInterceptor;
+import com.example.flowbase_backend.admission.TriggerAdmission;
+import com.example.flowbase_backend.admission.TriggerAdmissionInterceptor;
+import com.example.flowbase_backend.broker.BinaryTopicGuard;
+import com.example.flowbase_backend.broker.DroppingRejectionHandler;
+import com.example.flowbase_backend.broker.TopicSubscriptionRegistry;
+import com.example.flowbase_backend.service.NodeService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+  // Inbound: bounded queue, a full queue makes the client's own I/O thread do the work (backpressure)
+  @Value("${flowbase.websocket.inbound.core-pool-size:4}")
+  private int inboundCorePoolSize;
+  @Value("${flowbase.websocket.inbound.max-pool-size:16}")
+  private int inboundMaxPoolSize;
+  @Value("${flowbase.websocket.inbound.queue-capacity:1000}")
+  private int inboundQueueCapacity;
+
+  // Outbound: bounded queue, messages that do not fit are dropped instead of piling up in memory;
+  // counted, and logged once per drop-log-interval
+  @Value("${flowbase.websocket.outbound.core-pool-size:8}")
+  private int outboundCorePoolSize;
+  @Value("${flowbase.websocket.outbound.max-pool-size:32}")
+  private int outboundMaxPoolSize;
+  @Value("${flowbase.websocket.outbound.queue-capacity:10000}")
+  private int outboundQueueCapacity;
+  @Value("${flowbase.websocket.outbound.drop-log-interval:10s}")
+  private Duration outboundDropLogInterval;
+
+  // Per session: a client that cannot keep up within these limits is disconnected
+  @Value("${flowbase.websocket.send-time-limit-ms:10000}")
+  private int sendTimeLimitMs;
+  @Value("${flowbase.websocket.send-buffer-size-limit:524288}")
+  private int sendBufferSizeLimit;
+  @Value("${flowbase.websocket.message-size-limit:65536}")
+  private int messageSizeLimit;
+
+  @Value("${flowbase.websocket.heartbeat-ms:10000}")
+  private long heartbeatMs;
+
+  // Plain WebSocket endpoint: the only one on which binary frames stay binary
+  private final BinaryTopicGuard binaryTopicGuard = new BinaryTopicGuard("/ws-native");
+
+  private TaskScheduler messageBrokerTaskScheduler;
+  private TriggerAdmission triggerAdmission;
+  private SimpMessagingTemplate messagingTemplate;
+
+  @Autowired
+  public void setMessageBrokerTaskScheduler(@Lazy @Qualifier("messageBrokerTaskScheduler") TaskScheduler taskScheduler) {
+    this.messageBrokerTaskScheduler = taskScheduler;
+  }
+
+  @Autowired
+  public void setTriggerAdmission(TriggerAdmission triggerAdmission) {
+    this.triggerAdmission = triggerAdmission;
+  }
+
+  @Autowired
+  public void setMessagingTemplate(@Lazy SimpMessagingTemplate messagingTemplate) {
+    this.messagingTemplate = messagingTemplate;
+  }
+
+  // The simple broker finds subscribers through the segment index instead of its default registry
+  @Bean
+  public static BeanPostProcessor topicSubscriptionRegistryInstaller(ObjectProvider<TopicSubscriptionRegistry> registry) {
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof SimpleBrokerMessageHandler handler) {
+          handler.setSubscriptionRegistry(registry.getObject());
+        }
+        return bean;
+      }
+    };
+  }
 
   @Override
   public void registerStompEndpoints(StompEndpointRegistry registry) {
     registry
             .addEndpoint("/ws")                    // SockJS-Basis-Pfad
             .setAllowedOriginPatterns("*")
+            .addInterceptors(new ClientAddressHandshakeInterceptor())   // Client-Adresse für die Trigger-Admission
             .withSockJS();                         // SockJS aktivieren
+    registry
+            .addEndpoint("/ws-native")             // reines WebSocket ohne SockJS, für das Binär-Topic
+            .setAllowedOriginPatterns("*")
+            .addInterceptors(new ClientAddressHandshakeInterceptor(), binaryTopicGuard);
   }
   @Override
   public void configureMessageBroker(MessageBrokerRegistry registry) {
-    registry.enableSimpleBroker("/topic","/queue");
+    registry.enableSimpleBroker("/topic","/queue")
+            .setTaskScheduler(messageBrokerTaskScheduler)
+            .setHeartbeatValue(new long[] {heartbeatMs, heartbeatMs});   // tote Clients erkennen
     registry.setApplicationDestinationPrefixes("/app");
+    // Clients track the highest sequence they received, so each session gets messages in publish order
+    registry.setPreservePublishOrder(true);
+  }
+
+  @Override
+  public void configureClientInboundChannel(ChannelRegistration registration) {
+    // Triggers over their limit are dropped before they are queued; the session gets /user/queue/errors
+    // SockJS sessions may not subscribe to the binary topic, which SockJS would deliver as text
+    registration.interceptors(binaryTopicGuard, new TriggerAdmissionInterceptor(triggerAdmission,
+            Map.of("/app/trigger/nodeA", NodeService.NODE_A), messagingTemplate));
+    registration.taskExecutor(boundedExecutor(new ThreadPoolExecutor.CallerRunsPolicy()))
+            .corePoolSize(inboundCorePoolSize)
+            .maxPoolSize(inboundMaxPoolSize)
+            .queueCapacity(inboundQueueCapacity);
+  }
+
+  @Override
+  public void configureClientOutboundChannel(ChannelRegistration registration) {
+    // Messages are dropped before they reach a full executor; one that is accepted but never runs
+    // would hold up every later message of its session, since the publish order is preserved
+    DroppingRejectionHandler dropping = new DroppingRejectionHandler("outbound", outboundDropLogInterval);
+    registration.interceptors(dropping);
+    registration.taskExecutor(boundedExecutor(dropping))
+            .corePoolSize(outboundCorePoolSize)
+            .maxPoolSize(outboundMaxPoolSize)
+            .queueCapacity(outboundQueueCapacity);
+  }
+
+  @Override
+  public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+    registration.setSendTimeLimit(sendTimeLimitMs)
+            .setSendBufferSizeLimit(sendBufferSizeLimit)
+            .setMessageSizeLimit(messageSizeLimit);
+  }
+
+  private static ThreadPoolTaskExecutor boundedExecutor(RejectedExecutionHandler rejectionPolicy) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setRejectedExecutionHandler(rejectionPolicy);
+    return executor;
   }
 }
@@ -0,0 +1,29 @@
+package com.example.flowbase_backend.controller;
+
+import com.example.flowbase_backend.service.WebSocketBrokerMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+public class BrokerStatsController {
+
+    private final WebSocketBrokerMetrics brokerMetrics;
+
+    @Autowired
+    public BrokerStatsController(WebSocketBrokerMetrics brokerMetrics) {
+        this.brokerMetrics = brokerMetrics;
+    }
+
+    /**
+     * Endpoint to get queue depths and thread usage of the STOMP client channels
+     * @return Map containing inbound, outbound and session stats
+     */
+    @GetMapping("/broker-stats")
+    public ResponseEntity<Map<String, Object>> getBrokerStats() {
+        return ResponseEntity.ok(brokerMetrics.snapshot());
+    }
+}
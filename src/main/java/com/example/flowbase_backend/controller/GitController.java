@@ -1,121 +1,172 @@
 package com.example.flowbase_backend.controller;
 
+import com.example.flowbase_backend.git.CloneOptions;
+import com.example.flowbase_backend.model.GitJobUpdate;
 import com.example.flowbase_backend.model.GitRepositoryRequest;
 import com.example.flowbase_backend.model.GitRepositoryResponse;
+import com.example.flowbase_backend.service.GitJobService;
 import com.example.flowbase_backend.service.GitService;
-import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.errors.GitAPIException;
+import com.example.flowbase_backend.service.WebSocketService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/git")
 public class GitController {
 
     private final GitService gitService;
+    private final GitJobService gitJobService;
 
     @Autowired
-    public GitController(GitService gitService) {
+    public GitController(GitService gitService, GitJobService gitJobService) {
         this.gitService = gitService;
+        this.gitJobService = gitJobService;
     }
 
     @PostMapping("/clone")
     public ResponseEntity<GitRepositoryResponse> cloneRepository(@RequestBody GitRepositoryRequest request) {
-
+        CloneOptions options;
         try {
-            Git git = gitService.cloneRepository(
-                request.getRepositoryUrl(), 
-                request.getLocalPath(), 
-                request.getUsername(), 
-                request.getPassword()
-            );
-            git.close(); // Close the Git instance after use
-
-            GitRepositoryResponse response = GitRepositoryResponse.success("Repository cloned successfully")
-                .addData("localPath", request.getLocalPath());
-
-            return ResponseEntity.ok(response);
-        } catch (GitAPIException e) {
-            GitRepositoryResponse errorResponse = GitRepositoryResponse.error("Failed to clone repository: " + e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+            options = cloneOptions(request);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(GitRepositoryResponse.error("Clone failed: " + e.getMessage()));
         }
+        return submit("clone", "Clone", request, monitor -> gitService.cloneRepository(
+                request.getRepositoryUrl(),
+                request.getLocalPath(),
+                request.getUsername(),
+                request.getPassword(),
+                options,
+                monitor
+            ).close() // Close the Git instance after use
+        );
     }
 
     @PostMapping("/pull")
     public ResponseEntity<GitRepositoryResponse> pullChanges(@RequestBody GitRepositoryRequest request) {
-
-        try {
-            gitService.pullChanges(
-                request.getLocalPath(), 
-                request.getUsername(), 
-                request.getPassword()
-            );
-
-            GitRepositoryResponse response = GitRepositoryResponse.success("Changes pulled successfully");
-
-            return ResponseEntity.ok(response);
-        } catch (GitAPIException | IOException e) {
-            GitRepositoryResponse errorResponse = GitRepositoryResponse.error("Failed to pull changes: " + e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
-        }
+        return submit("pull", "Pull", request, monitor -> gitService.pullChanges(
+                request.getLocalPath(),
+                request.getUsername(),
+                request.getPassword(),
+                monitor
+            )
+        );
     }
 
     @PostMapping("/commit")
     public ResponseEntity<GitRepositoryResponse> commitChanges(@RequestBody GitRepositoryRequest request) {
+        return submit("commit", "Commit", request, monitor -> gitService.commitChanges(
+                request.getLocalPath(),
+                request.getMessage(),
+                request.getAuthorName(),
+                request.getAuthorEmail(),
+                request.getChangedPaths()
+            )
+        );
+    }
 
-        try {
-            gitService.commitChanges(
-                request.getLocalPath(), 
-                request.getMessage(), 
-                request.getAuthorName(), 
-                request.getAuthorEmail()
-            );
-
-            GitRepositoryResponse response = GitRepositoryResponse.success("Changes committed successfully");
-
-            return ResponseEntity.ok(response);
-        } catch (GitAPIException | IOException e) {
-            GitRepositoryResponse errorResponse = GitRepositoryResponse.error("Failed to commit changes: " + e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+    @PostMapping("/commits")
+    public ResponseEntity<GitRepositoryResponse> commitBatch(@RequestBody GitRepositoryRequest request) {
+        if (request.getCommits() == null || request.getCommits().isEmpty()) {
+            return ResponseEntity.badRequest().body(GitRepositoryResponse.error("Commit failed: commits are required"));
         }
+        return submit("commit", "Commit", request, monitor -> gitService.commitBatch(
+                request.getLocalPath(),
+                request.getCommits()
+            )
+        );
     }
 
     @PostMapping("/push")
     public ResponseEntity<GitRepositoryResponse> pushChanges(@RequestBody GitRepositoryRequest request) {
+        return submit("push", "Push", request, monitor -> gitService.pushChanges(
+                request.getLocalPath(),
+                request.getUsername(),
+                request.getPassword(),
+                monitor
+            )
+        );
+    }
 
-        try {
-            gitService.pushChanges(
-                request.getLocalPath(), 
-                request.getUsername(), 
-                request.getPassword()
-            );
-
-            GitRepositoryResponse response = GitRepositoryResponse.success("Changes pushed successfully");
-
-            return ResponseEntity.ok(response);
-        } catch (GitAPIException | IOException e) {
-            GitRepositoryResponse errorResponse = GitRepositoryResponse.error("Failed to push changes: " + e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<GitJobUpdate> getJob(@PathVariable String jobId) {
+        GitJobUpdate job = gitJobService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
         }
+        return ResponseEntity.ok(job);
+    }
+
+    @DeleteMapping("/jobs/{jobId}")
+    public ResponseEntity<GitRepositoryResponse> cancelJob(@PathVariable String jobId) {
+        if (!gitJobService.cancel(jobId)) {
+            GitRepositoryResponse errorResponse = GitRepositoryResponse.error("Job is unknown or already finished");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+        }
+        return ResponseEntity.ok(GitRepositoryResponse.success("Job cancellation requested").addData("jobId", jobId));
+    }
+
+    @GetMapping("/cache-stats")
+    public ResponseEntity<GitRepositoryResponse> getCacheStats() {
+        GitRepositoryResponse response = GitRepositoryResponse.success("Repository cache statistics");
+        gitService.getCacheStats().forEach(response::addData);
+        return ResponseEntity.ok(response);
     }
 
     @DeleteMapping("/repository")
     public ResponseEntity<GitRepositoryResponse> deleteRepository(@RequestBody GitRepositoryRequest request) {
+        return submit("delete", "Delete", request, monitor -> gitService.deleteRepository(request.getLocalPath()));
+    }
+
+    private static CloneOptions cloneOptions(GitRepositoryRequest request) {
+        CloneOptions options = CloneOptions.FULL;
+        if (request.getDepth() != null) {
+            options = options.withDepth(request.getDepth());
+        }
+        if (request.getBranch() != null && !request.getBranch().isBlank()) {
+            options = options.withBranch(request.getBranch());
+        }
+        if (Boolean.TRUE.equals(request.getSingleBranch())) {
+            options = options.withSingleBranch(true);
+        }
+        if (Boolean.TRUE.equals(request.getNoCheckout())) {
+            options = options.withNoCheckout(true);
+        }
+        if (request.getCheckoutPaths() != null && !request.getCheckoutPaths().isEmpty()) {
+            options = options.withCheckoutPaths(request.getCheckoutPaths());
+        }
+        if (request.getReferenceRepository() != null && !request.getReferenceRepository().isBlank()) {
+            options = options.withReferenceRepository(request.getReferenceRepository());
+        }
+        return options;
+    }
+
+    /**
+     * Submit a Git operation as a job and answer right away with the job ID and the topic
+     * on which its progress is sent
+     */
+    private ResponseEntity<GitRepositoryResponse> submit(String operation, String label, GitRepositoryRequest request,
+                                                         GitJobService.GitOperation work) {
+        if (request.getLocalPath() == null || request.getLocalPath().isBlank()) {
+            GitRepositoryResponse errorResponse = GitRepositoryResponse.error(label + " failed: localPath is required");
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
         try {
-            gitService.deleteRepository(request.getLocalPath());
+            String jobId = gitJobService.submit(operation, request.getLocalPath(), work);
 
-            GitRepositoryResponse response = GitRepositoryResponse.success("Repository deleted successfully");
+            GitRepositoryResponse response = GitRepositoryResponse.success(label + " job submitted")
+                .addData("jobId", jobId)
+                .addData("topic", WebSocketService.gitJobTopic(jobId))
+                .addData("localPath", request.getLocalPath());
 
-            return ResponseEntity.ok(response);
-        } catch (IOException e) {
-            GitRepositoryResponse errorResponse = GitRepositoryResponse.error("Failed to delete repository: " + e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+            return ResponseEntity.accepted().body(response);
+        } catch (RejectedExecutionException e) {
+            GitRepositoryResponse errorResponse = GitRepositoryResponse.error(label + " job rejected: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(errorResponse);
         }
     }
 }
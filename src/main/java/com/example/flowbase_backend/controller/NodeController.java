@@ -1,33 +1,61 @@
 package com.example.flowbase_backend.controller;
 
+import com.example.flowbase_backend.admission.TriggerAdmission;
+import com.example.flowbase_backend.engine.NodeDefinition;
+import com.example.flowbase_backend.model.NodeDefinitionRequest;
+import com.example.flowbase_backend.model.NodeStateSync;
+import com.example.flowbase_backend.service.FileTriggerService;
 import com.example.flowbase_backend.service.NodeService;
+import com.example.flowbase_backend.service.NodeStateHistory;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.Duration;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
 
 @RestController
 public class NodeController {
 
     private final NodeService nodeService;
+    private final FileTriggerService fileTriggerService;
+    private final NodeStateHistory nodeStateHistory;
+    private final TriggerAdmission triggerAdmission;
 
     @Autowired
-    public NodeController(NodeService nodeService) {
+    public NodeController(NodeService nodeService, FileTriggerService fileTriggerService,
+                          NodeStateHistory nodeStateHistory, TriggerAdmission triggerAdmission) {
         this.nodeService = nodeService;
+        this.fileTriggerService = fileTriggerService;
+        this.nodeStateHistory = nodeStateHistory;
+        this.triggerAdmission = triggerAdmission;
     }
 
     /**
-     * Endpoint to trigger Node A activation after 10 seconds
-     * @return Response indicating the process has started
+     * Endpoint to trigger Node A activation after a delay (10 seconds by default)
+     * @param request the request, whose user or remote address identifies the client
+     * @return Response indicating the process has started, or 429 if the client triggers too often
      */
     @GetMapping("/trigger/nodeA")
-    public ResponseEntity<String> triggerNodeA() {
-        // Use CompletableFuture to run the activation asynchronously
-        CompletableFuture.runAsync(nodeService::activateNodeA);
-        return ResponseEntity.ok("Node A activation process started. It will be activated after 10 seconds.");
+    public ResponseEntity<String> triggerNodeA(HttpServletRequest request) {
+        if (!triggerAdmission.tryAdmit(clientId(request), NodeService.NODE_A)) {
+            return tooManyTriggers(NodeService.NODE_A);
+        }
+        // Only schedules the activation, no thread waits for the delay
+        if (!nodeService.activateNodeA()) {
+            triggerAdmission.recordDuplicate();
+            return ResponseEntity.ok("Node A is already running or its activation is already scheduled.");
+        }
+        return ResponseEntity.ok("Node A activation process started. It will be activated after "
+                + nodeService.getNodeAActivationDelay().toSeconds() + " seconds.");
     }
 
     /**
@@ -36,8 +64,9 @@ public class NodeController {
      */
     @GetMapping("/trigger/nodeB")
     public ResponseEntity<String> triggerNodeB() {
-        // The scheduled task in NodeService will handle this
-        return ResponseEntity.ok("Node B activation check started. It will be activated once Resources/hello.txt is found.");
+        // The file watcher activates Node B as soon as the trigger file appears
+        return ResponseEntity.ok("Node B activation check started. It will be activated once "
+                + fileTriggerService.getTrigger(NodeService.NODE_B) + " is found.");
     }
 
     /**
@@ -49,46 +78,139 @@ public class NodeController {
         return ResponseEntity.ok(nodeService.getAllNodeStatus());
     }
 
+    /**
+     * Endpoint to get the numbered node states, the same way STOMP clients get them
+     * @param epoch the epoch of the last sync the client received, if any
+     * @param since the highest sequence the client received, if any
+     * @return the updates after {@code since}, or a snapshot of all nodes
+     */
+    @GetMapping("/node-state")
+    public ResponseEntity<NodeStateSync> getNodeState(@RequestParam(required = false) Long epoch,
+                                                      @RequestParam(required = false) Long since) {
+        if (epoch == null || since == null) {
+            return ResponseEntity.ok(nodeStateHistory.snapshot());
+        }
+        return ResponseEntity.ok(nodeStateHistory.since(epoch, since));
+    }
+
     /**
      * Endpoint to immediately activate Node A (change from Idle to Running)
-     * @return Response indicating the node has been activated
+     * @param request the request, whose user or remote address identifies the client
+     * @return Response indicating the node has been activated, or 429 if the client triggers too often
      */
     @GetMapping("/activate/nodeA")
-    public ResponseEntity<String> activateNodeA() {
-        nodeService.activateNodeAImmediately();
-        return ResponseEntity.ok("Node A has been activated immediately.");
+    public ResponseEntity<String> activateNodeA(HttpServletRequest request) {
+        return activateNodeAImmediately(request, "Node A has been activated immediately.");
     }
 
     /**
      * Alternative endpoint to immediately activate Node A (change from Idle to Running)
      * This is an alternative to /activate/nodeA for clients that might have issues with that path
-     * @return Response indicating the node has been activated
+     * @param request the request, whose user or remote address identifies the client
+     * @return Response indicating the node has been activated, or 429 if the client triggers too often
      */
     @GetMapping("/activate-node-a")
-    public ResponseEntity<String> activateNodeAAlternative() {
-        nodeService.activateNodeAImmediately();
-        return ResponseEntity.ok("Node A has been activated immediately (alternative endpoint).");
+    public ResponseEntity<String> activateNodeAAlternative(HttpServletRequest request) {
+        return activateNodeAImmediately(request, "Node A has been activated immediately (alternative endpoint).");
     }
 
     /**
      * Endpoint to immediately activate Node A with trailing slash
      * This handles the case where the client adds a trailing slash to the URL
-     * @return Response indicating the node has been activated
+     * @param request the request, whose user or remote address identifies the client
+     * @return Response indicating the node has been activated, or 429 if the client triggers too often
      */
     @GetMapping("/activate/nodeA/")
-    public ResponseEntity<String> activateNodeAWithTrailingSlash() {
-        nodeService.activateNodeAImmediately();
-        return ResponseEntity.ok("Node A has been activated immediately (trailing slash endpoint).");
+    public ResponseEntity<String> activateNodeAWithTrailingSlash(HttpServletRequest request) {
+        return activateNodeAImmediately(request, "Node A has been activated immediately (trailing slash endpoint).");
     }
 
     /**
      * Endpoint to immediately activate Node A with lowercase 'a'
      * This handles the case where the client uses lowercase 'a' in the URL
-     * @return Response indicating the node has been activated
+     * @param request the request, whose user or remote address identifies the client
+     * @return Response indicating the node has been activated, or 429 if the client triggers too often
      */
     @GetMapping("/activate/nodea")
-    public ResponseEntity<String> activateNodeALowercase() {
-        nodeService.activateNodeAImmediately();
-        return ResponseEntity.ok("Node A has been activated immediately (lowercase endpoint).");
+    public ResponseEntity<String> activateNodeALowercase(HttpServletRequest request) {
+        return activateNodeAImmediately(request, "Node A has been activated immediately (lowercase endpoint).");
+    }
+
+    private ResponseEntity<String> activateNodeAImmediately(HttpServletRequest request, String activated) {
+        if (!triggerAdmission.tryAdmit(clientId(request), NodeService.NODE_A)) {
+            return tooManyTriggers(NodeService.NODE_A);
+        }
+        if (!nodeService.activateNodeAImmediately()) {
+            triggerAdmission.recordDuplicate();
+            return ResponseEntity.ok("Node A is already running.");
+        }
+        return ResponseEntity.ok(activated);
+    }
+
+    private static String clientId(HttpServletRequest request) {
+        return TriggerAdmission.clientId(request.getUserPrincipal(), request.getRemoteAddr());
+    }
+
+    private ResponseEntity<String> tooManyTriggers(String nodeId) {
+        long retryAfterSeconds = Math.max(1, (triggerAdmission.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds))
+                .body("Too many triggers of " + nodeId + ", retry after " + retryAfterSeconds + " seconds.");
+    }
+
+    /**
+     * Endpoint to register a node with the execution engine
+     * @param request the node ID, its dependencies, an optional running duration and an optional file trigger
+     * @return Response indicating whether the node has been registered
+     */
+    @PostMapping("/nodes")
+    public ResponseEntity<String> registerNode(@RequestBody NodeDefinitionRequest request) {
+        if (request.getNodeId() == null || request.getNodeId().isBlank()) {
+            return ResponseEntity.badRequest().body("Failed to register node: nodeId is required");
+        }
+        try {
+            NodeDefinition definition = NodeDefinition.of(request.getNodeId());
+            if (request.getFlowId() != null && !request.getFlowId().isBlank()) {
+                definition = definition.inFlow(request.getFlowId());
+            }
+            if (request.getDependsOn() != null) {
+                definition = definition.dependsOn(request.getDependsOn());
+            }
+            if (request.getRunningDurationMs() != null) {
+                definition = definition.runningFor(Duration.ofMillis(request.getRunningDurationMs()));
+            }
+            nodeService.registerNode(definition);
+            if (request.getFileTrigger() != null && !request.getFileTrigger().isBlank()) {
+                fileTriggerService.setTrigger(request.getNodeId(), request.getFileTrigger());
+            }
+            return ResponseEntity.ok("Node " + request.getNodeId() + " has been registered.");
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return ResponseEntity.badRequest().body("Failed to register node: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Endpoint to immediately activate any registered node
+     * @param nodeId the ID of the node
+     * @param request the request, whose user or remote address identifies the client
+     * @return Response indicating whether the node has been activated, or 429 if the client triggers too often
+     */
+    @PostMapping("/nodes/{nodeId}/activate")
+    public ResponseEntity<String> activateNode(@PathVariable String nodeId, HttpServletRequest request) {
+        if (!nodeService.isRegistered(nodeId)) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!triggerAdmission.tryAdmit(clientId(request), nodeId)) {
+            return tooManyTriggers(nodeId);
+        }
+        try {
+            if (nodeService.activateNode(nodeId)) {
+                return ResponseEntity.ok("Node " + nodeId + " has been activated immediately.");
+            }
+            triggerAdmission.recordDuplicate();
+            return ResponseEntity.ok("Node " + nodeId + " is already running.");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
     }
 }
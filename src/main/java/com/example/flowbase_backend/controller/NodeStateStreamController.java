@@ -0,0 +1,47 @@
+package com.example.flowbase_backend.controller;
+
+import com.example.flowbase_backend.service.NodeStateStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+public class NodeStateStreamController {
+
+    private final NodeStateStream nodeStateStream;
+
+    @Autowired
+    public NodeStateStreamController(NodeStateStream nodeStateStream) {
+        this.nodeStateStream = nodeStateStream;
+    }
+
+    /**
+     * Endpoint streaming node state updates as Server-Sent Events, for read-only clients
+     * @param lastEventId the id of the last event received, sent by EventSource when it reconnects
+     * @param resumeFrom the same for a first connection, e.g. an id the page stored earlier
+     * @return the stream: a snapshot or the missed updates, then every new update;
+     *         503 if too many streams are open
+     */
+    @GetMapping(path = "/node-state/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamNodeState(
+            @RequestHeader(name = "Last-Event-ID", required = false) String lastEventId,
+            @RequestParam(name = "lastEventId", required = false) String resumeFrom) {
+        try {
+            SseEmitter emitter = nodeStateStream.subscribe(lastEventId != null ? lastEventId : resumeFrom);
+            return ResponseEntity.ok()
+                    .cacheControl(CacheControl.noStore())
+                    // Keeps reverse proxies such as nginx from buffering the stream
+                    .header("X-Accel-Buffering", "no")
+                    .body(emitter);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.flowbase_backend.controller;
+
+import com.example.flowbase_backend.model.NodeStateSync;
+import com.example.flowbase_backend.service.NodeStateHistory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
+import org.springframework.stereotype.Controller;
+
+@Controller
+public class NodeStateSyncController {
+
+    private final NodeStateHistory history;
+
+    @Autowired
+    public NodeStateSyncController(NodeStateHistory history) {
+        this.history = history;
+    }
+
+    /**
+     * Answers a SUBSCRIBE to /app/node-state with the latest state of every node.
+     * The reply goes only to the subscribing session; later updates arrive on /topic/node-activated.
+     * @return snapshot of all node states and the sequence it was taken at
+     */
+    @SubscribeMapping("/node-state")
+    public NodeStateSync subscribeSnapshot() {
+        return history.snapshot();
+    }
+
+    /**
+     * Answers a SUBSCRIBE to /app/node-state/{epoch}/{sequence} from a reconnecting client
+     * @param epoch the epoch of the last sync the client received
+     * @param sequence the highest sequence the client received
+     * @return the missed updates, or a snapshot if they are no longer kept
+     */
+    @SubscribeMapping("/node-state/{epoch}/{sequence}")
+    public NodeStateSync subscribeSince(@DestinationVariable long epoch, @DestinationVariable long sequence) {
+        return history.since(epoch, sequence);
+    }
+}
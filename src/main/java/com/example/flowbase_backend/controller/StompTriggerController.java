@@ -1,5 +1,6 @@
 package com.example.flowbase_backend.controller;
 
+import com.example.flowbase_backend.admission.TriggerAdmission;
 import com.example.flowbase_backend.service.NodeService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.handler.annotation.MessageMapping;
@@ -9,17 +10,24 @@ import org.springframework.stereotype.Controller;
 public class StompTriggerController {
 
     private final NodeService nodeService;
+    private final TriggerAdmission triggerAdmission;
 
     @Autowired
-    public StompTriggerController(NodeService nodeService) {
+    public StompTriggerController(NodeService nodeService, TriggerAdmission triggerAdmission) {
         this.nodeService = nodeService;
+        this.triggerAdmission = triggerAdmission;
     }
 
     /**
      * Fängt STOMP-SEND an /app/trigger/nodeA ab und aktiviert Node A.
+     * Die Aktivierung wird nur eingeplant, der Inbound-Channel-Thread blockiert nicht.
+     * Zu häufige Trigger hat der TriggerAdmissionInterceptor schon abgewiesen; Wiederholungen,
+     * während Node A läuft oder eingeplant ist, werden ignoriert.
      */
     @MessageMapping("/trigger/nodeA")
     public void handleTriggerNodeA() {
-        nodeService.activateNodeA();
+        if (!nodeService.activateNodeA()) {
+            triggerAdmission.recordDuplicate();
+        }
     }
 }
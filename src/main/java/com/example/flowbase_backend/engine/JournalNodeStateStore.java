@@ -0,0 +1,404 @@
+package com.example.flowbase_backend.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Node state store backed by an append-only journal of memory-mapped segment files.
+ * <p>
+ * An append copies the record into the mapped segment under a short lock and returns; no
+ * system call is made on the hot path. The pages belong to the OS, so a crash of the process
+ * loses nothing. Against power loss, a background thread forces the written range to disk
+ * every sync interval, so all transitions of one interval share one fsync. With a sync
+ * interval of zero, every append forces its own record before it returns.
+ * <p>
+ * When a segment is full, appends continue in a new one. The background thread then forces
+ * the full segment, writes a snapshot with the last state of every node and deletes the
+ * segments and snapshots the new snapshot replaces. Opening the store loads the latest
+ * snapshot, replays the segments after it and compacts them into a new snapshot.
+ * <p>
+ * Record layout: payload length, CRC32C of the payload, then the payload itself (timestamp,
+ * deadline, state ordinal, UTF-8 node ID). The length is written last, so a record with a
+ * length is complete; replay stops at the first zero length or checksum mismatch.
+ * <p>
+ * The store holds an exclusive lock on {@code journal.lock} in the directory while it is open.
+ * A second process opening the same directory fails instead of replaying the first one's
+ * segments and deleting its live segment.
+ */
+public class JournalNodeStateStore implements NodeStateStore {
+
+    private static final Logger log = LoggerFactory.getLogger(JournalNodeStateStore.class);
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final String LOCK_FILE = "journal.lock";
+    private static final int HEADER_BYTES = 8;
+    private static final int FIXED_PAYLOAD_BYTES = 17;
+    private static final NodeState[] STATES = NodeState.values();
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean syncEachAppend;
+    private final Map<String, NodeStateRecord> recoveredStates;
+    private final ConcurrentHashMap<String, NodeStateRecord> latest = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService syncExecutor;
+    // Closing the channel releases the directory lock
+    private final FileChannel lockChannel;
+
+    private final LongAdder appends = new LongAdder();
+    private final LongAdder syncs = new LongAdder();
+    private final LongAdder failedAppends = new LongAdder();
+
+    // Guarded by this
+    private MappedByteBuffer segment;
+    private long segmentSequence;
+    private int syncedPosition;
+    private final List<MappedByteBuffer> fullSegments = new ArrayList<>();
+    private boolean closed;
+
+    /**
+     * Open the journal in a directory, replaying what it holds
+     * @param directory directory of the segment and snapshot files; created if missing
+     * @param segmentSize size of each segment file in bytes
+     * @param syncInterval how often written records are forced to disk, zero to force each one
+     * @throws IOException if the directory cannot be read, is in use by another store or the first
+     *         segment cannot be created
+     */
+    public JournalNodeStateStore(Path directory, int segmentSize, Duration syncInterval) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+        this.syncEachAppend = syncInterval.isZero();
+        this.lockChannel = lock(directory);
+
+        try {
+            long nextSequence = recover();
+            this.recoveredStates = Collections.unmodifiableMap(new HashMap<>(latest));
+            // Start from a compact directory: one snapshot, one empty segment
+            writeSnapshot(nextSequence);
+            deleteBefore(nextSequence);
+            this.segmentSequence = nextSequence;
+            this.segment = mapSegment(nextSequence);
+        } catch (IOException | RuntimeException e) {
+            lockChannel.close();
+            throw e;
+        }
+
+        this.syncExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "node-journal-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (!syncEachAppend) {
+            long intervalNanos = syncInterval.toNanos();
+            syncExecutor.scheduleWithFixedDelay(this::sync, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+        }
+        log.atInfo().addKeyValue("directory", directory).addKeyValue("nodes", recoveredStates.size())
+                .log("Node state journal opened");
+    }
+
+    @Override
+    public void append(String nodeId, NodeState state, Duration runningFor) {
+        long now = System.currentTimeMillis();
+        NodeStateRecord record = new NodeStateRecord(nodeId, state, now, runningFor == null ? 0 : now + runningFor.toMillis());
+        ByteBuffer payload = encode(record);
+        CRC32C crc = new CRC32C();
+        crc.update(payload.duplicate());
+        int length = payload.remaining();
+
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            try {
+                // Keep 4 bytes for the zero length that ends the segment
+                if (HEADER_BYTES + length + 4 > segmentSize) {
+                    throw new IOException("Record of " + length + " bytes does not fit in a segment");
+                }
+                if (segment.remaining() < HEADER_BYTES + length + 4) {
+                    rollSegment();
+                }
+            } catch (IOException | RuntimeException e) {
+                failedAppends.increment();
+                log.atError().addKeyValue("nodeId", nodeId).setCause(e).log("Could not append to the node state journal");
+                return;
+            }
+            int start = segment.position();
+            segment.position(start + 4);
+            segment.putInt((int) crc.getValue());
+            segment.put(payload);
+            segment.putInt(start, length);
+            latest.put(nodeId, record);
+            if (syncEachAppend) {
+                segment.force(start, HEADER_BYTES + length);
+                syncedPosition = segment.position();
+                syncs.increment();
+            }
+        }
+        appends.increment();
+    }
+
+    @Override
+    public Map<String, NodeStateRecord> recoveredStates() {
+        return recoveredStates;
+    }
+
+    /**
+     * @return appended records, fsync calls and failed appends since the store was opened
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("appends", appends.sum());
+        stats.put("syncs", syncs.sum());
+        stats.put("failedAppends", failedAppends.sum());
+        stats.put("nodes", latest.size());
+        return stats;
+    }
+
+    /**
+     * Force everything written so far to disk and stop accepting appends
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        syncExecutor.shutdown();
+        try {
+            syncExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sync();
+        try {
+            lockChannel.close();
+        } catch (IOException e) {
+            log.atWarn().addKeyValue("directory", directory).setCause(e).log("Could not release the node state journal lock");
+        }
+    }
+
+    private static FileChannel lock(Path directory) throws IOException {
+        FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Held by another store in this JVM
+            lock = null;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IOException("Node state journal " + directory + " is in use by another process;"
+                    + " give every instance its own flowbase.engine.journal.directory");
+        }
+        return channel;
+    }
+
+    private void rollSegment() throws IOException {
+        fullSegments.add(segment);
+        segment = mapSegment(++segmentSequence);
+        syncedPosition = 0;
+        syncExecutor.execute(this::sync);
+    }
+
+    /**
+     * Force the unsynced part of the current segment and any full segments; after a full
+     * segment, compact the journal into a snapshot
+     */
+    private void sync() {
+        MappedByteBuffer current;
+        int from;
+        int to;
+        List<MappedByteBuffer> full;
+        long sequence;
+        synchronized (this) {
+            current = segment;
+            from = syncedPosition;
+            to = segment.position();
+            syncedPosition = to;
+            full = new ArrayList<>(fullSegments);
+            fullSegments.clear();
+            sequence = segmentSequence;
+        }
+        try {
+            for (MappedByteBuffer buffer : full) {
+                buffer.force();
+            }
+            if (to > from) {
+                current.force(from, to - from);
+                syncs.increment();
+            }
+            if (!full.isEmpty()) {
+                // Every record of the older segments is in the snapshot; newer ones are replayed again
+                writeSnapshot(sequence);
+                deleteBefore(sequence);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            log.atError().addKeyValue("directory", directory).setCause(e).log("Could not sync the node state journal");
+        }
+    }
+
+    /**
+     * Load the latest snapshot and replay the segments written after it into {@link #latest}
+     * @return the sequence number for the next segment
+     */
+    private long recover() throws IOException {
+        TreeMap<Long, Path> snapshots = list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        TreeMap<Long, Path> segments = list(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        long first = 0;
+        if (!snapshots.isEmpty()) {
+            first = snapshots.lastKey();
+            read(snapshots.lastEntry().getValue());
+        }
+        for (Path file : segments.tailMap(first).values()) {
+            read(file);
+        }
+        long last = Math.max(snapshots.isEmpty() ? 0 : snapshots.lastKey(), segments.isEmpty() ? 0 : segments.lastKey());
+        return last + 1;
+    }
+
+    private void read(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        while (buffer.remaining() >= HEADER_BYTES) {
+            int length = buffer.getInt();
+            if (length == 0) {
+                return;
+            }
+            int checksum = buffer.getInt();
+            if (length < FIXED_PAYLOAD_BYTES || length > buffer.remaining()) {
+                log.atWarn().addKeyValue("file", file).addKeyValue("position", buffer.position() - HEADER_BYTES)
+                        .log("Node state journal ends with an incomplete record");
+                return;
+            }
+            ByteBuffer payload = buffer.slice(buffer.position(), length);
+            buffer.position(buffer.position() + length);
+            CRC32C crc = new CRC32C();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                log.atWarn().addKeyValue("file", file).addKeyValue("position", buffer.position() - length - HEADER_BYTES)
+                        .log("Node state journal record has a wrong checksum, ignoring the rest of the file");
+                return;
+            }
+            NodeStateRecord record = decode(payload);
+            latest.put(record.getNodeId(), record);
+        }
+    }
+
+    /**
+     * Write the latest state of every node to a snapshot; it is visible only once complete
+     */
+    private void writeSnapshot(long sequence) throws IOException {
+        Path target = directory.resolve(name(SNAPSHOT_PREFIX, sequence, SNAPSHOT_SUFFIX));
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (NodeStateRecord record : latest.values()) {
+                ByteBuffer payload = encode(record);
+                CRC32C crc = new CRC32C();
+                crc.update(payload.duplicate());
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(payload.remaining()).putInt((int) crc.getValue()).flip();
+                while (header.hasRemaining() || payload.hasRemaining()) {
+                    channel.write(new ByteBuffer[]{header, payload});
+                }
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void deleteBefore(long sequence) throws IOException {
+        for (Path file : list(SEGMENT_PREFIX, SEGMENT_SUFFIX).headMap(sequence).values()) {
+            Files.deleteIfExists(file);
+        }
+        for (Path file : list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX).headMap(sequence).values()) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private MappedByteBuffer mapSegment(long sequence) throws IOException {
+        Path file = directory.resolve(name(SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    private TreeMap<Long, Path> list(String prefix, String suffix) throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (Stream<Path> entries = Files.list(directory)) {
+            entries.forEach(file -> {
+                String name = file.getFileName().toString();
+                if (name.startsWith(prefix) && name.endsWith(suffix)) {
+                    try {
+                        files.put(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())), file);
+                    } catch (NumberFormatException e) {
+                        // Not one of ours
+                    }
+                }
+            });
+        }
+        return files;
+    }
+
+    private static String name(String prefix, long sequence, String suffix) {
+        return String.format("%s%016d%s", prefix, sequence, suffix);
+    }
+
+    private static ByteBuffer encode(NodeStateRecord record) {
+        byte[] nodeId = record.getNodeId().getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(FIXED_PAYLOAD_BYTES + nodeId.length)
+                .putLong(record.getTimestampMillis())
+                .putLong(record.getDeadlineMillis())
+                .put((byte) record.getState().ordinal())
+                .put(nodeId)
+                .flip();
+    }
+
+    private static NodeStateRecord decode(ByteBuffer payload) {
+        long timestamp = payload.getLong();
+        long deadline = payload.getLong();
+        NodeState state = STATES[payload.get()];
+        byte[] nodeId = new byte[payload.remaining()];
+        payload.get(nodeId);
+        return new NodeStateRecord(new String(nodeId, StandardCharsets.UTF_8), state, timestamp, deadline);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.flowbase_backend.engine;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Immutable definition of a node in a flow
+ * <p>
+ * A node either runs an action on the engine's executor and is DONE once the action
+ * returns, or, without an action, stays RUNNING for a fixed duration. Nodes belong to
+ * {@link #DEFAULT_FLOW} unless they are put in another flow; the flow only decides which
+ * topic their updates are published on.
+ */
+public final class NodeDefinition {
+
+    public static final Duration DEFAULT_RUNNING_DURATION = Duration.ofSeconds(5);
+    public static final String DEFAULT_FLOW = "default";
+
+    private final String id;
+    private final String flowId;
+    private final List<String> dependencies;
+    private final Duration runningDuration;
+    private final Runnable action;
+
+    private NodeDefinition(String id, String flowId, List<String> dependencies, Duration runningDuration,
+                           Runnable action) {
+        this.id = Objects.requireNonNull(id, "id");
+        this.flowId = Objects.requireNonNull(flowId, "flowId");
+        this.dependencies = dependencies;
+        this.runningDuration = Objects.requireNonNull(runningDuration, "runningDuration");
+        this.action = action;
+    }
+
+    /**
+     * Create a node without dependencies that runs for {@link #DEFAULT_RUNNING_DURATION}
+     * @param id the ID of the node
+     * @return the node definition
+     */
+    public static NodeDefinition of(String id) {
+        return new NodeDefinition(id, DEFAULT_FLOW, List.of(), DEFAULT_RUNNING_DURATION, null);
+    }
+
+    /**
+     * @param nodeIds IDs of nodes that must be DONE before this node is released
+     * @return a copy of this definition with the given dependencies added
+     */
+    public NodeDefinition dependsOn(String... nodeIds) {
+        return dependsOn(Arrays.asList(nodeIds));
+    }
+
+    /**
+     * @param nodeIds IDs of nodes that must be DONE before this node is released
+     * @return a copy of this definition with the given dependencies added
+     */
+    public NodeDefinition dependsOn(List<String> nodeIds) {
+        Set<String> merged = new LinkedHashSet<>(dependencies);
+        merged.addAll(nodeIds);
+        return new NodeDefinition(id, flowId, List.copyOf(new ArrayList<>(merged)), runningDuration, action);
+    }
+
+    /**
+     * @param duration how long the node stays RUNNING when it has no action
+     * @return a copy of this definition with the given running duration
+     */
+    public NodeDefinition runningFor(Duration duration) {
+        return new NodeDefinition(id, flowId, dependencies, duration, action);
+    }
+
+    /**
+     * @param nodeAction work to run on the engine's executor while the node is RUNNING
+     * @return a copy of this definition with the given action
+     */
+    public NodeDefinition withAction(Runnable nodeAction) {
+        return new NodeDefinition(id, flowId, dependencies, runningDuration, nodeAction);
+    }
+
+    /**
+     * @param flow the ID of the flow the node belongs to
+     * @return a copy of this definition in the given flow
+     */
+    public NodeDefinition inFlow(String flow) {
+        return new NodeDefinition(id, flow, dependencies, runningDuration, action);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getFlowId() {
+        return flowId;
+    }
+
+    public List<String> getDependencies() {
+        return dependencies;
+    }
+
+    public Duration getRunningDuration() {
+        return runningDuration;
+    }
+
+    public Runnable getAction() {
+        return action;
+    }
+}
@@ -0,0 +1,421 @@
+package com.example.flowbase_backend.engine;
+
+import com.example.flowbase_backend.scheduling.TimerWheel;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Executes a DAG of nodes.
+ * <p>
+ * Every registered node gets a dense index. Per-node state, the number of predecessors
+ * that are not yet DONE and the start time of the current run live in atomic arrays indexed
+ * by it. A node's state and run counter share one {@code long}, so every transition is a
+ * single compare-and-set of both, without allocating: a stale completion of an earlier run
+ * cannot win against a newer run, and two concurrent activations start one run. When a node
+ * reaches DONE, the pending count of each successor is decremented and successors that
+ * reach zero are handed to the executor right away, so the critical path is bounded by
+ * the nodes themselves and not by any polling interval. Each dependency remembers the run of
+ * the successor it last counted towards, so a predecessor that runs again before the
+ * successor has started counts only once.
+ * <p>
+ * Dependencies must be registered before the nodes that depend on them, which also rules
+ * out cycles. Nodes without predecessors are started explicitly through {@link #activate}.
+ * <p>
+ * Two timers are recorded: {@code flowbase.node.activation}, the time from an activation
+ * request or the release by the last predecessor until the RUNNING state has been passed to
+ * the listeners, and {@code flowbase.node.running}, the time a node spends RUNNING. Neither
+ * is tagged with the node ID, so the number of series does not grow with the graph.
+ * <p>
+ * Every transition is also appended to a {@link NodeStateStore}. A node registered while the
+ * store holds a state recovered from before a restart gets that state back: DONE stays DONE,
+ * and a node that was RUNNING for a fixed duration is RUNNING again until its original
+ * deadline. A node that was running an action runs it again, as the action's progress is lost.
+ */
+public class NodeExecutionEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(NodeExecutionEngine.class);
+
+    private static final NodeState[] STATES = NodeState.values();
+    private static final int INACTIVE = NodeState.INACTIVE.ordinal();
+    private static final int RUNNING = NodeState.RUNNING.ordinal();
+    private static final int DONE = NodeState.DONE.ordinal();
+    private static final Edge[] NO_SUCCESSORS = new Edge[0];
+
+    private final TimerWheel timerWheel;
+    private final Executor executor;
+    private final int capacity;
+
+    private final Map<String, Integer> indexById = new ConcurrentHashMap<>();
+    private final NodeDefinition[] definitions;
+    private final int[] predecessorCounts;
+    private final AtomicReferenceArray<Edge[]> successors;
+    // Run counter in the high 32 bits, state ordinal in the low 32 bits
+    private final AtomicLongArray runStates;
+    private final AtomicIntegerArray pendingPredecessors;
+    private final AtomicLongArray runningSince;
+    private final List<NodeStateListener> listeners = new CopyOnWriteArrayList<>();
+    private final NodeStateStore stateStore;
+    private final Map<String, NodeStateRecord> recoveredStates;
+    // True after a restart: predecessors may come back DONE, so pending counts are recomputed
+    private final boolean restarted;
+
+    private final Object registrationLock = new Object();
+    private volatile int size;
+
+    private final Timer manualActivations;
+    private final Timer dependencyActivations;
+    private final Timer completedRuns;
+    private final Timer failedRuns;
+
+    /**
+     * Create an engine that records its timers in the global registry
+     * @param timerWheel timer wheel used for nodes that run for a fixed duration
+     * @param executor executor on which released nodes and node actions run
+     * @param capacity maximum number of nodes that can be registered
+     */
+    public NodeExecutionEngine(TimerWheel timerWheel, Executor executor, int capacity) {
+        this(timerWheel, executor, capacity, Metrics.globalRegistry, NodeStateStore.NONE);
+    }
+
+    /**
+     * @param timerWheel timer wheel used for nodes that run for a fixed duration
+     * @param executor executor on which released nodes and node actions run
+     * @param capacity maximum number of nodes that can be registered
+     * @param meterRegistry registry for activation latency and RUNNING duration
+     * @param stateStore store that transitions are written to and recovered states are read from
+     */
+    public NodeExecutionEngine(TimerWheel timerWheel, Executor executor, int capacity, MeterRegistry meterRegistry,
+                               NodeStateStore stateStore) {
+        this.timerWheel = timerWheel;
+        this.executor = executor;
+        this.capacity = capacity;
+        this.definitions = new NodeDefinition[capacity];
+        this.predecessorCounts = new int[capacity];
+        this.successors = new AtomicReferenceArray<>(capacity);
+        this.runStates = new AtomicLongArray(capacity);
+        this.pendingPredecessors = new AtomicIntegerArray(capacity);
+        this.runningSince = new AtomicLongArray(capacity);
+        this.stateStore = stateStore;
+        this.recoveredStates = new ConcurrentHashMap<>(stateStore.recoveredStates());
+        this.restarted = !recoveredStates.isEmpty();
+        this.manualActivations = activationTimer("manual", meterRegistry);
+        this.dependencyActivations = activationTimer("dependency", meterRegistry);
+        this.completedRuns = runningTimer("done", meterRegistry);
+        this.failedRuns = runningTimer("failed", meterRegistry);
+    }
+
+    private static Timer activationTimer(String trigger, MeterRegistry meterRegistry) {
+        return Timer.builder("flowbase.node.activation")
+                .description("Time from an activation request until the node is RUNNING and listeners are notified")
+                .tag("trigger", trigger)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(10_000))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(meterRegistry);
+    }
+
+    private static Timer runningTimer(String outcome, MeterRegistry meterRegistry) {
+        return Timer.builder("flowbase.node.running")
+                .description("Time a node spends in the RUNNING state")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofHours(1))
+                .register(meterRegistry);
+    }
+
+    /**
+     * Register a node. All of its dependencies must already be registered.
+     * @param definition the node definition
+     * @return the index assigned to the node
+     * @throws IllegalArgumentException if the node already exists or a dependency is unknown
+     * @throws IllegalStateException if the engine's capacity is exhausted
+     */
+    public int register(NodeDefinition definition) {
+        synchronized (registrationLock) {
+            String nodeId = definition.getId();
+            if (indexById.containsKey(nodeId)) {
+                throw new IllegalArgumentException("Node already registered: " + nodeId);
+            }
+            int index = size;
+            if (index == capacity) {
+                throw new IllegalStateException("Node capacity exhausted: " + capacity);
+            }
+
+            List<String> dependencies = definition.getDependencies();
+            int[] predecessors = new int[dependencies.size()];
+            Edge[] incoming = new Edge[predecessors.length];
+            for (int i = 0; i < predecessors.length; i++) {
+                Integer predecessor = indexById.get(dependencies.get(i));
+                if (predecessor == null) {
+                    throw new IllegalArgumentException("Unknown dependency " + dependencies.get(i) + " of node " + nodeId);
+                }
+                predecessors[i] = predecessor;
+            }
+
+            definitions[index] = definition;
+            predecessorCounts[index] = predecessors.length;
+            pendingPredecessors.set(index, predecessors.length);
+            successors.set(index, NO_SUCCESSORS);
+            for (int i = 0; i < predecessors.length; i++) {
+                incoming[i] = new Edge(index);
+                Edge[] current = successors.get(predecessors[i]);
+                Edge[] extended = Arrays.copyOf(current, current.length + 1);
+                extended[current.length] = incoming[i];
+                successors.set(predecessors[i], extended);
+            }
+            indexById.put(nodeId, index);
+            size = index + 1;
+
+            NodeStateRecord recovered = recoveredStates.remove(nodeId);
+            if (recovered != null) {
+                restore(index, recovered, predecessors, incoming);
+            } else if (restarted) {
+                // A node without a record may still wait for predecessors that finished before the restart
+                pendingPredecessors.set(index, countNotDone(index, predecessors, incoming));
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Bring a node back to the state recorded before a restart. Listeners are not notified;
+     * clients read the restored state like any other.
+     */
+    private void restore(int index, NodeStateRecord recovered, int[] predecessors, Edge[] incoming) {
+        if (recovered.getState() == NodeState.RUNNING) {
+            int runId = runIdOf(runStates.get(index)) + 1;
+            runningSince.set(index, System.nanoTime());
+            runStates.set(index, runState(runId, RUNNING));
+            Runnable action = definitions[index].getAction();
+            if (action != null) {
+                executor.execute(() -> runAction(index, runId, action));
+            } else {
+                long remainingMillis = Math.max(0, recovered.getDeadlineMillis() - System.currentTimeMillis());
+                timerWheel.schedule(() -> complete(index, runId), Duration.ofMillis(remainingMillis));
+            }
+        } else {
+            if (recovered.getState() == NodeState.DONE) {
+                runStates.set(index, runState(0, DONE));
+            }
+            // Predecessors that are DONE already released this node before the restart
+            pendingPredecessors.set(index, countNotDone(index, predecessors, incoming));
+        }
+        log.atInfo().addKeyValue("nodeId", recovered.getNodeId()).addKeyValue("state", recovered.getState())
+                .log("Node state restored");
+    }
+
+    /**
+     * Count the predecessors that are not DONE, and mark the others as counted for the next run
+     */
+    private int countNotDone(int index, int[] predecessors, Edge[] incoming) {
+        int nextRunId = runIdOf(runStates.get(index)) + 1;
+        int pending = 0;
+        for (int i = 0; i < predecessors.length; i++) {
+            if (stateOf(runStates.get(predecessors[i])) != DONE) {
+                pending++;
+            } else {
+                incoming[i].release(nextRunId);
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * @param listener callback invoked for every state change
+     */
+    public void addListener(NodeStateListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Start a node regardless of its dependencies
+     * @param nodeId the ID of the node
+     * @return true if the node was started, false if it was already RUNNING
+     * @throws IllegalArgumentException if the node is unknown
+     */
+    public boolean activate(String nodeId) {
+        return start(indexOf(nodeId), System.nanoTime(), manualActivations);
+    }
+
+    /**
+     * @param nodeId the ID of the node
+     * @return the current state of the node
+     * @throws IllegalArgumentException if the node is unknown
+     */
+    public NodeState getState(String nodeId) {
+        return STATES[stateOf(runStates.get(indexOf(nodeId)))];
+    }
+
+    /**
+     * @param nodeId the ID of the node
+     * @return the definition the node was registered with
+     * @throws IllegalArgumentException if the node is unknown
+     */
+    public NodeDefinition getDefinition(String nodeId) {
+        return definitions[indexOf(nodeId)];
+    }
+
+    /**
+     * @param nodeId the ID of the node
+     * @return true if a node with this ID is registered
+     */
+    public boolean isRegistered(String nodeId) {
+        return indexById.containsKey(nodeId);
+    }
+
+    /**
+     * @return the current state of every registered node, in registration order
+     */
+    public Map<String, NodeState> getStates() {
+        int count = size;
+        Map<String, NodeState> result = new LinkedHashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            result.put(definitions[i].getId(), STATES[stateOf(runStates.get(i))]);
+        }
+        return result;
+    }
+
+    private static long runState(int runId, int state) {
+        return (long) runId << 32 | state;
+    }
+
+    private static int runIdOf(long runState) {
+        return (int) (runState >>> 32);
+    }
+
+    private static int stateOf(long runState) {
+        return (int) runState;
+    }
+
+    private int indexOf(String nodeId) {
+        Integer index = indexById.get(nodeId);
+        if (index == null) {
+            throw new IllegalArgumentException("Unknown node: " + nodeId);
+        }
+        return index;
+    }
+
+    /**
+     * @param requestedAt {@link System#nanoTime()} when the activation was requested
+     * @param latency timer for the time from the request until the listeners are notified
+     */
+    private boolean start(int index, long requestedAt, Timer latency) {
+        long current;
+        int nextRunId;
+        do {
+            current = runStates.get(index);
+            if (stateOf(current) == RUNNING) {
+                return false;
+            }
+            nextRunId = runIdOf(current) + 1;
+        } while (!runStates.compareAndSet(index, current, runState(nextRunId, RUNNING)));
+        int runId = nextRunId;
+
+        pendingPredecessors.set(index, predecessorCounts[index]);
+        NodeDefinition definition = definitions[index];
+        Runnable action = definition.getAction();
+        // Written before the run is handed to the timer or executor that ends it
+        runningSince.set(index, System.nanoTime());
+        stateStore.append(definition.getId(), NodeState.RUNNING, action == null ? definition.getRunningDuration() : null);
+        notifyListeners(definition.getId(), NodeState.RUNNING);
+        latency.record(System.nanoTime() - requestedAt, TimeUnit.NANOSECONDS);
+
+        if (action != null) {
+            executor.execute(() -> runAction(index, runId, action));
+        } else {
+            timerWheel.schedule(() -> complete(index, runId), definition.getRunningDuration());
+        }
+        return true;
+    }
+
+    private void runAction(int index, int runId, Runnable action) {
+        try {
+            action.run();
+        } catch (Throwable t) {
+            // A failed node goes back to INACTIVE and does not release its successors
+            log.atWarn().addKeyValue("nodeId", definitions[index].getId()).setCause(t).log("Node action failed");
+            long since = runningSince.get(index);
+            if (runStates.compareAndSet(index, runState(runId, RUNNING), runState(runId, INACTIVE))) {
+                failedRuns.record(System.nanoTime() - since, TimeUnit.NANOSECONDS);
+                stateStore.append(definitions[index].getId(), NodeState.INACTIVE, null);
+                notifyListeners(definitions[index].getId(), NodeState.INACTIVE);
+            }
+            return;
+        }
+        complete(index, runId);
+    }
+
+    private void complete(int index, int runId) {
+        // Read before the state changes; once it is DONE, a new run may overwrite it
+        long since = runningSince.get(index);
+        if (!runStates.compareAndSet(index, runState(runId, RUNNING), runState(runId, DONE))) {
+            return;
+        }
+        completedRuns.record(System.nanoTime() - since, TimeUnit.NANOSECONDS);
+        stateStore.append(definitions[index].getId(), NodeState.DONE, null);
+        notifyListeners(definitions[index].getId(), NodeState.DONE);
+
+        for (Edge edge : successors.get(index)) {
+            int successor = edge.successor;
+            // The pending count is for the successor's next run
+            if (!edge.release(runIdOf(runStates.get(successor)) + 1)) {
+                continue;
+            }
+            if (pendingPredecessors.decrementAndGet(successor) <= 0 && stateOf(runStates.get(successor)) != RUNNING) {
+                long releasedAt = System.nanoTime();
+                executor.execute(() -> start(successor, releasedAt, dependencyActivations));
+            }
+        }
+    }
+
+    private void notifyListeners(String nodeId, NodeState state) {
+        for (NodeStateListener listener : listeners) {
+            try {
+                listener.onStateChange(nodeId, state);
+            } catch (RuntimeException e) {
+                log.atError().addKeyValue("nodeId", nodeId).addKeyValue("state", state).setCause(e).log("Node state listener failed");
+            }
+        }
+    }
+
+    /**
+     * Dependency of a successor on one predecessor
+     */
+    private static final class Edge {
+
+        final int successor;
+        // Run of the successor that this predecessor's completion was last counted towards
+        private final AtomicInteger releasedRun = new AtomicInteger();
+
+        Edge(int successor) {
+            this.successor = successor;
+        }
+
+        /**
+         * @param runId the successor's next run
+         * @return true if this call counts the predecessor towards that run, false if it already was
+         */
+        boolean release(int runId) {
+            int released = releasedRun.get();
+            return released != runId && releasedRun.compareAndSet(released, runId);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.flowbase_backend.engine;
+
+/**
+ * Lifecycle states of a node
+ */
+public enum NodeState {
+    INACTIVE,
+    RUNNING,
+    DONE
+}
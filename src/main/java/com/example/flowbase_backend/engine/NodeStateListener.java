@@ -0,0 +1,15 @@
+package com.example.flowbase_backend.engine;
+
+/**
+ * Callback for node state changes raised by the {@link NodeExecutionEngine}
+ */
+@FunctionalInterface
+public interface NodeStateListener {
+
+    /**
+     * Called after a node has changed state. Runs on the engine's threads and must not block.
+     * @param nodeId the ID of the node
+     * @param state the new state of the node
+     */
+    void onStateChange(String nodeId, NodeState state);
+}
@@ -0,0 +1,54 @@
+package com.example.flowbase_backend.engine;
+
+/**
+ * A node state transition as written to a {@link NodeStateStore}
+ */
+public final class NodeStateRecord {
+
+    private final String nodeId;
+    private final NodeState state;
+    private final long timestampMillis;
+    private final long deadlineMillis;
+
+    /**
+     * @param nodeId the ID of the node
+     * @param state the state the node changed to
+     * @param timestampMillis wall-clock time of the transition
+     * @param deadlineMillis wall-clock time at which a RUNNING node with a fixed duration is
+     *                       due to be DONE, 0 for all other transitions
+     */
+    public NodeStateRecord(String nodeId, NodeState state, long timestampMillis, long deadlineMillis) {
+        this.nodeId = nodeId;
+        this.state = state;
+        this.timestampMillis = timestampMillis;
+        this.deadlineMillis = deadlineMillis;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public NodeState getState() {
+        return state;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public long getDeadlineMillis() {
+        return deadlineMillis;
+    }
+
+    /**
+     * @return true if the node was RUNNING with a deadline rather than running an action
+     */
+    public boolean hasDeadline() {
+        return deadlineMillis != 0;
+    }
+
+    @Override
+    public String toString() {
+        return nodeId + " " + state + " at " + timestampMillis + (hasDeadline() ? " until " + deadlineMillis : "");
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.flowbase_backend.engine;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Durable record of the node state transitions of a {@link NodeExecutionEngine}, used to
+ * bring nodes back to their state after a restart
+ */
+public interface NodeStateStore extends Closeable {
+
+    /**
+     * Store that keeps nothing; every node starts INACTIVE after a restart
+     */
+    NodeStateStore NONE = new NodeStateStore() {
+        @Override
+        public void append(String nodeId, NodeState state, Duration runningFor) {
+        }
+
+        @Override
+        public Map<String, NodeStateRecord> recoveredStates() {
+            return Map.of();
+        }
+    };
+
+    /**
+     * Record a transition. Called on the engine's hot path: it must not block on I/O and must
+     * not throw; failures are logged by the store.
+     * @param nodeId the ID of the node
+     * @param state the new state of the node
+     * @param runningFor for a node entering RUNNING without an action, how long it stays
+     *                   RUNNING; null otherwise
+     */
+    void append(String nodeId, NodeState state, Duration runningFor);
+
+    /**
+     * @return the last recorded state of every node, as found when the store was opened
+     */
+    Map<String, NodeStateRecord> recoveredStates();
+
+    @Override
+    default void close() {
+    }
+}
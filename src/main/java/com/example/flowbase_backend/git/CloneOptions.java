@@ -0,0 +1,107 @@
+package com.example.flowbase_backend.git;
+
+import java.util.List;
+
+/**
+ * Immutable options that limit what a clone fetches and writes
+ * <p>
+ * The default is a full clone: all branches, complete history, the whole tree checked out.
+ */
+public final class CloneOptions {
+
+    public static final CloneOptions FULL = new CloneOptions(0, null, false, false, List.of(), null);
+
+    private final int depth;
+    private final String branch;
+    private final boolean singleBranch;
+    private final boolean noCheckout;
+    private final List<String> checkoutPaths;
+    private final String referenceRepository;
+
+    private CloneOptions(int depth, String branch, boolean singleBranch, boolean noCheckout,
+                         List<String> checkoutPaths, String referenceRepository) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("depth must not be negative");
+        }
+        this.depth = depth;
+        this.branch = branch;
+        this.singleBranch = singleBranch;
+        this.noCheckout = noCheckout;
+        this.checkoutPaths = checkoutPaths;
+        this.referenceRepository = referenceRepository;
+    }
+
+    /**
+     * @param commits number of commits of history to fetch per branch, 0 for all
+     * @return a copy of these options with the given depth
+     */
+    public CloneOptions withDepth(int commits) {
+        return new CloneOptions(commits, branch, singleBranch, noCheckout, checkoutPaths, referenceRepository);
+    }
+
+    /**
+     * @param branchName branch to check out instead of the remote's default branch
+     * @return a copy of these options with the given branch
+     */
+    public CloneOptions withBranch(String branchName) {
+        return new CloneOptions(depth, branchName, singleBranch, noCheckout, checkoutPaths, referenceRepository);
+    }
+
+    /**
+     * @param enabled fetch only the checked out branch
+     * @return a copy of these options
+     */
+    public CloneOptions withSingleBranch(boolean enabled) {
+        return new CloneOptions(depth, branch, enabled, noCheckout, checkoutPaths, referenceRepository);
+    }
+
+    /**
+     * @param enabled fetch objects and set up the branch, but write no files
+     * @return a copy of these options
+     */
+    public CloneOptions withNoCheckout(boolean enabled) {
+        return new CloneOptions(depth, branch, singleBranch, enabled, checkoutPaths, referenceRepository);
+    }
+
+    /**
+     * @param paths files or directories (with {@code /} separators) to write; all others stay
+     *              in the index but not in the working tree
+     * @return a copy of these options
+     */
+    public CloneOptions withCheckoutPaths(List<String> paths) {
+        return new CloneOptions(depth, branch, singleBranch, noCheckout, List.copyOf(paths), referenceRepository);
+    }
+
+    /**
+     * @param path local repository or mirror whose objects are used through
+     *             {@code objects/info/alternates} instead of being fetched and stored again
+     * @return a copy of these options
+     */
+    public CloneOptions withReferenceRepository(String path) {
+        return new CloneOptions(depth, branch, singleBranch, noCheckout, checkoutPaths, path);
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public String getBranch() {
+        return branch;
+    }
+
+    public boolean isSingleBranch() {
+        return singleBranch;
+    }
+
+    public boolean isNoCheckout() {
+        return noCheckout;
+    }
+
+    public List<String> getCheckoutPaths() {
+        return checkoutPaths;
+    }
+
+    public String getReferenceRepository() {
+        return referenceRepository;
+    }
+}
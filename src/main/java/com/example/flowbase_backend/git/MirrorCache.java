@@ -0,0 +1,343 @@
+package com.example.flowbase_backend.git;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.transport.CredentialsProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Cache of bare mirrors, one per remote URL, under a root directory.
+ * <p>
+ * {@link #acquire} creates the mirror on first use and otherwise brings it up to date with an
+ * incremental fetch, so only new objects are downloaded from the remote. Clones and pulls
+ * then read from the mirror over the local transport. Concurrent acquisitions of the same
+ * URL wait for one fetch instead of each fetching.
+ * <p>
+ * When the mirrors together take more than the disk budget, the least recently used
+ * mirrors that are not in use are deleted. Clones copy their objects from the mirror, so
+ * deleting a mirror never breaks a working copy. Mirrors are deleted through a
+ * {@link RepositoryTrash}, which frees the path at once and reports files it could not delete.
+ */
+public class MirrorCache {
+
+    private static final Logger log = LoggerFactory.getLogger(MirrorCache.class);
+
+    private final Path root;
+    private final long diskBudgetBytes;
+    private final RepositoryTrash trash;
+
+    // Guarded by this
+    private final Map<String, Mirror> mirrors = new HashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Create a cache that deletes mirrors on the common fork-join pool
+     * @param root directory that holds the mirrors; mirrors already in it are picked up
+     * @param diskBudgetBytes total size the mirrors may take before unused ones are deleted
+     * @throws IOException if the root directory cannot be created or read
+     */
+    public MirrorCache(Path root, long diskBudgetBytes) throws IOException {
+        this(root, diskBudgetBytes, new RepositoryTrash(ForkJoinPool.commonPool()));
+    }
+
+    /**
+     * @param root directory that holds the mirrors; mirrors already in it are picked up
+     * @param diskBudgetBytes total size the mirrors may take before unused ones are deleted
+     * @param trash deletes evicted mirrors and failed clones in the background
+     * @throws IOException if the root directory cannot be created or read
+     */
+    public MirrorCache(Path root, long diskBudgetBytes, RepositoryTrash trash) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.diskBudgetBytes = diskBudgetBytes;
+        this.trash = trash;
+        Files.createDirectories(this.root);
+        loadExisting();
+    }
+
+    /**
+     * Create or refresh the mirror of a remote and hold it until the lease is closed
+     * @param remoteUrl URL of the remote
+     * @param credentialsProvider credentials for the remote, or null
+     * @param monitor receives the progress of the clone or fetch
+     * @return lease on the up-to-date mirror
+     * @throws GitAPIException if the remote cannot be cloned or fetched
+     * @throws IOException if the mirror cannot be written
+     */
+    public Lease acquire(String remoteUrl, CredentialsProvider credentialsProvider, ProgressMonitor monitor)
+            throws GitAPIException, IOException {
+        Mirror mirror;
+        synchronized (this) {
+            mirror = mirrors.computeIfAbsent(remoteUrl, url -> new Mirror(url, root.resolve(directoryName(url))));
+            mirror.users++;
+            mirror.lastUsedMillis = System.currentTimeMillis();
+        }
+        Lease lease = new Lease(mirror);
+        try {
+            refresh(mirror, credentialsProvider, monitor);
+        } catch (GitAPIException | IOException | RuntimeException e) {
+            lease.close();
+            throw e;
+        }
+        evictOverBudget();
+        return lease;
+    }
+
+    /**
+     * @return number of acquisitions that found an existing mirror
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of acquisitions that had to create the mirror
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of mirrors deleted to stay within the disk budget
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return number of mirrors
+     */
+    public synchronized int size() {
+        return mirrors.size();
+    }
+
+    /**
+     * @return disk space taken by all mirrors, as of their last refresh
+     */
+    public synchronized long getDiskUsageBytes() {
+        long total = 0;
+        for (Mirror mirror : mirrors.values()) {
+            total += mirror.sizeBytes;
+        }
+        return total;
+    }
+
+    private void refresh(Mirror mirror, CredentialsProvider credentialsProvider, ProgressMonitor monitor)
+            throws GitAPIException, IOException {
+        mirror.lock.lock();
+        try {
+            if (Files.isDirectory(mirror.path.resolve(Constants.OBJECTS))) {
+                hits.incrementAndGet();
+                try (Git git = Git.open(mirror.path.toFile())) {
+                    var fetch = git.fetch()
+                            .setRemote(Constants.DEFAULT_REMOTE_NAME)
+                            .setRemoveDeletedRefs(true)
+                            .setProgressMonitor(monitor);
+                    if (credentialsProvider != null) {
+                        fetch.setCredentialsProvider(credentialsProvider);
+                    }
+                    fetch.call();
+                }
+            } else {
+                misses.incrementAndGet();
+                var clone = Git.cloneRepository()
+                        .setURI(mirror.url)
+                        .setDirectory(mirror.path.toFile())
+                        .setMirror(true)
+                        .setProgressMonitor(monitor);
+                if (credentialsProvider != null) {
+                    clone.setCredentialsProvider(credentialsProvider);
+                }
+                try {
+                    clone.call().close();
+                } catch (GitAPIException | RuntimeException e) {
+                    // Frees the path for the next attempt right away
+                    try {
+                        trash.delete(mirror.path);
+                    } catch (IOException deleteFailure) {
+                        e.addSuppressed(deleteFailure);
+                    }
+                    throw e;
+                }
+            }
+            long size = size(mirror.path);
+            synchronized (this) {
+                mirror.sizeBytes = size;
+            }
+        } finally {
+            mirror.lock.unlock();
+        }
+    }
+
+    private void evictOverBudget() {
+        List<Mirror> evicted = new ArrayList<>();
+        synchronized (this) {
+            long total = 0;
+            for (Mirror mirror : mirrors.values()) {
+                total += mirror.sizeBytes;
+            }
+            if (total <= diskBudgetBytes) {
+                return;
+            }
+            List<Mirror> candidates = new ArrayList<>(mirrors.values());
+            candidates.sort(Comparator.comparingLong(mirror -> mirror.lastUsedMillis));
+            for (Mirror mirror : candidates) {
+                if (total <= diskBudgetBytes) {
+                    break;
+                }
+                if (mirror.users == 0) {
+                    mirrors.remove(mirror.url);
+                    total -= mirror.sizeBytes;
+                    evicted.add(mirror);
+                }
+            }
+        }
+        // Removed from the map while unused, so no one can acquire them anymore
+        for (Mirror mirror : evicted) {
+            try {
+                // Files that cannot be deleted are logged and counted by the trash
+                trash.delete(mirror.path);
+            } catch (IOException e) {
+                log.atWarn().addKeyValue("url", mirror.url).setCause(e).log("Could not delete evicted Git mirror");
+            }
+            evictions.incrementAndGet();
+            log.atInfo().addKeyValue("url", mirror.url).addKeyValue("bytes", mirror.sizeBytes).log("Git mirror evicted");
+        }
+    }
+
+    private synchronized void release(Mirror mirror) {
+        mirror.users--;
+    }
+
+    private void loadExisting() throws IOException {
+        try (Stream<Path> children = Files.list(root)) {
+            for (Path path : (Iterable<Path>) children::iterator) {
+                if (!Files.isDirectory(path.resolve(Constants.OBJECTS))) {
+                    continue;
+                }
+                try (Git git = Git.open(path.toFile())) {
+                    String url = git.getRepository().getConfig().getString("remote", Constants.DEFAULT_REMOTE_NAME, "url");
+                    if (url == null || !path.getFileName().toString().equals(directoryName(url))) {
+                        continue;
+                    }
+                    Mirror mirror = new Mirror(url, path);
+                    mirror.sizeBytes = size(path);
+                    mirror.lastUsedMillis = Files.getLastModifiedTime(path).toMillis();
+                    mirrors.put(url, mirror);
+                } catch (IOException e) {
+                    log.atWarn().addKeyValue("path", path).setCause(e).log("Ignoring unreadable Git mirror");
+                }
+            }
+        }
+    }
+
+    private static String directoryName(String remoteUrl) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(remoteUrl.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16) + ".git";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long size(Path directory) throws IOException {
+        long[] total = {0};
+        Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if (attributes.isRegularFile()) {
+                    total[0] += attributes.size();
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                // Lock files, such as gc.log.lock of an automatic gc, come and go during the walk
+                if (e instanceof NoSuchFileException) {
+                    return FileVisitResult.CONTINUE;
+                }
+                throw e;
+            }
+        });
+        return total[0];
+    }
+
+    private static final class Mirror {
+
+        final String url;
+        final Path path;
+        // Held while the mirror is cloned or fetched
+        final ReentrantLock lock = new ReentrantLock();
+        // Guarded by the cache
+        int users;
+        long lastUsedMillis;
+        long sizeBytes;
+
+        Mirror(String url, Path path) {
+            this.url = url;
+            this.path = path;
+        }
+    }
+
+    /**
+     * Keeps a mirror from being evicted while it is read
+     */
+    public final class Lease implements AutoCloseable {
+
+        private final Mirror mirror;
+        private boolean closed;
+
+        private Lease(Mirror mirror) {
+            this.mirror = mirror;
+        }
+
+        /**
+         * @return path of the bare mirror
+         */
+        public Path getPath() {
+            return mirror.path;
+        }
+
+        /**
+         * @return URI to clone or fetch from the mirror with the local transport
+         */
+        public String getUri() {
+            return mirror.path.toUri().toString();
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                release(mirror);
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.flowbase_backend.git;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * A repository acquired from a {@link RepositoryHandleCache}. Closing the handle releases
+ * the repository back to the cache; it does not close the repository itself.
+ */
+public final class RepositoryHandle implements AutoCloseable {
+
+    private final RepositoryHandleCache cache;
+    private final RepositoryHandleCache.Entry entry;
+    private final Repository repository;
+    private boolean closed;
+
+    RepositoryHandle(RepositoryHandleCache cache, RepositoryHandleCache.Entry entry) {
+        this.cache = cache;
+        this.entry = entry;
+        this.repository = entry.repository();
+    }
+
+    /**
+     * @return the open repository
+     */
+    public Repository getRepository() {
+        return repository;
+    }
+
+    /**
+     * @return porcelain API on the repository; closing it does not close the repository
+     */
+    public Git git() {
+        return Git.wrap(repository);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            cache.release(entry);
+        }
+    }
+}
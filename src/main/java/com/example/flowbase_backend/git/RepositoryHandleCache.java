@@ -0,0 +1,235 @@
+package com.example.flowbase_backend.git;
+
+import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.RepositoryCache;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.util.FS;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of open JGit repositories, keyed by the canonical path of the working tree.
+ * <p>
+ * Opening a repository reads its config, refs and pack list from disk. Callers acquire a
+ * {@link RepositoryHandle} instead and close it when done; the repository stays open for
+ * the next caller. Each entry counts the handles currently using it. When more than
+ * {@code maxOpenRepositories} are cached, the least recently used entries that are not in
+ * use are closed. An entry that is invalidated while in use, e.g. because the repository is
+ * being deleted, is removed right away and closed when its last handle is released.
+ * <p>
+ * With a maximum of 0 every repository is closed as soon as it is released, like opening
+ * it per request.
+ */
+public class RepositoryHandleCache {
+
+    private final int maxOpenRepositories;
+
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maxOpenRepositories number of repositories kept open while not in use
+     */
+    public RepositoryHandleCache(int maxOpenRepositories) {
+        if (maxOpenRepositories < 0) {
+            throw new IllegalArgumentException("maxOpenRepositories must not be negative");
+        }
+        this.maxOpenRepositories = maxOpenRepositories;
+    }
+
+    /**
+     * Acquire the repository whose working tree (or git directory) is at the given path
+     * @param path path of the repository
+     * @return handle that must be closed after use
+     * @throws RepositoryNotFoundException if there is no repository at the path
+     * @throws IOException if the repository cannot be opened
+     */
+    public RepositoryHandle acquire(Path path) throws IOException {
+        Path key = canonical(path);
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry(key);
+                entries.put(key, entry);
+                misses.incrementAndGet();
+            } else {
+                hits.incrementAndGet();
+            }
+            entry.references++;
+        }
+
+        // Opened outside the map lock, so a slow open does not hold up other repositories
+        try {
+            entry.open();
+        } catch (IOException | RuntimeException e) {
+            synchronized (entries) {
+                if (entries.get(key) == entry) {
+                    entries.remove(key);
+                }
+                // A concurrent caller that opens it after all gets it closed on its release
+                entry.retired = true;
+            }
+            release(entry);
+            throw e;
+        }
+        return new RepositoryHandle(this, entry);
+    }
+
+    /**
+     * Remove a repository from the cache. It is closed now if it is not in use, otherwise
+     * when the last handle is released.
+     * @param path path of the repository
+     * @return true if the repository was cached
+     */
+    public boolean invalidate(Path path) {
+        Path key;
+        try {
+            key = canonical(path);
+        } catch (IOException e) {
+            key = path.toAbsolutePath().normalize();
+        }
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.remove(key);
+            if (entry == null) {
+                return false;
+            }
+            entry.retired = true;
+            if (entry.references > 0) {
+                return true;
+            }
+        }
+        entry.close();
+        return true;
+    }
+
+    /**
+     * Close all repositories that are not in use and forget all entries
+     */
+    public void clear() {
+        synchronized (entries) {
+            for (Entry entry : entries.values()) {
+                entry.retired = true;
+                if (entry.references == 0) {
+                    entry.close();
+                }
+            }
+            entries.clear();
+        }
+    }
+
+    /**
+     * @return number of acquisitions that found the repository already open
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of acquisitions that had to open the repository
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of repositories closed to stay within the bound
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return number of repositories currently cached
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    void release(Entry entry) {
+        boolean close;
+        synchronized (entries) {
+            entry.references--;
+            close = entry.references == 0 && entry.retired;
+            evictUnused();
+        }
+        if (close) {
+            entry.close();
+        }
+    }
+
+    private void evictUnused() {
+        int excess = entries.size() - maxOpenRepositories;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (excess > 0 && iterator.hasNext()) {
+            Entry candidate = iterator.next();
+            if (candidate.references == 0) {
+                iterator.remove();
+                candidate.retired = true;
+                candidate.close();
+                evictions.incrementAndGet();
+                excess--;
+            }
+        }
+    }
+
+    private static Path canonical(Path path) throws IOException {
+        try {
+            return path.toRealPath();
+        } catch (NoSuchFileException e) {
+            throw new RepositoryNotFoundException(path.toFile());
+        }
+    }
+
+    static final class Entry {
+
+        final Path path;
+        // Guarded by the cache's entries map
+        int references;
+        boolean retired;
+        private Repository repository;
+
+        Entry(Path path) {
+            this.path = path;
+        }
+
+        synchronized void open() throws IOException {
+            if (repository != null) {
+                return;
+            }
+            File gitDir = RepositoryCache.FileKey.resolve(path.toFile(), FS.DETECTED);
+            if (gitDir == null) {
+                throw new RepositoryNotFoundException(path.toFile());
+            }
+            repository = new FileRepositoryBuilder()
+                    .setGitDir(gitDir)
+                    .setMustExist(true)
+                    .build();
+        }
+
+        synchronized Repository repository() {
+            return repository;
+        }
+
+        synchronized void close() {
+            if (repository != null) {
+                repository.close();
+                repository = null;
+            }
+        }
+    }
+}
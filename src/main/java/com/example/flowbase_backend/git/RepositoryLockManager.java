@@ -0,0 +1,203 @@
+package com.example.flowbase_backend.git;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Read/write locks per repository, keyed by the canonical path of the working tree.
+ * <p>
+ * Operations that only read a repository, like push, take the read lock and run alongside
+ * each other. Operations that change the working tree, the index or HEAD take the write lock
+ * and run one at a time per repository. Repositories never share a lock, so operations on
+ * different repositories never wait for each other.
+ * <p>
+ * The locks are fair: a waiting writer is not overtaken by readers that arrive after it.
+ * A lock is held in memory only while it is held or waited for.
+ */
+public class RepositoryLockManager {
+
+    private final long timeoutNanos;
+
+    private final ConcurrentHashMap<Path, Entry> locks = new ConcurrentHashMap<>();
+
+    private final WaitStats readStats = new WaitStats();
+    private final WaitStats writeStats = new WaitStats();
+
+    /**
+     * @param timeout how long to wait for a lock before giving up
+     */
+    public RepositoryLockManager(Duration timeout) {
+        this.timeoutNanos = timeout.toNanos();
+    }
+
+    /**
+     * Acquire the shared lock of a repository
+     * @param path path of the repository; it does not have to exist yet
+     * @return lock that must be closed after use
+     * @throws RepositoryLockTimeoutException if the lock is not free within the timeout
+     * @throws IOException if the thread is interrupted while waiting
+     */
+    public RepositoryLock read(Path path) throws IOException {
+        return acquire(path, false);
+    }
+
+    /**
+     * Acquire the exclusive lock of a repository
+     * @param path path of the repository; it does not have to exist yet
+     * @return lock that must be closed after use
+     * @throws RepositoryLockTimeoutException if the lock is not free within the timeout
+     * @throws IOException if the thread is interrupted while waiting
+     */
+    public RepositoryLock write(Path path) throws IOException {
+        return acquire(path, true);
+    }
+
+    /**
+     * Wait times of read and write locks since startup, in microseconds
+     * @return acquisition, timeout and wait time figures per lock mode
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        readStats.addTo(stats, "read");
+        writeStats.addTo(stats, "write");
+        stats.put("lockedRepositories", locks.size());
+        return stats;
+    }
+
+    /**
+     * @return number of repositories whose lock is held or waited for
+     */
+    public int size() {
+        return locks.size();
+    }
+
+    private RepositoryLock acquire(Path path, boolean exclusive) throws IOException {
+        Path key = canonical(path);
+        Entry entry = locks.compute(key, (k, existing) -> {
+            Entry e = existing != null ? existing : new Entry();
+            e.references++;
+            return e;
+        });
+
+        Lock lock = exclusive ? entry.lock.writeLock() : entry.lock.readLock();
+        WaitStats stats = exclusive ? writeStats : readStats;
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = lock.tryLock(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            release(key);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the lock of " + key);
+        }
+        if (!acquired) {
+            stats.timedOut();
+            release(key);
+            throw new RepositoryLockTimeoutException(key, exclusive, Duration.ofNanos(timeoutNanos));
+        }
+        stats.acquired(System.nanoTime() - start);
+        return new RepositoryLock(key, lock);
+    }
+
+    private void release(Path key) {
+        locks.computeIfPresent(key, (k, e) -> --e.references == 0 ? null : e);
+    }
+
+    /**
+     * The real path of the nearest existing ancestor plus the rest, so a repository that is
+     * about to be cloned gets the same key as after it exists
+     */
+    private static Path canonical(Path path) throws IOException {
+        Path absolute = path.toAbsolutePath().normalize();
+        Path existing = absolute;
+        while (existing != null && !Files.exists(existing, LinkOption.NOFOLLOW_LINKS)) {
+            existing = existing.getParent();
+        }
+        if (existing == null) {
+            return absolute;
+        }
+        return existing.toRealPath().resolve(existing.relativize(absolute));
+    }
+
+    private static final class Entry {
+
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(true);
+        // Guarded by the map's compute
+        int references;
+    }
+
+    private static final class WaitStats {
+
+        final LongAdder acquisitions = new LongAdder();
+        final LongAdder contended = new LongAdder();
+        final LongAdder timeouts = new LongAdder();
+        final LongAdder totalWaitNanos = new LongAdder();
+        final AtomicLong maxWaitNanos = new AtomicLong();
+
+        void acquired(long waitNanos) {
+            acquisitions.increment();
+            // Below this, the lock was free and the time is just the call itself
+            if (waitNanos > TimeUnit.MICROSECONDS.toNanos(50)) {
+                contended.increment();
+            }
+            totalWaitNanos.add(waitNanos);
+            maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        }
+
+        void timedOut() {
+            timeouts.increment();
+        }
+
+        void addTo(Map<String, Object> stats, String mode) {
+            long count = acquisitions.sum();
+            stats.put(mode + "Acquisitions", count);
+            stats.put(mode + "Contended", contended.sum());
+            stats.put(mode + "Timeouts", timeouts.sum());
+            stats.put(mode + "WaitAvgMicros", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalWaitNanos.sum() / count));
+            stats.put(mode + "WaitMaxMicros", TimeUnit.NANOSECONDS.toMicros(maxWaitNanos.get()));
+        }
+    }
+
+    /**
+     * A held repository lock; closing it releases the lock
+     */
+    public final class RepositoryLock implements AutoCloseable {
+
+        private final Path path;
+        private final Lock lock;
+        private boolean closed;
+
+        private RepositoryLock(Path path, Lock lock) {
+            this.path = path;
+            this.lock = lock;
+        }
+
+        /**
+         * @return canonical path of the locked repository
+         */
+        public Path getPath() {
+            return path;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                lock.unlock();
+                release(path);
+            }
+        }
+    }
+}
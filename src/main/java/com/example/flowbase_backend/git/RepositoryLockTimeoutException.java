@@ -0,0 +1,23 @@
+package com.example.flowbase_backend.git;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Thrown when a repository stays locked by other operations for longer than the lock timeout
+ */
+public class RepositoryLockTimeoutException extends IOException {
+
+    private final Path path;
+
+    public RepositoryLockTimeoutException(Path path, boolean exclusive, Duration timeout) {
+        super("Timed out after " + timeout.toMillis() + " ms waiting for the "
+                + (exclusive ? "write" : "read") + " lock of " + path);
+        this.path = path;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.flowbase_backend.git;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.DirectoryNotEmptyException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deletes directory trees without blocking the caller.
+ * <p>
+ * {@link #delete} renames the directory into a {@code .flowbase-trash} directory next to it.
+ * The rename stays on the same file system, so it is atomic: the path is free again as soon as
+ * the method returns. The trash entry is then deleted in the background by a fork-join task
+ * per directory, so wide and deep trees are deleted in parallel without listing or sorting
+ * every path up front. Symbolic links are deleted, never followed, so a repository path that
+ * is a link loses only the link. Once nothing in a trash directory is left to delete, the trash directory
+ * itself is removed, so no {@code .flowbase-trash} stays behind next to the repositories.
+ * <p>
+ * Entries left in a trash directory by an earlier process are deleted whenever this instance
+ * starts using that trash directory.
+ */
+public class RepositoryTrash {
+
+    static final String TRASH_DIRECTORY = ".flowbase-trash";
+
+    private static final Logger log = LoggerFactory.getLogger(RepositoryTrash.class);
+
+    private final ForkJoinPool pool;
+    // Trees being deleted per trash directory; guarded by itself
+    private final Map<Path, Integer> trashUsers = new HashMap<>();
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong deletedPaths = new AtomicLong();
+    private final AtomicLong failedPaths = new AtomicLong();
+
+    /**
+     * @param pool runs the background deletions
+     */
+    public RepositoryTrash(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Move a directory out of the way and delete it in the background. If it cannot be
+     * renamed, for example because another process holds files in it open, it is deleted
+     * in place instead.
+     * @param directory directory to delete
+     * @return completes with the number of deleted files and directories once the tree is
+     *         gone, or exceptionally with an {@link IOException} if some paths could not be deleted
+     * @throws IOException if the trash directory cannot be created
+     */
+    public CompletableFuture<Long> delete(Path directory) throws IOException {
+        Path source = directory.toAbsolutePath().normalize();
+        if (!Files.exists(source, LinkOption.NOFOLLOW_LINKS)) {
+            return CompletableFuture.completedFuture(0L);
+        }
+        Path trash = source.resolveSibling(TRASH_DIRECTORY);
+        Path target = trash.resolve(source.getFileName() + "-" + UUID.randomUUID());
+        // Held until the move, so the trash directory is not removed before the tree is in it
+        synchronized (trashUsers) {
+            if (!trashUsers.containsKey(trash)) {
+                Files.createDirectories(trash);
+                trashUsers.put(trash, 0);
+                // Listed before this process moves anything into it
+                sweepLeftovers(trash);
+            }
+            trashUsers.merge(trash, 1, Integer::sum);
+            try {
+                Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                log.atWarn().addKeyValue("path", source).setCause(e).log("Cannot move directory to trash, deleting in place");
+                target = source;
+            }
+        }
+        return schedule(target, trash);
+    }
+
+    /**
+     * @return number of trees still being deleted
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    /**
+     * @return number of files and directories deleted so far
+     */
+    public long getDeletedPaths() {
+        return deletedPaths.get();
+    }
+
+    /**
+     * @return number of files and directories that could not be deleted
+     */
+    public long getFailedPaths() {
+        return failedPaths.get();
+    }
+
+    // Called with trashUsers locked
+    private void sweepLeftovers(Path trash) throws IOException {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(trash)) {
+            for (Path entry : entries) {
+                trashUsers.merge(trash, 1, Integer::sum);
+                schedule(entry, trash);
+            }
+        }
+    }
+
+    /**
+     * Remove the trash directory once the last tree this instance put there is deleted. A
+     * directory another process still uses is not empty and stays.
+     */
+    private void release(Path trash) {
+        synchronized (trashUsers) {
+            if (trashUsers.merge(trash, -1, Integer::sum) > 0) {
+                return;
+            }
+            trashUsers.remove(trash);
+            try {
+                Files.deleteIfExists(trash);
+            } catch (DirectoryNotEmptyException e) {
+                // Entries that could not be deleted, or another process's; retried on next use
+            } catch (IOException e) {
+                log.atWarn().addKeyValue("path", trash).setCause(e).log("Could not remove trash directory");
+            }
+        }
+    }
+
+    private CompletableFuture<Long> schedule(Path tree, Path trash) {
+        pending.incrementAndGet();
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        pool.execute(() -> {
+            Queue<Path> failures = new ConcurrentLinkedQueue<>();
+            long deleted;
+            try {
+                deleted = new DeleteTask(tree, failures).invoke();
+            } catch (RuntimeException e) {
+                log.atWarn().addKeyValue("path", tree).setCause(e).log("Could not delete directory");
+                result.completeExceptionally(e);
+                return;
+            } finally {
+                release(trash);
+                pending.decrementAndGet();
+            }
+            deletedPaths.addAndGet(deleted);
+            if (failures.isEmpty()) {
+                result.complete(deleted);
+                return;
+            }
+            failedPaths.addAndGet(failures.size());
+            log.atWarn()
+               .addKeyValue("path", tree)
+               .addKeyValue("failed", failures.size())
+               .addKeyValue("first", failures.peek())
+               .log("Could not delete all files of directory");
+            result.completeExceptionally(new IOException(
+                    failures.size() + " paths could not be deleted under " + tree + ", first: " + failures.peek()));
+        });
+        return result;
+    }
+
+    /**
+     * Deletes the files of one directory, forks a task per subdirectory and deletes the
+     * directory itself once they are done
+     */
+    private static final class DeleteTask extends RecursiveTask<Long> {
+
+        private final Path directory;
+        private final Queue<Path> failures;
+
+        DeleteTask(Path directory, Queue<Path> failures) {
+            this.directory = directory;
+            this.failures = failures;
+        }
+
+        @Override
+        protected Long compute() {
+            // The root of a tree may be a link or a file; listing a link would delete its target's entries
+            if (!Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS)) {
+                return deleteEntry(directory) ? 1L : 0L;
+            }
+            long deleted = 0;
+            boolean listed = true;
+            List<DeleteTask> subdirectories = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                        DeleteTask task = new DeleteTask(entry, failures);
+                        task.fork();
+                        subdirectories.add(task);
+                    } else if (deleteEntry(entry)) {
+                        deleted++;
+                    }
+                }
+            } catch (NoSuchFileException e) {
+                return 0L;
+            } catch (IOException e) {
+                failures.add(directory);
+                listed = false;
+            }
+            for (DeleteTask task : subdirectories) {
+                deleted += task.join();
+            }
+            if (listed && deleteEntry(directory)) {
+                deleted++;
+            }
+            return deleted;
+        }
+
+        private boolean deleteEntry(Path path) {
+            try {
+                Files.delete(path);
+                return true;
+            } catch (NoSuchFileException e) {
+                return false;
+            } catch (AccessDeniedException e) {
+                // Git writes pack files read-only, which blocks deleting them on Windows
+                if (path.toFile().setWritable(true)) {
+                    try {
+                        Files.delete(path);
+                        return true;
+                    } catch (IOException retry) {
+                        // Reported below
+                    }
+                }
+            } catch (IOException e) {
+                // Reported below
+            }
+            failures.add(path);
+            return false;
+        }
+    }
+}
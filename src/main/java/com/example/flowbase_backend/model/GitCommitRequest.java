@@ -0,0 +1,59 @@
+package com.example.flowbase_backend.model;
+
+import java.util.List;
+
+/**
+ * Model class for one commit of a batch of commits
+ */
+public class GitCommitRequest {
+    private String message;
+    private String authorName;
+    private String authorEmail;
+    // Paths relative to the repository root; null to stage every changed file
+    private List<String> changedPaths;
+
+    // Default constructor
+    public GitCommitRequest() {
+    }
+
+    // Constructor with fields
+    public GitCommitRequest(String message, String authorName, String authorEmail, List<String> changedPaths) {
+        this.message = message;
+        this.authorName = authorName;
+        this.authorEmail = authorEmail;
+        this.changedPaths = changedPaths;
+    }
+
+    // Getters and setters
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public String getAuthorName() {
+        return authorName;
+    }
+
+    public void setAuthorName(String authorName) {
+        this.authorName = authorName;
+    }
+
+    public String getAuthorEmail() {
+        return authorEmail;
+    }
+
+    public void setAuthorEmail(String authorEmail) {
+        this.authorEmail = authorEmail;
+    }
+
+    public List<String> getChangedPaths() {
+        return changedPaths;
+    }
+
+    public void setChangedPaths(List<String> changedPaths) {
+        this.changedPaths = changedPaths;
+    }
+}
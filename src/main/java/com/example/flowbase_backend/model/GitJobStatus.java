@@ -0,0 +1,19 @@
+package com.example.flowbase_backend.model;
+
+/**
+ * Lifecycle of an asynchronous Git job
+ */
+public enum GitJobStatus {
+    QUEUED,
+    RUNNING,
+    SUCCEEDED,
+    FAILED,
+    CANCELLED;
+
+    /**
+     * @return true if the job will not change anymore
+     */
+    public boolean isFinished() {
+        return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.flowbase_backend.model;
+
+/**
+ * Model class for Git job status and progress messages sent via WebSocket
+ */
+public class GitJobUpdate {
+    private String jobId;
+    private String operation;
+    private String localPath;
+    private GitJobStatus status;
+    private String task;
+    private int completed;
+    private int total;
+    private String message;
+
+    // Default constructor required for JSON deserialization
+    public GitJobUpdate() {
+    }
+
+    public GitJobUpdate(String jobId, String operation, String localPath, GitJobStatus status) {
+        this.jobId = jobId;
+        this.operation = operation;
+        this.localPath = localPath;
+        this.status = status;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(String jobId) {
+        this.jobId = jobId;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public void setOperation(String operation) {
+        this.operation = operation;
+    }
+
+    public String getLocalPath() {
+        return localPath;
+    }
+
+    public void setLocalPath(String localPath) {
+        this.localPath = localPath;
+    }
+
+    public GitJobStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(GitJobStatus status) {
+        this.status = status;
+    }
+
+    // Current JGit task, e.g. "Receiving objects"
+    public String getTask() {
+        return task;
+    }
+
+    public void setTask(String task) {
+        this.task = task;
+    }
+
+    public int getCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(int completed) {
+        this.completed = completed;
+    }
+
+    // 0 if the amount of work of the task is unknown
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.flowbase_backend.model;
 
+import java.util.List;
+
 /**
  * Model class for Git repository requests
  */
@@ -11,6 +13,16 @@ public class GitRepositoryRequest {
     private String message;
     private String authorName;
     private String authorEmail;
+    // Commit options
+    private List<String> changedPaths;
+    private List<GitCommitRequest> commits;
+    // Clone options
+    private Integer depth;
+    private String branch;
+    private Boolean singleBranch;
+    private Boolean noCheckout;
+    private List<String> checkoutPaths;
+    private String referenceRepository;
 
     // Default constructor
     public GitRepositoryRequest() {
@@ -72,4 +84,68 @@ public class GitRepositoryRequest {
     public void setAuthorEmail(String authorEmail) {
         this.authorEmail = authorEmail;
     }
-}
\ No newline at end of file
+
+    public Integer getDepth() {
+        return depth;
+    }
+
+    public void setDepth(Integer depth) {
+        this.depth = depth;
+    }
+
+    public String getBranch() {
+        return branch;
+    }
+
+    public void setBranch(String branch) {
+        this.branch = branch;
+    }
+
+    public Boolean getSingleBranch() {
+        return singleBranch;
+    }
+
+    public void setSingleBranch(Boolean singleBranch) {
+        this.singleBranch = singleBranch;
+    }
+
+    public Boolean getNoCheckout() {
+        return noCheckout;
+    }
+
+    public void setNoCheckout(Boolean noCheckout) {
+        this.noCheckout = noCheckout;
+    }
+
+    public List<String> getCheckoutPaths() {
+        return checkoutPaths;
+    }
+
+    public void setCheckoutPaths(List<String> checkoutPaths) {
+        this.checkoutPaths = checkoutPaths;
+    }
+
+    public String getReferenceRepository() {
+        return referenceRepository;
+    }
+
+    public void setReferenceRepository(String referenceRepository) {
+        this.referenceRepository = referenceRepository;
+    }
+
+    public List<String> getChangedPaths() {
+        return changedPaths;
+    }
+
+    public void setChangedPaths(List<String> changedPaths) {
+        this.changedPaths = changedPaths;
+    }
+
+    public List<GitCommitRequest> getCommits() {
+        return commits;
+    }
+
+    public void setCommits(List<GitCommitRequest> commits) {
+        this.commits = commits;
+    }
+}
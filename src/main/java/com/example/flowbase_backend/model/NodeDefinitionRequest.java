@@ -0,0 +1,60 @@
+package com.example.flowbase_backend.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Model class for registering a node with the execution engine
+ */
+public class NodeDefinitionRequest {
+    private String nodeId;
+    private String flowId;
+    private List<String> dependsOn = new ArrayList<>();
+    private Long runningDurationMs;
+    private String fileTrigger;
+
+    // Default constructor
+    public NodeDefinitionRequest() {
+    }
+
+    // Getters and setters
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public String getFlowId() {
+        return flowId;
+    }
+
+    public void setFlowId(String flowId) {
+        this.flowId = flowId;
+    }
+
+    public List<String> getDependsOn() {
+        return dependsOn;
+    }
+
+    public void setDependsOn(List<String> dependsOn) {
+        this.dependsOn = dependsOn;
+    }
+
+    public Long getRunningDurationMs() {
+        return runningDurationMs;
+    }
+
+    public void setRunningDurationMs(Long runningDurationMs) {
+        this.runningDurationMs = runningDurationMs;
+    }
+
+    public String getFileTrigger() {
+        return fileTrigger;
+    }
+
+    public void setFileTrigger(String fileTrigger) {
+        this.fileTrigger = fileTrigger;
+    }
+}
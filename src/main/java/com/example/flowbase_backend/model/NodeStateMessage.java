@@ -1,19 +1,29 @@
 package com.example.flowbase_backend.model;
 
+import com.example.flowbase_backend.engine.NodeState;
+
 /**
  * Model class for node state messages sent via WebSocket
  */
 public class NodeStateMessage {
     private String nodeId;
-    private String state;
+    private NodeState state;
+    // Position of this transition in the order of all transitions, starting at 1
+    private long sequence;
 
     // Default constructor required for JSON deserialization
     public NodeStateMessage() {
     }
 
-    public NodeStateMessage(String nodeId, String state) {
+    public NodeStateMessage(String nodeId, NodeState state) {
+        this.nodeId = nodeId;
+        this.state = state;
+    }
+
+    public NodeStateMessage(String nodeId, NodeState state, long sequence) {
         this.nodeId = nodeId;
         this.state = state;
+        this.sequence = sequence;
     }
 
     public String getNodeId() {
@@ -24,11 +34,19 @@ public class NodeStateMessage {
         this.nodeId = nodeId;
     }
 
-    public String getState() {
+    public NodeState getState() {
         return state;
     }
 
-    public void setState(String state) {
+    public void setState(NodeState state) {
         this.state = state;
     }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
 }
\ No newline at end of file
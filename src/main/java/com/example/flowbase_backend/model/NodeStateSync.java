@@ -0,0 +1,61 @@
+package com.example.flowbase_backend.model;
+
+import java.util.List;
+
+/**
+ * Model class for the node states a client receives when it subscribes or reconnects
+ * <p>
+ * A snapshot holds the latest update of every node. Otherwise the updates are exactly the
+ * transitions after the sequence the client asked for, in order.
+ */
+public class NodeStateSync {
+    // Changes whenever the server restarts and its sequence numbers start over
+    private long epoch;
+    // Sequence of the last transition included
+    private long sequence;
+    private boolean snapshot;
+    private List<NodeStateMessage> updates;
+
+    // Default constructor required for JSON deserialization
+    public NodeStateSync() {
+    }
+
+    public NodeStateSync(long epoch, long sequence, boolean snapshot, List<NodeStateMessage> updates) {
+        this.epoch = epoch;
+        this.sequence = sequence;
+        this.snapshot = snapshot;
+        this.updates = updates;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public void setEpoch(long epoch) {
+        this.epoch = epoch;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    public void setSnapshot(boolean snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    public List<NodeStateMessage> getUpdates() {
+        return updates;
+    }
+
+    public void setUpdates(List<NodeStateMessage> updates) {
+        this.updates = updates;
+    }
+}
@@ -0,0 +1,316 @@
+package com.example.flowbase_backend.scheduling;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Hashed timer wheel used to schedule node lifecycle deadlines.
+ * <p>
+ * Scheduling and cancelling a timeout are O(1). Each tick only visits the bucket the
+ * current tick hashes to, so the cost of expiring a deadline does not depend on how many
+ * other deadlines are pending. Deadlines fire at most one tick late.
+ * <p>
+ * The wheel is driven either by its own thread (see {@link #start(String)}) or manually
+ * through {@link #advanceTo(long)}. Expired tasks run on the driving thread and must be
+ * short; anything that blocks should be handed off to an executor.
+ */
+public class TimerWheel {
+
+    private static final Logger log = LoggerFactory.getLogger(TimerWheel.class);
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final LongSupplier nanoClock;
+    private final long startNanos;
+
+    private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingTimeouts = new AtomicLong();
+
+    // Next tick to process; only touched by the driving thread
+    private long tick;
+
+    private volatile Thread driver;
+    private volatile boolean running;
+
+    /**
+     * Create a timer wheel driven by {@link System#nanoTime()}
+     * @param tickDuration the resolution of the wheel
+     * @param ticksPerWheel number of buckets, rounded up to a power of two
+     */
+    public TimerWheel(Duration tickDuration, int ticksPerWheel) {
+        this(tickDuration, ticksPerWheel, System::nanoTime);
+    }
+
+    /**
+     * Create a timer wheel with a custom time source
+     * @param tickDuration the resolution of the wheel
+     * @param ticksPerWheel number of buckets, rounded up to a power of two
+     * @param nanoClock monotonic time source in nanoseconds
+     */
+    public TimerWheel(Duration tickDuration, int ticksPerWheel, LongSupplier nanoClock) {
+        if (tickDuration.isNegative() || tickDuration.isZero()) {
+            throw new IllegalArgumentException("tickDuration must be positive: " + tickDuration);
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > (1 << 30)) {
+            throw new IllegalArgumentException("ticksPerWheel out of range: " + ticksPerWheel);
+        }
+        int size = Integer.highestOneBit(ticksPerWheel - 1) << 1;
+        if (ticksPerWheel == 1) {
+            size = 1;
+        }
+        this.tickNanos = tickDuration.toNanos();
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.nanoClock = nanoClock;
+        this.startNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * Schedule a task to run once the delay has elapsed
+     * @param task the task to run on the driving thread
+     * @param delay the delay after which the task runs
+     * @return handle that can be used to cancel the task
+     */
+    public Timeout schedule(Runnable task, Duration delay) {
+        long deadline = nanoClock.getAsLong() - startNanos + Math.max(0, delay.toNanos());
+        Timeout timeout = new Timeout(this, task, deadline);
+        pendingTimeouts.incrementAndGet();
+        newTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * @return number of scheduled timeouts that have neither fired nor been cancelled
+     */
+    public long pendingTimeouts() {
+        return pendingTimeouts.get();
+    }
+
+    /**
+     * Process every tick that has elapsed up to the given time. Must only be called from a
+     * single thread at a time, and not at all once {@link #start(String)} has been called.
+     * @param nowNanos current time of the wheel's time source
+     * @return number of tasks that were run
+     */
+    public int advanceTo(long nowNanos) {
+        long elapsed = nowNanos - startNanos;
+        int fired = 0;
+        while (tickNanos * (tick + 1) <= elapsed) {
+            removeCancelledTimeouts();
+            transferNewTimeouts();
+            fired += wheel[(int) (tick & mask)].expire();
+            tick++;
+        }
+        return fired;
+    }
+
+    /**
+     * Start a daemon thread that drives the wheel in real time
+     * @param threadName name of the driving thread
+     */
+    public synchronized void start(String threadName) {
+        if (driver != null) {
+            return;
+        }
+        running = true;
+        Thread thread = new Thread(this::drive, threadName);
+        thread.setDaemon(true);
+        driver = thread;
+        thread.start();
+    }
+
+    /**
+     * Stop the driving thread. Timeouts that have not fired yet are discarded.
+     */
+    public synchronized void stop() {
+        Thread thread = driver;
+        if (thread == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        driver = null;
+    }
+
+    private void drive() {
+        while (running) {
+            long now = nanoClock.getAsLong();
+            long nextTick = startNanos + tickNanos * (tick + 1);
+            if (now - nextTick < 0) {
+                LockSupport.parkNanos(this, nextTick - now);
+            } else {
+                advanceTo(now);
+            }
+        }
+    }
+
+    private void transferNewTimeouts() {
+        // Bound the work per tick so a flood of new timeouts cannot stall expiry
+        for (int i = 0; i < 100_000; i++) {
+            Timeout timeout = newTimeouts.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            // Last tick whose end is at or after the deadline, so nothing fires early
+            long calculatedTick = (timeout.deadline + tickNanos - 1) / tickNanos - 1;
+            timeout.remainingRounds = (calculatedTick - tick) / wheel.length;
+            long targetTick = Math.max(calculatedTick, tick);
+            wheel[(int) (targetTick & mask)].add(timeout);
+        }
+    }
+
+    private void removeCancelledTimeouts() {
+        Timeout timeout;
+        while ((timeout = cancelledTimeouts.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    /**
+     * Handle for a scheduled task
+     */
+    public static final class Timeout {
+
+        private static final int ST_PENDING = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final TimerWheel timerWheel;
+        private final Runnable task;
+        private final long deadline;
+        private volatile int state = ST_PENDING;
+
+        // Bucket bookkeeping; only touched by the driving thread
+        private long remainingRounds;
+        private Timeout next;
+        private Timeout prev;
+        private Bucket bucket;
+
+        private Timeout(TimerWheel timerWheel, Runnable task, long deadline) {
+            this.timerWheel = timerWheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancel the task if it has not run yet
+         * @return true if the task was cancelled by this call
+         */
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, ST_PENDING, ST_CANCELLED)) {
+                return false;
+            }
+            timerWheel.pendingTimeouts.decrementAndGet();
+            timerWheel.cancelledTimeouts.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state == ST_EXPIRED;
+        }
+
+        private boolean expire() {
+            if (!STATE.compareAndSet(this, ST_PENDING, ST_EXPIRED)) {
+                return false;
+            }
+            timerWheel.pendingTimeouts.decrementAndGet();
+            try {
+                task.run();
+            } catch (Throwable t) {
+                log.error("Timer task failed", t);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Doubly linked list of timeouts that hash to the same tick
+     */
+    private static final class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        int expire() {
+            int fired = 0;
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    if (timeout.expire()) {
+                        fired++;
+                    }
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+            return fired;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (next != null) {
+                next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
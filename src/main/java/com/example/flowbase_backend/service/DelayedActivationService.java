@@ -0,0 +1,95 @@
+package com.example.flowbase_backend.service;
+
+import com.example.flowbase_backend.scheduling.TimerWheel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Service for running node activations after a delay without parking a thread per activation.
+ * The delay is tracked on the timer wheel; when it expires the activation is handed to the
+ * node executor, so neither the caller nor the timer wheel thread does the actual work.
+ */
+@Service
+public class DelayedActivationService {
+
+    private final TimerWheel timerWheel;
+    private final Executor nodeExecutor;
+    private final AtomicLong pendingActivations = new AtomicLong();
+
+    /**
+     * @param timerWheel timer wheel on which the delays are tracked
+     * @param nodeExecutor executor on which expired activations run
+     */
+    @Autowired
+    public DelayedActivationService(TimerWheel timerWheel, @Qualifier("nodeExecutor") Executor nodeExecutor) {
+        this.timerWheel = timerWheel;
+        this.nodeExecutor = nodeExecutor;
+    }
+
+    /**
+     * Schedule an activation to run once the delay has elapsed. Returns immediately.
+     * @param activation the activation to run on the node executor
+     * @param delay the delay after which the activation runs
+     * @return handle that can be used to cancel the activation
+     */
+    public ScheduledActivation schedule(Runnable activation, Duration delay) {
+        pendingActivations.incrementAndGet();
+        return new ScheduledActivation(timerWheel.schedule(() -> {
+            try {
+                nodeExecutor.execute(() -> {
+                    try {
+                        activation.run();
+                    } finally {
+                        pendingActivations.decrementAndGet();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // The activation will never run; the timer wheel logs the failure
+                pendingActivations.decrementAndGet();
+                throw e;
+            }
+        }, delay));
+    }
+
+    /**
+     * @return number of activations that have been scheduled but have not finished yet
+     */
+    public long pendingActivations() {
+        return pendingActivations.get();
+    }
+
+    /**
+     * Handle of a scheduled activation. Cancelling it before the delay has elapsed also removes
+     * it from the pending activations.
+     */
+    public final class ScheduledActivation {
+
+        private final TimerWheel.Timeout timeout;
+
+        private ScheduledActivation(TimerWheel.Timeout timeout) {
+            this.timeout = timeout;
+        }
+
+        /**
+         * Cancel the activation if its delay has not elapsed yet
+         * @return true if the activation was cancelled by this call
+         */
+        public boolean cancel() {
+            if (!timeout.cancel()) {
+                return false;
+            }
+            pendingActivations.decrementAndGet();
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return timeout.isCancelled();
+        }
+    }
+}
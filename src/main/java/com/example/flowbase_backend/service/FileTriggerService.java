@@ -0,0 +1,121 @@
+package com.example.flowbase_backend.service;
+
+import com.example.flowbase_backend.trigger.FileWatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Service for activating nodes when a file appears.
+ * <p>
+ * Each node can have one trigger: a file path whose last segment may be a glob, for example
+ * {@code Resources/hello.txt} or {@code incoming/*.csv}. When a matching file is created or
+ * modified and the node is INACTIVE, the node is activated. Node B is triggered by
+ * {@code Resources/hello.txt} unless configured otherwise.
+ * <p>
+ * Triggers can be set by any client through {@code POST /nodes}, so their paths are resolved
+ * against a base directory, the working directory unless configured otherwise, and paths that
+ * lead outside of it are refused.
+ */
+@Service
+public class FileTriggerService {
+
+    private static final Logger log = LoggerFactory.getLogger(FileTriggerService.class);
+
+    private final NodeService nodeService;
+    private final FileWatcher fileWatcher;
+    private final Path baseDirectory;
+
+    private final Map<String, String> patterns = new ConcurrentHashMap<>();
+    private final Map<String, FileWatcher.Registration> registrations = new ConcurrentHashMap<>();
+
+    /**
+     * Create a service whose triggers are confined to the working directory
+     * @param nodeService service that activates the nodes
+     * @param fileWatcher watcher that reports the matching files
+     * @param nodeBTriggerFile trigger of node B
+     */
+    public FileTriggerService(NodeService nodeService, FileWatcher fileWatcher, String nodeBTriggerFile) {
+        this(nodeService, fileWatcher, nodeBTriggerFile, ".");
+    }
+
+    /**
+     * @param nodeService service that activates the nodes
+     * @param fileWatcher watcher that reports the matching files
+     * @param nodeBTriggerFile trigger of node B
+     * @param baseDirectory directory that relative triggers are resolved against and that all triggers must be in
+     */
+    @Autowired
+    public FileTriggerService(NodeService nodeService, FileWatcher fileWatcher,
+                              @Value("${flowbase.node-b.trigger-file:Resources/hello.txt}") String nodeBTriggerFile,
+                              @Value("${flowbase.file-trigger.base-dir:.}") String baseDirectory) {
+        this.nodeService = nodeService;
+        this.fileWatcher = fileWatcher;
+        this.baseDirectory = Path.of(baseDirectory).toAbsolutePath().normalize();
+        setTrigger(NodeService.NODE_B, nodeBTriggerFile);
+    }
+
+    /**
+     * Activate a node whenever a matching file is created or modified. Replaces an existing
+     * trigger of the node. A matching file that already exists activates the node right away.
+     * @param nodeId the ID of a registered node
+     * @param pathPattern file path, relative to the base directory or absolute inside it; the file name may be a glob
+     * @throws IllegalArgumentException if the node is unknown, the pattern has no file name or is outside the base directory
+     */
+    public synchronized void setTrigger(String nodeId, String pathPattern) {
+        if (!nodeService.isRegistered(nodeId)) {
+            throw new IllegalArgumentException("Unknown node: " + nodeId);
+        }
+        int separator = Math.max(pathPattern.lastIndexOf('/'), pathPattern.lastIndexOf('\\'));
+        String fileNamePattern = pathPattern.substring(separator + 1);
+        if (fileNamePattern.isBlank()) {
+            throw new IllegalArgumentException("File trigger needs a file name: " + pathPattern);
+        }
+        Path directory = baseDirectory.resolve(separator < 0 ? "" : separator == 0 ? "/" : pathPattern.substring(0, separator))
+                .normalize();
+        if (!directory.startsWith(baseDirectory)) {
+            throw new IllegalArgumentException("File trigger outside of " + baseDirectory + ": " + pathPattern);
+        }
+
+        removeTrigger(nodeId);
+        patterns.put(nodeId, pathPattern);
+        registrations.put(nodeId, fileWatcher.watch(directory, fileNamePattern, file -> onFile(nodeId, file)));
+        log.atInfo().addKeyValue("nodeId", nodeId).addKeyValue("pattern", pathPattern).log("File trigger set");
+    }
+
+    /**
+     * @param nodeId the ID of the node
+     * @return true if the node had a trigger
+     */
+    public synchronized boolean removeTrigger(String nodeId) {
+        patterns.remove(nodeId);
+        FileWatcher.Registration registration = registrations.remove(nodeId);
+        if (registration == null) {
+            return false;
+        }
+        registration.cancel();
+        return true;
+    }
+
+    /**
+     * @param nodeId the ID of the node
+     * @return the path pattern that triggers the node, or null if it has none
+     */
+    public String getTrigger(String nodeId) {
+        return patterns.get(nodeId);
+    }
+
+    private void onFile(String nodeId, Path file) {
+        // Only a node that has not run yet is activated, as before with the polled check
+        if (!nodeService.getNodeStatus(nodeId)) {
+            log.atInfo().addKeyValue("nodeId", nodeId).addKeyValue("file", file).log("Trigger file found");
+            nodeService.activateNode(nodeId);
+        }
+    }
+}
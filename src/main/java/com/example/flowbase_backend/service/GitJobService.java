@@ -0,0 +1,295 @@
+package com.example.flowbase_backend.service;
+
+import com.example.flowbase_backend.model.GitJobStatus;
+import com.example.flowbase_backend.model.GitJobUpdate;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Service for running Git operations as background jobs.
+ * <p>
+ * Jobs run on a fixed-size executor, which bounds how many Git operations run at once.
+ * Jobs on the same local path run one after another in submission order, so a pull never
+ * overlaps the clone or delete of the same repository. Jobs on other paths are not held up
+ * by them. At most {@code max-pending} jobs may be queued or running; beyond that, new jobs
+ * are rejected.
+ * <p>
+ * Status changes and JGit progress are sent to {@code /topic/git-jobs/{jobId}}. Progress is
+ * sent when the percentage changes, or at most once per progress interval for tasks of
+ * unknown size.
+ */
+@Service
+public class GitJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(GitJobService.class);
+    private static final int RETAINED_FINISHED_JOBS = 1000;
+
+    /**
+     * A Git operation that reports its progress to a JGit progress monitor
+     */
+    @FunctionalInterface
+    public interface GitOperation {
+        void run(ProgressMonitor monitor) throws Exception;
+    }
+
+    private final Executor executor;
+    private final WebSocketService webSocketService;
+    private final int maxPendingJobs;
+    private final long progressIntervalNanos;
+
+    private final Map<String, Job> activeJobs = new ConcurrentHashMap<>();
+    private final Map<String, GitJobUpdate> finishedJobs = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, GitJobUpdate> eldest) {
+            return size() > RETAINED_FINISHED_JOBS;
+        }
+    };
+    // Local path -> jobs waiting for the job currently running on that path
+    private final Map<String, ArrayDeque<Job>> lanes = new HashMap<>();
+    private final AtomicInteger pendingJobs = new AtomicInteger();
+
+    @Autowired
+    public GitJobService(@Qualifier("gitJobExecutor") Executor executor, WebSocketService webSocketService,
+                         @Value("${flowbase.git.jobs.max-pending:100}") int maxPendingJobs,
+                         @Value("${flowbase.git.jobs.progress-interval:250ms}") Duration progressInterval) {
+        this.executor = executor;
+        this.webSocketService = webSocketService;
+        this.maxPendingJobs = maxPendingJobs;
+        this.progressIntervalNanos = progressInterval.toNanos();
+    }
+
+    /**
+     * Submit a job. Returns immediately.
+     * @param operation name of the operation, e.g. "clone"
+     * @param localPath local path of the repository the job works on
+     * @param work the Git operation
+     * @return the ID of the job
+     * @throws RejectedExecutionException if too many jobs are pending
+     */
+    public String submit(String operation, String localPath, GitOperation work) {
+        if (pendingJobs.incrementAndGet() > maxPendingJobs) {
+            pendingJobs.decrementAndGet();
+            throw new RejectedExecutionException("Too many pending Git jobs (" + maxPendingJobs + ")");
+        }
+        Job job = new Job(UUID.randomUUID().toString(), operation, localPath, work);
+        activeJobs.put(job.id, job);
+        publish(job, GitJobStatus.QUEUED, null);
+
+        boolean idle;
+        synchronized (lanes) {
+            ArrayDeque<Job> lane = lanes.get(job.laneKey);
+            idle = lane == null;
+            if (idle) {
+                lanes.put(job.laneKey, new ArrayDeque<>());
+            } else {
+                lane.add(job);
+            }
+        }
+        if (idle) {
+            dispatch(job);
+        }
+        return job.id;
+    }
+
+    /**
+     * Cancel a job. A queued job does not start; a running job stops at JGit's next check.
+     * @param jobId the ID of the job
+     * @return true if the job was still active
+     */
+    public boolean cancel(String jobId) {
+        Job job = activeJobs.get(jobId);
+        if (job == null) {
+            return false;
+        }
+        job.cancelled = true;
+        return true;
+    }
+
+    /**
+     * @param jobId the ID of the job
+     * @return the latest update of the job, or null if the job is unknown
+     */
+    public GitJobUpdate getJob(String jobId) {
+        Job job = activeJobs.get(jobId);
+        if (job != null) {
+            return job.latest;
+        }
+        synchronized (finishedJobs) {
+            return finishedJobs.get(jobId);
+        }
+    }
+
+    /**
+     * @return number of jobs that are queued or running
+     */
+    public int getPendingJobs() {
+        return pendingJobs.get();
+    }
+
+    private void dispatch(Job job) {
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            finish(job, GitJobStatus.FAILED, "Rejected by the Git job executor");
+            startNext(job.laneKey);
+        }
+    }
+
+    private void run(Job job) {
+        try {
+            if (job.cancelled) {
+                finish(job, GitJobStatus.CANCELLED, null);
+                return;
+            }
+            publish(job, GitJobStatus.RUNNING, null);
+            job.work.run(new JobProgressMonitor(job));
+            finish(job, job.cancelled ? GitJobStatus.CANCELLED : GitJobStatus.SUCCEEDED, null);
+        } catch (Exception e) {
+            log.atWarn().addKeyValue("jobId", job.id).addKeyValue("operation", job.operation)
+                    .addKeyValue("localPath", job.localPath).setCause(e).log("Git job failed");
+            finish(job, job.cancelled ? GitJobStatus.CANCELLED : GitJobStatus.FAILED, e.getMessage());
+        } finally {
+            startNext(job.laneKey);
+        }
+    }
+
+    private void startNext(String laneKey) {
+        Job next;
+        synchronized (lanes) {
+            ArrayDeque<Job> lane = lanes.get(laneKey);
+            next = lane.poll();
+            if (next == null) {
+                lanes.remove(laneKey);
+            }
+        }
+        if (next != null) {
+            dispatch(next);
+        }
+    }
+
+    private void finish(Job job, GitJobStatus status, String message) {
+        GitJobUpdate update = publish(job, status, message);
+        synchronized (finishedJobs) {
+            finishedJobs.put(job.id, update);
+        }
+        activeJobs.remove(job.id);
+        pendingJobs.decrementAndGet();
+    }
+
+    private GitJobUpdate publish(Job job, GitJobStatus status, String message) {
+        GitJobUpdate update = new GitJobUpdate(job.id, job.operation, job.localPath, status);
+        update.setMessage(message);
+        return publish(job, update);
+    }
+
+    private GitJobUpdate publish(Job job, GitJobUpdate update) {
+        job.latest = update;
+        webSocketService.sendGitJobUpdate(update);
+        return update;
+    }
+
+    private static final class Job {
+
+        final String id;
+        final String operation;
+        final String localPath;
+        final String laneKey;
+        final GitOperation work;
+        volatile boolean cancelled;
+        volatile GitJobUpdate latest;
+
+        Job(String id, String operation, String localPath, GitOperation work) {
+            this.id = id;
+            this.operation = operation;
+            this.localPath = localPath;
+            // The repository may not exist yet (clone), so the path is only normalized
+            this.laneKey = localPath == null ? "" : Path.of(localPath).toAbsolutePath().normalize().toString();
+            this.work = work;
+        }
+    }
+
+    /**
+     * Forwards JGit progress of one job, throttled, to the job's topic. Only called from the
+     * thread running the job.
+     */
+    private final class JobProgressMonitor implements ProgressMonitor {
+
+        private final Job job;
+        private String task;
+        private int total;
+        private int completed;
+        private int lastPercent = -1;
+        private long lastPublishNanos;
+
+        JobProgressMonitor(Job job) {
+            this.job = job;
+        }
+
+        @Override
+        public void start(int totalTasks) {
+        }
+
+        @Override
+        public void beginTask(String title, int totalWork) {
+            task = title;
+            total = totalWork == UNKNOWN ? 0 : totalWork;
+            completed = 0;
+            lastPercent = -1;
+            send();
+        }
+
+        @Override
+        public void update(int work) {
+            completed += work;
+            if (total > 0) {
+                int percent = (int) (completed * 100L / total);
+                if (percent != lastPercent) {
+                    lastPercent = percent;
+                    send();
+                }
+            } else if (System.nanoTime() - lastPublishNanos >= progressIntervalNanos) {
+                send();
+            }
+        }
+
+        @Override
+        public void endTask() {
+            send();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return job.cancelled;
+        }
+
+        @Override
+        public void showDuration(boolean enabled) {
+        }
+
+        private void send() {
+            lastPublishNanos = System.nanoTime();
+            GitJobUpdate update = new GitJobUpdate(job.id, job.operation, job.localPath, GitJobStatus.RUNNING);
+            update.setTask(task);
+            update.setCompleted(completed);
+            update.setTotal(total);
+            publish(job, update);
+        }
+    }
+}
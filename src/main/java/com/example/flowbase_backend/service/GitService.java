@@ -1,19 +1,121 @@
 package com.example.flowbase_backend.service;
 
+import com.example.flowbase_backend.git.CloneOptions;
+import com.example.flowbase_backend.git.MirrorCache;
+import com.example.flowbase_backend.git.RepositoryHandle;
+import com.example.flowbase_backend.git.RepositoryHandleCache;
+import com.example.flowbase_backend.git.RepositoryLockManager;
+import com.example.flowbase_backend.git.RepositoryTrash;
+import com.example.flowbase_backend.model.GitCommitRequest;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.eclipse.jgit.api.CloneCommand;
+import org.eclipse.jgit.api.CreateBranchCommand;
+import org.eclipse.jgit.api.FetchCommand;
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.LsRemoteCommand;
+import org.eclipse.jgit.api.Status;
+import org.eclipse.jgit.api.errors.ConcurrentRefUpdateException;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.InvalidRemoteException;
+import org.eclipse.jgit.api.errors.NoMessageException;
+import org.eclipse.jgit.api.errors.WrongRepositoryStateException;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEditor;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.dircache.DirCacheIterator;
+import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.lib.BranchConfig;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.RepositoryCache;
+import org.eclipse.jgit.lib.RepositoryState;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.storage.file.WindowCacheStats;
+import org.eclipse.jgit.transport.CredentialsProvider;
+import org.eclipse.jgit.transport.FetchResult;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.RemoteConfig;
+import org.eclipse.jgit.transport.URIish;
 import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
+import org.eclipse.jgit.treewalk.FileTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.WorkingTreeIterator;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.util.FS;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Comparator;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 @Service
 public class GitService {
 
+    private static final String OPERATION_TIMER = "flowbase.git.operation";
+    private static final String NO_REMOTE = "none";
+
+    private final RepositoryHandleCache repositoryCache;
+    private final MirrorCache mirrorCache;
+    private final RepositoryTrash repositoryTrash;
+    private final RepositoryLockManager repositoryLocks;
+    private final MeterRegistry meterRegistry;
+
+    public GitService(RepositoryHandleCache repositoryCache) {
+        this(repositoryCache, null);
+    }
+
+    public GitService(RepositoryHandleCache repositoryCache, MirrorCache mirrorCache) {
+        this(repositoryCache, mirrorCache, new RepositoryTrash(ForkJoinPool.commonPool()),
+                new RepositoryLockManager(Duration.ofSeconds(30)), Metrics.globalRegistry);
+    }
+
+    /**
+     * @param repositoryCache repositories kept open between requests
+     * @param mirrorCache mirrors that clones and pulls read from, or null to always use the remote
+     * @param repositoryTrash deletes repositories in the background
+     * @param repositoryLocks serializes operations that change the same repository
+     * @param meterRegistry registry for the duration of clone, pull, commit, push and delete
+     */
+    @Autowired
+    public GitService(RepositoryHandleCache repositoryCache, @Nullable MirrorCache mirrorCache,
+                      RepositoryTrash repositoryTrash, RepositoryLockManager repositoryLocks,
+                      MeterRegistry meterRegistry) {
+        this.repositoryCache = repositoryCache;
+        this.mirrorCache = mirrorCache;
+        this.repositoryTrash = repositoryTrash;
+        this.repositoryLocks = repositoryLocks;
+        this.meterRegistry = meterRegistry;
+    }
+
     /**
      * Clone a Git repository to a local directory
      * 
@@ -23,29 +125,125 @@ public class GitService {
      * @param password Optional password for authentication (can be null)
      * @return The Git instance for the cloned repository
      * @throws GitAPIException If a Git-related error occurs
+     * @throws IOException If an I/O error occurs
+     */
+    public Git cloneRepository(String repositoryUrl, String localPath, String username, String password) throws GitAPIException, IOException {
+        return cloneRepository(repositoryUrl, localPath, username, password, CloneOptions.FULL, NullProgressMonitor.INSTANCE);
+    }
+
+    /**
+     * Clone a Git repository to a local directory, reporting progress
+     * 
+     * @param repositoryUrl The URL of the Git repository to clone
+     * @param localPath The local path where the repository will be cloned
+     * @param username Optional username for authentication (can be null)
+     * @param password Optional password for authentication (can be null)
+     * @param monitor Receives the progress of the clone
+     * @return The Git instance for the cloned repository
+     * @throws GitAPIException If a Git-related error occurs
+     * @throws IOException If an I/O error occurs
+     */
+    public Git cloneRepository(String repositoryUrl, String localPath, String username, String password,
+                               ProgressMonitor monitor) throws GitAPIException, IOException {
+        return cloneRepository(repositoryUrl, localPath, username, password, CloneOptions.FULL, monitor);
+    }
+
+    /**
+     * Clone a Git repository to a local directory with limits on what is fetched and written
+     * 
+     * @param repositoryUrl The URL of the Git repository to clone
+     * @param localPath The local path where the repository will be cloned
+     * @param username Optional username for authentication (can be null)
+     * @param password Optional password for authentication (can be null)
+     * @param options Limits on history, branches and checked out paths
+     * @param monitor Receives the progress of the clone
+     * @return The Git instance for the cloned repository
+     * @throws GitAPIException If a Git-related error occurs
+     * @throws IOException If an I/O error occurs
      */
-    public Git cloneRepository(String repositoryUrl, String localPath, String username, String password) throws GitAPIException {
+    public Git cloneRepository(String repositoryUrl, String localPath, String username, String password,
+                               CloneOptions options, ProgressMonitor monitor) throws GitAPIException, IOException {
         // Create credentials provider if username and password are provided
         UsernamePasswordCredentialsProvider credentialsProvider = null;
         if (username != null && password != null) {
             credentialsProvider = new UsernamePasswordCredentialsProvider(username, password);
         }
 
-        // Clone the repository
+        Timer.Sample sample = Timer.start(meterRegistry);
+        boolean succeeded = false;
+        try (RepositoryLockManager.RepositoryLock lock = repositoryLocks.write(Path.of(localPath))) {
+            if (mirrorCache != null && isFullClone(options)) {
+                // Only objects the mirror does not have yet are fetched from the remote
+                Git git;
+                try (MirrorCache.Lease mirror = mirrorCache.acquire(repositoryUrl, credentialsProvider, monitor)) {
+                    git = cloneFrom(mirror.getUri(), localPath, null, options, monitor);
+                }
+                try {
+                    // Later pulls and pushes go to the remote, not to the mirror
+                    StoredConfig config = git.getRepository().getConfig();
+                    config.setString("remote", Constants.DEFAULT_REMOTE_NAME, "url", repositoryUrl);
+                    config.save();
+                } catch (IOException | RuntimeException e) {
+                    git.close();
+                    throw e;
+                }
+                succeeded = true;
+                return git;
+            }
+            Git git = cloneFrom(repositoryUrl, localPath, credentialsProvider, options, monitor);
+            succeeded = true;
+            return git;
+        } finally {
+            recordOperation(sample, "clone", remoteTag(repositoryUrl), succeeded);
+        }
+    }
+
+    /**
+     * A mirror holds every ref with its whole history. Refreshing it for a clone that asks for
+     * less, such as a shallow, single-branch or path-filtered one, costs more than fetching just
+     * that from the remote.
+     */
+    private static boolean isFullClone(CloneOptions options) {
+        return options.getReferenceRepository() == null && options.getDepth() == 0 && !options.isSingleBranch()
+                && options.getCheckoutPaths().isEmpty();
+    }
+
+    private static Git cloneFrom(String repositoryUrl, String localPath, CredentialsProvider credentialsProvider,
+                                 CloneOptions options, ProgressMonitor monitor) throws GitAPIException, IOException {
+        String branch = options.getBranch();
+        if (branch == null && options.isSingleBranch()) {
+            branch = defaultBranch(repositoryUrl, credentialsProvider);
+        }
+        boolean filteredCheckout = !options.getCheckoutPaths().isEmpty() && !options.isNoCheckout();
+
         Git git;
-        if (credentialsProvider != null) {
-            git = Git.cloneRepository()
-                    .setURI(repositoryUrl)
-                    .setDirectory(new File(localPath))
-                    .setCredentialsProvider(credentialsProvider)
-                    .call();
+        if (options.getReferenceRepository() != null) {
+            git = cloneWithReference(repositoryUrl, new File(localPath), credentialsProvider, options, branch, monitor);
         } else {
-            git = Git.cloneRepository()
+            CloneCommand clone = Git.cloneRepository()
                     .setURI(repositoryUrl)
                     .setDirectory(new File(localPath))
-                    .call();
+                    .setProgressMonitor(monitor)
+                    .setNoCheckout(options.isNoCheckout() || filteredCheckout);
+            if (credentialsProvider != null) {
+                clone.setCredentialsProvider(credentialsProvider);
+            }
+            if (branch != null) {
+                clone.setBranch(branch);
+            }
+            if (options.isSingleBranch()) {
+                clone.setCloneAllBranches(false)
+                     .setBranchesToClone(List.of(Constants.R_HEADS + branch));
+            }
+            if (options.getDepth() > 0) {
+                clone.setDepth(options.getDepth());
+            }
+            git = clone.call();
+        }
+
+        if (filteredCheckout) {
+            checkoutPaths(git, options.getCheckoutPaths());
         }
-        
         return git;
     }
 
@@ -59,26 +257,96 @@ public class GitService {
      * @throws IOException If an I/O error occurs
      */
     public void pullChanges(String localPath, String username, String password) throws GitAPIException, IOException {
+        pullChanges(localPath, username, password, NullProgressMonitor.INSTANCE);
+    }
+
+    /**
+     * Pull changes from a remote repository, reporting progress
+     * 
+     * @param localPath The local path of the Git repository
+     * @param username Optional username for authentication (can be null)
+     * @param password Optional password for authentication (can be null)
+     * @param monitor Receives the progress of the pull
+     * @throws GitAPIException If a Git-related error occurs
+     * @throws IOException If an I/O error occurs
+     */
+    public void pullChanges(String localPath, String username, String password, ProgressMonitor monitor) throws GitAPIException, IOException {
         // Create credentials provider if username and password are provided
         UsernamePasswordCredentialsProvider credentialsProvider = null;
         if (username != null && password != null) {
             credentialsProvider = new UsernamePasswordCredentialsProvider(username, password);
         }
 
-        // Open the repository and pull changes
-        try (Git git = Git.open(new File(localPath))) {
-            if (credentialsProvider != null) {
-                git.pull()
-                   .setCredentialsProvider(credentialsProvider)
-                   .call();
-            } else {
-                git.pull().call();
+        // Reuse the cached repository and pull changes
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String remote = NO_REMOTE;
+        boolean succeeded = false;
+        try (RepositoryLockManager.RepositoryLock lock = repositoryLocks.write(Path.of(localPath));
+             RepositoryHandle handle = repositoryCache.acquire(Path.of(localPath))) {
+            Git git = handle.git();
+            remote = originTag(handle.getRepository());
+            if (mirrorCache == null || !pullFromMirror(git, credentialsProvider, monitor)) {
+                if (credentialsProvider != null) {
+                    git.pull()
+                       .setCredentialsProvider(credentialsProvider)
+                       .setProgressMonitor(monitor)
+                       .call();
+                } else {
+                    git.pull().setProgressMonitor(monitor).call();
+                }
             }
+            succeeded = true;
+        } finally {
+            recordOperation(sample, "pull", remote, succeeded);
         }
     }
 
     /**
-     * Commit changes to a local repository
+     * Refresh the mirror of origin, fetch from it into the remote-tracking branches and merge
+     * the upstream of the current branch, as {@code git pull} would
+     * 
+     * @return false if origin or the upstream branch is not configured, or the working copy is
+     *         shallow or tracks single branches and is better served by the remote, so nothing was pulled
+     */
+    private boolean pullFromMirror(Git git, CredentialsProvider credentialsProvider, ProgressMonitor monitor)
+            throws GitAPIException, IOException {
+        Repository repository = git.getRepository();
+        StoredConfig config = repository.getConfig();
+        String remoteUrl = config.getString("remote", Constants.DEFAULT_REMOTE_NAME, "url");
+        String branch = repository.getBranch();
+        String tracking = branch == null ? null : new BranchConfig(config, branch).getRemoteTrackingBranch();
+        if (remoteUrl == null || tracking == null) {
+            return false;
+        }
+        RemoteConfig origin;
+        try {
+            origin = new RemoteConfig(config, Constants.DEFAULT_REMOTE_NAME);
+        } catch (URISyntaxException e) {
+            throw new InvalidRemoteException("Invalid remote: " + remoteUrl);
+        }
+        if (!repository.getObjectDatabase().getShallowCommits().isEmpty()
+                || origin.getFetchRefSpecs().stream().noneMatch(RefSpec::isWildcard)) {
+            return false;
+        }
+
+        try (MirrorCache.Lease mirror = mirrorCache.acquire(remoteUrl, credentialsProvider, monitor)) {
+            git.fetch()
+               .setRemote(mirror.getUri())
+               .setRefSpecs(origin.getFetchRefSpecs())
+               .setProgressMonitor(monitor)
+               .call();
+        }
+        Ref upstream = repository.findRef(tracking);
+        if (upstream != null) {
+            git.merge().include(upstream).setProgressMonitor(monitor).call();
+        }
+        return true;
+    }
+
+    /**
+     * Commit changes to a local repository. Only files that the status scan reports as
+     * modified or untracked are hashed; unchanged files are recognized by the stat data
+     * cached in the index.
      * 
      * @param localPath The local path of the Git repository
      * @param message The commit message
@@ -88,18 +356,178 @@ public class GitService {
      * @throws IOException If an I/O error occurs
      */
     public void commitChanges(String localPath, String message, String authorName, String authorEmail) throws GitAPIException, IOException {
-        try (Git git = Git.open(new File(localPath))) {
-            // Add all changes to the index
-            git.add().addFilepattern(".").call();
-            
-            // Commit the changes
-            git.commit()
-               .setMessage(message)
-               .setAuthor(authorName, authorEmail)
-               .call();
+        commitChanges(localPath, message, authorName, authorEmail, null);
+    }
+
+    /**
+     * Commit the given changed paths to a local repository without scanning the rest of the
+     * working tree
+     * 
+     * @param localPath The local path of the Git repository
+     * @param message The commit message
+     * @param authorName The name of the author
+     * @param authorEmail The email of the author
+     * @param changedPaths Files or directories, relative to the repository root, to stage;
+     *                     deleted files are removed from the index. Null to stage every changed file.
+     * @throws GitAPIException If a Git-related error occurs
+     * @throws IOException If an I/O error occurs
+     */
+    public void commitChanges(String localPath, String message, String authorName, String authorEmail,
+                              List<String> changedPaths) throws GitAPIException, IOException {
+        commitBatch(localPath, List.of(new GitCommitRequest(message, authorName, authorEmail, changedPaths)));
+    }
+
+    /**
+     * Create several commits one after another with a single index write and a single update
+     * of the current branch. The new index only replaces the old one once the branch points at
+     * the last commit, so a failed batch leaves both as they were.
+     * 
+     * @param localPath The local path of the Git repository
+     * @param commits The commits in order. A commit without changed paths stages every file
+     *                changed when the batch started that no earlier commit of the batch staged.
+     * @throws NoMessageException If a commit has no message; nothing is committed
+     * @throws WrongRepositoryStateException If a merge, rebase, cherry-pick or the like is in
+     *                                       progress, whose state a plain commit would not complete
+     * @throws GitAPIException If another Git-related error occurs, e.g. the branch moved during the batch
+     * @throws IOException If an I/O error occurs
+     */
+    public void commitBatch(String localPath, List<GitCommitRequest> commits) throws GitAPIException, IOException {
+        if (commits.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < commits.size(); i++) {
+            if (commits.get(i).getMessage() == null) {
+                throw new NoMessageException("Commit " + (i + 1) + " of " + commits.size() + " has no message");
+            }
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String remote = NO_REMOTE;
+        boolean succeeded = false;
+        try (RepositoryLockManager.RepositoryLock lock = repositoryLocks.write(Path.of(localPath));
+             RepositoryHandle handle = repositoryCache.acquire(Path.of(localPath))) {
+            Repository repository = handle.getRepository();
+            remote = originTag(repository);
+            RepositoryState state = repository.getRepositoryState();
+            if (state != RepositoryState.SAFE) {
+                throw new WrongRepositoryStateException("Cannot commit to " + localPath + " while it is in state "
+                        + state.getDescription() + "; finish or abort that first");
+            }
+            // Scanned before the index is locked; status reads the index itself
+            Set<String> dirtyPaths = new LinkedHashSet<>();
+            if (commits.stream().anyMatch(commit -> commit.getChangedPaths() == null)) {
+                Status status = handle.git().status().call();
+                dirtyPaths.addAll(status.getModified());
+                dirtyPaths.addAll(status.getUntracked());
+            }
+
+            ObjectId parent = repository.resolve(Constants.HEAD);
+            ObjectId head = parent;
+            DirCache index = repository.lockDirCache();
+            try (ObjectInserter inserter = repository.newObjectInserter()) {
+                PersonIdent committer = new PersonIdent(repository);
+                for (GitCommitRequest commit : commits) {
+                    Collection<String> paths = commit.getChangedPaths();
+                    if (paths == null) {
+                        paths = new ArrayList<>(dirtyPaths);
+                        dirtyPaths.clear();
+                    }
+                    stage(repository, index, inserter, paths);
+
+                    CommitBuilder builder = new CommitBuilder();
+                    builder.setTreeId(index.writeTree(inserter));
+                    if (head != null) {
+                        builder.setParentId(head);
+                    }
+                    builder.setAuthor(new PersonIdent(commit.getAuthorName(), commit.getAuthorEmail(),
+                            committer.getWhenAsInstant(), committer.getZoneId()));
+                    builder.setCommitter(committer);
+                    builder.setMessage(commit.getMessage());
+                    head = inserter.insert(builder);
+                }
+                inserter.flush();
+                // Written to the index lock file; it only replaces the index after the branch moved
+                index.write();
+
+                RefUpdate update = repository.updateRef(Constants.HEAD);
+                update.setNewObjectId(head);
+                update.setExpectedOldObjectId(parent != null ? parent : ObjectId.zeroId());
+                String lastMessage = commits.get(commits.size() - 1).getMessage();
+                update.setRefLogMessage((parent == null ? "commit (initial): " : "commit: ")
+                        + lastMessage.lines().findFirst().orElse(""), false);
+                RefUpdate.Result result = update.update();
+                if (result != RefUpdate.Result.NEW && result != RefUpdate.Result.FAST_FORWARD) {
+                    throw new ConcurrentRefUpdateException("Could not update HEAD of " + localPath,
+                            update.getRef(), result);
+                }
+                if (!index.commit()) {
+                    throw new IOException("Committed to " + localPath + " but could not replace its index");
+                }
+            } finally {
+                index.unlock();
+            }
+            succeeded = true;
+        } finally {
+            recordOperation(sample, "commit", remote, succeeded);
         }
     }
 
+    /**
+     * Stage the given paths like {@code git add}, and remove deleted ones like {@code git rm --cached}.
+     * Only these paths are walked; files whose stat data matches the index entry are not hashed.
+     */
+    private static void stage(Repository repository, DirCache index, ObjectInserter inserter, Collection<String> paths)
+            throws IOException {
+        if (paths.isEmpty()) {
+            return;
+        }
+        DirCacheEditor editor = index.editor();
+        try (TreeWalk walk = new TreeWalk(repository)) {
+            walk.setRecursive(true);
+            int indexTree = walk.addTree(new DirCacheIterator(index));
+            FileTreeIterator workingTree = new FileTreeIterator(repository);
+            workingTree.setDirCacheIterator(walk, indexTree);
+            int workingTreeTree = walk.addTree(workingTree);
+            walk.setFilter(PathFilterGroup.createFromStrings(paths));
+
+            while (walk.next()) {
+                String path = walk.getPathString();
+                DirCacheIterator cached = walk.getTree(indexTree, DirCacheIterator.class);
+                WorkingTreeIterator file = walk.getTree(workingTreeTree, WorkingTreeIterator.class);
+                DirCacheEntry entry = cached != null ? cached.getDirCacheEntry() : null;
+                if (file == null) {
+                    // Assume-valid entries are outside a path-filtered checkout, not deleted
+                    if (entry != null && !entry.isAssumeValid()) {
+                        editor.add(new DirCacheEditor.DeletePath(path));
+                    }
+                    continue;
+                }
+                if (entry == null ? file.isEntryIgnored() : !file.isModified(entry, true, walk.getObjectReader())) {
+                    continue;
+                }
+                FileMode mode = file.getIndexFileMode(cached);
+                if (mode == FileMode.GITLINK) {
+                    continue;
+                }
+                ObjectId blob;
+                try (InputStream in = file.openEntryStream()) {
+                    blob = inserter.insert(Constants.OBJ_BLOB, file.getEntryContentLength(), in);
+                }
+                long length = file.getEntryLength();
+                Instant lastModified = file.getEntryLastModifiedInstant();
+                editor.add(new DirCacheEditor.PathEdit(path) {
+                    @Override
+                    public void apply(DirCacheEntry ent) {
+                        ent.setFileMode(mode);
+                        ent.setObjectId(blob);
+                        ent.setLength(length);
+                        ent.setLastModified(lastModified);
+                    }
+                });
+            }
+        }
+        editor.finish();
+    }
+
     /**
      * Push changes to a remote repository
      * 
@@ -110,31 +538,270 @@ public class GitService {
      * @throws IOException If an I/O error occurs
      */
     public void pushChanges(String localPath, String username, String password) throws GitAPIException, IOException {
+        pushChanges(localPath, username, password, NullProgressMonitor.INSTANCE);
+    }
+
+    /**
+     * Push changes to a remote repository, reporting progress
+     * 
+     * @param localPath The local path of the Git repository
+     * @param username Username for authentication
+     * @param password Password for authentication
+     * @param monitor Receives the progress of the push
+     * @throws GitAPIException If a Git-related error occurs
+     * @throws IOException If an I/O error occurs
+     */
+    public void pushChanges(String localPath, String username, String password, ProgressMonitor monitor) throws GitAPIException, IOException {
         // Create credentials provider
         UsernamePasswordCredentialsProvider credentialsProvider = 
             new UsernamePasswordCredentialsProvider(username, password);
 
-        // Open the repository and push changes
-        try (Git git = Git.open(new File(localPath))) {
-            git.push()
+        // Reuse the cached repository and push changes; pushing only reads the repository
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String remote = NO_REMOTE;
+        boolean succeeded = false;
+        try (RepositoryLockManager.RepositoryLock lock = repositoryLocks.read(Path.of(localPath));
+             RepositoryHandle handle = repositoryCache.acquire(Path.of(localPath))) {
+            remote = originTag(handle.getRepository());
+            handle.git().push()
                .setCredentialsProvider(credentialsProvider)
+               .setProgressMonitor(monitor)
                .call();
+            succeeded = true;
+        } finally {
+            recordOperation(sample, "push", remote, succeeded);
         }
     }
 
     /**
-     * Delete a local repository
+     * Delete a local repository. The directory is moved to a trash directory next to it right
+     * away and its files are deleted in the background; failures are logged and counted in
+     * {@link #getCacheStats()}.
      * 
      * @param localPath The local path of the Git repository
      * @throws IOException If an I/O error occurs
      */
     public void deleteRepository(String localPath) throws IOException {
         Path path = Path.of(localPath);
-        if (Files.exists(path)) {
-            Files.walk(path)
-                 .sorted(Comparator.reverseOrder())
-                 .map(Path::toFile)
-                 .forEach(File::delete);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        boolean succeeded = false;
+        try (RepositoryLockManager.RepositoryLock lock = repositoryLocks.write(path)) {
+            // Drop the cached handle first; a request still using it closes it when done
+            repositoryCache.invalidate(path);
+            repositoryTrash.delete(path);
+            succeeded = true;
+        } finally {
+            // Only the move to the trash is timed, not the background deletion
+            recordOperation(sample, "delete", NO_REMOTE, succeeded);
+        }
+    }
+
+    /**
+     * Record the duration of an operation, including the wait for the repository lock
+     * 
+     * @param operation clone, pull, commit, push or delete
+     * @param remote see {@link #remoteTag(String)}
+     */
+    private void recordOperation(Timer.Sample sample, String operation, String remote, boolean succeeded) {
+        sample.stop(Timer.builder(OPERATION_TIMER)
+                .description("Duration of Git operations")
+                .tag("operation", operation)
+                .tag("remote", remote)
+                .tag("outcome", succeeded ? "success" : "failure")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofMinutes(10))
+                .register(meterRegistry));
+    }
+
+    private static String originTag(Repository repository) {
+        return remoteTag(repository.getConfig().getString("remote", Constants.DEFAULT_REMOTE_NAME, "url"));
+    }
+
+    /**
+     * The host of a remote URL, which tags operation timers by the server a repository lives on.
+     * The URL or local path itself would add a time series per repository.
+     * 
+     * @return the lower-case host, "local" for file and path URLs, "none" without a URL
+     */
+    static String remoteTag(String remoteUrl) {
+        if (remoteUrl == null) {
+            return NO_REMOTE;
+        }
+        try {
+            String host = new URIish(remoteUrl).getHost();
+            return host == null ? "local" : host.toLowerCase(Locale.ROOT);
+        } catch (URISyntaxException e) {
+            return "invalid";
+        }
+    }
+
+    /**
+     * Ask the remote which branch its HEAD points to
+     */
+    private static String defaultBranch(String repositoryUrl, CredentialsProvider credentialsProvider) throws GitAPIException {
+        LsRemoteCommand lsRemote = Git.lsRemoteRepository().setRemote(repositoryUrl);
+        if (credentialsProvider != null) {
+            lsRemote.setCredentialsProvider(credentialsProvider);
+        }
+        Map<String, Ref> refs = lsRemote.callAsMap();
+        Ref head = refs.get(Constants.HEAD);
+        if (head == null) {
+            throw new InvalidRemoteException("Remote has no HEAD: " + repositoryUrl);
+        }
+        if (head.isSymbolic()) {
+            return Repository.shortenRefName(head.getTarget().getName());
+        }
+        // Without symref information, pick the branch HEAD points at
+        for (Ref ref : refs.values()) {
+            if (ref.getName().startsWith(Constants.R_HEADS) && head.getObjectId().equals(ref.getObjectId())) {
+                return Repository.shortenRefName(ref.getName());
+            }
+        }
+        throw new InvalidRemoteException("Cannot determine the default branch of " + repositoryUrl);
+    }
+
+    /**
+     * Clone like {@code git clone --reference}: objects already in the reference repository
+     * are read from there through objects/info/alternates and are neither fetched nor stored
+     */
+    private static Git cloneWithReference(String repositoryUrl, File directory, CredentialsProvider credentialsProvider,
+                                          CloneOptions options, String branch, ProgressMonitor monitor)
+            throws GitAPIException, IOException {
+        File referenceObjects = objectDirectory(new File(options.getReferenceRepository()));
+        File gitDir;
+        try (Git init = Git.init().setDirectory(directory).call()) {
+            gitDir = init.getRepository().getDirectory();
+        }
+        // Written before the repository is opened again, so its object directory picks it up
+        Path alternates = gitDir.toPath().resolve("objects/info/alternates");
+        Files.createDirectories(alternates.getParent());
+        Files.writeString(alternates, referenceObjects.getAbsolutePath() + "\n");
+
+        Git git = Git.open(directory);
+        try {
+            StoredConfig config = git.getRepository().getConfig();
+            config.setString("remote", Constants.DEFAULT_REMOTE_NAME, "url", repositoryUrl);
+            String fetched = options.isSingleBranch() ? branch : "*";
+            config.setString("remote", Constants.DEFAULT_REMOTE_NAME, "fetch",
+                    "+" + Constants.R_HEADS + fetched + ":" + Constants.R_REMOTES + Constants.DEFAULT_REMOTE_NAME + "/" + fetched);
+            config.save();
+
+            FetchCommand fetch = git.fetch()
+                    .setRemote(Constants.DEFAULT_REMOTE_NAME)
+                    .setProgressMonitor(monitor);
+            if (credentialsProvider != null) {
+                fetch.setCredentialsProvider(credentialsProvider);
+            }
+            if (options.getDepth() > 0) {
+                fetch.setDepth(options.getDepth());
+            }
+            FetchResult result = fetch.call();
+
+            String checkedOut = branch != null ? branch : advertisedDefaultBranch(result, repositoryUrl);
+            git.branchCreate()
+               .setName(checkedOut)
+               .setStartPoint(Constants.DEFAULT_REMOTE_NAME + "/" + checkedOut)
+               .setUpstreamMode(CreateBranchCommand.SetupUpstreamMode.TRACK)
+               .call();
+            if (options.isNoCheckout() || !options.getCheckoutPaths().isEmpty()) {
+                RefUpdate head = git.getRepository().updateRef(Constants.HEAD);
+                head.disableRefLog();
+                head.link(Constants.R_HEADS + checkedOut);
+            } else {
+                git.checkout().setName(checkedOut).call();
+            }
+            return git;
+        } catch (GitAPIException | IOException | RuntimeException e) {
+            git.close();
+            throw e;
+        }
+    }
+
+    private static String advertisedDefaultBranch(FetchResult result, String repositoryUrl) throws InvalidRemoteException {
+        Ref head = result.getAdvertisedRef(Constants.HEAD);
+        if (head != null && head.isSymbolic()) {
+            return Repository.shortenRefName(head.getTarget().getName());
+        }
+        for (Ref ref : result.getAdvertisedRefs()) {
+            if (head != null && ref.getName().startsWith(Constants.R_HEADS) && head.getObjectId().equals(ref.getObjectId())) {
+                return Repository.shortenRefName(ref.getName());
+            }
+        }
+        throw new InvalidRemoteException("Cannot determine the default branch of " + repositoryUrl);
+    }
+
+    private static File objectDirectory(File repository) throws IOException {
+        File gitDir = RepositoryCache.FileKey.resolve(repository, FS.DETECTED);
+        if (gitDir == null) {
+            throw new RepositoryNotFoundException(repository);
+        }
+        return new File(gitDir, Constants.OBJECTS);
+    }
+
+    /**
+     * Write only the given paths of HEAD. The index still holds every path, so status and
+     * commits do not treat the other paths as deleted; they are marked assume-valid so the
+     * missing files are not compared with the working tree.
+     */
+    private static void checkoutPaths(Git git, List<String> paths) throws GitAPIException, IOException {
+        Repository repository = git.getRepository();
+        ObjectId tree = repository.resolve(Constants.HEAD + "^{tree}");
+        if (tree == null) {
+            return;
+        }
+        DirCache index = repository.lockDirCache();
+        try (ObjectReader reader = repository.newObjectReader()) {
+            DirCacheBuilder builder = index.builder();
+            builder.addTree(new byte[0], DirCacheEntry.STAGE_0, reader, tree);
+            builder.finish();
+            for (int i = 0; i < index.getEntryCount(); i++) {
+                DirCacheEntry entry = index.getEntry(i);
+                entry.setAssumeValid(!isSelected(entry.getPathString(), paths));
+            }
+            index.write();
+            index.commit();
+        } finally {
+            index.unlock();
+        }
+        git.checkout().addPaths(paths).call();
+    }
+
+    private static boolean isSelected(String path, List<String> selected) {
+        for (String prefix : selected) {
+            if (path.equals(prefix) || path.startsWith(prefix.endsWith("/") ? prefix : prefix + "/")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Statistics of the repository handle cache, the mirror cache, repository locks and JGit's pack cache
+     * 
+     * @return hit, miss and eviction counts, and lock wait times
+     */
+    public Map<String, Object> getCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("openRepositories", repositoryCache.size());
+        stats.put("repositoryHits", repositoryCache.getHits());
+        stats.put("repositoryMisses", repositoryCache.getMisses());
+        stats.put("repositoryEvictions", repositoryCache.getEvictions());
+        if (mirrorCache != null) {
+            stats.put("mirrors", mirrorCache.size());
+            stats.put("mirrorBytes", mirrorCache.getDiskUsageBytes());
+            stats.put("mirrorHits", mirrorCache.getHits());
+            stats.put("mirrorMisses", mirrorCache.getMisses());
+            stats.put("mirrorEvictions", mirrorCache.getEvictions());
         }
+        stats.put("pendingDeletions", repositoryTrash.getPending());
+        stats.put("failedDeletions", repositoryTrash.getFailedPaths());
+        stats.putAll(repositoryLocks.getStats());
+        WindowCacheStats windowCache = WindowCacheStats.getStats();
+        stats.put("packCacheHits", windowCache.getHitCount());
+        stats.put("packCacheMisses", windowCache.getMissCount());
+        stats.put("packCacheOpenFiles", windowCache.getOpenFileCount());
+        stats.put("packCacheOpenBytes", windowCache.getOpenByteCount());
+        return stats;
     }
-}
\ No newline at end of file
+}
@@ -1,135 +1,241 @@
 package com.example.flowbase_backend.service;
 
+import com.example.flowbase_backend.cluster.ClusterBus;
+import com.example.flowbase_backend.cluster.ClusterEvent;
+import com.example.flowbase_backend.cluster.ClusterListener;
+import com.example.flowbase_backend.cluster.NodeOwnership;
+import com.example.flowbase_backend.engine.NodeDefinition;
+import com.example.flowbase_backend.engine.NodeExecutionEngine;
+import com.example.flowbase_backend.engine.NodeState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
-import java.util.HashMap;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.time.Instant;
-import java.time.Duration;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * Service for registering, activating and reading nodes
+ * <p>
+ * With a {@link ClusterBus}, several instances share the nodes. Each flow is owned by one
+ * instance ({@link NodeOwnership}), and only the owner's engine starts the flow's nodes and runs
+ * their timers; activations received by other instances are forwarded to it. The owner publishes
+ * every transition, and each instance passes the transitions of all instances to its own STOMP
+ * clients, so a client sees every node whichever instance it is connected to. Registrations go
+ * to every instance, and a dependency must be in the same flow as the node that needs it.
+ * Transitions are only taken from the instance that owns the flow, so a former owner whose timer
+ * fires after the flow moved cannot overwrite the new owner's states.
+ * <p>
+ * When an instance joins, the others publish their registrations and the states of the nodes of
+ * the flows they own, so it starts with the whole picture. A node that was RUNNING on an instance
+ * that left stays RUNNING for the clients until it is activated again on the flow's new owner,
+ * and a flow that moves to the joining instance starts over there.
+ */
 @Service
-public class NodeService {
+public class NodeService implements ClusterListener {
 
-    private final Map<String, Boolean> nodeStatus = new ConcurrentHashMap<>();
-    private final ConcurrentMap<String, Instant> runningNodes = new ConcurrentHashMap<>();
-    private static final String NODE_A = "nodeA";
-    private static final String NODE_B = "nodeB";
-    private static final Duration NODE_RUNNING_DURATION = Duration.ofSeconds(5); // Time a node stays in RUNNING state
+    private static final Logger log = LoggerFactory.getLogger(NodeService.class);
 
+    public static final String NODE_A = "node-A";
+    public static final String NODE_B = "node-B";
+
+    private final NodeExecutionEngine engine;
+    private final DelayedActivationService delayedActivationService;
+    private final Duration nodeAActivationDelay;
     private final WebSocketService webSocketService;
+    // Null when this instance runs on its own
+    private final ClusterBus clusterBus;
+    private final NodeOwnership ownership;
+    // Latest transition of every node in the cluster, whichever instance raised it
+    private final Map<String, NodeState> clusterStates = new ConcurrentHashMap<>();
+    // Registrations handed to every instance, in registration order
+    private final List<NodeDefinition> replicatedDefinitions = new CopyOnWriteArrayList<>();
+    // Nodes with a delayed activation on this instance that has not run yet
+    private final Set<String> scheduledActivations = ConcurrentHashMap.newKeySet();
+    private Set<String> knownMembers = Set.of();
+
+    /**
+     * Create a service that runs every node on this instance
+     * @param webSocketService service that broadcasts state changes to clients
+     * @param engine engine that runs the nodes
+     * @param delayedActivationService service that runs delayed activations
+     * @param nodeAActivationDelay delay between a trigger of Node A and its activation
+     */
+    public NodeService(WebSocketService webSocketService, NodeExecutionEngine engine,
+                       DelayedActivationService delayedActivationService, Duration nodeAActivationDelay) {
+        this(webSocketService, engine, delayedActivationService, nodeAActivationDelay, null);
+    }
 
     @Autowired
-    public NodeService(WebSocketService webSocketService) {
+    public NodeService(WebSocketService webSocketService, NodeExecutionEngine engine,
+                       DelayedActivationService delayedActivationService,
+                       @Value("${flowbase.node-a.activation-delay:10s}") Duration nodeAActivationDelay,
+                       @Nullable ClusterBus clusterBus) {
+        this.engine = engine;
+        this.delayedActivationService = delayedActivationService;
+        this.nodeAActivationDelay = nodeAActivationDelay;
         this.webSocketService = webSocketService;
-        // Initialize nodes with inactive status
-        nodeStatus.put(NODE_A, false);
-        nodeStatus.put(NODE_B, false);
+        this.clusterBus = clusterBus;
+        this.ownership = clusterBus != null ? new NodeOwnership(clusterBus) : null;
+        // Broadcast every state change raised by the engine, to this instance's clients and to the cluster
+        engine.addListener((nodeId, state) -> {
+            String flowId = engine.getDefinition(nodeId).getFlowId();
+            webSocketService.sendNodeStateUpdate(flowId, nodeId, state);
+            if (clusterBus != null) {
+                clusterStates.put(nodeId, state);
+                clusterBus.publish(ClusterEvent.state(clusterBus.getInstanceId(), flowId, nodeId, state));
+            }
+        });
+        // Register the built-in nodes
+        engine.register(NodeDefinition.of(NODE_A));
+        engine.register(NodeDefinition.of(NODE_B));
+        if (clusterBus != null) {
+            clusterBus.addListener(this);
+            onMembershipChange(clusterBus.getMembers());
+        }
     }
 
     /**
-     * Activates Node A after a delay
+     * Registers a node with the execution engine
+     * @param definition the node definition; its dependencies must already be registered
      */
-    public void activateNodeA() {
-        try {
-            // Wait for 10 seconds
-            Thread.sleep(10000);
-            // Activate Node A
-            nodeStatus.put(NODE_A, true);
-            System.out.println("Node A has been activated");
-            // Send WebSocket message and record running timestamp
-            webSocketService.sendNodeStateUpdate("node-A", "RUNNING");
-            runningNodes.put("node-A", Instant.now());
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            System.err.println("Error while activating Node A: " + e.getMessage());
+    public void registerNode(NodeDefinition definition) {
+        if (clusterBus != null) {
+            // Checked before registering: the event cannot carry an action
+            ClusterEvent registration = ClusterEvent.register(clusterBus.getInstanceId(), definition);
+            for (String dependency : definition.getDependencies()) {
+                if (engine.isRegistered(dependency)
+                        && !engine.getDefinition(dependency).getFlowId().equals(definition.getFlowId())) {
+                    throw new IllegalArgumentException("Dependency " + dependency + " of node " + definition.getId()
+                            + " is in another flow; flows may run on different instances");
+                }
+            }
+            engine.register(definition);
+            replicatedDefinitions.add(definition);
+            clusterBus.publish(registration);
+        } else {
+            engine.register(definition);
         }
+        log.atInfo().addKeyValue("nodeId", definition.getId())
+                .addKeyValue("dependencies", definition.getDependencies())
+                .log("Node registered");
     }
 
     /**
-     * Checks if hello.txt exists and activates Node B if it does
+     * Activates a node immediately. Its successors are released once it is DONE.
+     * In a cluster, a node of a flow owned by another instance is activated there.
+     * @param nodeId the ID of the node
+     * @return true if the node was started, or forwarded while not known to be running;
+     *         false if it was already running
+     * @throws IllegalArgumentException if the node is unknown
      */
-    @Scheduled(fixedRate = 5000) // Check every 5 seconds
-    public void checkForNodeBActivation() {
-        File file = new File("Resources/hello.txt");
-        if (file.exists() && !nodeStatus.get(NODE_B)) {
-            nodeStatus.put(NODE_B, true);
-            System.out.println("Node B has been activated after finding hello.txt");
-            // Send WebSocket message and record running timestamp
-            webSocketService.sendNodeStateUpdate("node-B", "RUNNING");
-            runningNodes.put("node-B", Instant.now());
+    public boolean activateNode(String nodeId) {
+        String flowId = engine.getDefinition(nodeId).getFlowId();
+        if (ownership != null && !ownership.isLocal(flowId)) {
+            clusterBus.publish(ClusterEvent.activate(clusterBus.getInstanceId(), flowId, nodeId, Duration.ZERO));
+            log.atDebug().addKeyValue("nodeId", nodeId).addKeyValue("owner", ownership.ownerOf(flowId))
+                    .log("Node activation forwarded");
+            return getState(nodeId) != NodeState.RUNNING;
         }
+        boolean started = engine.activate(nodeId);
+        if (started) {
+            log.atDebug().addKeyValue("nodeId", nodeId).log("Node activated");
+        }
+        return started;
     }
 
     /**
-     * Returns the current status of all nodes
-     * @return Map containing node names and their status
+     * Schedules the activation of Node A after a delay. Returns immediately.
+     * In a cluster, the delay runs on the instance that owns Node A.
+     * Repeated triggers are ignored while Node A is RUNNING or its activation is scheduled.
+     * @return true if the activation was scheduled or forwarded, false if the trigger was ignored
      */
-    public Map<String, Boolean> getAllNodeStatus() {
-        return new HashMap<>(nodeStatus);
+    public boolean activateNodeA() {
+        if (getState(NODE_A) == NodeState.RUNNING) {
+            return false;
+        }
+        String flowId = engine.getDefinition(NODE_A).getFlowId();
+        if (ownership != null && !ownership.isLocal(flowId)) {
+            clusterBus.publish(ClusterEvent.activate(clusterBus.getInstanceId(), flowId, NODE_A, nodeAActivationDelay));
+            return true;
+        }
+        return scheduleActivation(NODE_A, nodeAActivationDelay);
     }
 
     /**
-     * Returns the status of a specific node
-     * @param nodeName the name of the node
-     * @return boolean indicating if the node is active
+     * Schedules the activation of a node unless one is scheduled already
+     * @return true if the activation was scheduled
      */
-    public boolean getNodeStatus(String nodeName) {
-        return nodeStatus.getOrDefault(nodeName, false);
+    private boolean scheduleActivation(String nodeId, Duration delay) {
+        if (!scheduledActivations.add(nodeId)) {
+            return false;
+        }
+        delayedActivationService.schedule(() -> {
+            scheduledActivations.remove(nodeId);
+            activateNode(nodeId);
+        }, delay);
+        return true;
     }
 
     /**
-     * Activates Node A immediately without delay
+     * @return the delay after which a triggered Node A is activated
      */
-    public void activateNodeAImmediately() {
-        // Activate Node A
-        nodeStatus.put(NODE_A, true);
-        System.out.println("Node A has been activated immediately");
+    public Duration getNodeAActivationDelay() {
+        return nodeAActivationDelay;
+    }
 
-        // Record the current time
-        Instant startTime = Instant.now();
-        System.out.println("[DEBUG] Adding node-A to runningNodes map with timestamp: " + startTime);
+    /**
+     * Returns the current status of all nodes
+     * @return Map containing node IDs and whether they have been activated
+     */
+    public Map<String, Boolean> getAllNodeStatus() {
+        Map<String, NodeState> states = engine.getStates();
+        Map<String, Boolean> status = new LinkedHashMap<>(states.size() * 2);
+        states.forEach((nodeId, state) ->
+                status.put(nodeId, clusterStates.getOrDefault(nodeId, state) != NodeState.INACTIVE));
+        return status;
+    }
 
-        // Send WebSocket message with state RUNNING to match frontend expectations and record running timestamp
-        webSocketService.sendNodeStateUpdate("node-A", "RUNNING");
-        runningNodes.put("node-A", startTime);
+    /**
+     * @param nodeId the ID of the node
+     * @return true if a node with this ID is registered
+     */
+    public boolean isRegistered(String nodeId) {
+        return engine.isRegistered(nodeId);
+    }
 
-        System.out.println("[DEBUG] Current runningNodes map after activation: " + runningNodes);
+    /**
+     * Returns the status of a specific node
+     * @param nodeId the ID of the node
+     * @return boolean indicating if the node is active
+     */
+    public boolean getNodeStatus(String nodeId) {
+        return engine.isRegistered(nodeId) && getState(nodeId) != NodeState.INACTIVE;
     }
 
     /**
-     * Scheduled task to check for nodes that should transition from RUNNING to DONE
+     * @return the latest state of a registered node, raised by this instance or another one
      */
-    @Scheduled(fixedRate = 1000) // Check every second
-    public void checkForNodeStateTransitions() {
-        Instant now = Instant.now();
-
-        // Debug: Log the current running nodes
-        if (!runningNodes.isEmpty()) {
-            System.out.println("[DEBUG] Currently running nodes: " + runningNodes.size());
-            runningNodes.forEach((nodeId, startTime) -> {
-                Duration runningTime = Duration.between(startTime, now);
-                System.out.println("[DEBUG] Node " + nodeId + " running for " + runningTime.getSeconds() + " seconds (threshold: " + NODE_RUNNING_DURATION.getSeconds() + " seconds)");
-            });
-        }
+    private NodeState getState(String nodeId) {
+        NodeState state = clusterStates.get(nodeId);
+        return state != null ? state : engine.getState(nodeId);
+    }
 
-        // Check each running node
-        runningNodes.forEach((nodeId, startTime) -> {
-            // If the node has been running for longer than NODE_RUNNING_DURATION
-            Duration runningTime = Duration.between(startTime, now);
-            if (runningTime.compareTo(NODE_RUNNING_DURATION) > 0) {
-                // Transition to DONE state
-                System.out.println("[DEBUG] Transitioning node " + nodeId + " to DONE state after running for " + runningTime.getSeconds() + " seconds");
-                webSocketService.sendNodeStateUpdate(nodeId, "DONE");
-                System.out.println("Node " + nodeId + " state transitioned from RUNNING to DONE");
-                // Remove from running nodes
-                runningNodes.remove(nodeId);
-            }
-        });
+    /**
+     * Activates Node A immediately without delay
+     * @return true if Node A was started, false if it was already running
+     */
+    public boolean activateNodeAImmediately() {
+        return activateNode(NODE_A);
     }
 
     /**
@@ -138,23 +244,79 @@ public class NodeService {
      * @return the current state of the node (INACTIVE, RUNNING, or DONE)
      */
     public String getNodeStateForTesting(String nodeId) {
-        // If the node is in the runningNodes map, it's in RUNNING state
-        if (runningNodes.containsKey(nodeId)) {
-            Instant startTime = runningNodes.get(nodeId);
-            Duration runningTime = Duration.between(startTime, Instant.now());
-            System.out.println("[DEBUG] Node " + nodeId + " is in RUNNING state for " + runningTime.getSeconds() + " seconds");
-            return "RUNNING";
+        if (!engine.isRegistered(nodeId)) {
+            return NodeState.INACTIVE.name();
         }
+        return getState(nodeId).name();
+    }
 
-        // If the node is active but not in runningNodes, it's in DONE state
-        String internalNodeId = nodeId.equals("node-A") ? NODE_A : NODE_B;
-        if (nodeStatus.getOrDefault(internalNodeId, false)) {
-            System.out.println("[DEBUG] Node " + nodeId + " is in DONE state");
-            return "DONE";
+    /**
+     * Handle an event of another instance of the cluster
+     * @param event the event
+     */
+    @Override
+    public void onEvent(ClusterEvent event) {
+        switch (event.getType()) {
+            case STATE -> {
+                if (!event.getOrigin().equals(ownership.ownerOf(event.getFlowId()))) {
+                    log.atDebug().addKeyValue("nodeId", event.getNodeId()).addKeyValue("origin", event.getOrigin())
+                            .log("Node state from an instance that does not own the flow ignored");
+                    return;
+                }
+                // Resyncs repeat states this instance already passed on
+                if (clusterStates.put(event.getNodeId(), event.getState()) != event.getState()) {
+                    webSocketService.sendNodeStateUpdate(event.getFlowId(), event.getNodeId(), event.getState());
+                }
+            }
+            case ACTIVATE -> {
+                if (ownership.isLocal(event.getFlowId()) && engine.isRegistered(event.getNodeId())) {
+                    if (event.getDelay().isZero()) {
+                        activateNode(event.getNodeId());
+                    } else {
+                        scheduleActivation(event.getNodeId(), event.getDelay());
+                    }
+                }
+            }
+            case REGISTER -> {
+                if (!engine.isRegistered(event.getNodeId())) {
+                    try {
+                        NodeDefinition definition = event.toDefinition();
+                        engine.register(definition);
+                        replicatedDefinitions.add(definition);
+                    } catch (IllegalArgumentException | IllegalStateException e) {
+                        log.atWarn().addKeyValue("nodeId", event.getNodeId()).addKeyValue("origin", event.getOrigin())
+                                .setCause(e).log("Replicated node registration failed");
+                    }
+                }
+            }
         }
+    }
 
-        // Otherwise, it's inactive
-        System.out.println("[DEBUG] Node " + nodeId + " is in INACTIVE state");
-        return "INACTIVE";
+    /**
+     * Bring instances that joined up to date with the registrations and the states of the nodes
+     * in the flows this instance owns
+     * @param members the IDs of all live instances
+     */
+    @Override
+    public void onMembershipChange(Set<String> members) {
+        boolean joined;
+        synchronized (this) {
+            joined = !knownMembers.containsAll(members);
+            knownMembers = new HashSet<>(members);
+        }
+        if (!joined || members.size() < 2) {
+            return;
+        }
+        String instanceId = clusterBus.getInstanceId();
+        for (NodeDefinition definition : replicatedDefinitions) {
+            clusterBus.publish(ClusterEvent.register(instanceId, definition));
+        }
+        // Flows that moved away are left to their new owner, which the others only take states from
+        engine.getStates().forEach((nodeId, state) -> {
+            String flowId = engine.getDefinition(nodeId).getFlowId();
+            if (state != NodeState.INACTIVE && ownership.isLocal(flowId)) {
+                clusterBus.publish(ClusterEvent.state(instanceId, flowId, nodeId, state));
+            }
+        });
     }
 }
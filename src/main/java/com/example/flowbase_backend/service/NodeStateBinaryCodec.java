@@ -0,0 +1,100 @@
+package com.example.flowbase_backend.service;
+
+import com.example.flowbase_backend.engine.NodeState;
+import com.example.flowbase_backend.model.NodeStateMessage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary layout of node state updates, sent to subscribers of the binary topic
+ * <p>
+ * A frame holds one or more updates back to back, each one big-endian:
+ * <pre>
+ *   long   sequence
+ *   byte   state (0 = INACTIVE, 1 = RUNNING, 2 = DONE)
+ *   ushort length of the node ID in bytes
+ *   byte[] node ID, UTF-8
+ * </pre>
+ * An update of {@code node-A} takes 17 bytes, against about 50 as JSON. The state byte is the
+ * {@link NodeState} ordinal, so new states may only be added at the end of the enum.
+ */
+public final class NodeStateBinaryCodec {
+
+    private static final int FIXED_BYTES = Long.BYTES + 1 + Short.BYTES;
+    private static final NodeState[] STATES = NodeState.values();
+
+    private NodeStateBinaryCodec() {
+    }
+
+    /**
+     * @param message the update
+     * @return a frame holding the update
+     */
+    public static byte[] encode(NodeStateMessage message) {
+        byte[] nodeId = nodeIdBytes(message);
+        ByteBuffer frame = ByteBuffer.allocate(FIXED_BYTES + nodeId.length);
+        put(frame, message, nodeId);
+        return frame.array();
+    }
+
+    /**
+     * @param messages the updates, in the order they are written
+     * @return a frame holding all updates
+     */
+    public static byte[] encode(List<NodeStateMessage> messages) {
+        byte[][] nodeIds = new byte[messages.size()][];
+        int size = 0;
+        for (int i = 0; i < nodeIds.length; i++) {
+            nodeIds[i] = nodeIdBytes(messages.get(i));
+            size += FIXED_BYTES + nodeIds[i].length;
+        }
+        ByteBuffer frame = ByteBuffer.allocate(size);
+        for (int i = 0; i < nodeIds.length; i++) {
+            put(frame, messages.get(i), nodeIds[i]);
+        }
+        return frame.array();
+    }
+
+    /**
+     * @param frame a frame written by {@link #encode}
+     * @return the updates it holds
+     * @throws IllegalArgumentException if the frame is truncated or holds an unknown state
+     */
+    public static List<NodeStateMessage> decode(byte[] frame) {
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        List<NodeStateMessage> messages = new ArrayList<>();
+        while (buffer.hasRemaining()) {
+            if (buffer.remaining() < FIXED_BYTES) {
+                throw new IllegalArgumentException("Truncated node state frame at byte " + buffer.position());
+            }
+            long sequence = buffer.getLong();
+            int state = buffer.get();
+            int length = Short.toUnsignedInt(buffer.getShort());
+            if (state < 0 || state >= STATES.length || buffer.remaining() < length) {
+                throw new IllegalArgumentException("Invalid node state update at byte " + buffer.position());
+            }
+            String nodeId = new String(frame, buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            messages.add(new NodeStateMessage(nodeId, STATES[state], sequence));
+        }
+        return messages;
+    }
+
+    private static byte[] nodeIdBytes(NodeStateMessage message) {
+        byte[] nodeId = message.getNodeId().getBytes(StandardCharsets.UTF_8);
+        if (nodeId.length > 0xffff) {
+            throw new IllegalArgumentException("Node ID longer than 65535 bytes: " + message.getNodeId());
+        }
+        return nodeId;
+    }
+
+    private static void put(ByteBuffer frame, NodeStateMessage message, byte[] nodeId) {
+        frame.putLong(message.getSequence())
+                .put((byte) message.getState().ordinal())
+                .putShort((short) nodeId.length)
+                .put(nodeId);
+    }
+}
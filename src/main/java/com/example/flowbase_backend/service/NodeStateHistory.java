@@ -0,0 +1,113 @@
+package com.example.flowbase_backend.service;
+
+import com.example.flowbase_backend.engine.NodeState;
+import com.example.flowbase_backend.model.NodeStateMessage;
+import com.example.flowbase_backend.model.NodeStateSync;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Numbers node state transitions and keeps what a client needs to catch up with them
+ * <p>
+ * Every transition gets the next sequence number. The latest update per node makes up the
+ * snapshot sent to new subscribers, and the last {@code capacity} updates are kept in a ring
+ * buffer, so a reconnecting client only receives what it missed. A client that is further
+ * behind, or that last saw an earlier run of the server, gets a snapshot instead.
+ * <p>
+ * Listeners are handed every numbered update in sequence order through {@link #dispatch}, which
+ * the single publisher of {@link WebSocketService} calls outside any lock.
+ */
+@Service
+public class NodeStateHistory {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final long epoch = System.currentTimeMillis();
+    private final NodeStateMessage[] recent;
+    private final Map<String, NodeStateMessage> latest = new LinkedHashMap<>();
+    private long sequence;
+    private final List<Consumer<NodeStateMessage>> listeners = new CopyOnWriteArrayList<>();
+
+    public NodeStateHistory(@Value("${flowbase.websocket.history.capacity:4096}") int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("History capacity must be positive: " + capacity);
+        }
+        this.recent = new NodeStateMessage[capacity];
+    }
+
+    /**
+     * Number a transition
+     * @param nodeId the ID of the node
+     * @param state the new state of the node
+     * @return the update with its sequence number
+     */
+    public synchronized NodeStateMessage record(String nodeId, NodeState state) {
+        NodeStateMessage message = new NodeStateMessage(nodeId, state, ++sequence);
+        recent[(int) (sequence % recent.length)] = message;
+        latest.put(nodeId, message);
+        return message;
+    }
+
+    /**
+     * Hand a numbered update to the listeners. Called for every update, in sequence order, by one thread at a time.
+     * @param message an update returned by {@link #record}
+     */
+    public void dispatch(NodeStateMessage message) {
+        for (Consumer<NodeStateMessage> listener : listeners) {
+            listener.accept(message);
+        }
+    }
+
+    /**
+     * @param listener callback for every numbered update; it holds up the publishing of later updates, so it must not block
+     */
+    public void addListener(Consumer<NodeStateMessage> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @return the latest update of every node that has had a transition
+     */
+    public synchronized NodeStateSync snapshot() {
+        return new NodeStateSync(epoch, sequence, true, new ArrayList<>(latest.values()));
+    }
+
+    /**
+     * Return what a client missed since it last saw a transition
+     * @param clientEpoch the epoch of the server the client was connected to
+     * @param lastSequence the highest sequence the client received
+     * @return the updates after {@code lastSequence}, or a snapshot if they are no longer all kept
+     */
+    public synchronized NodeStateSync since(long clientEpoch, long lastSequence) {
+        if (clientEpoch != epoch || lastSequence < sequence - recent.length || lastSequence > sequence
+                || lastSequence < 0) {
+            return snapshot();
+        }
+        List<NodeStateMessage> missed = new ArrayList<>((int) (sequence - lastSequence));
+        for (long next = lastSequence + 1; next <= sequence; next++) {
+            missed.add(recent[(int) (next % recent.length)]);
+        }
+        return new NodeStateSync(epoch, sequence, false, missed);
+    }
+
+    /**
+     * @return the epoch of this server run
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * @return the sequence of the last transition
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+}
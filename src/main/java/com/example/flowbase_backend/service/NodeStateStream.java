@@ -0,0 +1,462 @@
+package com.example.flowbase_backend.service;
+
+import com.example.flowbase_backend.model.NodeStateMessage;
+import com.example.flowbase_backend.model.NodeStateSync;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server-Sent Events stream of the numbered node state updates, for clients that only read
+ * <p>
+ * Every update recorded in {@link NodeStateHistory} is encoded once, as an event named
+ * {@code node-state} with the id {@code {epoch}-{sequence}}, and the same bytes are queued for
+ * every subscriber. A new subscriber first gets a {@code snapshot} event holding a
+ * {@link NodeStateSync}. A browser's EventSource reconnects on its own and sends the id of the
+ * last event it received as {@code Last-Event-ID}; it then gets only the updates it missed, or
+ * a snapshot if the history no longer holds all of them.
+ * <p>
+ * Connections are held as async requests on the server's non-blocking connector, so an idle
+ * subscriber holds no thread, only its emitter and an empty queue. A few sender threads write
+ * the queued events. A subscriber whose queue reaches {@code bufferSize} events is disconnected
+ * rather than buffered further; its EventSource reconnects and resumes from the history. A
+ * comment line every {@code heartbeat} keeps proxies from closing idle connections and finds
+ * the ones the client closed.
+ * <p>
+ * Writes block while the client's socket buffer is full. A subscriber whose write has not
+ * finished after {@code writeTimeout} is dropped, and the sender stuck in that write is replaced
+ * by a new thread until the write returns, so a client that stopped reading does not hold up
+ * the others. The connector's own write timeout ({@code server.tomcat.connection-timeout}) ends
+ * the stuck write.
+ */
+@Service
+public class NodeStateStream {
+
+    private static final Logger log = LoggerFactory.getLogger(NodeStateStream.class);
+
+    public static final String NODE_STATE_EVENT = "node-state";
+    public static final String SNAPSHOT_EVENT = "snapshot";
+
+    // No timeout: connections the client closed are found by the heartbeat
+    private static final long NO_TIMEOUT = 0L;
+
+    private final NodeStateHistory history;
+    private final ObjectMapper objectMapper;
+    private final int bufferSize;
+    private final int maxSubscribers;
+    private final long writeTimeoutNanos;
+    // Encodes each update and queues it for the subscribers, one update at a time
+    private final Executor dispatcher;
+    // Writes queued events to the subscribers' connections
+    private final Executor senders;
+    // Executors created by this stream, shut down with it
+    private final List<ExecutorService> ownedExecutors = new ArrayList<>();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private final Counter sentEvents;
+    private final Counter droppedSubscribers;
+    private final Counter stalledSubscribers;
+
+    /**
+     * An encoded event and the sequence of the update it carries
+     */
+    private static final class Event {
+        final long sequence;
+        final Set<DataWithMediaType> frame;
+
+        Event(long sequence, Set<DataWithMediaType> frame) {
+            this.sequence = sequence;
+            this.frame = frame;
+        }
+    }
+
+    private static final Event HEARTBEAT_EVENT = new Event(-1, SseEmitter.event().comment("").build());
+
+    /**
+     * Create a stream that runs on the given executors and counts in the global registry
+     * @param history the history whose updates are streamed
+     * @param bufferSize events queued per subscriber before it is disconnected
+     * @param dispatcher executor that encodes and queues each update; must run tasks in order
+     * @param senders executor that writes queued events
+     */
+    public NodeStateStream(NodeStateHistory history, int bufferSize, Executor dispatcher, Executor senders) {
+        this(history, new ObjectMapper(), bufferSize, Integer.MAX_VALUE, Long.MAX_VALUE, dispatcher, senders,
+                Metrics.globalRegistry);
+    }
+
+    @Autowired
+    public NodeStateStream(NodeStateHistory history, ObjectMapper objectMapper,
+                           @Value("${flowbase.sse.buffer-size:256}") int bufferSize,
+                           @Value("${flowbase.sse.max-subscribers:50000}") int maxSubscribers,
+                           @Value("${flowbase.sse.sender-threads:4}") int senderThreads,
+                           @Value("${flowbase.sse.heartbeat:15s}") Duration heartbeat,
+                           @Value("${flowbase.sse.write-timeout:5s}") Duration writeTimeout,
+                           MeterRegistry meterRegistry) {
+        this(history, objectMapper, bufferSize, maxSubscribers, writeTimeout.toNanos(),
+                Executors.newSingleThreadExecutor(daemonThreads("sse-dispatcher")),
+                Executors.newFixedThreadPool(senderThreads, daemonThreads("sse-sender")), meterRegistry);
+        ownedExecutors.add((ExecutorService) dispatcher);
+        ownedExecutors.add((ExecutorService) senders);
+        ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(daemonThreads("sse-heartbeat"));
+        ownedExecutors.add(heartbeats);
+        heartbeats.scheduleWithFixedDelay(this::heartbeat, heartbeat.toNanos(), heartbeat.toNanos(), TimeUnit.NANOSECONDS);
+        long check = Math.max(writeTimeout.toNanos() / 2, TimeUnit.MILLISECONDS.toNanos(10));
+        heartbeats.scheduleWithFixedDelay(this::dropStalledSubscribers, check, check, TimeUnit.NANOSECONDS);
+    }
+
+    private NodeStateStream(NodeStateHistory history, ObjectMapper objectMapper, int bufferSize, int maxSubscribers,
+                            long writeTimeoutNanos, Executor dispatcher, Executor senders, MeterRegistry meterRegistry) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("SSE buffer size must be positive: " + bufferSize);
+        }
+        this.history = history;
+        this.objectMapper = objectMapper;
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+        this.writeTimeoutNanos = writeTimeoutNanos;
+        this.dispatcher = dispatcher;
+        this.senders = senders;
+        this.sentEvents = Counter.builder("flowbase.sse.events.sent")
+                .description("Events written to Server-Sent Events subscribers")
+                .baseUnit("events")
+                .register(meterRegistry);
+        this.droppedSubscribers = Counter.builder("flowbase.sse.subscribers.dropped")
+                .description("Server-Sent Events subscribers disconnected because their buffer was full")
+                .baseUnit("subscribers")
+                .register(meterRegistry);
+        this.stalledSubscribers = Counter.builder("flowbase.sse.subscribers.stalled")
+                .description("Server-Sent Events subscribers dropped because a write took longer than the write timeout")
+                .baseUnit("subscribers")
+                .register(meterRegistry);
+        Gauge.builder("flowbase.sse.subscribers", subscribers, Set::size)
+                .description("Open Server-Sent Events connections")
+                .baseUnit("subscribers")
+                .register(meterRegistry);
+        // Only queued on the publishing thread; encoding and fan-out happen on the dispatcher
+        history.addListener(message -> dispatcher.execute(() -> dispatch(message)));
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Open a stream for a client
+     * @param lastEventId the id of the last event the client received, {@code {epoch}-{sequence}}, or null
+     * @return the emitter the updates are written to
+     * @throws IllegalStateException if {@code maxSubscribers} streams are already open
+     */
+    public SseEmitter subscribe(@Nullable String lastEventId) {
+        if (subscribers.size() >= maxSubscribers) {
+            throw new IllegalStateException("Too many node state streams: " + maxSubscribers);
+        }
+        SseEmitter emitter = new SseEmitter(NO_TIMEOUT);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(subscriber::close);
+        emitter.onError(error -> subscriber.close());
+        // Added before reading the history: an update recorded meanwhile is in the sync, the queue or both
+        subscribers.add(subscriber);
+        NodeStateSync sync = sync(lastEventId);
+        List<Event> events = new ArrayList<>();
+        if (sync.isSnapshot()) {
+            events.add(new Event(sync.getSequence(), SseEmitter.event()
+                    .id(eventId(sync.getEpoch(), sync.getSequence()))
+                    .name(SNAPSHOT_EVENT)
+                    .data(json(sync), MediaType.APPLICATION_JSON)
+                    .build()));
+        } else {
+            for (NodeStateMessage message : sync.getUpdates()) {
+                events.add(encode(sync.getEpoch(), message));
+            }
+        }
+        subscriber.start(sync.getSequence(), events);
+        return emitter;
+    }
+
+    private NodeStateSync sync(@Nullable String lastEventId) {
+        if (lastEventId != null) {
+            int dash = lastEventId.indexOf('-');
+            try {
+                if (dash > 0) {
+                    return history.since(Long.parseLong(lastEventId.substring(0, dash)),
+                            Long.parseLong(lastEventId.substring(dash + 1)));
+                }
+            } catch (NumberFormatException e) {
+                // Not one of our ids
+            }
+        }
+        return history.snapshot();
+    }
+
+    /**
+     * @param epoch the epoch of the server run
+     * @param sequence the sequence of the update
+     * @return the id of the event carrying the update
+     */
+    public static String eventId(long epoch, long sequence) {
+        return epoch + "-" + sequence;
+    }
+
+    /**
+     * @return the number of open streams
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ownedExecutors.forEach(ExecutorService::shutdownNow);
+        for (Subscriber subscriber : subscribers) {
+            subscriber.close();
+            subscriber.emitter.complete();
+        }
+    }
+
+    private void dispatch(NodeStateMessage message) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        Event event = encode(history.getEpoch(), message);
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(event);
+        }
+    }
+
+    private Event encode(long epoch, NodeStateMessage message) {
+        return new Event(message.getSequence(), SseEmitter.event()
+                .id(eventId(epoch, message.getSequence()))
+                .name(NODE_STATE_EVENT)
+                .data(json(message), MediaType.APPLICATION_JSON)
+                .build());
+    }
+
+    private String json(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(HEARTBEAT_EVENT);
+        }
+    }
+
+    /**
+     * Drop every subscriber whose write has taken longer than the write timeout
+     * @return the number of subscribers dropped
+     */
+    int dropStalledSubscribers() {
+        long now = System.nanoTime();
+        int dropped = 0;
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.stalled(now)) {
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * Add a sender thread for one stuck in a write, or remove it again once the write returned
+     */
+    private void resizeSenders(int delta) {
+        if (senders instanceof ThreadPoolExecutor pool) {
+            synchronized (pool) {
+                if (delta > 0) {
+                    pool.setMaximumPoolSize(pool.getMaximumPoolSize() + delta);
+                    pool.setCorePoolSize(pool.getCorePoolSize() + delta);
+                } else {
+                    pool.setCorePoolSize(pool.getCorePoolSize() + delta);
+                    pool.setMaximumPoolSize(pool.getMaximumPoolSize() + delta);
+                }
+            }
+        }
+    }
+
+    /**
+     * One open stream. The dispatcher queues events and at most one sender thread at a time
+     * writes them.
+     */
+    private final class Subscriber implements Runnable {
+        private final SseEmitter emitter;
+        // Guarded by this: events of the initial sync, then queued updates
+        private final ArrayDeque<Event> sync = new ArrayDeque<>(0);
+        private final ArrayDeque<Event> queue = new ArrayDeque<>(4);
+        private long syncSequence = -1;
+        private boolean started;
+        private boolean scheduled;
+        private boolean closed;
+        // Set by the sender around each write, read by the stall check
+        private volatile long writeStartedNanos;
+        private volatile boolean writing;
+        // Guarded by this: the sender of the write in progress was replaced
+        private boolean stalled;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        /**
+         * Send the initial sync, then the queued updates it does not cover
+         * @param sequence sequence of the last update the sync covers
+         * @param events the events of the sync
+         */
+        void start(long sequence, List<Event> events) {
+            synchronized (this) {
+                syncSequence = sequence;
+                queue.removeIf(event -> event != HEARTBEAT_EVENT && event.sequence <= sequence);
+                sync.addAll(events);
+                started = true;
+            }
+            schedule();
+        }
+
+        void offer(Event event) {
+            synchronized (this) {
+                if (closed || (event != HEARTBEAT_EVENT && event.sequence <= syncSequence)) {
+                    return;
+                }
+                if (event == HEARTBEAT_EVENT) {
+                    // Anything already queued keeps the connection busy enough
+                    if (!queue.isEmpty()) {
+                        return;
+                    }
+                } else if (queue.size() >= bufferSize) {
+                    // Reconnecting costs the client one resync; buffering without limit costs the server memory
+                    closed = true;
+                    queue.clear();
+                    droppedSubscribers.increment();
+                    log.atDebug().log("Node state stream buffer full, closing it");
+                }
+                if (!closed) {
+                    queue.add(event);
+                }
+            }
+            schedule();
+        }
+
+        void close() {
+            synchronized (this) {
+                closed = true;
+                sync.clear();
+                queue.clear();
+            }
+            subscribers.remove(this);
+        }
+
+        /**
+         * Drop this subscriber if its write in progress started too long ago
+         * @return whether it was dropped now
+         */
+        boolean stalled(long now) {
+            if (!writing || now - writeStartedNanos <= writeTimeoutNanos) {
+                return false;
+            }
+            synchronized (this) {
+                if (stalled || !writing) {
+                    return false;
+                }
+                stalled = true;
+            }
+            close();
+            stalledSubscribers.increment();
+            resizeSenders(1);
+            log.atDebug().log("Node state stream write timed out, dropping it");
+            return true;
+        }
+
+        /**
+         * End a write; the sender it was replaced by, if it was, is removed again
+         */
+        private void writeDone() {
+            boolean replaced;
+            synchronized (this) {
+                writing = false;
+                replaced = stalled;
+            }
+            if (replaced) {
+                resizeSenders(-1);
+            }
+        }
+
+        private void schedule() {
+            synchronized (this) {
+                if (!started || scheduled) {
+                    return;
+                }
+                scheduled = true;
+            }
+            senders.execute(this);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Event event;
+                synchronized (this) {
+                    event = sync.isEmpty() ? queue.poll() : sync.poll();
+                    if (event == null && !closed) {
+                        scheduled = false;
+                        return;
+                    }
+                }
+                if (event == null) {
+                    subscribers.remove(this);
+                    emitter.complete();
+                    return;
+                }
+                writeStartedNanos = System.nanoTime();
+                writing = true;
+                try {
+                    emitter.send(event.frame);
+                    sentEvents.increment();
+                } catch (IOException | IllegalStateException e) {
+                    // The client is gone; the container reports the error to the emitter
+                    close();
+                    return;
+                } finally {
+                    writeDone();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.flowbase_backend.service;
+
+import com.example.flowbase_backend.broker.DroppingRejectionHandler;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.config.WebSocketMessageBrokerStats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Service exposing queue depths and thread usage of the STOMP client channels
+ * <p>
+ * As a {@link MeterBinder}, it also publishes the queue depth and active threads of both
+ * channels as gauges, tagged with {@code channel=inbound|outbound}, and the messages a channel
+ * dropped because its queue was full.
+ */
+@Service
+public class WebSocketBrokerMetrics implements MeterBinder {
+
+    private final ThreadPoolTaskExecutor inboundExecutor;
+    private final ThreadPoolTaskExecutor outboundExecutor;
+    private final WebSocketMessageBrokerStats brokerStats;
+
+    @Autowired
+    public WebSocketBrokerMetrics(@Qualifier("clientInboundChannelExecutor") TaskExecutor inboundExecutor,
+                                  @Qualifier("clientOutboundChannelExecutor") TaskExecutor outboundExecutor,
+                                  WebSocketMessageBrokerStats brokerStats,
+                                  @Value("${flowbase.websocket.stats-logging-period-ms:60000}") long loggingPeriodMs) {
+        this.inboundExecutor = (ThreadPoolTaskExecutor) inboundExecutor;
+        this.outboundExecutor = (ThreadPoolTaskExecutor) outboundExecutor;
+        this.brokerStats = brokerStats;
+        // Spring logs session and executor stats every 30 minutes by default
+        brokerStats.setLoggingPeriod(loggingPeriodMs);
+    }
+
+    /**
+     * @return number of inbound messages waiting for a thread
+     */
+    public int getInboundQueueDepth() {
+        return inboundExecutor.getQueueSize();
+    }
+
+    /**
+     * @return number of outbound messages waiting for a thread
+     */
+    public int getOutboundQueueDepth() {
+        return outboundExecutor.getQueueSize();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bindExecutor("inbound", inboundExecutor, registry);
+        bindExecutor("outbound", outboundExecutor, registry);
+    }
+
+    private static void bindExecutor(String channel, ThreadPoolTaskExecutor executor, MeterRegistry registry) {
+        Gauge.builder("flowbase.websocket.queue.depth", executor, ThreadPoolTaskExecutor::getQueueSize)
+                .description("Messages waiting for a client channel thread")
+                .tag("channel", channel)
+                .baseUnit("messages")
+                .register(registry);
+        Gauge.builder("flowbase.websocket.active.threads", executor, ThreadPoolTaskExecutor::getActiveCount)
+                .description("Client channel threads sending or handling a message")
+                .tag("channel", channel)
+                .baseUnit("threads")
+                .register(registry);
+        if (executor.getThreadPoolExecutor().getRejectedExecutionHandler() instanceof DroppingRejectionHandler handler) {
+            FunctionCounter.builder("flowbase.websocket.messages.dropped", handler, DroppingRejectionHandler::getDropped)
+                    .description("Messages dropped because the client channel queue was full")
+                    .tag("channel", channel)
+                    .baseUnit("messages")
+                    .register(registry);
+        }
+    }
+
+    /**
+     * @return queue depth, capacity and thread usage of both client channels plus session stats
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("inbound", executorStats(inboundExecutor));
+        snapshot.put("outbound", executorStats(outboundExecutor));
+        snapshot.put("sessions", brokerStats.getWebSocketSessionStatsInfo());
+        snapshot.put("stomp", brokerStats.getStompSubProtocolStatsInfo());
+        return snapshot;
+    }
+
+    private static Map<String, Integer> executorStats(ThreadPoolTaskExecutor executor) {
+        Map<String, Integer> stats = new LinkedHashMap<>();
+        stats.put("queueDepth", executor.getQueueSize());
+        stats.put("queueCapacity", executor.getQueueCapacity());
+        stats.put("activeThreads", executor.getActiveCount());
+        stats.put("poolSize", executor.getPoolSize());
+        stats.put("maxPoolSize", executor.getMaxPoolSize());
+        return stats;
+    }
+}
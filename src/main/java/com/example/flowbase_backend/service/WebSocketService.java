@@ -1,32 +1,382 @@
 package com.example.flowbase_backend.service;
 
+import com.example.flowbase_backend.broker.TopicSubscriptionRegistry;
+import com.example.flowbase_backend.engine.NodeDefinition;
+import com.example.flowbase_backend.engine.NodeState;
+import com.example.flowbase_backend.model.GitJobUpdate;
 import com.example.flowbase_backend.model.NodeStateMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.util.UriUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Service for sending WebSocket messages to clients
+ * <p>
+ * In batch mode, updates are buffered for a short window. Only the latest state per node
+ * is kept, and the whole window is sent as one JSON array frame to the same topic.
+ * <p>
+ * Each update carries the sequence number {@link NodeStateHistory} gave it, and updates are
+ * handed to the broker in sequence order, also across batches, so a client that reconnects
+ * can ask for everything after the highest sequence it has seen. The publish lock is only held
+ * to number an update and queue its publication; conversion, the broker's fan-out and the
+ * history's listeners run outside it. Whichever thread finds no one publishing sends everything
+ * queued, in order, while the other threads return at once, so there is a single writer at a time.
+ * <p>
+ * With the binary topic enabled, every frame is also sent to {@code /topic/node-activated.bin}
+ * in the layout of {@link NodeStateBinaryCodec}, as long as a subscription matches it; a client
+ * picks the format by the topic it subscribes to. Binary frames only survive a plain WebSocket,
+ * so the topic is served on {@code /ws-native} and refused on the SockJS endpoint (see
+ * {@link com.example.flowbase_backend.broker.BinaryTopicGuard}). Either way a frame is encoded
+ * once and the broker hands the same payload to every subscriber.
+ * <p>
+ * Each update is also sent to its node's own topic, {@code /topic/flows/{flowId}/nodes/{nodeId}},
+ * if at least one subscription matches it. Clients that show one flow subscribe to
+ * {@code /topic/flows/{flowId}/**} and only receive that flow's updates. The check and the
+ * broker's fan-out both go through {@link TopicSubscriptionRegistry}, so an update costs work
+ * per matching subscriber, not per connected session. The node topics carry single JSON
+ * messages, also in batch mode.
+ * <p>
+ * Every message handed to the broker is counted in {@code flowbase.websocket.messages.sent},
+ * tagged with its type; the number of updates per batch goes to {@code flowbase.websocket.batch.size}.
  */
 @Service
 public class WebSocketService {
 
+    private static final Logger log = LoggerFactory.getLogger(WebSocketService.class);
+    private static final String NODE_STATE_TOPIC = "/topic/node-activated";
+    public static final String NODE_STATE_BINARY_TOPIC = NODE_STATE_TOPIC + ".bin";
+    private static final String FLOW_TOPIC_PREFIX = "/topic/flows/";
+    private static final String GIT_JOB_TOPIC_PREFIX = "/topic/git-jobs/";
+
     private final SimpMessagingTemplate messagingTemplate;
+    private final NodeStateHistory history;
+    // Null when node topics are not used; the binary topic is then sent to unconditionally
+    private final TopicSubscriptionRegistry subscriptions;
+    // Held while numbering an update or draining a batch, and queueing its publication
+    private final Object publishLock = new Object();
+    // Publications in sequence order, sent by one thread at a time
+    private final Queue<Runnable> publications = new ConcurrentLinkedQueue<>();
+    // Publications queued since the publishing thread last looked; 0 when no thread is publishing
+    private final AtomicInteger pendingPublications = new AtomicInteger();
+    private final boolean batchingEnabled;
+    private final Duration batchWindow;
+    private final boolean binaryEnabled;
 
-    @Autowired
+    private final Map<String, NodeStateMessage> pendingUpdates = new ConcurrentHashMap<>();
+    // Flow of every node with a pending update
+    private final Map<String, String> pendingFlows = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService flushExecutor;
+
+    private final Counter nodeStateMessages;
+    private final Counter nodeStateBatches;
+    private final Counter nodeStateBinaryFrames;
+    private final Counter nodeTopicMessages;
+    private final Counter gitJobMessages;
+    private final DistributionSummary batchSizes;
+
+    /**
+     * Create a service that sends every update as its own message
+     * @param messagingTemplate template used to send messages
+     */
     public WebSocketService(SimpMessagingTemplate messagingTemplate) {
+        this(messagingTemplate, false, Duration.ZERO);
+    }
+
+    /**
+     * Create a service that sends JSON to the shared topic only and counts sent messages in the global registry
+     * @param messagingTemplate template used to send messages
+     * @param batchingEnabled true to send node state updates in batches
+     * @param batchWindow how long updates are buffered before a batch is sent
+     */
+    public WebSocketService(SimpMessagingTemplate messagingTemplate, boolean batchingEnabled, Duration batchWindow) {
+        this(messagingTemplate, batchingEnabled, batchWindow, false, Metrics.globalRegistry,
+                new NodeStateHistory(NodeStateHistory.DEFAULT_CAPACITY), null);
+    }
+
+    @Autowired
+    public WebSocketService(SimpMessagingTemplate messagingTemplate,
+                            @Value("${flowbase.websocket.batch.enabled:false}") boolean batchingEnabled,
+                            @Value("${flowbase.websocket.batch.window:25ms}") Duration batchWindow,
+                            @Value("${flowbase.websocket.binary.enabled:false}") boolean binaryEnabled,
+                            MeterRegistry meterRegistry, NodeStateHistory history,
+                            @Nullable TopicSubscriptionRegistry subscriptions) {
         this.messagingTemplate = messagingTemplate;
+        this.history = history;
+        this.subscriptions = subscriptions;
+        this.batchingEnabled = batchingEnabled;
+        this.batchWindow = batchWindow;
+        this.binaryEnabled = binaryEnabled;
+        this.nodeStateMessages = sentCounter("node-state", meterRegistry);
+        this.nodeStateBatches = sentCounter("node-state-batch", meterRegistry);
+        this.nodeStateBinaryFrames = sentCounter("node-state-binary", meterRegistry);
+        this.nodeTopicMessages = sentCounter("node-topic", meterRegistry);
+        this.gitJobMessages = sentCounter("git-job", meterRegistry);
+        this.batchSizes = DistributionSummary.builder("flowbase.websocket.batch.size")
+                .description("Node state updates per batch frame")
+                .baseUnit("updates")
+                .register(meterRegistry);
+        if (batchingEnabled) {
+            this.flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "node-state-batcher");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.flushExecutor = null;
+        }
+    }
+
+    private static Counter sentCounter(String type, MeterRegistry meterRegistry) {
+        return Counter.builder("flowbase.websocket.messages.sent")
+                .description("Messages handed to the STOMP broker")
+                .tag("type", type)
+                .baseUnit("messages")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Send a node state update message of a node in the default flow
+     * @param nodeId The ID of the node
+     * @param state The new state of the node
+     */
+    public void sendNodeStateUpdate(String nodeId, NodeState state) {
+        sendNodeStateUpdate(NodeDefinition.DEFAULT_FLOW, nodeId, state);
     }
 
     /**
-     * Send a node state update message to the topic
+     * Send a node state update message to the shared topic and the node's own topic
+     * @param flowId The ID of the flow the node belongs to
      * @param nodeId The ID of the node
      * @param state The new state of the node
      */
-    public void sendNodeStateUpdate(String nodeId, String state) {
-        NodeStateMessage message = new NodeStateMessage(nodeId, state);
-        System.out.println("[DEBUG] Preparing to send WebSocket message: nodeId=" + nodeId + ", state=" + state + " to topic /topic/node-activated");
-        messagingTemplate.convertAndSend("/topic/node-activated", message);
-        System.out.println("Sent WebSocket message: nodeId=" + nodeId + ", state=" + state);
+    public void sendNodeStateUpdate(String flowId, String nodeId, NodeState state) {
+        if (batchingEnabled) {
+            synchronized (publishLock) {
+                NodeStateMessage message = history.record(nodeId, state);
+                // A newer state for the same node replaces the one still waiting in this window
+                pendingUpdates.put(nodeId, message);
+                pendingFlows.put(nodeId, flowId);
+                publications.add(() -> history.dispatch(message));
+            }
+            publishQueued();
+            if (flushScheduled.compareAndSet(false, true)) {
+                flushExecutor.schedule(this::flush, batchWindow.toNanos(), TimeUnit.NANOSECONDS);
+            }
+            return;
+        }
+        synchronized (publishLock) {
+            NodeStateMessage message = history.record(nodeId, state);
+            publications.add(() -> publish(flowId, message));
+        }
+        publishQueued();
+    }
+
+    /**
+     * Send everything queued unless another thread is at it, which then also sends what was queued here
+     */
+    private void publishQueued() {
+        if (pendingPublications.getAndIncrement() != 0) {
+            return;
+        }
+        int seen = 1;
+        do {
+            Runnable publication;
+            while ((publication = publications.poll()) != null) {
+                try {
+                    publication.run();
+                } catch (RuntimeException e) {
+                    log.atError().setCause(e).log("Node state update could not be sent");
+                }
+            }
+            seen = pendingPublications.addAndGet(-seen);
+        } while (seen != 0);
+    }
+
+    private void publish(String flowId, NodeStateMessage message) {
+        history.dispatch(message);
+        String nodeTopic = subscribedNodeTopic(flowId, message.getNodeId());
+        if (nodeTopic == null) {
+            messagingTemplate.convertAndSend(NODE_STATE_TOPIC, message);
+        } else {
+            sendToBoth(message, nodeTopic);
+        }
+        if (binarySubscribed()) {
+            sendBinary(NodeStateBinaryCodec.encode(message));
+        }
+        nodeStateMessages.increment();
+        log.atDebug().addKeyValue("nodeId", message.getNodeId()).addKeyValue("state", message.getState())
+                .addKeyValue("sequence", message.getSequence()).log("Sent node state update");
+    }
+
+    /**
+     * Send all buffered updates as one batch. Called at the end of each batch window.
+     * @return number of updates sent
+     */
+    public synchronized int flush() {
+        // Reset first: an update arriving while draining either joins this batch or schedules the next one
+        flushScheduled.set(false);
+        if (pendingUpdates.isEmpty()) {
+            return 0;
+        }
+        List<NodeStateMessage> batch = new ArrayList<>(pendingUpdates.size());
+        List<String> flowIds = new ArrayList<>(pendingUpdates.size());
+        synchronized (publishLock) {
+            // Draining under the lock keeps every update of this batch ahead of the next one
+            for (String nodeId : pendingUpdates.keySet()) {
+                NodeStateMessage message = pendingUpdates.remove(nodeId);
+                if (message != null) {
+                    batch.add(message);
+                }
+            }
+            if (batch.isEmpty()) {
+                return 0;
+            }
+            batch.sort(Comparator.comparingLong(NodeStateMessage::getSequence));
+            for (NodeStateMessage message : batch) {
+                flowIds.add(pendingFlows.remove(message.getNodeId()));
+            }
+            publications.add(() -> publishBatch(batch, flowIds));
+        }
+        publishQueued();
+        return batch.size();
+    }
+
+    private void publishBatch(List<NodeStateMessage> batch, List<String> flowIds) {
+        messagingTemplate.convertAndSend(NODE_STATE_TOPIC, batch);
+        if (binarySubscribed()) {
+            sendBinary(NodeStateBinaryCodec.encode(batch));
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            NodeStateMessage message = batch.get(i);
+            String flowId = flowIds.get(i);
+            String nodeTopic = flowId != null ? subscribedNodeTopic(flowId, message.getNodeId()) : null;
+            if (nodeTopic != null) {
+                messagingTemplate.convertAndSend(nodeTopic, message);
+                nodeTopicMessages.increment();
+            }
+        }
+        nodeStateBatches.increment();
+        batchSizes.record(batch.size());
+        log.atDebug().addKeyValue("updates", batch.size()).log("Sent node state batch");
+    }
+
+    /**
+     * @return the node's topic, or null if no subscription matches it
+     */
+    private String subscribedNodeTopic(String flowId, String nodeId) {
+        if (subscriptions == null) {
+            return null;
+        }
+        String nodeTopic = nodeTopic(flowId, nodeId);
+        return subscriptions.hasSubscriptions(nodeTopic) ? nodeTopic : null;
+    }
+
+    /**
+     * @return true if the binary topic is enabled and, as far as known, has a subscriber
+     */
+    private boolean binarySubscribed() {
+        return binaryEnabled && (subscriptions == null || subscriptions.hasSubscriptions(NODE_STATE_BINARY_TOPIC));
+    }
+
+    private void sendToBoth(NodeStateMessage message, String nodeTopic) {
+        // Converted once; each destination gets a copy of the headers around the same payload
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+        Message<?> frame = messagingTemplate.getMessageConverter().toMessage(message, accessor.getMessageHeaders());
+        if (frame == null) {
+            throw new MessageConversionException("Unable to convert node state update of " + message.getNodeId());
+        }
+        messagingTemplate.send(NODE_STATE_TOPIC, frame);
+        messagingTemplate.send(nodeTopic, frame);
+        nodeTopicMessages.increment();
+    }
+
+    private void sendBinary(byte[] frame) {
+        // Sent as is: no message converter touches the payload
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+        accessor.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        accessor.setLeaveMutable(true);
+        Message<byte[]> message = MessageBuilder.createMessage(frame, accessor.getMessageHeaders());
+        messagingTemplate.send(NODE_STATE_BINARY_TOPIC, message);
+        nodeStateBinaryFrames.increment();
+    }
+
+    /**
+     * Send the status or progress of a Git job to the job's own topic
+     * @param update the job update
+     */
+    public void sendGitJobUpdate(GitJobUpdate update) {
+        messagingTemplate.convertAndSend(gitJobTopic(update.getJobId()), update);
+        gitJobMessages.increment();
+    }
+
+    /**
+     * @param jobId the ID of a Git job
+     * @return the topic on which updates of the job are sent
+     */
+    public static String gitJobTopic(String jobId) {
+        return GIT_JOB_TOPIC_PREFIX + jobId;
+    }
+
+    /**
+     * @return the numbered history of the updates sent by this service
+     */
+    public NodeStateHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * @param flowId the ID of a flow
+     * @param nodeId the ID of a node in the flow
+     * @return the topic on which updates of the node are sent; IDs are percent-encoded path segments
+     */
+    public static String nodeTopic(String flowId, String nodeId) {
+        return FLOW_TOPIC_PREFIX + UriUtils.encodePathSegment(flowId, StandardCharsets.UTF_8)
+                + "/nodes/" + UriUtils.encodePathSegment(nodeId, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return true if updates are sent in batches
+     */
+    public boolean isBatchingEnabled() {
+        return batchingEnabled;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (flushExecutor != null) {
+            flushExecutor.shutdownNow();
+            flush();
+        }
     }
 }
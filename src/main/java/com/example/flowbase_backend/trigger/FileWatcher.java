@@ -0,0 +1,464 @@
+package com.example.flowbase_backend.trigger;
+
+import com.example.flowbase_backend.scheduling.TimerWheel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Watches directories for files whose name matches a pattern and notifies a listener when
+ * such a file is created or modified.
+ * <p>
+ * Directories are registered with the file system's native {@link WatchService} (inotify on
+ * Linux), so a single thread waiting for watch keys serves every watched directory and a new
+ * file is reported within milliseconds. Triggers on the same directory share one watch key;
+ * plain file names are looked up in a map, only glob patterns are matched one by one.
+ * <p>
+ * A directory that cannot be watched natively, because it does not exist yet, was deleted, or
+ * the file system has no native watch support, is polled instead. The poll interval starts at
+ * the minimum, doubles after every poll without a change up to the maximum, and drops back to
+ * the minimum as soon as something changes. Polls are scheduled on the timer wheel and run on
+ * a separate thread that is only created when needed. Once a polled directory can be watched
+ * natively, polling for it stops.
+ * <p>
+ * A file that already exists when a trigger is added is reported right away. The same change
+ * may be reported more than once, so listeners should be idempotent.
+ */
+public class FileWatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(FileWatcher.class);
+    private static final String GLOB_CHARACTERS = "*?[]{}";
+
+    private final WatchService watchService;
+    private final TimerWheel timerWheel;
+    private final long minPollIntervalNanos;
+    private final long maxPollIntervalNanos;
+
+    private final Map<Path, WatchedDirectory> directories = new ConcurrentHashMap<>();
+    private final Map<WatchKey, WatchedDirectory> directoriesByKey = new ConcurrentHashMap<>();
+    private ExecutorService poller;
+    private Thread thread;
+    private volatile boolean running = true;
+
+    /**
+     * @param watchService native watch service, or null to poll every directory
+     * @param timerWheel timer wheel on which polls are scheduled
+     * @param minPollInterval poll interval right after a change
+     * @param maxPollInterval poll interval of a directory that has not changed for a while
+     */
+    public FileWatcher(WatchService watchService, TimerWheel timerWheel,
+                       Duration minPollInterval, Duration maxPollInterval) {
+        if (minPollInterval.isNegative() || minPollInterval.isZero() || maxPollInterval.compareTo(minPollInterval) < 0) {
+            throw new IllegalArgumentException("Poll intervals must satisfy 0 < min <= max");
+        }
+        this.watchService = watchService;
+        this.timerWheel = timerWheel;
+        this.minPollIntervalNanos = minPollInterval.toNanos();
+        this.maxPollIntervalNanos = maxPollInterval.toNanos();
+    }
+
+    /**
+     * Open the native watch service of a file system
+     * @param fileSystem the file system
+     * @return the watch service, or null if the file system only offers the JDK's polling fallback
+     */
+    public static WatchService nativeWatchService(FileSystem fileSystem) {
+        try {
+            WatchService service = fileSystem.newWatchService();
+            // The JDK polls on its own with a fixed interval of seconds where there is no native API
+            if (service.getClass().getSimpleName().equals("PollingWatchService")) {
+                service.close();
+                return null;
+            }
+            return service;
+        } catch (IOException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Start the thread that waits for native watch events. Does nothing without a watch service.
+     * @param threadName name of the watcher thread
+     */
+    public synchronized void start(String threadName) {
+        if (watchService == null || thread != null) {
+            return;
+        }
+        thread = new Thread(this::processEvents, threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop watching. Listeners are not called afterwards.
+     */
+    public synchronized void stop() {
+        running = false;
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.atWarn().setCause(e).log("Failed to close watch service");
+            }
+        }
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+        for (WatchedDirectory directory : directories.values()) {
+            directory.cancelPoll();
+        }
+    }
+
+    /**
+     * Notify a listener about files in a directory whose name matches a pattern
+     * @param directory the directory; it does not need to exist yet
+     * @param fileNamePattern a file name, or a glob such as {@code *.csv}
+     * @param listener called with the path of each matching file that is created or modified
+     * @return handle to stop the notifications
+     */
+    public synchronized Registration watch(Path directory, String fileNamePattern, Consumer<Path> listener) {
+        Objects.requireNonNull(fileNamePattern, "fileNamePattern");
+        Objects.requireNonNull(listener, "listener");
+        if (!running) {
+            throw new IllegalStateException("File watcher is stopped");
+        }
+        Path path = directory.toAbsolutePath().normalize();
+        Trigger trigger = new Trigger(path, fileNamePattern, listener);
+        WatchedDirectory watched = directories.get(path);
+        if (watched == null) {
+            watched = new WatchedDirectory(path);
+            directories.put(path, watched);
+            watched.add(trigger);
+            if (!register(watched)) {
+                startPolling(watched);
+            }
+        } else {
+            watched.add(trigger);
+        }
+        reportExisting(watched, trigger);
+        return new Registration(trigger);
+    }
+
+    /**
+     * @return number of directories with at least one trigger
+     */
+    public int watchedDirectories() {
+        return directories.size();
+    }
+
+    /**
+     * @return number of watched directories that are currently polled
+     */
+    public int polledDirectories() {
+        int polled = 0;
+        for (WatchedDirectory directory : directories.values()) {
+            if (directory.key == null) {
+                polled++;
+            }
+        }
+        return polled;
+    }
+
+    private synchronized void remove(Trigger trigger) {
+        WatchedDirectory watched = directories.get(trigger.directory);
+        if (watched == null || !watched.remove(trigger) || !watched.isEmpty()) {
+            return;
+        }
+        directories.remove(watched.path);
+        if (watched.key != null) {
+            directoriesByKey.remove(watched.key);
+            watched.key.cancel();
+        }
+        watched.cancelPoll();
+    }
+
+    private boolean register(WatchedDirectory watched) {
+        if (watchService == null || !running) {
+            return false;
+        }
+        try {
+            WatchKey key = watched.path.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watched.key = key;
+            directoriesByKey.put(key, watched);
+            return true;
+        } catch (IOException | ClosedWatchServiceException e) {
+            // Most likely the directory does not exist (yet)
+            return false;
+        }
+    }
+
+    private void processEvents() {
+        while (running) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            WatchedDirectory watched = directoriesByKey.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (watched == null) {
+                    continue;
+                }
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // Events were lost, so report everything that is there now
+                    reportExisting(watched, null);
+                } else {
+                    dispatch(watched, (Path) event.context());
+                }
+            }
+            if (!key.reset()) {
+                // The directory was deleted or became inaccessible; poll until it is back
+                directoriesByKey.remove(key);
+                if (watched != null) {
+                    synchronized (this) {
+                        if (directories.get(watched.path) == watched && watched.key == key) {
+                            watched.key = null;
+                            startPolling(watched);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void startPolling(WatchedDirectory watched) {
+        if (poller == null) {
+            poller = Executors.newSingleThreadExecutor(runnable -> {
+                Thread pollerThread = new Thread(runnable, "file-trigger-poller");
+                pollerThread.setDaemon(true);
+                return pollerThread;
+            });
+        }
+        watched.snapshot = list(watched.path);
+        watched.pollIntervalNanos = minPollIntervalNanos;
+        schedulePoll(watched);
+    }
+
+    private void schedulePoll(WatchedDirectory watched) {
+        ExecutorService executor = poller;
+        watched.nextPoll = timerWheel.schedule(() -> {
+            if (running) {
+                executor.execute(() -> poll(watched));
+            }
+        }, Duration.ofNanos(watched.pollIntervalNanos));
+    }
+
+    private void poll(WatchedDirectory watched) {
+        synchronized (this) {
+            if (!running || directories.get(watched.path) != watched) {
+                return;
+            }
+            if (Files.isDirectory(watched.path) && register(watched)) {
+                // Watched natively from now on; report what appeared since the last poll
+                diff(watched, list(watched.path));
+                return;
+            }
+        }
+        boolean changed = diff(watched, list(watched.path));
+        watched.pollIntervalNanos = changed
+                ? minPollIntervalNanos
+                : Math.min(watched.pollIntervalNanos * 2, maxPollIntervalNanos);
+        synchronized (this) {
+            if (running && directories.get(watched.path) == watched) {
+                schedulePoll(watched);
+            }
+        }
+    }
+
+    private boolean diff(WatchedDirectory watched, Map<Path, FileTime> current) {
+        Map<Path, FileTime> previous = watched.snapshot;
+        boolean changed = current.size() != previous.size();
+        for (Map.Entry<Path, FileTime> entry : current.entrySet()) {
+            if (!entry.getValue().equals(previous.get(entry.getKey()))) {
+                changed = true;
+                dispatch(watched, entry.getKey());
+            }
+        }
+        watched.snapshot = current;
+        return changed;
+    }
+
+    private static Map<Path, FileTime> list(Path directory) {
+        Map<Path, FileTime> files = new HashMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                try {
+                    files.put(file.getFileName(), Files.getLastModifiedTime(file));
+                } catch (IOException e) {
+                    // Deleted while listing
+                }
+            }
+        } catch (IOException e) {
+            // Directory does not exist (yet)
+        }
+        return files;
+    }
+
+    /**
+     * Report the files that already exist, to one trigger or to all triggers of the directory
+     */
+    private void reportExisting(WatchedDirectory watched, Trigger only) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(watched.path)) {
+            for (Path file : stream) {
+                Path fileName = file.getFileName();
+                if (only == null) {
+                    dispatch(watched, fileName);
+                } else if (only.matches(fileName)) {
+                    only.fire(file);
+                }
+            }
+        } catch (IOException e) {
+            // Directory does not exist (yet)
+        }
+    }
+
+    private void dispatch(WatchedDirectory watched, Path fileName) {
+        Path file = watched.path.resolve(fileName);
+        List<Trigger> exact = watched.byName.get(fileName.toString());
+        if (exact != null) {
+            for (Trigger trigger : exact) {
+                trigger.fire(file);
+            }
+        }
+        for (Trigger trigger : watched.globs) {
+            if (trigger.matches(fileName)) {
+                trigger.fire(file);
+            }
+        }
+    }
+
+    /**
+     * Handle returned by {@link #watch}
+     */
+    public final class Registration {
+
+        private final Trigger trigger;
+
+        private Registration(Trigger trigger) {
+            this.trigger = trigger;
+        }
+
+        /**
+         * Stop notifying the listener
+         */
+        public void cancel() {
+            trigger.cancelled = true;
+            remove(trigger);
+        }
+    }
+
+    private final class Trigger {
+
+        final Path directory;
+        final String pattern;
+        final PathMatcher matcher;
+        final Consumer<Path> listener;
+        volatile boolean cancelled;
+
+        Trigger(Path directory, String pattern, Consumer<Path> listener) {
+            this.directory = directory;
+            this.pattern = pattern;
+            this.matcher = isGlob(pattern) ? directory.getFileSystem().getPathMatcher("glob:" + pattern) : null;
+            this.listener = listener;
+        }
+
+        boolean matches(Path fileName) {
+            return matcher != null ? matcher.matches(fileName) : pattern.equals(fileName.toString());
+        }
+
+        void fire(Path file) {
+            if (cancelled || !running) {
+                return;
+            }
+            try {
+                listener.accept(file);
+            } catch (RuntimeException e) {
+                log.atError().addKeyValue("file", file).setCause(e).log("File trigger listener failed");
+            }
+        }
+
+        private static boolean isGlob(String pattern) {
+            for (int i = 0; i < pattern.length(); i++) {
+                if (GLOB_CHARACTERS.indexOf(pattern.charAt(i)) >= 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class WatchedDirectory {
+
+        final Path path;
+        // File name -> triggers for that exact name; glob triggers are kept separately
+        final Map<String, List<Trigger>> byName = new ConcurrentHashMap<>();
+        final List<Trigger> globs = new CopyOnWriteArrayList<>();
+        volatile WatchKey key;
+
+        // Polling state, only used while key is null
+        volatile Map<Path, FileTime> snapshot = Map.of();
+        volatile long pollIntervalNanos;
+        volatile TimerWheel.Timeout nextPoll;
+
+        WatchedDirectory(Path path) {
+            this.path = path;
+        }
+
+        void add(Trigger trigger) {
+            if (trigger.matcher != null) {
+                globs.add(trigger);
+            } else {
+                byName.computeIfAbsent(trigger.pattern, name -> new CopyOnWriteArrayList<>()).add(trigger);
+            }
+        }
+
+        boolean remove(Trigger trigger) {
+            if (trigger.matcher != null) {
+                return globs.remove(trigger);
+            }
+            List<Trigger> triggers = byName.get(trigger.pattern);
+            if (triggers == null || !triggers.remove(trigger)) {
+                return false;
+            }
+            if (triggers.isEmpty()) {
+                byName.remove(trigger.pattern);
+            }
+            return true;
+        }
+
+        boolean isEmpty() {
+            return byName.isEmpty() && globs.isEmpty();
+        }
+
+        void cancelPoll() {
+            TimerWheel.Timeout timeout = nextPoll;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+    }
+}
@@ -1,83 +1,152 @@
 package com.example.flowbase_backend;
 
+import com.example.flowbase_backend.engine.NodeDefinition;
+import com.example.flowbase_backend.engine.NodeExecutionEngine;
+import com.example.flowbase_backend.engine.NodeState;
+import com.example.flowbase_backend.model.NodeStateMessage;
+import com.example.flowbase_backend.scheduling.VirtualTime;
+import com.example.flowbase_backend.service.DelayedActivationService;
 import com.example.flowbase_backend.service.NodeService;
+import com.example.flowbase_backend.service.WebSocketService;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
- * Test class for debugging node state transitions
+ * Tests for node state transitions, run on virtual time so no test waits for the clock
  */
-@SpringBootTest
 public class NodeStateTransitionTest {
 
-    @Autowired
+    private static final Duration TICK = Duration.ofMillis(10);
+    private static final Duration NODE_A_ACTIVATION_DELAY = Duration.ofSeconds(10);
+
+    private VirtualTime time;
     private NodeService nodeService;
+    private final List<String> broadcasts = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        time = new VirtualTime(TICK, 512);
+        NodeExecutionEngine engine = new NodeExecutionEngine(time.getTimerWheel(), time, 16);
+        WebSocketService webSocketService = new WebSocketService(new SimpMessagingTemplate((message, timeout) -> {
+            NodeStateMessage update = (NodeStateMessage) message.getPayload();
+            broadcasts.add(time.elapsed().toMillis() + "ms " + update.getNodeId() + " " + update.getState());
+            return true;
+        }));
+        nodeService = new NodeService(webSocketService, engine,
+                new DelayedActivationService(time.getTimerWheel(), time), NODE_A_ACTIVATION_DELAY);
+    }
 
-    /**
-     * Test to debug the node state transition from RUNNING to DONE
-     * This test activates a node and then waits to observe the state transition
-     */
     @Test
-    public void testNodeStateTransition() throws InterruptedException {
-        System.out.println("[DEBUG_LOG] Starting node state transition test");
-
-        // Check initial state
-        String initialState = nodeService.getNodeStateForTesting("node-A");
-        System.out.println("[DEBUG_LOG] Initial state of node-A: " + initialState);
-        // Initial state should be INACTIVE
-        assertEquals("INACTIVE", initialState, "Initial state should be INACTIVE");
+    public void nodeTransitionsFromRunningToDoneAfterItsRunningDuration() {
+        assertEquals("INACTIVE", nodeService.getNodeStateForTesting(NodeService.NODE_A));
 
-        // Activate Node A immediately
-        System.out.println("[DEBUG_LOG] Activating Node A");
         nodeService.activateNodeAImmediately();
+        assertEquals("RUNNING", nodeService.getNodeStateForTesting(NodeService.NODE_A));
 
-        // Check state right after activation
-        String stateAfterActivation = nodeService.getNodeStateForTesting("node-A");
-        System.out.println("[DEBUG_LOG] State of node-A after activation: " + stateAfterActivation);
-        // State after activation should be RUNNING
-        assertEquals("RUNNING", stateAfterActivation, "State after activation should be RUNNING");
-
-        // Wait for the node to transition from RUNNING to DONE
-        // The scheduled task runs every second and should transition the node after 5 seconds
-        System.out.println("[DEBUG_LOG] Waiting for state transition (should take about 6 seconds)");
-
-        // Check status every second for 7 seconds
-        boolean transitionedToDone = false;
-        int transitionSecond = -1;
-
-        for (int i = 1; i <= 7; i++) {
-            Thread.sleep(1000);
-            String currentState = nodeService.getNodeStateForTesting("node-A");
-            System.out.println("[DEBUG_LOG] Second " + i + " of waiting - node-A state: " + currentState);
-
-            if ("DONE".equals(currentState) && !transitionedToDone) {
-                transitionedToDone = true;
-                transitionSecond = i;
-                System.out.println("[DEBUG_LOG] Node has transitioned to DONE state after " + i + " seconds");
-            }
-        }
+        time.advance(NodeDefinition.DEFAULT_RUNNING_DURATION.minus(TICK));
+        assertEquals("RUNNING", nodeService.getNodeStateForTesting(NodeService.NODE_A));
 
-        // Final state check
-        String finalState = nodeService.getNodeStateForTesting("node-A");
-        System.out.println("[DEBUG_LOG] Final state of node-A: " + finalState);
+        time.advance(TICK);
+        assertEquals("DONE", nodeService.getNodeStateForTesting(NodeService.NODE_A));
+        assertEquals("INACTIVE", nodeService.getNodeStateForTesting(NodeService.NODE_B));
+        assertEquals(List.of("0ms node-A RUNNING", "5000ms node-A DONE"), broadcasts);
+    }
 
-        // Assert that the node transitioned to DONE state
-        assertEquals("DONE", finalState, "Final state should be DONE");
+    @Test
+    public void triggeredNodeStartsAfterTheActivationDelay() {
+        nodeService.activateNodeA();
 
-        // Assert that the transition happened after approximately 5 seconds (NODE_RUNNING_DURATION)
-        // Allow for some timing variation (5-7 seconds is acceptable)
-        System.out.println("[DEBUG_LOG] Node transitioned to DONE after " + transitionSecond + " seconds");
-        assertTrue(transitionSecond >= 5 && transitionSecond <= 7, 
-                "Node should transition to DONE after 5-7 seconds, but took " + transitionSecond + " seconds");
+        time.advance(NODE_A_ACTIVATION_DELAY.minus(TICK));
+        assertEquals("INACTIVE", nodeService.getNodeStateForTesting(NodeService.NODE_A));
 
-        System.out.println("[DEBUG_LOG] Test completed - all assertions passed");
+        assertTrue(time.advanceUntil(() -> nodeService.getNodeStateForTesting(NodeService.NODE_A).equals("DONE"),
+                Duration.ofMinutes(1)));
+        assertEquals(List.of("10000ms node-A RUNNING", "15000ms node-A DONE"), broadcasts);
     }
 
-    private void assertTrue(boolean condition, String message) {
-        if (!condition) {
-            throw new AssertionError(message);
+    @Test
+    public void repeatedTriggersAreIgnoredWhileNodeAIsScheduledOrRunning() {
+        assertTrue(nodeService.activateNodeA());
+        time.advance(Duration.ofSeconds(5));
+        assertFalse(nodeService.activateNodeA());
+
+        time.advance(Duration.ofSeconds(5));
+        assertEquals("RUNNING", nodeService.getNodeStateForTesting(NodeService.NODE_A));
+        assertFalse(nodeService.activateNodeA());
+        assertFalse(nodeService.activateNodeAImmediately());
+
+        // Once DONE, Node A can be triggered again
+        time.advance(NodeDefinition.DEFAULT_RUNNING_DURATION);
+        assertTrue(nodeService.activateNodeA());
+        time.advance(NODE_A_ACTIVATION_DELAY);
+        assertEquals(List.of("10000ms node-A RUNNING", "15000ms node-A DONE", "25000ms node-A RUNNING"), broadcasts);
+    }
+
+    @Test
+    public void randomGraphsFinishEveryNodeExactlyAtTheEndOfItsCriticalPath() {
+        Random random = new Random(20240501L);
+        for (int scenario = 0; scenario < 2000; scenario++) {
+            VirtualTime scenarioTime = new VirtualTime(TICK, 64);
+            NodeExecutionEngine engine = new NodeExecutionEngine(scenarioTime.getTimerWheel(), scenarioTime, 16);
+            Map<String, Duration> started = new HashMap<>();
+            Map<String, Duration> done = new HashMap<>();
+            engine.addListener((nodeId, state) -> {
+                if (state == NodeState.RUNNING) {
+                    started.put(nodeId, scenarioTime.elapsed());
+                } else if (state == NodeState.DONE) {
+                    done.put(nodeId, scenarioTime.elapsed());
+                }
+            });
+
+            // Each node depends on a random subset of the nodes before it
+            int nodes = 1 + random.nextInt(8);
+            List<List<Integer>> dependencies = new ArrayList<>();
+            Duration[] durations = new Duration[nodes];
+            for (int i = 0; i < nodes; i++) {
+                List<Integer> predecessors = new ArrayList<>();
+                List<String> predecessorIds = new ArrayList<>();
+                for (int p = 0; p < i; p++) {
+                    if (random.nextInt(100) < 30) {
+                        predecessors.add(p);
+                        predecessorIds.add("n" + p);
+                    }
+                }
+                dependencies.add(predecessors);
+                durations[i] = TICK.multipliedBy(1 + random.nextInt(100));
+                engine.register(NodeDefinition.of("n" + i).dependsOn(predecessorIds).runningFor(durations[i]));
+            }
+            for (int i = 0; i < nodes; i++) {
+                if (dependencies.get(i).isEmpty()) {
+                    engine.activate("n" + i);
+                }
+            }
+
+            assertTrue(scenarioTime.advanceUntil(() -> done.size() == nodes, Duration.ofMinutes(1)),
+                    "Scenario " + scenario + " did not finish");
+            Duration[] expectedDone = new Duration[nodes];
+            for (int i = 0; i < nodes; i++) {
+                Duration expectedStart = Duration.ZERO;
+                for (int predecessor : dependencies.get(i)) {
+                    if (expectedDone[predecessor].compareTo(expectedStart) > 0) {
+                        expectedStart = expectedDone[predecessor];
+                    }
+                }
+                expectedDone[i] = expectedStart.plus(durations[i]);
+                assertEquals(expectedStart, started.get("n" + i), "Start of n" + i + " in scenario " + scenario);
+                assertEquals(expectedDone[i], done.get("n" + i), "End of n" + i + " in scenario " + scenario);
+            }
         }
     }
 }
@@ -0,0 +1,96 @@
+package com.example.flowbase_backend.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for taking tokens from buckets by key, on a clock that only moves when told to
+ */
+public class TokenBucketLimiterTest {
+
+    private final AtomicLong nanos = new AtomicLong(Long.MAX_VALUE - TimeUnit.SECONDS.toNanos(1));
+
+    @Test
+    public void fullBucketAllowsTheBurstThenOneTokenPerInterval() {
+        // Starts just before the clock wraps around
+        TokenBucketLimiter limiter = new TokenBucketLimiter(10, 3, 100, nanos::get);
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limiter.tryAcquire("client"));
+        }
+        assertFalse(limiter.tryAcquire("client"));
+        assertTrue(limiter.tryAcquire("other client"), "Every key has its own bucket");
+
+        advance(Duration.ofMillis(99));
+        assertFalse(limiter.tryAcquire("client"));
+        advance(Duration.ofMillis(1));
+        assertTrue(limiter.tryAcquire("client"));
+        assertFalse(limiter.tryAcquire("client"));
+        assertEquals(Duration.ofMillis(100), limiter.getInterval());
+
+        // An idle bucket fills up to the burst, not beyond
+        advance(Duration.ofSeconds(10));
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limiter.tryAcquire("client"));
+        }
+        assertFalse(limiter.tryAcquire("client"));
+    }
+
+    @Test
+    public void fullBucketsMakeRoomForNewKeys() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(10, 2, 2, nanos::get);
+        assertTrue(limiter.tryAcquire("first"));
+        assertTrue(limiter.tryAcquire("second"));
+
+        assertFalse(limiter.tryAcquire("third"), "No bucket is full yet");
+
+        advance(Duration.ofMillis(200));
+        assertTrue(limiter.tryAcquire("third"));
+        assertEquals(1, limiter.getKeyCount());
+    }
+
+    @Test
+    public void concurrentCallersTakeExactlyTheBurst() throws Exception {
+        int burst = 1000;
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1, burst, 10, nanos::get);
+        ExecutorService callers = Executors.newFixedThreadPool(16);
+        CountDownLatch startGate = new CountDownLatch(1);
+        AtomicInteger acquired = new AtomicInteger();
+        try {
+            for (int thread = 0; thread < 16; thread++) {
+                callers.execute(() -> {
+                    try {
+                        startGate.await();
+                        for (int i = 0; i < burst; i++) {
+                            if (limiter.tryAcquire("client")) {
+                                acquired.incrementAndGet();
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            startGate.countDown();
+        } finally {
+            callers.shutdown();
+            assertTrue(callers.awaitTermination(10, TimeUnit.SECONDS));
+        }
+        assertEquals(burst, acquired.get());
+    }
+
+    private void advance(Duration duration) {
+        nanos.addAndGet(duration.toNanos());
+    }
+}
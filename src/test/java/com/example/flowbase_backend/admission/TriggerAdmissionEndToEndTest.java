@@ -0,0 +1,106 @@
+package com.example.flowbase_backend.admission;
+
+import com.example.flowbase_backend.broker.TopicSubscriptionRegistry;
+import com.example.flowbase_backend.model.NodeStateSync;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for trigger admission behind a trusted proxy and over STOMP, on the running server
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"flowbase.trigger.rate=0.01", "flowbase.trigger.burst=1",
+                "flowbase.engine.journal.enabled=false"})
+public class TriggerAdmissionEndToEndTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TopicSubscriptionRegistry subscriptions;
+
+    @Test
+    public void clientsForwardedByATrustedProxyHaveTheirOwnBuckets() throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+
+        assertEquals(200, trigger(client, "203.0.113.1"));
+        assertEquals(429, trigger(client, "203.0.113.1"));
+        // Same connection address, the loopback proxy, but another client behind it
+        assertEquals(200, trigger(client, "203.0.113.2"));
+    }
+
+    @Test
+    public void rejectedStompTriggerIsAnsweredAndTheSessionStaysOpen() throws Exception {
+        WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+        BlockingQueue<Object> received = new LinkedBlockingQueue<>();
+        try {
+            StompSession session = stompClient.connectAsync("ws://localhost:" + port + "/ws-native",
+                    new StompSessionHandlerAdapter() { }).get(10, TimeUnit.SECONDS);
+            session.subscribe("/user/queue/errors", new Collector(Map.class, received));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (subscriptions.getSubscriptionCount() == 0) {
+                assertTrue(System.nanoTime() < deadline, "The subscription never reached the broker");
+                Thread.sleep(10);
+            }
+
+            session.send("/app/trigger/nodeA", "");
+            session.send("/app/trigger/nodeA", "");
+
+            Map<?, ?> error = (Map<?, ?>) received.poll(10, TimeUnit.SECONDS);
+            assertNotNull(error, "No rejection arrived");
+            assertEquals("/app/trigger/nodeA", error.get("destination"));
+            assertEquals(100_000, ((Number) error.get("retryAfterMs")).intValue());
+
+            // The session still serves requests
+            session.subscribe("/app/node-state", new Collector(NodeStateSync.class, received));
+            assertTrue(received.poll(10, TimeUnit.SECONDS) instanceof NodeStateSync);
+            assertTrue(session.isConnected());
+            session.disconnect();
+        } finally {
+            stompClient.stop();
+        }
+    }
+
+    private int trigger(HttpClient client, String forwardedFor) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/trigger/nodeA"))
+                .header("X-Forwarded-For", forwardedFor)
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private record Collector(Class<?> type, BlockingQueue<Object> received) implements StompFrameHandler {
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return type;
+        }
+
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            received.add(payload);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.flowbase_backend.admission;
+
+import com.example.flowbase_backend.controller.NodeController;
+import com.example.flowbase_backend.engine.NodeExecutionEngine;
+import com.example.flowbase_backend.scheduling.VirtualTime;
+import com.example.flowbase_backend.service.DelayedActivationService;
+import com.example.flowbase_backend.service.FileTriggerService;
+import com.example.flowbase_backend.service.NodeService;
+import com.example.flowbase_backend.service.NodeStateHistory;
+import com.example.flowbase_backend.service.WebSocketService;
+import com.example.flowbase_backend.trigger.FileWatcher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests for admitting node triggers over HTTP and STOMP from one token bucket per client and node
+ */
+public class TriggerAdmissionTest {
+
+    private static final Duration TICK = Duration.ofMillis(10);
+    private static final String TRIGGER_DESTINATION = "/app/trigger/nodeA";
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<Message<?>> errors = new ArrayList<>();
+    private VirtualTime time;
+    private FileWatcher fileWatcher;
+    private TriggerAdmission admission;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setUp() {
+        time = new VirtualTime(TICK, 512);
+        NodeExecutionEngine engine = new NodeExecutionEngine(time.getTimerWheel(), time, 16);
+        NodeService nodeService = new NodeService(new WebSocketService(new SimpMessagingTemplate((message, timeout) -> true)),
+                engine, new DelayedActivationService(time.getTimerWheel(), time), Duration.ofSeconds(10));
+        fileWatcher = new FileWatcher(null, time.getTimerWheel(), Duration.ofSeconds(1), Duration.ofSeconds(1));
+        admission = new TriggerAdmission(new TokenBucketLimiter(1, 2, 100, nanos::get), meterRegistry);
+        mockMvc = MockMvcBuilders.standaloneSetup(new NodeController(nodeService,
+                new FileTriggerService(nodeService, fileWatcher, "Resources/hello.txt"),
+                new NodeStateHistory(16), admission)).build();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        fileWatcher.stop();
+    }
+
+    @Test
+    public void clientOverItsLimitGetsTooManyRequestsAndRepeatedTriggersAreIgnored() throws Exception {
+        mockMvc.perform(get("/trigger/nodeA")).andExpect(status().isOk())
+                .andExpect(content().string("Node A activation process started. It will be activated after 10 seconds."));
+        mockMvc.perform(get("/trigger/nodeA")).andExpect(status().isOk())
+                .andExpect(content().string("Node A is already running or its activation is already scheduled."));
+
+        mockMvc.perform(get("/activate/nodeA")).andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "1"));
+        mockMvc.perform(get("/activate/nodeA").with(request -> {
+            request.setRemoteAddr("10.0.0.2");
+            return request;
+        })).andExpect(status().isOk()).andExpect(content().string("Node A has been activated immediately."));
+
+        // The other client's activation started node-A before the scheduled one is due
+        nanos.addAndGet(Duration.ofSeconds(1).toNanos());
+        mockMvc.perform(get("/activate-node-a")).andExpect(status().isOk())
+                .andExpect(content().string("Node A is already running."));
+        mockMvc.perform(post("/nodes/node-X/activate")).andExpect(status().isNotFound());
+
+        assertEquals(4, count("admitted"));
+        assertEquals(1, count("rejected"));
+        assertEquals(2, count("duplicate"));
+    }
+
+    @Test
+    public void stompTriggersShareTheBucketOfTheClientAddress() throws Exception {
+        TriggerAdmissionInterceptor interceptor = interceptor();
+        mockMvc.perform(get("/trigger/nodeA")).andExpect(status().isOk());
+
+        Message<byte[]> trigger = send(TRIGGER_DESTINATION, "127.0.0.1", null);
+        assertSame(trigger, interceptor.preSend(trigger, null));
+        assertTrue(errors.isEmpty());
+        // Dropped, not thrown: an exception would close the session
+        assertNull(interceptor.preSend(send(TRIGGER_DESTINATION, "127.0.0.1", null), null));
+        assertEquals(1, errors.size());
+        assertEquals("/user/session-127.0.0.1/queue/errors",
+                SimpMessageHeaderAccessor.getDestination(errors.get(0).getHeaders()));
+        assertEquals("session-127.0.0.1", SimpMessageHeaderAccessor.getSessionId(errors.get(0).getHeaders()));
+        assertEquals(Map.of("destination", TRIGGER_DESTINATION,
+                "message", "Too many triggers of node-A, retry after 1000 ms",
+                "retryAfterMs", 1000L), errors.get(0).getPayload());
+
+        Message<byte[]> otherDestination = send("/app/node-state", "127.0.0.1", null);
+        assertSame(otherDestination, interceptor.preSend(otherDestination, null));
+        Message<byte[]> otherClient = send(TRIGGER_DESTINATION, "10.0.0.2", null);
+        assertSame(otherClient, interceptor.preSend(otherClient, null));
+        mockMvc.perform(get("/trigger/nodeA")).andExpect(status().isTooManyRequests());
+    }
+
+    @Test
+    public void authenticatedUsersHaveTheirOwnBucketOverHttpAndStomp() throws Exception {
+        TriggerAdmissionInterceptor interceptor = interceptor();
+        mockMvc.perform(get("/trigger/nodeA").principal(() -> "alice")).andExpect(status().isOk());
+        mockMvc.perform(get("/trigger/nodeA").principal(() -> "alice")).andExpect(status().isOk());
+
+        // Same address as alice, but another user
+        Message<byte[]> bob = send(TRIGGER_DESTINATION, "127.0.0.1", () -> "bob");
+        assertSame(bob, interceptor.preSend(bob, null));
+        assertNull(interceptor.preSend(send(TRIGGER_DESTINATION, "10.0.0.2", () -> "alice"), null));
+        mockMvc.perform(get("/trigger/nodeA")).andExpect(status().isOk());
+        assertEquals(1, errors.size());
+    }
+
+    private TriggerAdmissionInterceptor interceptor() {
+        return new TriggerAdmissionInterceptor(admission, Map.of(TRIGGER_DESTINATION, NodeService.NODE_A),
+                new SimpMessagingTemplate((message, timeout) -> errors.add(message)));
+    }
+
+    private static Message<byte[]> send(String destination, String clientAddress, Principal user) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setDestination(destination);
+        headers.setSessionId("session-" + clientAddress);
+        headers.setUser(user);
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(ClientAddressHandshakeInterceptor.CLIENT_ADDRESS_ATTRIBUTE, clientAddress);
+        headers.setSessionAttributes(attributes);
+        return MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders());
+    }
+
+    private double count(String outcome) {
+        return meterRegistry.get("flowbase.trigger.admission").tag("outcome", outcome).counter().count();
+    }
+}
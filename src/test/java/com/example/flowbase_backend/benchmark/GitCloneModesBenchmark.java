@@ -0,0 +1,171 @@
+package com.example.flowbase_backend.benchmark;
+
+import com.example.flowbase_backend.git.CloneOptions;
+import com.example.flowbase_backend.git.RepositoryHandleCache;
+import com.example.flowbase_backend.service.GitService;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Wall time and bytes written per clone mode, against a local bare repository with a long
+ * history on two branches.
+ * <p>
+ * The {@code bytesWritten} counter is the size of the clone directory (objects plus working
+ * tree) after each clone. The {@code reference} mode borrows objects from a mirror of the same
+ * repository, so it writes little more than the working tree.
+ * <p>
+ * Run with: {@code ./mvnw test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.flowbase_backend.benchmark.GitCloneModesBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GitCloneModesBenchmark {
+
+    private static final int FILES = 50;
+
+    @Param({"full", "shallow", "singleBranch", "noCheckout", "checkoutPaths", "reference"})
+    private String mode;
+
+    @Param({"1000"})
+    private int commits;
+
+    private Path workDir;
+    private String remoteUrl;
+    private Path mirror;
+    private Path target;
+    private GitService gitService;
+    private int cloneNumber;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class WriteCounters {
+        public long bytesWritten;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workDir = Files.createTempDirectory("git-clone-benchmark");
+        Path remote = workDir.resolve("remote.git");
+        Git.init().setBare(true).setDirectory(remote.toFile()).setInitialBranch("main").call().close();
+        remoteUrl = remote.toUri().toString();
+
+        Path seed = workDir.resolve("seed");
+        try (Git git = Git.init().setDirectory(seed.toFile()).setInitialBranch("main").call()) {
+            Files.createDirectories(seed.resolve("docs"));
+            Files.createDirectories(seed.resolve("src"));
+            for (int i = 0; i < commits; i++) {
+                // Every commit rewrites a few files, so history grows much faster than the tree
+                for (int f = i % 5; f < FILES; f += 5) {
+                    String dir = f % 2 == 0 ? "docs" : "src";
+                    Files.writeString(seed.resolve(dir + "/file-" + f + ".txt"), ("revision " + i + " of file " + f + "\n").repeat(40));
+                }
+                git.add().addFilepattern(".").call();
+                git.commit().setMessage("commit " + i).setAuthor("bench", "bench@example.com").call();
+            }
+            git.push().setRemote(remoteUrl).add("main").call();
+            git.checkout().setCreateBranch(true).setName("feature").call();
+            for (int i = 0; i < commits / 4; i++) {
+                Files.writeString(seed.resolve("src/feature.txt"), ("feature " + i + "\n").repeat(200));
+                git.add().addFilepattern(".").call();
+                git.commit().setMessage("feature " + i).setAuthor("bench", "bench@example.com").call();
+            }
+            git.push().setRemote(remoteUrl).add("feature").call();
+        }
+
+        mirror = workDir.resolve("mirror.git");
+        Git.cloneRepository().setURI(remoteUrl).setDirectory(mirror.toFile()).setMirror(true).call().close();
+        gitService = new GitService(new RepositoryHandleCache(0));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        delete(workDir);
+    }
+
+    @Setup(Level.Invocation)
+    public void nextTarget() {
+        target = workDir.resolve("clone-" + cloneNumber++);
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteTarget() {
+        delete(target);
+    }
+
+    @Benchmark
+    public void cloneRepository(WriteCounters counters) throws Exception {
+        gitService.cloneRepository(remoteUrl, target.toString(), null, null, options(), NullProgressMonitor.INSTANCE).close();
+        counters.bytesWritten += size(target);
+    }
+
+    private CloneOptions options() {
+        switch (mode) {
+            case "shallow":
+                return CloneOptions.FULL.withDepth(1);
+            case "singleBranch":
+                return CloneOptions.FULL.withSingleBranch(true);
+            case "noCheckout":
+                return CloneOptions.FULL.withNoCheckout(true);
+            case "checkoutPaths":
+                return CloneOptions.FULL.withCheckoutPaths(List.of("docs"));
+            case "reference":
+                return CloneOptions.FULL.withReferenceRepository(mirror.toString());
+            default:
+                return CloneOptions.FULL;
+        }
+    }
+
+    private static long size(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(Files::isRegularFile).mapToLong(path -> path.toFile().length()).sum();
+        }
+    }
+
+    private static void delete(Path directory) {
+        if (directory == null || !Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(GitCloneModesBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
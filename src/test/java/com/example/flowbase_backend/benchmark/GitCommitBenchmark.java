@@ -0,0 +1,118 @@
+package com.example.flowbase_backend.benchmark;
+
+import com.example.flowbase_backend.git.RepositoryHandleCache;
+import com.example.flowbase_backend.service.GitService;
+import org.eclipse.jgit.api.Git;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Committing a 3-file change in a repository with a large working tree.
+ * <p>
+ * {@code addAll} is the previous implementation: {@code git add .} followed by {@code git commit}.
+ * {@code statusScan} lets GitService find the changed files with a status scan, which only
+ * compares stat data for unchanged files. {@code explicitPaths} passes the three paths, so
+ * nothing else is visited.
+ * <p>
+ * Run with: {@code ./mvnw test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.flowbase_backend.benchmark.GitCommitBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class GitCommitBenchmark {
+
+    private static final int DIRECTORIES = 100;
+    private static final List<String> CHANGED = List.of("dir-0/file-0.txt", "dir-1/file-1.txt", "dir-2/file-2.txt");
+
+    @Param({"addAll", "statusScan", "explicitPaths"})
+    private String mode;
+
+    @Param({"100000"})
+    private int files;
+
+    private Path repository;
+    private GitService gitService;
+    private Git git;
+    private int revision;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        repository = Files.createTempDirectory("git-commit-benchmark");
+        for (int f = 0; f < files; f++) {
+            Path directory = Files.createDirectories(repository.resolve("dir-" + f % DIRECTORIES));
+            Files.writeString(directory.resolve("file-" + f + ".txt"), "file " + f + "\n");
+        }
+        git = Git.init().setDirectory(repository.toFile()).call();
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage("initial").setAuthor("bench", "bench@example.com").call();
+        gitService = new GitService(new RepositoryHandleCache(32));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        git.close();
+        try (Stream<Path> paths = Files.walk(repository)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void changeFiles() throws IOException {
+        revision++;
+        for (String path : CHANGED) {
+            Files.writeString(repository.resolve(path), "revision " + revision + "\n");
+        }
+    }
+
+    @Benchmark
+    public void commit() throws Exception {
+        switch (mode) {
+            case "addAll":
+                git.add().addFilepattern(".").call();
+                git.commit().setMessage("revision " + revision).setAuthor("bench", "bench@example.com").call();
+                break;
+            case "statusScan":
+                gitService.commitChanges(repository.toString(), "revision " + revision, "bench", "bench@example.com");
+                break;
+            default:
+                gitService.commitChanges(repository.toString(), "revision " + revision, "bench", "bench@example.com", CHANGED);
+                break;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(GitCommitBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.flowbase_backend.benchmark;
+
+import com.example.flowbase_backend.git.MirrorCache;
+import com.example.flowbase_backend.git.RepositoryHandleCache;
+import com.example.flowbase_backend.service.GitService;
+import org.eclipse.jgit.api.Git;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 50 clones of the same repository into separate working directories, with and without the
+ * mirror cache. Each invocation starts from an empty cache, so the first clone with the cache
+ * fills the mirror and the other 49 read from it.
+ * <p>
+ * The {@code bytesFromRemote} counter is the size of the objects stored from the remote: every
+ * clone's objects without the cache, the mirror's objects with it. The remote is a local bare
+ * repository, so wall time shows the local cost only; over a network the saved transfer
+ * dominates.
+ * <p>
+ * Run with: {@code ./mvnw test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.flowbase_backend.benchmark.GitMirrorCacheBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GitMirrorCacheBenchmark {
+
+    private static final int CLONES = 50;
+    private static final int FILES = 50;
+
+    @Param({"false", "true"})
+    private boolean mirrorCache;
+
+    @Param({"500"})
+    private int commits;
+
+    private Path workDir;
+    private String remoteUrl;
+    private Path invocationDir;
+    private MirrorCache cache;
+    private GitService gitService;
+    private int invocationNumber;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class TransferCounters {
+        public long bytesFromRemote;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workDir = Files.createTempDirectory("git-mirror-benchmark");
+        Path remote = workDir.resolve("remote.git");
+        Git.init().setBare(true).setDirectory(remote.toFile()).setInitialBranch("main").call().close();
+        remoteUrl = remote.toUri().toString();
+
+        Path seed = workDir.resolve("seed");
+        try (Git git = Git.init().setDirectory(seed.toFile()).setInitialBranch("main").call()) {
+            for (int i = 0; i < commits; i++) {
+                for (int f = i % 5; f < FILES; f += 5) {
+                    Files.writeString(seed.resolve("file-" + f + ".txt"), ("revision " + i + " of file " + f + "\n").repeat(40));
+                }
+                git.add().addFilepattern(".").call();
+                git.commit().setMessage("commit " + i).setAuthor("bench", "bench@example.com").call();
+            }
+            git.push().setRemote(remoteUrl).add("main").call();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        delete(workDir);
+    }
+
+    @Setup(Level.Invocation)
+    public void emptyCache() throws IOException {
+        invocationDir = workDir.resolve("invocation-" + invocationNumber++);
+        cache = mirrorCache ? new MirrorCache(invocationDir.resolve("mirrors"), Long.MAX_VALUE) : null;
+        gitService = new GitService(new RepositoryHandleCache(0), cache);
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteClones() {
+        delete(invocationDir);
+    }
+
+    @Benchmark
+    public void cloneFiftyTimes(TransferCounters counters) throws Exception {
+        long stored = 0;
+        for (int i = 0; i < CLONES; i++) {
+            Path target = invocationDir.resolve("clone-" + i);
+            gitService.cloneRepository(remoteUrl, target.toString(), null, null).close();
+            if (cache == null) {
+                stored += size(target.resolve(".git/objects"));
+            }
+        }
+        counters.bytesFromRemote += cache == null ? stored : cache.getDiskUsageBytes();
+    }
+
+    private static long size(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(Files::isRegularFile).mapToLong(path -> path.toFile().length()).sum();
+        }
+    }
+
+    private static void delete(Path directory) {
+        if (directory == null || !Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(GitMirrorCacheBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
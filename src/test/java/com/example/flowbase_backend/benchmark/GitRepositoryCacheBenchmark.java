@@ -0,0 +1,94 @@
+package com.example.flowbase_backend.benchmark;
+
+import com.example.flowbase_backend.git.RepositoryHandleCache;
+import com.example.flowbase_backend.service.GitService;
+import org.eclipse.jgit.api.Git;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares repeated pull and commit latency with a repository opened per request
+ * ({@code cold}, a cache that keeps nothing open) and with a cached repository handle.
+ * <p>
+ * The remote is a bare repository on the local disk, so the score is dominated by opening
+ * the repository and the Git work itself rather than by the network.
+ * <p>
+ * Run with: {@code ./mvnw test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.flowbase_backend.benchmark.GitRepositoryCacheBenchmark}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GitRepositoryCacheBenchmark {
+
+    @Param({"cold", "cached"})
+    private String handles;
+
+    private Path workDir;
+    private String localPath;
+    private GitService gitService;
+    private long counter;
+
+    @Setup
+    public void setUp() throws Exception {
+        workDir = Files.createTempDirectory("git-cache-benchmark");
+        File remote = workDir.resolve("remote.git").toFile();
+        Git.init().setBare(true).setDirectory(remote).call().close();
+
+        Path clone = workDir.resolve("clone");
+        try (Git git = Git.cloneRepository().setURI(remote.toURI().toString()).setDirectory(clone.toFile()).call()) {
+            Files.writeString(clone.resolve("README.md"), "benchmark");
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("initial").setAuthor("bench", "bench@example.com").call();
+            git.push().call();
+        }
+        localPath = clone.toString();
+        gitService = new GitService(new RepositoryHandleCache(handles.equals("cached") ? 32 : 0));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        try (var paths = Files.walk(workDir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public void pull() throws Exception {
+        gitService.pullChanges(localPath, null, null);
+    }
+
+    @Benchmark
+    public void commit() throws Exception {
+        Files.writeString(Path.of(localPath, "counter.txt"), Long.toString(counter++));
+        gitService.commitChanges(localPath, "change " + counter, "bench", "bench@example.com");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(GitRepositoryCacheBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.flowbase_backend.benchmark;
+
+import com.example.flowbase_backend.FlowBaseBackendApplication;
+import com.example.flowbase_backend.broker.TopicSubscriptionRegistry;
+import com.example.flowbase_backend.service.NodeStateStream;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Heap and threads that idle subscribers to the node state updates cost the server, Server-Sent
+ * Events against SockJS/STOMP.
+ * <p>
+ * Starts the application in this JVM, then opens N connections to {@code /node-state/stream},
+ * waits until all of them are subscribed, and measures the heap after a full GC against the
+ * heap before. The connections are closed and the same is done with N raw WebSocket sessions on
+ * {@code /ws/websocket}, each sending STOMP CONNECT and a SUBSCRIBE to {@code /topic/node-activated}.
+ * The clients are plain blocking socket channels that never read; their own objects are in the
+ * same heap and count towards both results alike.
+ * <p>
+ * Connections are spread over 127.0.0.1 to 127.0.0.4 so the client side has enough ports. Raise
+ * the open file limit first, e.g. {@code ulimit -n 200000} for 50,000 connections.
+ * <p>
+ * Run with: {@code ./mvnw test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.flowbase_backend.benchmark.IdleConnectionMemoryHarness
+ * -Dexec.args="50000"} (connections)
+ */
+public class IdleConnectionMemoryHarness {
+
+    private static final int LOOPBACK_ADDRESSES = 4;
+    private static final String WEBSOCKET_KEY = "dGhlIHNhbXBsZSBub25jZQ==";
+
+    private final int connections;
+    private ConfigurableApplicationContext context;
+    private int port;
+
+    public IdleConnectionMemoryHarness(int connections) {
+        this.connections = connections;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        new IdleConnectionMemoryHarness(connections).run();
+    }
+
+    public void run() throws Exception {
+        context = SpringApplication.run(FlowBaseBackendApplication.class,
+                "--server.port=0",
+                "--server.tomcat.max-connections=" + (connections + 1000),
+                "--server.tomcat.accept-count=10000",
+                "--flowbase.sse.max-subscribers=" + connections,
+                "--flowbase.sse.heartbeat=1s",
+                "--flowbase.engine.journal.enabled=false",
+                "--logging.level.root=WARN");
+        port = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+        NodeStateStream stream = context.getBean(NodeStateStream.class);
+        TopicSubscriptionRegistry registry = context.getBean(TopicSubscriptionRegistry.class);
+        try {
+            System.out.printf("%-6s %12s %14s %10s %10s%n", "", "connections", "heap/conn (B)", "threads", "open (ms)");
+            measure("SSE", this::openEventStream, stream::getSubscriberCount);
+            measure("STOMP", this::openStompSession, registry::getSubscriptionCount);
+        } finally {
+            context.close();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Connector {
+        SocketChannel open(int index) throws IOException;
+    }
+
+    private void measure(String transport, Connector connector, IntSupplier subscribed) throws Exception {
+        long heapBefore = usedHeapAfterGc();
+        int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+        List<SocketChannel> channels = new ArrayList<>(connections);
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < connections; i++) {
+                channels.add(connector.open(i));
+            }
+            awaitCount(subscribed, connections);
+            long openMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            long heapAfter = usedHeapAfterGc();
+            int threadsAfter = ManagementFactory.getThreadMXBean().getThreadCount();
+            System.out.printf("%-6s %12d %14d %10d %10d%n", transport, connections,
+                    (heapAfter - heapBefore) / connections, threadsAfter - threadsBefore, openMillis);
+        } finally {
+            for (SocketChannel channel : channels) {
+                channel.close();
+            }
+            // Closed streams are noticed at the next heartbeat, closed sessions right away
+            awaitCount(subscribed, 0);
+        }
+    }
+
+    private SocketChannel connect(int index) throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0." + (1 + index % LOOPBACK_ADDRESSES), port));
+        channel.socket().setReceiveBufferSize(4096);
+        return channel;
+    }
+
+    private SocketChannel openEventStream(int index) throws IOException {
+        SocketChannel channel = connect(index);
+        write(channel, "GET /node-state/stream HTTP/1.1\r\nHost: localhost\r\nAccept: text/event-stream\r\n\r\n"
+                .getBytes(StandardCharsets.US_ASCII));
+        return channel;
+    }
+
+    private SocketChannel openStompSession(int index) throws IOException {
+        SocketChannel channel = connect(index);
+        write(channel, ("GET /ws/websocket HTTP/1.1\r\nHost: localhost\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: " + WEBSOCKET_KEY + "\r\nSec-WebSocket-Version: 13\r\n"
+                + "Sec-WebSocket-Protocol: v12.stomp\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        awaitHandshake(channel);
+        write(channel, textFrame("CONNECT\naccept-version:1.2\nhost:localhost\nheart-beat:0,0\n\n\0"));
+        write(channel, textFrame("SUBSCRIBE\nid:sub-0\ndestination:/topic/node-activated\n\n\0"));
+        return channel;
+    }
+
+    private static void awaitHandshake(SocketChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        StringBuilder response = new StringBuilder();
+        while (response.indexOf("\r\n\r\n") < 0) {
+            buffer.clear();
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Connection closed during the WebSocket handshake");
+            }
+            response.append(new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII));
+        }
+        if (!response.toString().startsWith("HTTP/1.1 101")) {
+            throw new IOException("WebSocket handshake failed: " + response.substring(0, response.indexOf("\r\n")));
+        }
+    }
+
+    /**
+     * A masked WebSocket text frame, as clients must send. The mask is all zeros, which leaves the
+     * payload as it is; the server does not check the key.
+     */
+    private static byte[] textFrame(String text) {
+        byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(payload.length + 8);
+        frame.put((byte) 0x81);
+        if (payload.length < 126) {
+            frame.put((byte) (0x80 | payload.length));
+        } else {
+            frame.put((byte) (0x80 | 126)).putShort((short) payload.length);
+        }
+        frame.putInt(0).put(payload);
+        byte[] bytes = new byte[frame.position()];
+        frame.flip().get(bytes);
+        return bytes;
+    }
+
+    private static void write(SocketChannel channel, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void awaitCount(IntSupplier count, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 120_000;
+        while (count.getAsInt() != expected) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Expected " + expected + " subscribers, have " + count.getAsInt());
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(200);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.flowbase_backend.benchmark;
+
+import com.example.flowbase_backend.engine.NodeDefinition;
+import com.example.flowbase_backend.engine.NodeExecutionEngine;
+import com.example.flowbase_backend.engine.NodeState;
+import com.example.flowbase_backend.scheduling.TimerWheel;
+import com.example.flowbase_backend.service.DelayedActivationService;
+import com.example.flowbase_backend.service.NodeService;
+import com.example.flowbase_backend.service.WebSocketService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Activation throughput of NodeService on the same work-stealing pool the application uses.
+ * <p>
+ * One operation runs {@code nodes} nodes with an empty action from RUNNING to DONE, with every
+ * transition sent through {@link WebSocketService} to a channel that drops it. With
+ * {@code independent}, every node is activated through {@link NodeService#activateNode};
+ * with {@code chain}, only the first one is, and each following node is released by its
+ * predecessor, so the score shows the cost of a dependency hand-off.
+ * <p>
+ * Run with: {@code ./mvnw test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.flowbase_backend.benchmark.NodeActivationBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NodeActivationBenchmark {
+
+    @Param({"independent", "chain"})
+    private String topology;
+
+    @Param({"1000"})
+    private int nodes;
+
+    private TimerWheel timerWheel;
+    private ForkJoinPool nodeExecutor;
+    private NodeService nodeService;
+    private String[] nodeIds;
+    private volatile CountDownLatch remaining;
+
+    @Setup
+    public void setUp() {
+        timerWheel = new TimerWheel(Duration.ofMillis(10), 64);
+        timerWheel.start("activation-benchmark-timer");
+        nodeExecutor = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+                ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        // NodeService registers its two built-in nodes as well
+        NodeExecutionEngine engine = new NodeExecutionEngine(timerWheel, nodeExecutor, nodes + 2);
+        WebSocketService webSocketService = new WebSocketService(new SimpMessagingTemplate((message, timeout) -> true));
+        nodeService = new NodeService(webSocketService, engine,
+                new DelayedActivationService(timerWheel, nodeExecutor), Duration.ZERO);
+        engine.addListener((nodeId, state) -> {
+            if (state == NodeState.DONE) {
+                remaining.countDown();
+            }
+        });
+
+        nodeIds = new String[nodes];
+        for (int i = 0; i < nodes; i++) {
+            nodeIds[i] = "node-" + i;
+            NodeDefinition definition = NodeDefinition.of(nodeIds[i]).withAction(() -> { });
+            if (topology.equals("chain") && i > 0) {
+                definition = definition.dependsOn(nodeIds[i - 1]);
+            }
+            nodeService.registerNode(definition);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        timerWheel.stop();
+        nodeExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public void activate() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(nodes);
+        remaining = done;
+        if (topology.equals("chain")) {
+            nodeService.activateNode(nodeIds[0]);
+        } else {
+            for (String nodeId : nodeIds) {
+                nodeService.activateNode(nodeId);
+            }
+        }
+        done.await();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(NodeActivationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
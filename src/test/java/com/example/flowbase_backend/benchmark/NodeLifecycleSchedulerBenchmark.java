@@ -0,0 +1,112 @@
+package com.example.flowbase_backend.benchmark;
+
+import com.example.flowbase_backend.scheduling.TimerWheel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the former one-second polling sweep over runningNodes with the timer wheel.
+ * <p>
+ * Both benchmarks simulate one second of steady state: every node runs for five seconds
+ * and is restarted as soon as it is DONE, so a fifth of the nodes transition per second.
+ * One operation is one simulated second.
+ * <p>
+ * Run with: {@code ./mvnw test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.flowbase_backend.benchmark.NodeLifecycleSchedulerBenchmark}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class NodeLifecycleSchedulerBenchmark {
+
+    private static final Duration NODE_RUNNING_DURATION = Duration.ofSeconds(5);
+    private static final Duration TICK = Duration.ofMillis(10);
+
+    @Param({"1000", "100000", "1000000"})
+    private int runningNodes;
+
+    private ConcurrentMap<String, Instant> runningNodeMap;
+    private Instant sweepNow;
+
+    private TimerWheel timerWheel;
+    private long wheelNow;
+    private int transitions;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        long spreadMillis = NODE_RUNNING_DURATION.toMillis();
+
+        runningNodeMap = new ConcurrentHashMap<>();
+        sweepNow = Instant.EPOCH.plusSeconds(3600);
+        for (int i = 0; i < runningNodes; i++) {
+            runningNodeMap.put("node-" + i, sweepNow.minusMillis(i % spreadMillis));
+        }
+
+        timerWheel = new TimerWheel(TICK, 512, () -> wheelNow);
+        for (int i = 0; i < runningNodes; i++) {
+            Runnable restart = new Runnable() {
+                @Override
+                public void run() {
+                    transitions++;
+                    timerWheel.schedule(this, NODE_RUNNING_DURATION);
+                }
+            };
+            timerWheel.schedule(restart, Duration.ofMillis(spreadMillis - i % spreadMillis));
+        }
+    }
+
+    /**
+     * One pass of the former {@code @Scheduled(fixedRate = 1000)} sweep, without its logging
+     */
+    @Benchmark
+    public int pollingSweep() {
+        sweepNow = sweepNow.plusSeconds(1);
+        Instant now = sweepNow;
+        int[] done = new int[1];
+        runningNodeMap.forEach((nodeId, startTime) -> {
+            Duration runningTime = Duration.between(startTime, now);
+            if (runningTime.compareTo(NODE_RUNNING_DURATION) > 0) {
+                runningNodeMap.replace(nodeId, startTime, now);
+                done[0]++;
+            }
+        });
+        return done[0];
+    }
+
+    /**
+     * One second worth of timer wheel ticks, each firing only the deadlines that are due
+     */
+    @Benchmark
+    public int timerWheel() {
+        wheelNow += TimeUnit.SECONDS.toNanos(1);
+        return timerWheel.advanceTo(wheelNow);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(NodeLifecycleSchedulerBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.flowbase_backend.benchmark;
+
+import com.example.flowbase_backend.engine.NodeState;
+import com.example.flowbase_backend.service.WebSocketService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares single-message and batched node state broadcasting.
+ * <p>
+ * One operation is one burst of transitions: {@code nodes} nodes each going through
+ * {@code updatesPerNode} states. Every frame that reaches the channel is parsed again with
+ * Jackson, the same work a client does per frame, so the score covers server and client CPU.
+ * The {@code frames} and {@code bytes} counters show what actually goes over the wire.
+ * <p>
+ * Run with: {@code ./mvnw test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.flowbase_backend.benchmark.NodeStateBroadcastBenchmark}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NodeStateBroadcastBenchmark {
+
+    private static final NodeState[] STATES = {NodeState.RUNNING, NodeState.DONE};
+
+    @Param({"100", "5000"})
+    private int nodes;
+
+    @Param({"2"})
+    private int updatesPerNode;
+
+    private final ObjectMapper clientMapper = new ObjectMapper();
+    private WebSocketService singleMode;
+    private WebSocketService batchMode;
+    private String[] nodeIds;
+    private WireCounters counters;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class WireCounters {
+        public long frames;
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            frames = 0;
+            bytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        nodeIds = new String[nodes];
+        for (int i = 0; i < nodes; i++) {
+            nodeIds[i] = "node-" + i;
+        }
+        singleMode = new WebSocketService(template());
+        // The window never elapses during a burst; flush() is called explicitly at its end
+        batchMode = new WebSocketService(template(), true, Duration.ofHours(1));
+    }
+
+    @Benchmark
+    public void singleMessageMode(WireCounters wireCounters) {
+        counters = wireCounters;
+        burst(singleMode);
+    }
+
+    @Benchmark
+    public int batchedMode(WireCounters wireCounters) {
+        counters = wireCounters;
+        burst(batchMode);
+        return batchMode.flush();
+    }
+
+    private void burst(WebSocketService webSocketService) {
+        for (int update = 0; update < updatesPerNode; update++) {
+            NodeState state = STATES[update % STATES.length];
+            for (String nodeId : nodeIds) {
+                webSocketService.sendNodeStateUpdate(nodeId, state);
+            }
+        }
+    }
+
+    private SimpMessagingTemplate template() {
+        MessageChannel clientSide = new MessageChannel() {
+            @Override
+            public boolean send(Message<?> message, long timeout) {
+                byte[] payload = (byte[]) message.getPayload();
+                counters.frames++;
+                counters.bytes += payload.length;
+                try {
+                    clientMapper.readTree(payload);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return true;
+            }
+        };
+        SimpMessagingTemplate template = new SimpMessagingTemplate(clientSide);
+        template.setMessageConverter(new MappingJackson2MessageConverter());
+        return template;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(NodeStateBroadcastBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
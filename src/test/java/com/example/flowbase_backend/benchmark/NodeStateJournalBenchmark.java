@@ -0,0 +1,107 @@
+package com.example.flowbase_backend.benchmark;
+
+import com.example.flowbase_backend.engine.JournalNodeStateStore;
+import com.example.flowbase_backend.engine.NodeDefinition;
+import com.example.flowbase_backend.engine.NodeExecutionEngine;
+import com.example.flowbase_backend.engine.NodeStateStore;
+import com.example.flowbase_backend.scheduling.TimerWheel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * State transitions per second of nodes with an empty action, with and without the journal.
+ * <p>
+ * Each activation runs one node from RUNNING to DONE on the calling thread, so the score counts
+ * two journaled transitions per activation. {@code off} keeps state in memory only,
+ * {@code groupCommit} forces the journal to disk every 10 ms, and {@code syncEach} forces
+ * every record before the transition returns. The store's counters are printed after each trial.
+ * <p>
+ * Run with: {@code ./mvnw test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.flowbase_backend.benchmark.NodeStateJournalBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NodeStateJournalBenchmark {
+
+    private static final int NODES = 64;
+
+    @Param({"off", "groupCommit", "syncEach"})
+    private String durability;
+
+    private Path directory;
+    private NodeStateStore store;
+    private NodeExecutionEngine engine;
+    private String[] nodeIds;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("node-journal-benchmark");
+        store = switch (durability) {
+            case "groupCommit" -> new JournalNodeStateStore(directory, 16 * 1024 * 1024, Duration.ofMillis(10));
+            case "syncEach" -> new JournalNodeStateStore(directory, 16 * 1024 * 1024, Duration.ZERO);
+            default -> NodeStateStore.NONE;
+        };
+        engine = new NodeExecutionEngine(new TimerWheel(Duration.ofMillis(10), 64), Runnable::run, NODES,
+                new SimpleMeterRegistry(), store);
+        nodeIds = new String[NODES];
+        for (int i = 0; i < NODES; i++) {
+            nodeIds[i] = "node-" + i;
+            engine.register(NodeDefinition.of(nodeIds[i]).withAction(() -> { }));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        store.close();
+        if (store instanceof JournalNodeStateStore journal) {
+            System.out.println();
+            System.out.println("Journal: " + journal.getStats());
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public boolean transition() {
+        next = (next + 1) % NODES;
+        return engine.activate(nodeIds[next]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(NodeStateJournalBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.flowbase_backend.benchmark;
+
+import com.example.flowbase_backend.engine.NodeState;
+import com.example.flowbase_backend.model.NodeStateMessage;
+import com.example.flowbase_backend.service.NodeStateBinaryCodec;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The steps between a node state update and the frame handed to the broker channel.
+ * <p>
+ * {@code objectMapper} is plain Jackson serialization of the payload. {@code messageConverter}
+ * is the converter the broker uses, which adds the content type and message headers.
+ * {@code templateDispatch} is a full {@link SimpMessagingTemplate#convertAndSend} to the node
+ * state topic, including destination and header handling, into a channel that drops the frame.
+ * With {@code batchSize} 1 the payload is one message, as in single-message mode; above 1 it is
+ * a JSON array of that many messages, as in batch mode.
+ * <p>
+ * {@code binaryCodec} encodes the same payload in the layout of the binary topic. The bytes per
+ * message of both formats are printed after each trial.
+ * <p>
+ * Run with: {@code ./mvnw test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.flowbase_backend.benchmark.NodeStateMessageBenchmark}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NodeStateMessageBenchmark {
+
+    private static final String NODE_STATE_TOPIC = "/topic/node-activated";
+
+    @Param({"1", "100"})
+    private int batchSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MappingJackson2MessageConverter messageConverter = new MappingJackson2MessageConverter();
+    private SimpMessagingTemplate template;
+    private Object payload;
+    private List<NodeStateMessage> messages;
+    private Message<?> lastFrame;
+
+    @Setup
+    public void setUp() {
+        // Sequences in the millions, as after a few hours of traffic
+        messages = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            messages.add(new NodeStateMessage("node-" + i, i % 2 == 0 ? NodeState.RUNNING : NodeState.DONE,
+                    4_000_000L + i));
+        }
+        payload = batchSize == 1 ? messages.get(0) : messages;
+        template = new SimpMessagingTemplate(new MessageChannel() {
+            @Override
+            public boolean send(Message<?> message, long timeout) {
+                lastFrame = message;
+                return true;
+            }
+        });
+        template.setMessageConverter(new MappingJackson2MessageConverter());
+    }
+
+    @Benchmark
+    public byte[] objectMapper() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(payload);
+    }
+
+    @Benchmark
+    public Message<?> messageConverter() {
+        return messageConverter.toMessage(payload, null);
+    }
+
+    @Benchmark
+    public byte[] binaryCodec() {
+        return batchSize == 1 ? NodeStateBinaryCodec.encode(messages.get(0)) : NodeStateBinaryCodec.encode(messages);
+    }
+
+    @Benchmark
+    public void templateDispatch(Blackhole blackhole) {
+        template.convertAndSend(NODE_STATE_TOPIC, payload);
+        blackhole.consume(lastFrame);
+    }
+
+    @TearDown
+    public void printFrameSizes() throws JsonProcessingException {
+        System.out.println();
+        System.out.printf("Bytes per message: json %.1f, binary %.1f%n",
+                (double) objectMapper().length / batchSize, (double) binaryCodec().length / batchSize);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(NodeStateMessageBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.flowbase_backend.benchmark;
+
+import com.example.flowbase_backend.engine.NodeDefinition;
+import com.example.flowbase_backend.engine.NodeExecutionEngine;
+import com.example.flowbase_backend.scheduling.TimerWheel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the former state bookkeeping of NodeService, two maps keyed by node ID, with the
+ * execution engine's state table.
+ * <p>
+ * One operation is one run of a node, RUNNING and then DONE, on four threads, each cycling over
+ * its own slice of the nodes. {@code twoMaps} does what NodeService did per run: put
+ * {@code true} into {@code nodeStatus} and the start {@link Instant} into {@code runningNodes},
+ * then remove the node from {@code runningNodes}. {@code stateTable} activates a node with an
+ * empty action on an engine that runs actions on the calling thread, so both transitions are
+ * compare-and-sets on its arrays; its timers go to the empty global registry. The hand-off of
+ * the action to the executor does not escape when the executor runs it inline, so a run
+ * allocates nothing that the GC profiler sees.
+ * <p>
+ * The GC profiler reports the allocation per run as {@code gc.alloc.rate.norm}.
+ * <p>
+ * Run with: {@code ./mvnw test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.flowbase_backend.benchmark.NodeStateTableBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class NodeStateTableBenchmark {
+
+    private static final int THREADS = 4;
+
+    @Param({"1000"})
+    private int nodes;
+
+    private String[] nodeIds;
+    private final AtomicInteger slices = new AtomicInteger();
+
+    private Map<String, Boolean> nodeStatus;
+    private ConcurrentMap<String, Instant> runningNodes;
+
+    private TimerWheel timerWheel;
+    private NodeExecutionEngine engine;
+
+    /**
+     * The nodes one benchmark thread runs, one after the other
+     */
+    @State(Scope.Thread)
+    public static class Slice {
+        int first;
+        int length;
+        int next;
+
+        @Setup
+        public void setUp(NodeStateTableBenchmark benchmark) {
+            length = benchmark.nodes / THREADS;
+            first = Math.floorMod(benchmark.slices.getAndIncrement(), THREADS) * length;
+        }
+
+        String nextNodeId(String[] nodeIds) {
+            String nodeId = nodeIds[first + next];
+            next = next + 1 == length ? 0 : next + 1;
+            return nodeId;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        nodeIds = new String[nodes];
+        nodeStatus = new ConcurrentHashMap<>();
+        runningNodes = new ConcurrentHashMap<>();
+        timerWheel = new TimerWheel(Duration.ofMillis(10), 64);
+        engine = new NodeExecutionEngine(timerWheel, Runnable::run, nodes);
+        for (int i = 0; i < nodes; i++) {
+            nodeIds[i] = "node-" + i;
+            nodeStatus.put(nodeIds[i], false);
+            engine.register(NodeDefinition.of(nodeIds[i]).withAction(() -> { }));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        timerWheel.stop();
+    }
+
+    @Benchmark
+    public Instant twoMaps(Slice slice) {
+        String nodeId = slice.nextNodeId(nodeIds);
+        nodeStatus.put(nodeId, true);
+        runningNodes.put(nodeId, Instant.now());
+        return runningNodes.remove(nodeId);
+    }
+
+    @Benchmark
+    public boolean stateTable(Slice slice) {
+        return engine.activate(slice.nextNodeId(nodeIds));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(NodeStateTableBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
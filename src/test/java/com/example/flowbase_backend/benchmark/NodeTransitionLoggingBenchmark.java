@@ -0,0 +1,137 @@
+package com.example.flowbase_backend.benchmark;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.OutputStreamAppender;
+import com.example.flowbase_backend.engine.NodeDefinition;
+import com.example.flowbase_backend.engine.NodeExecutionEngine;
+import com.example.flowbase_backend.scheduling.TimerWheel;
+import com.example.flowbase_backend.service.WebSocketService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what node event logging costs in the transition loop.
+ * <p>
+ * One operation runs {@code nodes} nodes through RUNNING and DONE on the calling thread,
+ * with every transition sent through {@link WebSocketService}. The application's logger is
+ * set to {@code level}: at INFO the per-node events are disabled, at DEBUG they go through
+ * the same async appender and pattern as {@code logback-spring.xml}, into a discarding stream.
+ * <p>
+ * Run with: {@code ./mvnw test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.flowbase_backend.benchmark.NodeTransitionLoggingBenchmark}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NodeTransitionLoggingBenchmark {
+
+    private static final String APPLICATION_LOGGER = "com.example.flowbase_backend";
+
+    @Param({"1000"})
+    private int nodes;
+
+    @Param({"INFO", "DEBUG"})
+    private String level;
+
+    private LoggerContext loggerContext;
+    private NodeExecutionEngine engine;
+    private String[] nodeIds;
+
+    @Setup
+    public void setUp() {
+        loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+        loggerContext.reset();
+
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(loggerContext);
+        encoder.setPattern("%d{yyyy-MM-dd'T'HH:mm:ss.SSSXXX} %5p [%15.15t] %-40.40logger{39} : %m %kvp%n");
+        encoder.start();
+
+        OutputStreamAppender<ILoggingEvent> sink = new OutputStreamAppender<>();
+        sink.setContext(loggerContext);
+        sink.setEncoder(encoder);
+        sink.setOutputStream(OutputStream.nullOutputStream());
+        sink.start();
+
+        AsyncAppender async = new AsyncAppender();
+        async.setContext(loggerContext);
+        async.setQueueSize(8192);
+        async.setDiscardingThreshold(20);
+        async.setNeverBlock(true);
+        async.addAppender(sink);
+        async.start();
+
+        Logger root = loggerContext.getLogger(Logger.ROOT_LOGGER_NAME);
+        root.setLevel(Level.WARN);
+        root.addAppender(async);
+        loggerContext.getLogger(APPLICATION_LOGGER).setLevel(Level.toLevel(level));
+
+        SimpMessagingTemplate template = new SimpMessagingTemplate(new MessageChannel() {
+            @Override
+            public boolean send(Message<?> message, long timeout) {
+                return true;
+            }
+        });
+        WebSocketService webSocketService = new WebSocketService(template);
+
+        // Nodes with an action complete as soon as it returns, so the wheel is never needed
+        engine = new NodeExecutionEngine(new TimerWheel(Duration.ofMillis(10), 64), Runnable::run, nodes);
+        engine.addListener((nodeId, state) -> webSocketService.sendNodeStateUpdate(nodeId, state));
+        nodeIds = new String[nodes];
+        for (int i = 0; i < nodes; i++) {
+            nodeIds[i] = "node-" + i;
+            engine.register(NodeDefinition.of(nodeIds[i]).withAction(() -> { }));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        loggerContext.stop();
+    }
+
+    @Benchmark
+    public int transitions() {
+        int started = 0;
+        for (String nodeId : nodeIds) {
+            if (engine.activate(nodeId)) {
+                started++;
+            }
+        }
+        return started;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(NodeTransitionLoggingBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
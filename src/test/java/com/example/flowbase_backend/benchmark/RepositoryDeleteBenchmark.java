@@ -0,0 +1,118 @@
+package com.example.flowbase_backend.benchmark;
+
+import com.example.flowbase_backend.git.RepositoryTrash;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Deleting a synthetic tree laid out like a loose object store: 256 directories holding the
+ * given number of small files between them.
+ * <p>
+ * {@code walkSorted} is the previous implementation, which collects and sorts every path
+ * before deleting them one by one. {@code forkJoin} waits for the background delete of
+ * {@link RepositoryTrash} to finish. {@code trash} measures what the caller waits for: the
+ * rename into the trash directory.
+ * <p>
+ * Run with: {@code ./mvnw test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.flowbase_backend.benchmark.RepositoryDeleteBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class RepositoryDeleteBenchmark {
+
+    private static final int DIRECTORIES = 256;
+
+    @Param({"walkSorted", "forkJoin", "trash"})
+    private String strategy;
+
+    @Param({"500000"})
+    private int files;
+
+    private Path workDir;
+    private Path tree;
+    private ForkJoinPool pool;
+    private RepositoryTrash trash;
+    private int treeNumber;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("repository-delete-benchmark");
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        trash = new RepositoryTrash(pool);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        pool.awaitQuiescence(10, TimeUnit.MINUTES);
+        pool.shutdown();
+        walkSorted(workDir);
+    }
+
+    @Setup(Level.Invocation)
+    public void createTree() throws IOException {
+        // Wait for the previous background delete, so it does not overlap the measurement
+        pool.awaitQuiescence(10, TimeUnit.MINUTES);
+        tree = workDir.resolve("tree-" + treeNumber++);
+        byte[] content = new byte[64];
+        for (int d = 0; d < DIRECTORIES; d++) {
+            Path directory = Files.createDirectories(tree.resolve(String.format("objects/%02x", d)));
+            for (int f = d; f < files; f += DIRECTORIES) {
+                Files.write(directory.resolve(Integer.toHexString(f)), content);
+            }
+        }
+    }
+
+    @Benchmark
+    public void delete() throws Exception {
+        switch (strategy) {
+            case "walkSorted":
+                walkSorted(tree);
+                break;
+            case "forkJoin":
+                trash.delete(tree).get();
+                break;
+            default:
+                trash.delete(tree);
+                break;
+        }
+    }
+
+    private static void walkSorted(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RepositoryDeleteBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.flowbase_backend.benchmark;
+
+import com.example.flowbase_backend.git.RepositoryLockManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Throughput of 8 threads running simulated Git operations on a set of repositories.
+ * <p>
+ * {@code global} puts every repository behind one read/write lock. {@code perRepository}
+ * uses RepositoryLockManager, so only operations on the same repository wait for each other.
+ * With {@code readPercent} above 0, that share of the operations take the read lock, as
+ * push does. The lock manager's wait time figures are printed after each trial.
+ * <p>
+ * Run with: {@code ./mvnw test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.flowbase_backend.benchmark.RepositoryLockBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class RepositoryLockBenchmark {
+
+    // Roughly 10 µs of work while the lock is held
+    private static final long WORK_TOKENS = 2_000;
+
+    @Param({"global", "perRepository"})
+    private String scope;
+
+    @Param({"1", "16"})
+    private int repositories;
+
+    @Param({"0", "80"})
+    private int readPercent;
+
+    private Path workDir;
+    private Path[] paths;
+    private RepositoryLockManager lockManager;
+    private final ReentrantReadWriteLock globalLock = new ReentrantReadWriteLock(true);
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("repository-lock-benchmark");
+        paths = new Path[repositories];
+        for (int i = 0; i < repositories; i++) {
+            paths[i] = Files.createDirectories(workDir.resolve("repo-" + i));
+        }
+        lockManager = new RepositoryLockManager(Duration.ofMinutes(1));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.out.println();
+        System.out.println("Lock wait times: " + lockManager.getStats());
+        for (Path path : paths) {
+            Files.delete(path);
+        }
+        Files.delete(workDir);
+    }
+
+    @Benchmark
+    public void operation() throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Path path = paths[random.nextInt(paths.length)];
+        boolean exclusive = random.nextInt(100) >= readPercent;
+
+        if (scope.equals("global")) {
+            Lock lock = exclusive ? globalLock.writeLock() : globalLock.readLock();
+            lock.lock();
+            try {
+                Blackhole.consumeCPU(WORK_TOKENS);
+            } finally {
+                lock.unlock();
+            }
+        } else {
+            try (RepositoryLockManager.RepositoryLock lock = exclusive ? lockManager.write(path) : lockManager.read(path)) {
+                Blackhole.consumeCPU(WORK_TOKENS);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RepositoryLockBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.flowbase_backend.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load harness for the STOMP fan-out of node state updates.
+ * <p>
+ * Opens N SockJS/STOMP sessions against {@code /ws}, subscribes each to
+ * {@code /topic/node-activated}, then registers and activates one node per round over
+ * HTTP. The latency from the activation request to the RUNNING update arriving at each
+ * session is collected and reported as percentiles.
+ * <p>
+ * Start the application first, then run with: {@code ./mvnw test-compile exec:java
+ * -Dexec.classpathScope=test -Dexec.mainClass=com.example.flowbase_backend.benchmark.StompFanOutLoadHarness
+ * -Dexec.args="http://localhost:8080 500 20"} (base URL, sessions, rounds)
+ */
+public class StompFanOutLoadHarness {
+
+    private final String baseUrl;
+    private final int sessionCount;
+    private final int rounds;
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    // nodeId -> activation request time, nodeId -> receive latencies
+    private final Map<String, Long> sentAt = new ConcurrentHashMap<>();
+    private final Map<String, List<Long>> latencies = new ConcurrentHashMap<>();
+    private final Map<String, CountDownLatch> received = new ConcurrentHashMap<>();
+
+    public StompFanOutLoadHarness(String baseUrl, int sessionCount, int rounds) {
+        this.baseUrl = baseUrl;
+        this.sessionCount = sessionCount;
+        this.rounds = rounds;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int sessions = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        new StompFanOutLoadHarness(baseUrl, sessions, rounds).run();
+    }
+
+    public void run() throws Exception {
+        ThreadPoolTaskScheduler heartbeatScheduler = new ThreadPoolTaskScheduler();
+        heartbeatScheduler.initialize();
+        WebSocketStompClient stompClient = new WebSocketStompClient(
+                new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+        stompClient.setTaskScheduler(heartbeatScheduler);
+
+        List<StompSession> sessions = new ArrayList<>(sessionCount);
+        long connectStart = System.nanoTime();
+        for (int i = 0; i < sessionCount; i++) {
+            StompSession session = stompClient.connectAsync(baseUrl + "/ws", new StompSessionHandlerAdapter() { })
+                    .get(10, TimeUnit.SECONDS);
+            session.subscribe("/topic/node-activated", new UpdateHandler());
+            sessions.add(session);
+        }
+        System.out.printf("Connected %d sessions in %d ms%n", sessionCount,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - connectStart));
+        // Give the broker time to register the last subscriptions
+        Thread.sleep(500);
+
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+        for (int round = 0; round < rounds; round++) {
+            String nodeId = "harness-" + runId + "-" + round;
+            post("/nodes", "{\"nodeId\":\"" + nodeId + "\",\"runningDurationMs\":100}");
+            received.put(nodeId, new CountDownLatch(sessionCount));
+            latencies.put(nodeId, new ArrayList<>(sessionCount));
+            sentAt.put(nodeId, System.nanoTime());
+            post("/nodes/" + nodeId + "/activate", "");
+            if (!received.get(nodeId).await(30, TimeUnit.SECONDS)) {
+                System.out.printf("Round %d: only %d of %d sessions received the update%n",
+                        round, sessionCount - received.get(nodeId).getCount(), sessionCount);
+            }
+        }
+
+        report();
+        // Let the DONE updates of the last round arrive before closing the sessions
+        Thread.sleep(500);
+        sessions.forEach(StompSession::disconnect);
+        stompClient.stop();
+        heartbeatScheduler.shutdown();
+    }
+
+    private void post(String path, String json) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(path + " returned " + response.statusCode() + ": " + response.body());
+        }
+    }
+
+    private void report() {
+        long[] all = latencies.values().stream()
+                .flatMap(List::stream)
+                .mapToLong(Long::longValue)
+                .sorted()
+                .toArray();
+        if (all.length == 0) {
+            System.out.println("No updates received");
+            return;
+        }
+        System.out.printf("Fan-out latency over %d deliveries (%d sessions x %d rounds), in ms:%n",
+                all.length, sessionCount, rounds);
+        System.out.printf("  p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f%n",
+                percentile(all, 50), percentile(all, 90), percentile(all, 99), percentile(all, 99.9),
+                all[all.length - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+
+    private class UpdateHandler implements StompFrameHandler {
+
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return JsonNode.class;
+        }
+
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            long now = System.nanoTime();
+            JsonNode frame = (JsonNode) payload;
+            // Batch mode sends arrays of updates
+            for (JsonNode update : frame.isArray() ? frame : Arrays.asList(frame)) {
+                String nodeId = update.path("nodeId").asText();
+                Long start = sentAt.get(nodeId);
+                if (start != null && "RUNNING".equals(update.path("state").asText())) {
+                    List<Long> nodeLatencies = latencies.get(nodeId);
+                    synchronized (nodeLatencies) {
+                        nodeLatencies.add(now - start);
+                    }
+                    received.get(nodeId).countDown();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.flowbase_backend.benchmark;
+
+import com.example.flowbase_backend.broker.TopicSubscriptionRegistry;
+import com.example.flowbase_backend.service.WebSocketService;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.DefaultSubscriptionRegistry;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one node state update in the simple broker with 5,000 sessions spread over 500 flows.
+ * <p>
+ * {@code sharedTopic} is the old layout: every session subscribes to {@code /topic/node-activated}
+ * and every update is delivered to all of them. With {@code flowTopics}, each session subscribes to
+ * {@code /topic/flows/{flowId}/**} of its own flow and an update goes to its node's topic, so only
+ * the 10 sessions of that flow receive it. {@code registry} selects Spring's default subscription
+ * registry, whose destination cache is smaller than the 10,000 node topics, or the segment index.
+ * The clientOutboundChannel only counts messages; {@code deliveries} is reported per update.
+ * <p>
+ * Run with: {@code ./mvnw test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.flowbase_backend.benchmark.TopicFanOutBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TopicFanOutBenchmark {
+
+    private static final int SESSIONS = 5_000;
+    private static final int FLOWS = 500;
+    private static final int NODES_PER_FLOW = 20;
+    private static final String SHARED_TOPIC = "/topic/node-activated";
+
+    @Param({"sharedTopic", "flowTopics"})
+    private String layout;
+
+    @Param({"default", "indexed"})
+    private String registry;
+
+    private SimpleBrokerMessageHandler broker;
+    private String[][] nodeTopics;
+    private Deliveries counters;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Deliveries {
+        public long deliveries;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            deliveries = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        MessageChannel clientOutbound = (message, timeout) -> {
+            counters.deliveries++;
+            return true;
+        };
+        broker = new SimpleBrokerMessageHandler(new ExecutorSubscribableChannel(), clientOutbound,
+                new ExecutorSubscribableChannel(), List.of("/topic"));
+        broker.setSubscriptionRegistry(registry.equals("indexed")
+                ? new TopicSubscriptionRegistry() : new DefaultSubscriptionRegistry());
+        broker.start();
+
+        nodeTopics = new String[FLOWS][NODES_PER_FLOW];
+        for (int flow = 0; flow < FLOWS; flow++) {
+            for (int node = 0; node < NODES_PER_FLOW; node++) {
+                nodeTopics[flow][node] = WebSocketService.nodeTopic("flow-" + flow, "node-" + node);
+            }
+        }
+        // The broker only delivers to sessions it has seen connect; the CONNECT_ACKs go to a throwaway counter
+        counters = new Deliveries();
+        for (int session = 0; session < SESSIONS; session++) {
+            String destination = layout.equals("sharedTopic")
+                    ? SHARED_TOPIC : "/topic/flows/flow-" + session % FLOWS + "/**";
+            broker.handleMessage(sessionMessage(SimpMessageType.CONNECT, "session-" + session, null));
+            broker.handleMessage(sessionMessage(SimpMessageType.SUBSCRIBE, "session-" + session, destination));
+        }
+    }
+
+    private static Message<byte[]> sessionMessage(SimpMessageType type, String sessionId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId("sub-0");
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    @TearDown
+    public void tearDown() {
+        broker.stop();
+    }
+
+    @Benchmark
+    public void publish(Deliveries deliveries) {
+        counters = deliveries;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String destination = layout.equals("sharedTopic")
+                ? SHARED_TOPIC : nodeTopics[random.nextInt(FLOWS)][random.nextInt(NODES_PER_FLOW)];
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[56], accessor.getMessageHeaders());
+        broker.handleMessage(message);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TopicFanOutBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.flowbase_backend.broker;
+
+import org.apache.commons.logging.LogFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.OrderedMessageChannelDecorator;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Tests for dropping the messages a full client channel executor cannot take, with one warning
+ * per interval, while sessions keep their publish order
+ */
+public class DroppingRejectionHandlerTest {
+
+    private final AtomicLong nanos = new AtomicLong(Long.MAX_VALUE - TimeUnit.SECONDS.toNanos(1));
+    private final DroppingRejectionHandler handler =
+            new DroppingRejectionHandler("outbound", Duration.ofSeconds(10), nanos::get);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final BlockingQueue<String> delivered = new LinkedBlockingQueue<>();
+    private ThreadPoolTaskExecutor taskExecutor;
+    private ExecutorSubscribableChannel channel;
+
+    /**
+     * An outbound channel with one thread and one queue slot, whose handler blocks on messages
+     * with the payload "blocking" until released
+     */
+    @BeforeEach
+    public void setUp() {
+        taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setCorePoolSize(1);
+        taskExecutor.setMaxPoolSize(1);
+        taskExecutor.setQueueCapacity(1);
+        taskExecutor.setRejectedExecutionHandler(handler);
+        taskExecutor.initialize();
+        channel = new ExecutorSubscribableChannel(taskExecutor);
+        OrderedMessageChannelDecorator.configureInterceptor(channel, true);
+        channel.subscribe(message -> {
+            if ("blocking".equals(message.getPayload())) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            delivered.add(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()) + ":" + message.getPayload());
+        });
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        taskExecutor.shutdown();
+    }
+
+    @Test
+    public void orderedSessionGetsLaterMessagesAfterADrop() throws Exception {
+        channel.addInterceptor(handler);
+        MessageChannel first = session();
+        MessageChannel second = session();
+        MessageChannel third = session();
+
+        first.send(message("first", "blocking"));
+        second.send(message("second", "queued"));
+        third.send(message("third", "dropped"));
+        assertEquals(1, handler.getDropped());
+
+        release.countDown();
+        assertEquals("first:blocking", delivered.poll(10, TimeUnit.SECONDS));
+        assertEquals("second:queued", delivered.poll(10, TimeUnit.SECONDS));
+        third.send(message("third", "later"));
+        assertEquals("third:later", delivered.poll(10, TimeUnit.SECONDS), "The third session stalled");
+        assertEquals(1, handler.getDropped());
+    }
+
+    @Test
+    public void rejectedMessageIsSentOnTheCallingThread() throws Exception {
+        // Without the interceptor, the third message loses the race for the queue slot
+        MessageChannel first = session();
+        MessageChannel second = session();
+        MessageChannel third = session();
+
+        first.send(message("first", "blocking"));
+        second.send(message("second", "queued"));
+        third.send(message("third", "rejected"));
+        assertEquals("third:rejected", delivered.poll());
+        third.send(message("third", "later"));
+        assertEquals("third:later", delivered.poll());
+
+        release.countDown();
+        assertEquals("first:blocking", delivered.poll(10, TimeUnit.SECONDS));
+        assertEquals("second:queued", delivered.poll(10, TimeUnit.SECONDS));
+        assertEquals(0, handler.getDropped());
+    }
+
+    @Test
+    public void logsAtMostOnceAnInterval() {
+        // Starts just before the clock wraps around
+        channel.send(message("first", "blocking"));
+        channel.send(message("second", "queued"));
+        Message<String> dropped = message("third", "dropped");
+        for (int i = 0; i < 100; i++) {
+            assertNull(handler.preSend(dropped, channel));
+        }
+        assertEquals(1, handler.getWarningsLogged());
+
+        advance(Duration.ofSeconds(9));
+        handler.preSend(dropped, channel);
+        assertEquals(1, handler.getWarningsLogged());
+        advance(Duration.ofSeconds(1));
+        handler.preSend(dropped, channel);
+        handler.preSend(dropped, channel);
+        assertEquals(2, handler.getWarningsLogged());
+        assertEquals(103, handler.getDropped());
+
+        release.countDown();
+        Message<String> later = message("third", "later");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (handler.preSend(later, channel) == null && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertSame(later, handler.preSend(later, channel));
+    }
+
+    private MessageChannel session() {
+        return new OrderedMessageChannelDecorator(channel, LogFactory.getLog(DroppingRejectionHandlerTest.class));
+    }
+
+    private static Message<String> message(String sessionId, String payload) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setSessionId(sessionId);
+        headers.setLeaveMutable(true);
+        return MessageBuilder.createMessage(payload, headers.getMessageHeaders());
+    }
+
+    private void advance(Duration duration) {
+        nanos.addAndGet(duration.toNanos());
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.flowbase_backend.broker;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.DefaultSubscriptionRegistry;
+import org.springframework.messaging.simp.broker.SubscriptionRegistry;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MultiValueMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for finding the subscribers of a destination through the segment index
+ */
+public class TopicSubscriptionRegistryTest {
+
+    private final TopicSubscriptionRegistry registry = new TopicSubscriptionRegistry();
+
+    @Test
+    public void literalAndWildcardSubscriptionsMatchTheirNodes() {
+        subscribe(registry, "s1", "node", "/topic/flows/f1/nodes/a");
+        subscribe(registry, "s2", "flow", "/topic/flows/f1/**");
+        subscribe(registry, "s3", "any-flow", "/topic/flows/*/nodes/a");
+        subscribe(registry, "s4", "prefix", "/topic/flows/f1/nodes/a-*");
+
+        assertEquals("{s1=[node], s2=[flow], s3=[any-flow]}", find(registry, "/topic/flows/f1/nodes/a"));
+        assertEquals("{s2=[flow], s4=[prefix]}", find(registry, "/topic/flows/f1/nodes/a-1"));
+        assertEquals("{s3=[any-flow]}", find(registry, "/topic/flows/f2/nodes/a"));
+        assertTrue(registry.hasSubscriptions("/topic/flows/f1"));
+        assertFalse(registry.hasSubscriptions("/topic/flows/f2/nodes/b"));
+        assertEquals(4, registry.getSubscriptionCount());
+    }
+
+    @Test
+    public void unsubscribingAndDisconnectingRemoveEverySubscription() {
+        subscribe(registry, "s1", "a", "/topic/flows/f1/nodes/a");
+        subscribe(registry, "s1", "b", "/topic/flows/*/nodes/b");
+        subscribe(registry, "s2", "a", "/topic/flows/f1/nodes/a");
+        subscribe(registry, "s2", "c", "/topic/flows/f1/nodes/c*");
+
+        registry.unregisterSubscription(message(SimpMessageType.UNSUBSCRIBE, "s2", "a", null));
+        assertEquals("{s1=[a]}", find(registry, "/topic/flows/f1/nodes/a"));
+
+        registry.unregisterAllSubscriptions("s1");
+        registry.unregisterAllSubscriptions("s2");
+        assertFalse(registry.hasSubscriptions("/topic/flows/f1/nodes/a"));
+        assertFalse(registry.hasSubscriptions("/topic/flows/f9/nodes/b"));
+        assertFalse(registry.hasSubscriptions("/topic/flows/f1/nodes/c1"));
+        assertEquals(0, registry.getSubscriptionCount());
+    }
+
+    @Test
+    public void findsTheSameSubscribersAsSpringsDefaultRegistry() {
+        DefaultSubscriptionRegistry reference = new DefaultSubscriptionRegistry();
+        Random random = new Random(20240612L);
+        List<String> subscriptions = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            String session = "s" + random.nextInt(200);
+            String flow = "f" + random.nextInt(20);
+            String node = "n" + random.nextInt(10);
+            String destination = switch (random.nextInt(6)) {
+                case 0 -> "/topic/flows/" + flow + "/nodes/" + node;
+                case 1 -> "/topic/flows/" + flow + "/**";
+                case 2 -> "/topic/flows/*/nodes/" + node;
+                case 3 -> "/topic/flows/" + flow + "/nodes/*";
+                case 4 -> "/topic/**";
+                // Matched by the path matcher, e.g. n1* also matches n10 and n11
+                default -> "/topic/flows/" + flow + "/nodes/" + node + "*";
+            };
+            subscribe(registry, session, "sub-" + i, destination);
+            subscribe(reference, session, "sub-" + i, destination);
+            subscriptions.add(session + " sub-" + i);
+        }
+        // Remove a third of them again, partly by disconnecting sessions
+        for (int i = 0; i < subscriptions.size(); i += 3) {
+            String[] subscription = subscriptions.get(i).split(" ");
+            Message<byte[]> unsubscribe = message(SimpMessageType.UNSUBSCRIBE, subscription[0], subscription[1], null);
+            registry.unregisterSubscription(unsubscribe);
+            reference.unregisterSubscription(unsubscribe);
+        }
+        for (int i = 0; i < 20; i++) {
+            registry.unregisterAllSubscriptions("s" + i);
+            reference.unregisterAllSubscriptions("s" + i);
+        }
+
+        for (int flow = 0; flow < 25; flow++) {
+            for (int node = 0; node < 12; node++) {
+                String destination = "/topic/flows/f" + flow + "/nodes/n" + node;
+                assertEquals(find(reference, destination), find(registry, destination), destination);
+                assertEquals(!find(reference, destination).equals("{}"), registry.hasSubscriptions(destination));
+            }
+        }
+    }
+
+    private static void subscribe(SubscriptionRegistry registry, String sessionId, String subscriptionId,
+                                  String destination) {
+        registry.registerSubscription(message(SimpMessageType.SUBSCRIBE, sessionId, subscriptionId, destination));
+    }
+
+    private static Message<byte[]> message(SimpMessageType type, String sessionId, String subscriptionId,
+                                           String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    /**
+     * @return the subscriptions as "session=[subscription IDs]", sorted, so registries can be compared
+     */
+    private static String find(SubscriptionRegistry registry, String destination) {
+        MultiValueMap<String, String> found = registry.findSubscriptions(
+                message(SimpMessageType.MESSAGE, null, null, destination));
+        TreeMap<String, List<String>> sortedFound = new TreeMap<>();
+        found.forEach((sessionId, subscriptionIds) ->
+                sortedFound.put(sessionId, subscriptionIds.stream().sorted().toList()));
+        return sortedFound.toString();
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.flowbase_backend.cluster;
+
+import com.example.flowbase_backend.engine.NodeDefinition;
+import com.example.flowbase_backend.engine.NodeExecutionEngine;
+import com.example.flowbase_backend.engine.NodeState;
+import com.example.flowbase_backend.model.NodeStateMessage;
+import com.example.flowbase_backend.scheduling.VirtualTime;
+import com.example.flowbase_backend.service.DelayedActivationService;
+import com.example.flowbase_backend.service.NodeService;
+import com.example.flowbase_backend.service.WebSocketService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for several instances sharing the nodes over a cluster bus, run in one JVM on virtual time
+ */
+public class ClusterNodeLifecycleTest {
+
+    private static final Duration TICK = Duration.ofMillis(10);
+    private static final Duration NODE_A_ACTIVATION_DELAY = Duration.ofSeconds(10);
+    private static final Duration RUNNING = NodeDefinition.DEFAULT_RUNNING_DURATION;
+
+    private VirtualTime time;
+    private InMemoryClusterBus.Network network;
+    // Transitions raised by the engines, as "instance nodeId state", in the order they happened
+    private final List<String> transitions = new ArrayList<>();
+
+    /**
+     * One backend instance: its own engine, its own STOMP clients and a bus to the others
+     */
+    private class Instance {
+        final InMemoryClusterBus bus;
+        final NodeService nodeService;
+        // Updates sent to this instance's clients, as "time nodeId state"
+        final List<String> broadcasts = new ArrayList<>();
+
+        Instance(String instanceId) {
+            bus = new InMemoryClusterBus(instanceId, network);
+            bus.join();
+            NodeExecutionEngine engine = new NodeExecutionEngine(time.getTimerWheel(), time, 64);
+            engine.addListener((nodeId, state) -> transitions.add(instanceId + " " + nodeId + " " + state));
+            WebSocketService webSocketService = new WebSocketService(new SimpMessagingTemplate((message, timeout) -> {
+                NodeStateMessage update = (NodeStateMessage) message.getPayload();
+                broadcasts.add(time.elapsed().toMillis() + "ms " + update.getNodeId() + " " + update.getState());
+                return true;
+            }));
+            nodeService = new NodeService(webSocketService, engine,
+                    new DelayedActivationService(time.getTimerWheel(), time), NODE_A_ACTIVATION_DELAY, bus);
+            time.runUntilIdle();
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        time = new VirtualTime(TICK, 512);
+        network = new InMemoryClusterBus.Network(time);
+    }
+
+    @Test
+    public void everyFlowRunsOnItsOwnerAndEveryInstanceSeesAllTransitions() {
+        List<Instance> instances = List.of(new Instance("i0"), new Instance("i1"), new Instance("i2"));
+        int flows = 12;
+        for (int flow = 0; flow < flows; flow++) {
+            NodeDefinition root = NodeDefinition.of("root-" + flow).inFlow("flow-" + flow);
+            instances.get(0).nodeService.registerNode(root);
+            instances.get(0).nodeService.registerNode(NodeDefinition.of("next-" + flow).inFlow("flow-" + flow)
+                    .dependsOn(root.getId()));
+        }
+        time.runUntilIdle();
+
+        // Each activation goes through another instance than the one the nodes were registered on
+        for (int flow = 0; flow < flows; flow++) {
+            assertTrue(instances.get(flow % 3).nodeService.activateNode("root-" + flow));
+        }
+        time.advance(RUNNING.multipliedBy(2));
+
+        NodeOwnership ownership = new NodeOwnership(instances.get(0).bus);
+        Set<String> owners = new HashSet<>();
+        for (int flow = 0; flow < flows; flow++) {
+            String owner = ownership.ownerOf("flow-" + flow);
+            owners.add(owner);
+            for (String nodeId : List.of("root-" + flow, "next-" + flow)) {
+                List<String> raised = transitions.stream().filter(t -> t.contains(" " + nodeId + " ")).toList();
+                assertEquals(List.of(owner + " " + nodeId + " RUNNING", owner + " " + nodeId + " DONE"), raised);
+                for (Instance instance : instances) {
+                    assertEquals("DONE", instance.nodeService.getNodeStateForTesting(nodeId));
+                }
+            }
+        }
+        assertTrue(owners.size() > 1, "The flows are spread over the instances");
+        for (Instance instance : instances) {
+            assertEquals(flows * 4, instance.broadcasts.size());
+            assertTrue(instance.broadcasts.contains("0ms root-0 RUNNING"));
+            assertTrue(instance.broadcasts.contains("10000ms next-0 DONE"));
+        }
+    }
+
+    @Test
+    public void triggerOnAnotherInstanceRunsTheDelayOnTheOwner() {
+        Instance first = new Instance("i0");
+        Instance second = new Instance("i1");
+        String owner = new NodeOwnership(first.bus).ownerOf(NodeDefinition.DEFAULT_FLOW);
+        Instance other = owner.equals("i0") ? second : first;
+
+        other.nodeService.activateNodeA();
+        time.advance(NODE_A_ACTIVATION_DELAY.minus(TICK));
+        assertEquals("INACTIVE", first.nodeService.getNodeStateForTesting(NodeService.NODE_A));
+
+        assertTrue(time.advanceUntil(() -> other.nodeService.getNodeStateForTesting(NodeService.NODE_A).equals("DONE"),
+                Duration.ofMinutes(1)));
+        assertEquals(List.of(owner + " node-A RUNNING", owner + " node-A DONE"), transitions);
+        assertEquals(List.of("10000ms node-A RUNNING", "15000ms node-A DONE"), first.broadcasts);
+        assertEquals(first.broadcasts, second.broadcasts);
+    }
+
+    @Test
+    public void joiningInstanceCatchesUpAndFlowsMoveWhenAnInstanceLeaves() {
+        Instance first = new Instance("i0");
+        Instance second = new Instance("i1");
+        for (int flow = 0; flow < 6; flow++) {
+            first.nodeService.registerNode(NodeDefinition.of("node-" + flow).inFlow("flow-" + flow));
+        }
+        time.runUntilIdle();
+        first.nodeService.activateNode("node-0");
+        second.nodeService.activateNode("node-1");
+        time.advance(RUNNING);
+
+        Instance third = new Instance("i2");
+        // Owners resend the states of their flows; a flow that moved to the new instance starts over there
+        NodeOwnership afterJoin = new NodeOwnership(third.bus);
+        for (String nodeId : List.of("node-0", "node-1")) {
+            boolean moved = afterJoin.ownerOf("flow-" + nodeId.substring(5)).equals("i2");
+            assertEquals(moved ? "INACTIVE" : "DONE", third.nodeService.getNodeStateForTesting(nodeId), nodeId);
+            assertEquals(!moved, third.broadcasts.contains("5000ms " + nodeId + " DONE"), nodeId);
+        }
+        assertEquals("INACTIVE", third.nodeService.getNodeStateForTesting("node-2"));
+
+        // Every flow of the instance that left is run by one of the other two
+        first.bus.leave();
+        time.runUntilIdle();
+        transitions.clear();
+        for (int flow = 0; flow < 6; flow++) {
+            third.nodeService.activateNode("node-" + flow);
+        }
+        time.advance(RUNNING);
+        NodeOwnership ownership = new NodeOwnership(third.bus);
+        for (int flow = 0; flow < 6; flow++) {
+            String owner = ownership.ownerOf("flow-" + flow);
+            assertTrue(owner.equals("i1") || owner.equals("i2"));
+            assertTrue(transitions.contains(owner + " node-" + flow + " DONE"));
+            assertEquals("DONE", second.nodeService.getNodeStateForTesting("node-" + flow));
+        }
+        assertEquals(12, transitions.size());
+    }
+
+    @Test
+    public void stateFromAnInstanceThatDoesNotOwnTheFlowIsIgnored() {
+        Instance first = new Instance("i0");
+        Instance second = new Instance("i1");
+        String owner = new NodeOwnership(first.bus).ownerOf(NodeDefinition.DEFAULT_FLOW);
+        Instance other = owner.equals("i0") ? second : first;
+        String otherId = owner.equals("i0") ? "i1" : "i0";
+        Instance ownerInstance = other == first ? second : first;
+
+        // A former owner's timer firing after the flow moved
+        ownerInstance.nodeService.onEvent(ClusterEvent.state(otherId, NodeDefinition.DEFAULT_FLOW, NodeService.NODE_B,
+                NodeState.DONE));
+        assertEquals("INACTIVE", ownerInstance.nodeService.getNodeStateForTesting(NodeService.NODE_B));
+        assertTrue(ownerInstance.broadcasts.isEmpty());
+
+        ownerInstance.nodeService.activateNode(NodeService.NODE_B);
+        time.runUntilIdle();
+        assertEquals("RUNNING", other.nodeService.getNodeStateForTesting(NodeService.NODE_B));
+    }
+
+    @Test
+    public void dependencyInAnotherFlowIsRejected() {
+        Instance instance = new Instance("i0");
+        instance.nodeService.registerNode(NodeDefinition.of("extract").inFlow("etl"));
+
+        assertThrows(IllegalArgumentException.class, () -> instance.nodeService.registerNode(
+                NodeDefinition.of("report").inFlow("billing").dependsOn("extract")));
+        assertThrows(IllegalArgumentException.class, () -> instance.nodeService.registerNode(
+                NodeDefinition.of("action").withAction(() -> { })));
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.flowbase_backend.cluster;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+
+/**
+ * In-JVM stand-in for {@link TcpClusterBus}, for running several instances in one test
+ * <p>
+ * Buses of the same {@link Network} are the members of one cluster. Events and membership
+ * changes are handed to the network's executor, one task per receiving instance, so with
+ * {@link com.example.flowbase_backend.scheduling.VirtualTime} they are delivered in publish
+ * order when the test runs queued tasks, and never inside the call that published them.
+ * <p>
+ * Not thread-safe; everything must be called from the test thread.
+ */
+public class InMemoryClusterBus implements ClusterBus {
+
+    private final String instanceId;
+    private final Network network;
+    private final List<ClusterListener> listeners = new ArrayList<>();
+
+    /**
+     * The instances that can reach each other
+     */
+    public static class Network {
+        private final Executor delivery;
+        private final Map<String, InMemoryClusterBus> members = new LinkedHashMap<>();
+
+        /**
+         * @param delivery executor on which events and membership changes reach the instances
+         */
+        public Network(Executor delivery) {
+            this.delivery = delivery;
+        }
+
+        private void membershipChanged() {
+            Set<String> current = Collections.unmodifiableSet(new TreeSet<>(members.keySet()));
+            for (InMemoryClusterBus member : List.copyOf(members.values())) {
+                delivery.execute(() -> member.listeners.forEach(listener -> listener.onMembershipChange(current)));
+            }
+        }
+    }
+
+    /**
+     * @param instanceId the ID of the instance, unique in the network
+     * @param network the network the instance joins with {@link #join()}
+     */
+    public InMemoryClusterBus(String instanceId, Network network) {
+        this.instanceId = instanceId;
+        this.network = network;
+    }
+
+    /**
+     * Become a member; the others are told once queued tasks run
+     */
+    public void join() {
+        network.members.put(instanceId, this);
+        network.membershipChanged();
+    }
+
+    /**
+     * Stop being a member, like an instance that crashed; events still queued for it are lost
+     */
+    public void leave() {
+        network.members.remove(instanceId);
+        network.membershipChanged();
+    }
+
+    @Override
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    @Override
+    public Set<String> getMembers() {
+        if (!network.members.containsKey(instanceId)) {
+            return Set.of(instanceId);
+        }
+        return Collections.unmodifiableSet(new TreeSet<>(network.members.keySet()));
+    }
+
+    @Override
+    public void publish(ClusterEvent event) {
+        if (!network.members.containsKey(instanceId)) {
+            return;
+        }
+        for (InMemoryClusterBus member : network.members.values()) {
+            if (member != this) {
+                network.delivery.execute(() -> {
+                    if (network.members.get(member.instanceId) == member) {
+                        member.listeners.forEach(listener -> listener.onEvent(event));
+                    }
+                });
+            }
+        }
+    }
+
+    @Override
+    public void addListener(ClusterListener listener) {
+        listeners.add(listener);
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.flowbase_backend.cluster;
+
+import com.example.flowbase_backend.engine.NodeDefinition;
+import com.example.flowbase_backend.engine.NodeState;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Tests for exchanging cluster events between two instances over localhost
+ */
+public class TcpClusterBusTest {
+
+    private static final Duration HEARTBEAT = Duration.ofMillis(50);
+    private static final Duration WRITE_TIMEOUT = Duration.ofMillis(200);
+    private static final String SECRET = "cluster-secret";
+
+    @Test
+    public void peersBecomeMembersAndReceiveEventsInPublishOrder() throws Exception {
+        try (TcpClusterBus first = bus("first"); TcpClusterBus second = bus("second")) {
+            BlockingQueue<ClusterEvent> received = new LinkedBlockingQueue<>();
+            second.addListener(received::add);
+            connect(first, second);
+
+            NodeDefinition definition = NodeDefinition.of("report").inFlow("billing").dependsOn("extract", "load")
+                    .runningFor(Duration.ofMillis(1500));
+            first.publish(ClusterEvent.register("first", definition));
+            for (int i = 0; i < 100; i++) {
+                first.publish(ClusterEvent.state("first", "billing", "node-" + i, NodeState.RUNNING));
+            }
+
+            ClusterEvent registration = received.poll(5, TimeUnit.SECONDS);
+            assertNotNull(registration);
+            NodeDefinition replicated = registration.toDefinition();
+            assertEquals("billing", replicated.getFlowId());
+            assertEquals(List.of("extract", "load"), replicated.getDependencies());
+            assertEquals(Duration.ofMillis(1500), replicated.getRunningDuration());
+            for (int i = 0; i < 100; i++) {
+                ClusterEvent state = received.poll(5, TimeUnit.SECONDS);
+                assertNotNull(state);
+                assertEquals("node-" + i + " RUNNING", state.getNodeId() + " " + state.getState());
+            }
+        }
+    }
+
+    @Test
+    public void closedPeerLeavesTheMembers() throws Exception {
+        try (TcpClusterBus first = bus("first")) {
+            TcpClusterBus second = bus("second");
+            connect(first, second);
+
+            second.close();
+
+            assertTrue(await(() -> first.getMembers().equals(Set.of("first"))), "second left");
+        }
+    }
+
+    @Test
+    public void peerWithAnotherSecretIsNotLetIn() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        try (TcpClusterBus first = bus("first", "other-secret", new SimpleMeterRegistry());
+             TcpClusterBus second = bus("second", SECRET, meterRegistry)) {
+            BlockingQueue<ClusterEvent> received = new LinkedBlockingQueue<>();
+            second.addListener(received::add);
+            first.addPeer(new InetSocketAddress("localhost", second.getPort()));
+
+            assertTrue(await(() -> meterRegistry.get("flowbase.cluster.connections.rejected").counter().count() >= 2),
+                    "first is rejected at every attempt");
+            first.publish(ClusterEvent.state("first", "billing", "node-A", NodeState.RUNNING));
+            assertEquals(Set.of("second"), second.getMembers());
+            assertNull(received.poll(HEARTBEAT.toMillis() * 3, TimeUnit.MILLISECONDS));
+        }
+        assertThrows(IllegalArgumentException.class, () -> new TcpClusterBus("third", 0, HEARTBEAT, " "));
+    }
+
+    @Test
+    public void stalledPeerHoldsUpNeitherTheOthersNorItsConnection() throws Exception {
+        try (TcpClusterBus first = bus("first"); TcpClusterBus second = bus("second");
+             ServerSocket stalled = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            BlockingQueue<ClusterEvent> received = new LinkedBlockingQueue<>();
+            second.addListener(received::add);
+            connect(first, second);
+            first.addPeer(new InetSocketAddress("localhost", stalled.getLocalPort()));
+            // Sends the challenge like a cluster member, then reads nothing
+            Socket stalledConnection = stalled.accept();
+            stalledConnection.getOutputStream().write(new byte[16]);
+            Thread.sleep(HEARTBEAT.toMillis() * 2);
+
+            // Far more than the socket buffers of the stalled connection hold
+            String payload = "x".repeat(60_000);
+            for (int i = 0; i < 500; i++) {
+                first.publish(ClusterEvent.state("first", "billing", payload + i, NodeState.RUNNING));
+            }
+
+            for (int i = 0; i < 500; i++) {
+                ClusterEvent state = received.poll(5, TimeUnit.SECONDS);
+                assertNotNull(state, "second got event " + i);
+                assertEquals(payload + i, state.getNodeId());
+            }
+            // The blocked write passes its deadline and the connection is closed under it
+            Thread.sleep(WRITE_TIMEOUT.plus(HEARTBEAT.multipliedBy(2)).toMillis());
+            stalledConnection.setSoTimeout(5000);
+            InputStream in = stalledConnection.getInputStream();
+            byte[] buffer = new byte[65536];
+            try {
+                while (in.read(buffer) >= 0) {
+                    // Drain what was sent before the close
+                }
+            } catch (SocketTimeoutException e) {
+                fail("The stalled connection is still open");
+            } catch (IOException e) {
+                // Reset by the closing side
+            }
+            stalledConnection.close();
+        }
+    }
+
+    @Test
+    public void unreachablePeersDelayNoHeartbeatToTheOthers() throws Exception {
+        List<ServerSocket> silent = new ArrayList<>();
+        try (TcpClusterBus first = bus("first"); TcpClusterBus second = bus("second")) {
+            List<Set<String>> membershipChanges = new CopyOnWriteArrayList<>();
+            second.addListener(new ClusterListener() {
+                @Override
+                public void onEvent(ClusterEvent event) {
+                }
+
+                @Override
+                public void onMembershipChange(Set<String> members) {
+                    membershipChanges.add(members);
+                }
+            });
+            connect(first, second);
+            // Accepted by the backlog but never answered: every dial waits for the challenge until it times out
+            for (int i = 0; i < 4; i++) {
+                silent.add(new ServerSocket(0, 50, InetAddress.getLoopbackAddress()));
+                first.addPeer(new InetSocketAddress("localhost", silent.get(i).getLocalPort()));
+            }
+
+            // Four dials in a row on the heartbeat thread would outlast second's three-interval read timeout
+            Thread.sleep(HEARTBEAT.multipliedBy(20).toMillis());
+            assertEquals(Set.of("first", "second"), second.getMembers());
+            assertTrue(membershipChanges.stream().allMatch(members -> members.contains("first")),
+                    "first left at some point: " + membershipChanges);
+        } finally {
+            for (ServerSocket socket : silent) {
+                socket.close();
+            }
+        }
+    }
+
+    private static TcpClusterBus bus(String instanceId) throws IOException {
+        return bus(instanceId, SECRET, new SimpleMeterRegistry());
+    }
+
+    private static TcpClusterBus bus(String instanceId, String secret, SimpleMeterRegistry meterRegistry)
+            throws IOException {
+        TcpClusterBus bus = new TcpClusterBus(instanceId, InetAddress.getLoopbackAddress(), 0, HEARTBEAT,
+                WRITE_TIMEOUT, 1000, secret, meterRegistry);
+        bus.start();
+        return bus;
+    }
+
+    private static void connect(TcpClusterBus first, TcpClusterBus second) throws InterruptedException {
+        first.addPeer(new InetSocketAddress("localhost", second.getPort()));
+        second.addPeer(new InetSocketAddress("localhost", first.getPort()));
+        assertTrue(await(() -> first.getMembers().size() == 2 && second.getMembers().size() == 2), "connected");
+    }
+
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+}
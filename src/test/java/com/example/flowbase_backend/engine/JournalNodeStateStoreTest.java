@@ -0,0 +1,169 @@
+package com.example.flowbase_backend.engine;
+
+import com.example.flowbase_backend.scheduling.TimerWheel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for journaling node state transitions and restoring them after a restart
+ */
+public class JournalNodeStateStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private long now;
+
+    @Test
+    public void latestStatePerNodeSurvivesSegmentRollsAndReopening() throws Exception {
+        // 1 KiB segments hold about 25 records, so this rolls many times
+        try (JournalNodeStateStore store = new JournalNodeStateStore(directory, 1024, Duration.ofMillis(1))) {
+            for (int i = 0; i < 500; i++) {
+                store.append("node-" + i % 10, i % 2 == 0 ? NodeState.RUNNING : NodeState.DONE, null);
+            }
+            store.append("timed", NodeState.RUNNING, Duration.ofHours(1));
+        }
+
+        try (JournalNodeStateStore store = new JournalNodeStateStore(directory, 1024, Duration.ofMillis(1))) {
+            assertEquals(11, store.recoveredStates().size());
+            for (int i = 0; i < 10; i++) {
+                // The last record of node-i is number 490 + i
+                assertEquals(i % 2 == 0 ? NodeState.RUNNING : NodeState.DONE,
+                        store.recoveredStates().get("node-" + i).getState());
+            }
+            NodeStateRecord timed = store.recoveredStates().get("timed");
+            assertEquals(NodeState.RUNNING, timed.getState());
+            assertEquals(Duration.ofHours(1).toMillis(), timed.getDeadlineMillis() - timed.getTimestampMillis());
+        }
+        // Opening compacts everything into one snapshot and one fresh segment
+        List<String> files = fileNames();
+        assertEquals(2, files.size());
+        assertEquals(files.get(0).replace("segment-", "").replace(".journal", ""),
+                files.get(1).replace("snapshot-", "").replace(".bin", ""));
+    }
+
+    @Test
+    public void replayStopsAtARecordWithAWrongChecksum() throws Exception {
+        try (JournalNodeStateStore store = new JournalNodeStateStore(directory, 4096, Duration.ZERO)) {
+            store.append("first", NodeState.DONE, null);
+            store.append("second", NodeState.DONE, null);
+        }
+        // Flip the last byte of the second record's node ID, as a torn write would leave it
+        Path segment = directory.resolve("segment-0000000000000001.journal");
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            int secondRecordEnd = 2 * (8 + 17) + "first".length() + "second".length();
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, secondRecordEnd - 1);
+            last.put(0, (byte) (last.get(0) ^ 0xff)).rewind();
+            channel.write(last, secondRecordEnd - 1);
+        }
+
+        try (JournalNodeStateStore store = new JournalNodeStateStore(directory, 4096, Duration.ZERO)) {
+            assertEquals(NodeState.DONE, store.recoveredStates().get("first").getState());
+            assertNull(store.recoveredStates().get("second"));
+        }
+    }
+
+    @Test
+    public void engineRestoresDoneNodesAndRunningDeadlines() throws Exception {
+        try (JournalNodeStateStore store = new JournalNodeStateStore(directory, 4096, Duration.ofMillis(1))) {
+            NodeExecutionEngine engine = engine(store);
+            engine.register(NodeDefinition.of("done").withAction(() -> { }));
+            engine.register(NodeDefinition.of("overdue").runningFor(Duration.ofMillis(1)));
+            engine.register(NodeDefinition.of("waiting").runningFor(Duration.ofHours(1)));
+            engine.activate("done");
+            engine.activate("overdue");
+            engine.activate("waiting");
+            // The wheel is never advanced, so "overdue" is still RUNNING when the store closes
+            assertEquals(NodeState.RUNNING, engine.getState("overdue"));
+        }
+        Thread.sleep(5);
+
+        try (JournalNodeStateStore store = new JournalNodeStateStore(directory, 4096, Duration.ofMillis(1))) {
+            TimerWheel timerWheel = new TimerWheel(Duration.ofMillis(10), 8, () -> now);
+            NodeExecutionEngine engine = new NodeExecutionEngine(timerWheel, Runnable::run, 16,
+                    new SimpleMeterRegistry(), store);
+            engine.register(NodeDefinition.of("done").withAction(() -> { }));
+            engine.register(NodeDefinition.of("overdue").runningFor(Duration.ofMillis(1)));
+            engine.register(NodeDefinition.of("waiting").runningFor(Duration.ofHours(1)));
+            engine.register(NodeDefinition.of("new"));
+
+            assertEquals(NodeState.DONE, engine.getState("done"));
+            assertEquals(NodeState.RUNNING, engine.getState("overdue"));
+            assertEquals(NodeState.RUNNING, engine.getState("waiting"));
+            assertEquals(NodeState.INACTIVE, engine.getState("new"));
+
+            // The overdue deadline fires on the next tick, the other one keeps its hour
+            now += Duration.ofMillis(10).toNanos();
+            timerWheel.advanceTo(now);
+            assertEquals(NodeState.DONE, engine.getState("overdue"));
+            assertEquals(NodeState.RUNNING, engine.getState("waiting"));
+            assertEquals(1, timerWheel.pendingTimeouts());
+        }
+    }
+
+    @Test
+    public void successorWaitingOnTwoPredecessorsStartsOnceTheOtherIsDoneAfterARestart() throws Exception {
+        try (JournalNodeStateStore store = new JournalNodeStateStore(directory, 4096, Duration.ofMillis(1))) {
+            NodeExecutionEngine engine = graph(engine(store));
+            engine.activate("a");
+            assertEquals(NodeState.DONE, engine.getState("a"));
+            assertEquals(NodeState.INACTIVE, engine.getState("c"));
+        }
+
+        try (JournalNodeStateStore store = new JournalNodeStateStore(directory, 4096, Duration.ofMillis(1))) {
+            // "c" has no record of its own, but "a" comes back DONE
+            NodeExecutionEngine engine = graph(engine(store));
+            assertEquals(NodeState.DONE, engine.getState("a"));
+
+            engine.activate("b");
+            assertEquals(NodeState.DONE, engine.getState("c"));
+        }
+    }
+
+    @Test
+    public void directoryOpenInAnotherStoreIsRejected() throws Exception {
+        try (JournalNodeStateStore store = new JournalNodeStateStore(directory, 4096, Duration.ofMillis(1))) {
+            store.append("first", NodeState.DONE, null);
+            assertThrows(IOException.class, () -> new JournalNodeStateStore(directory, 4096, Duration.ofMillis(1)));
+            assertEquals(2, fileNames().size(), "The live segment and the snapshot are left alone");
+        }
+        try (JournalNodeStateStore store = new JournalNodeStateStore(directory, 4096, Duration.ofMillis(1))) {
+            assertEquals(NodeState.DONE, store.recoveredStates().get("first").getState());
+        }
+    }
+
+    private static NodeExecutionEngine graph(NodeExecutionEngine engine) {
+        engine.register(NodeDefinition.of("a").withAction(() -> { }));
+        engine.register(NodeDefinition.of("b").withAction(() -> { }));
+        engine.register(NodeDefinition.of("c").dependsOn("a", "b").withAction(() -> { }));
+        return engine;
+    }
+
+    private NodeExecutionEngine engine(NodeStateStore store) {
+        TimerWheel timerWheel = new TimerWheel(Duration.ofMillis(10), 8, () -> now);
+        return new NodeExecutionEngine(timerWheel, Runnable::run, 16, new SimpleMeterRegistry(), store);
+    }
+
+    private List<String> fileNames() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).filter(name -> !name.equals("journal.lock"))
+                    .sorted().toList();
+        }
+    }
+}
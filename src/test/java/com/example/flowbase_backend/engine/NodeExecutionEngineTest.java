@@ -0,0 +1,212 @@
+package com.example.flowbase_backend.engine;
+
+import com.example.flowbase_backend.scheduling.TimerWheel;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for dependency release in the node execution engine
+ */
+public class NodeExecutionEngineTest {
+
+    private TimerWheel timerWheel;
+    private ForkJoinPool executor;
+    private MeterRegistry meterRegistry;
+    private NodeExecutionEngine engine;
+
+    @BeforeEach
+    public void setUp() {
+        timerWheel = new TimerWheel(Duration.ofMillis(5), 64);
+        timerWheel.start("engine-test-timer");
+        executor = new ForkJoinPool(4);
+        meterRegistry = new SimpleMeterRegistry();
+        engine = new NodeExecutionEngine(timerWheel, executor, 1024, meterRegistry, NodeStateStore.NONE);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        timerWheel.stop();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void diamondReleasesJoinOnlyAfterBothBranchesAreDone() throws InterruptedException {
+        List<String> started = new CopyOnWriteArrayList<>();
+        CountDownLatch joinDone = new CountDownLatch(1);
+        engine.addListener((nodeId, state) -> {
+            if (state == NodeState.RUNNING) {
+                started.add(nodeId);
+            } else if (state == NodeState.DONE && nodeId.equals("join")) {
+                joinDone.countDown();
+            }
+        });
+
+        engine.register(NodeDefinition.of("root").runningFor(Duration.ofMillis(10)));
+        engine.register(NodeDefinition.of("left").dependsOn("root").runningFor(Duration.ofMillis(10)));
+        engine.register(NodeDefinition.of("right").dependsOn("root").runningFor(Duration.ofMillis(60)));
+        engine.register(NodeDefinition.of("join").dependsOn("left", "right").withAction(() -> { }));
+
+        assertTrue(engine.activate("root"));
+        assertTrue(joinDone.await(2, TimeUnit.SECONDS), "join should be DONE");
+
+        assertEquals("root", started.get(0));
+        assertEquals("join", started.get(3));
+        assertEquals(NodeState.DONE, engine.getState("left"));
+        assertEquals(NodeState.DONE, engine.getState("right"));
+    }
+
+    @Test
+    public void branchThatRunsTwiceDoesNotReleaseTheJoinAlone() throws InterruptedException {
+        List<String> started = new CopyOnWriteArrayList<>();
+        Semaphore done = new Semaphore(0);
+        engine.addListener((nodeId, state) -> {
+            if (state == NodeState.RUNNING) {
+                started.add(nodeId);
+            } else if (state == NodeState.DONE) {
+                done.release();
+            }
+        });
+        engine.register(NodeDefinition.of("left").withAction(() -> { }));
+        engine.register(NodeDefinition.of("right").withAction(() -> { }));
+        engine.register(NodeDefinition.of("join").dependsOn("left", "right").withAction(() -> { }));
+
+        for (int run = 0; run < 2; run++) {
+            assertTrue(engine.activate("left"));
+            assertTrue(done.tryAcquire(2, TimeUnit.SECONDS), "left should be DONE");
+        }
+        assertTrue(executor.awaitQuiescence(2, TimeUnit.SECONDS));
+        assertEquals(NodeState.INACTIVE, engine.getState("join"), "right has not run yet");
+
+        assertTrue(engine.activate("right"));
+        assertTrue(done.tryAcquire(2, 2, TimeUnit.SECONDS), "right and join should be DONE");
+        assertEquals(List.of("left", "left", "right", "join"), started);
+
+        // The join's next run again needs both branches
+        assertTrue(engine.activate("left"));
+        assertTrue(done.tryAcquire(2, TimeUnit.SECONDS));
+        assertTrue(engine.activate("left"));
+        assertTrue(done.tryAcquire(2, TimeUnit.SECONDS));
+        assertTrue(executor.awaitQuiescence(2, TimeUnit.SECONDS));
+        assertEquals(1, started.stream().filter("join"::equals).count());
+    }
+
+    @Test
+    public void longChainIsNotDelayedByPolling() throws InterruptedException {
+        int length = 500;
+        CountDownLatch lastDone = new CountDownLatch(1);
+        engine.addListener((nodeId, state) -> {
+            if (state == NodeState.DONE && nodeId.equals("n" + (length - 1))) {
+                lastDone.countDown();
+            }
+        });
+        engine.register(NodeDefinition.of("n0").withAction(() -> { }));
+        for (int i = 1; i < length; i++) {
+            engine.register(NodeDefinition.of("n" + i).dependsOn("n" + (i - 1)).withAction(() -> { }));
+        }
+
+        engine.activate("n0");
+        assertTrue(lastDone.await(2, TimeUnit.SECONDS), "A chain of instant nodes should finish well within a second");
+    }
+
+    @Test
+    public void failedActionDoesNotReleaseSuccessors() throws InterruptedException {
+        CountDownLatch failed = new CountDownLatch(1);
+        engine.addListener((nodeId, state) -> {
+            if (state == NodeState.INACTIVE) {
+                failed.countDown();
+            }
+        });
+        engine.register(NodeDefinition.of("broken").withAction(() -> {
+            throw new IllegalStateException("boom");
+        }));
+        engine.register(NodeDefinition.of("after").dependsOn("broken"));
+
+        engine.activate("broken");
+        assertTrue(failed.await(2, TimeUnit.SECONDS));
+        assertEquals(NodeState.INACTIVE, engine.getState("after"));
+    }
+
+    @Test
+    public void recordsActivationLatencyAndRunningDurationWithoutNodeTags() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        engine.addListener((nodeId, state) -> {
+            if (state == NodeState.DONE && nodeId.equals("second")) {
+                done.countDown();
+            }
+        });
+        engine.register(NodeDefinition.of("first").runningFor(Duration.ofMillis(50)));
+        engine.register(NodeDefinition.of("second").dependsOn("first").withAction(() -> { }));
+
+        engine.activate("first");
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+
+        assertEquals(1, meterRegistry.get("flowbase.node.activation").tag("trigger", "manual").timer().count());
+        assertEquals(1, meterRegistry.get("flowbase.node.activation").tag("trigger", "dependency").timer().count());
+        Timer running = meterRegistry.get("flowbase.node.running").tag("outcome", "done").timer();
+        assertEquals(2, running.count());
+        assertTrue(running.max(TimeUnit.MILLISECONDS) >= 50, "The timed node ran for at least its duration");
+    }
+
+    @Test
+    public void concurrentActivationsStartOneRunAtATimeAndEveryRunEndsOnce() throws InterruptedException {
+        // Actions run on the activating thread, so runs start and end on all threads at once
+        NodeExecutionEngine direct = new NodeExecutionEngine(timerWheel, Runnable::run, 16, meterRegistry, NodeStateStore.NONE);
+        direct.register(NodeDefinition.of("shared").withAction(() -> { }));
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger done = new AtomicInteger();
+        direct.addListener((nodeId, state) -> (state == NodeState.RUNNING ? running : done).incrementAndGet());
+        AtomicInteger started = new AtomicInteger();
+        CountDownLatch startGate = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        for (int thread = 0; thread < 8; thread++) {
+            callers.execute(() -> {
+                try {
+                    startGate.await();
+                    for (int i = 0; i < 10_000; i++) {
+                        if (direct.activate("shared")) {
+                            started.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        startGate.countDown();
+        callers.shutdown();
+        assertTrue(callers.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertTrue(started.get() > 0);
+        assertEquals(started.get(), running.get());
+        assertEquals(started.get(), done.get());
+        assertEquals(NodeState.DONE, direct.getState("shared"));
+    }
+
+    @Test
+    public void rejectsUnknownDependenciesAndDuplicates() {
+        engine.register(NodeDefinition.of("a"));
+        assertThrows(IllegalArgumentException.class, () -> engine.register(NodeDefinition.of("a")));
+        assertThrows(IllegalArgumentException.class, () -> engine.register(NodeDefinition.of("b").dependsOn("missing")));
+        assertFalse(engine.isRegistered("b"));
+    }
+}
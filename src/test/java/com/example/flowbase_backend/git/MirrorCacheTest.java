@@ -0,0 +1,164 @@
+package com.example.flowbase_backend.git;
+
+import com.example.flowbase_backend.service.GitService;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for refreshing, evicting and cloning from Git mirrors
+ */
+public class MirrorCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ForkJoinPool pool = new ForkJoinPool(2);
+
+    @AfterEach
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void secondAcquireFetchesOnlyNewCommitsIntoTheSameMirror() throws Exception {
+        Path seed = createRemote("remote");
+        String remoteUrl = tempDir.resolve("remote.git").toUri().toString();
+        MirrorCache cache = new MirrorCache(tempDir.resolve("mirrors"), Long.MAX_VALUE);
+
+        Path mirrorPath;
+        try (MirrorCache.Lease mirror = cache.acquire(remoteUrl, null, NullProgressMonitor.INSTANCE)) {
+            mirrorPath = mirror.getPath();
+        }
+        ObjectId pushed = commit(seed, "second");
+
+        try (MirrorCache.Lease mirror = cache.acquire(remoteUrl, null, NullProgressMonitor.INSTANCE);
+             Git git = Git.open(mirror.getPath().toFile())) {
+            assertEquals(mirrorPath, mirror.getPath());
+            assertEquals(pushed, git.getRepository().resolve(Constants.R_HEADS + "main"));
+        }
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+
+        // A new cache over the same directory picks the mirror up again
+        MirrorCache reopened = new MirrorCache(tempDir.resolve("mirrors"), Long.MAX_VALUE);
+        assertEquals(1, reopened.size());
+        reopened.acquire(remoteUrl, null, NullProgressMonitor.INSTANCE).close();
+        assertEquals(1, reopened.getHits());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedMirrorsButNotOnesInUse() throws Exception {
+        createRemote("first");
+        createRemote("second");
+        String firstUrl = tempDir.resolve("first.git").toUri().toString();
+        String secondUrl = tempDir.resolve("second.git").toUri().toString();
+        RepositoryTrash trash = new RepositoryTrash(pool);
+        MirrorCache cache = new MirrorCache(tempDir.resolve("mirrors"), 1, trash);
+
+        Path secondPath;
+        try (MirrorCache.Lease first = cache.acquire(firstUrl, null, NullProgressMonitor.INSTANCE)) {
+            try (MirrorCache.Lease second = cache.acquire(secondUrl, null, NullProgressMonitor.INSTANCE)) {
+                // Both are over budget, but both are in use
+                assertEquals(2, cache.size());
+                assertTrue(Files.exists(first.getPath()));
+                secondPath = second.getPath();
+            }
+        }
+
+        Path firstPath;
+        try (MirrorCache.Lease first = cache.acquire(firstUrl, null, NullProgressMonitor.INSTANCE)) {
+            firstPath = first.getPath();
+        }
+        // second was released and used least recently
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertTrue(Files.exists(firstPath));
+        assertFalse(Files.exists(secondPath));
+        pool.awaitQuiescence(10, TimeUnit.SECONDS);
+        assertEquals(0, trash.getPending());
+        assertEquals(0, trash.getFailedPaths());
+        assertFalse(Files.exists(tempDir.resolve("mirrors").resolve(RepositoryTrash.TRASH_DIRECTORY)));
+    }
+
+    @Test
+    public void gitServiceClonesAndPullsThroughTheMirror() throws Exception {
+        Path seed = createRemote("remote");
+        String remoteUrl = tempDir.resolve("remote.git").toUri().toString();
+        MirrorCache cache = new MirrorCache(tempDir.resolve("mirrors"), Long.MAX_VALUE);
+        GitService gitService = new GitService(new RepositoryHandleCache(4), cache);
+        Path localPath = tempDir.resolve("clone");
+
+        try (Git git = gitService.cloneRepository(remoteUrl, localPath.toString(), null, null)) {
+            assertEquals(remoteUrl, git.getRepository().getConfig().getString("remote", "origin", "url"));
+            assertFalse(Files.exists(git.getRepository().getDirectory().toPath().resolve("objects/info/alternates")),
+                    "Clones must not depend on a mirror that can be evicted");
+        }
+        assertTrue(Files.exists(localPath.resolve("README.md")));
+
+        ObjectId pushed = commit(seed, "second");
+        gitService.pullChanges(localPath.toString(), null, null);
+        try (Git git = Git.open(localPath.toFile())) {
+            assertEquals(pushed, git.getRepository().resolve(Constants.HEAD));
+        }
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void shallowAndSingleBranchClonesGoStraightToTheRemote() throws Exception {
+        Path seed = createRemote("remote");
+        commit(seed, "second");
+        String remoteUrl = tempDir.resolve("remote.git").toUri().toString();
+        MirrorCache cache = new MirrorCache(tempDir.resolve("mirrors"), Long.MAX_VALUE);
+        GitService gitService = new GitService(new RepositoryHandleCache(4), cache);
+        Path shallow = tempDir.resolve("shallow");
+        Path singleBranch = tempDir.resolve("single-branch");
+
+        gitService.cloneRepository(remoteUrl, shallow.toString(), null, null,
+                CloneOptions.FULL.withDepth(1), NullProgressMonitor.INSTANCE).close();
+        gitService.cloneRepository(remoteUrl, singleBranch.toString(), null, null,
+                CloneOptions.FULL.withSingleBranch(true), NullProgressMonitor.INSTANCE).close();
+        ObjectId pushed = commit(seed, "third");
+        gitService.pullChanges(singleBranch.toString(), null, null);
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getMisses() + cache.getHits());
+        try (Git git = Git.open(singleBranch.toFile())) {
+            assertEquals(pushed, git.getRepository().resolve(Constants.HEAD));
+        }
+    }
+
+    private Path createRemote(String name) throws Exception {
+        Path remote = tempDir.resolve(name + ".git");
+        Git.init().setBare(true).setDirectory(remote.toFile()).setInitialBranch("main").call().close();
+        Path seed = tempDir.resolve(name + "-seed");
+        Git.init().setDirectory(seed.toFile()).setInitialBranch("main").call().close();
+        commit(seed, "initial");
+        return seed;
+    }
+
+    private ObjectId commit(Path seed, String message) throws Exception {
+        String remoteUrl = seed.resolveSibling(seed.getFileName().toString().replace("-seed", ".git")).toUri().toString();
+        try (Git git = Git.open(seed.toFile())) {
+            Files.writeString(seed.resolve("README.md"), message);
+            git.add().addFilepattern(".").call();
+            ObjectId id = git.commit().setMessage(message).setAuthor("test", "test@example.com").call().getId();
+            git.push().setRemote(remoteUrl).add("main").call();
+            return id;
+        }
+    }
+}
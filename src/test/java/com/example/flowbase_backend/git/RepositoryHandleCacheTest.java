@@ -0,0 +1,83 @@
+package com.example.flowbase_backend.git;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for reuse, eviction and invalidation of cached repositories
+ */
+public class RepositoryHandleCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void reusesOpenRepositoryAndEvictsLeastRecentlyUsed() throws Exception {
+        Path first = init("first");
+        Path second = init("second");
+        RepositoryHandleCache cache = new RepositoryHandleCache(1);
+
+        try (RepositoryHandle a = cache.acquire(first); RepositoryHandle b = cache.acquire(first.resolve("."))) {
+            assertSame(a.getRepository(), b.getRepository());
+        }
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+
+        try (RepositoryHandle handle = cache.acquire(second)) {
+            assertNotNull(handle.getRepository());
+        }
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getEvictions());
+
+        // first was evicted, so it has to be opened again
+        try (RepositoryHandle handle = cache.acquire(first)) {
+            assertNotNull(handle.getRepository());
+        }
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    public void invalidatedRepositoryStaysUsableUntilReleased() throws Exception {
+        Path path = init("repo");
+        RepositoryHandleCache cache = new RepositoryHandleCache(4);
+
+        try (RepositoryHandle handle = cache.acquire(path)) {
+            assertTrue(cache.invalidate(path));
+            assertEquals(0, cache.size());
+            // Still open for the request that holds it
+            Files.writeString(path.resolve("file.txt"), "content");
+            handle.git().add().addFilepattern("file.txt").call();
+            handle.git().commit().setMessage("still open").setAuthor("a", "a@example.com").call();
+        }
+
+        try (RepositoryHandle handle = cache.acquire(path)) {
+            assertEquals("still open", handle.git().log().call().iterator().next().getFullMessage());
+        }
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void missingRepositoryIsNotCached() {
+        RepositoryHandleCache cache = new RepositoryHandleCache(4);
+        assertThrows(RepositoryNotFoundException.class, () -> cache.acquire(tempDir.resolve("missing")));
+        assertThrows(RepositoryNotFoundException.class, () -> cache.acquire(tempDir));
+        assertEquals(0, cache.size());
+    }
+
+    private Path init(String name) throws Exception {
+        Path path = tempDir.resolve(name);
+        Git.init().setDirectory(path.toFile()).call().close();
+        return path;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.flowbase_backend.git;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for per-repository read/write locks
+ */
+public class RepositoryLockManagerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void readersShareAndWritersExcludeOnlyTheirOwnRepository() throws Exception {
+        RepositoryLockManager locks = new RepositoryLockManager(Duration.ofMillis(100));
+        Path first = tempDir.resolve("first");
+        Path second = tempDir.resolve("second");
+
+        try (RepositoryLockManager.RepositoryLock read = locks.read(first)) {
+            // Another reader gets in, a writer does not
+            assertNull(lockInOtherThread(locks, first, false));
+            assertInstanceOf(RepositoryLockTimeoutException.class, lockInOtherThread(locks, first, true));
+            // Other repositories are not affected
+            assertNull(lockInOtherThread(locks, second, true));
+        }
+
+        assertEquals(1L, locks.getStats().get("writeTimeouts"));
+        assertEquals(2L, locks.getStats().get("readAcquisitions"));
+        assertEquals(0, locks.size());
+    }
+
+    @Test
+    public void waitingWriterIsNotOvertakenByLaterReaders() throws Exception {
+        RepositoryLockManager locks = new RepositoryLockManager(Duration.ofSeconds(5));
+        Path repository = tempDir.resolve("repo");
+        CountDownLatch writerDone = new CountDownLatch(1);
+
+        RepositoryLockManager.RepositoryLock read = locks.read(repository);
+        executor.submit(() -> {
+            try (RepositoryLockManager.RepositoryLock write = locks.write(repository)) {
+                writerDone.countDown();
+            }
+            return null;
+        });
+        // Give the writer time to queue up behind the reader
+        Thread.sleep(100);
+        Future<Boolean> lateReader = executor.submit(() -> {
+            try (RepositoryLockManager.RepositoryLock late = locks.read(repository)) {
+                return writerDone.getCount() == 0;
+            }
+        });
+        Thread.sleep(100);
+        assertFalse(lateReader.isDone());
+
+        read.close();
+        assertTrue(lateReader.get(5, TimeUnit.SECONDS), "The late reader ran before the waiting writer");
+    }
+
+    @Test
+    public void repositoryHasTheSameLockBeforeAndAfterItIsCreated() throws Exception {
+        RepositoryLockManager locks = new RepositoryLockManager(Duration.ofMillis(50));
+        Path repository = tempDir.resolve("clone");
+
+        try (RepositoryLockManager.RepositoryLock clone = locks.write(repository.resolve("."))) {
+            Files.createDirectories(repository);
+            assertEquals(clone.getPath(), repository.toRealPath());
+            assertInstanceOf(RepositoryLockTimeoutException.class, lockInOtherThread(locks, repository, true));
+        }
+    }
+
+    /**
+     * @return the exception thrown while locking, or null if the lock was acquired
+     */
+    private Throwable lockInOtherThread(RepositoryLockManager locks, Path repository, boolean exclusive) throws Exception {
+        try {
+            executor.submit(() -> {
+                (exclusive ? locks.write(repository) : locks.read(repository)).close();
+                return null;
+            }).get(5, TimeUnit.SECONDS);
+            return null;
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.flowbase_backend.git;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for moving repositories to the trash and deleting them in the background
+ */
+public class RepositoryTrashTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ForkJoinPool pool = new ForkJoinPool(2);
+
+    @AfterEach
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void pathIsFreeAtOnceAndTreeIsDeletedInTheBackground() throws Exception {
+        Path repository = tempDir.resolve("repo");
+        // 1 + 3 directories, 3 * 10 files
+        for (int d = 0; d < 3; d++) {
+            Path directory = Files.createDirectories(repository.resolve("dir-" + d));
+            for (int f = 0; f < 10; f++) {
+                Files.writeString(directory.resolve("file-" + f), "content");
+            }
+        }
+        RepositoryTrash trash = new RepositoryTrash(pool);
+
+        CompletableFuture<Long> deleted = trash.delete(repository);
+        assertFalse(Files.exists(repository));
+
+        assertEquals(34L, deleted.get(10, TimeUnit.SECONDS));
+        assertEquals(0, trash.getPending());
+        assertEquals(0, trash.getFailedPaths());
+        // Removed once empty, nothing is left next to the repositories
+        assertFalse(Files.exists(tempDir.resolve(RepositoryTrash.TRASH_DIRECTORY)));
+    }
+
+    @Test
+    public void leftoversOfAnEarlierProcessAreDeleted() throws Exception {
+        Path leftover = Files.createDirectories(tempDir.resolve(RepositoryTrash.TRASH_DIRECTORY).resolve("old-repo/objects"));
+        Files.writeString(leftover.resolve("pack"), "content");
+        Files.createDirectories(tempDir.resolve("repo"));
+        RepositoryTrash trash = new RepositoryTrash(pool);
+
+        trash.delete(tempDir.resolve("repo")).get(10, TimeUnit.SECONDS);
+
+        pool.awaitQuiescence(10, TimeUnit.SECONDS);
+        assertFalse(Files.exists(leftover.getParent()));
+        assertFalse(Files.exists(tempDir.resolve(RepositoryTrash.TRASH_DIRECTORY)));
+        assertEquals(0, trash.getPending());
+
+        // Created again for the next deletion, and removed again after it
+        Files.createDirectories(tempDir.resolve("other-repo/objects"));
+        trash.delete(tempDir.resolve("other-repo")).get(10, TimeUnit.SECONDS);
+        assertFalse(Files.exists(tempDir.resolve("other-repo")));
+        assertFalse(Files.exists(tempDir.resolve(RepositoryTrash.TRASH_DIRECTORY)));
+    }
+
+    @Test
+    public void symlinkedRepositoryLosesOnlyTheLink() throws Exception {
+        Path target = Files.createDirectories(tempDir.resolve("elsewhere/objects"));
+        Files.writeString(target.resolve("pack"), "content");
+        Path repository = Files.createSymbolicLink(tempDir.resolve("repo"), target.getParent());
+        Path leftover = Files.createSymbolicLink(
+                Files.createDirectories(tempDir.resolve(RepositoryTrash.TRASH_DIRECTORY)).resolve("old-repo"), target);
+        RepositoryTrash trash = new RepositoryTrash(pool);
+
+        assertEquals(1L, trash.delete(repository).get(10, TimeUnit.SECONDS));
+
+        pool.awaitQuiescence(10, TimeUnit.SECONDS);
+        assertFalse(Files.exists(repository, LinkOption.NOFOLLOW_LINKS));
+        assertFalse(Files.exists(leftover, LinkOption.NOFOLLOW_LINKS));
+        assertTrue(Files.exists(target.resolve("pack")), "The link target must stay");
+        assertEquals(0, trash.getFailedPaths());
+        assertFalse(Files.exists(tempDir.resolve(RepositoryTrash.TRASH_DIRECTORY)));
+    }
+}
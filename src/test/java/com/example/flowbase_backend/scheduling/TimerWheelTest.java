@@ -0,0 +1,79 @@
+package com.example.flowbase_backend.scheduling;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the timer wheel, driven manually through a fake clock
+ */
+public class TimerWheelTest {
+
+    private long now;
+
+    @Test
+    public void firesDeadlinesInOrderWithinOneTick() {
+        TimerWheel timerWheel = new TimerWheel(Duration.ofMillis(10), 8, () -> now);
+        List<String> fired = new ArrayList<>();
+
+        timerWheel.schedule(() -> fired.add("late"), Duration.ofSeconds(5));
+        timerWheel.schedule(() -> fired.add("early"), Duration.ofMillis(25));
+
+        advance(timerWheel, Duration.ofMillis(20));
+        assertTrue(fired.isEmpty(), "Nothing should fire before its deadline");
+
+        advance(timerWheel, Duration.ofMillis(10));
+        assertEquals(List.of("early"), fired);
+
+        // 5 s spans several rotations of an 8-bucket wheel
+        advance(timerWheel, Duration.ofMillis(4960));
+        assertEquals(List.of("early"), fired);
+        advance(timerWheel, Duration.ofMillis(10));
+        assertEquals(List.of("early", "late"), fired);
+        assertEquals(0, timerWheel.pendingTimeouts());
+    }
+
+    @Test
+    public void cancelledTimeoutDoesNotFire() {
+        TimerWheel timerWheel = new TimerWheel(Duration.ofMillis(10), 8, () -> now);
+        List<String> fired = new ArrayList<>();
+
+        TimerWheel.Timeout timeout = timerWheel.schedule(() -> fired.add("cancelled"), Duration.ofMillis(50));
+        advance(timerWheel, Duration.ofMillis(20));
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+
+        advance(timerWheel, Duration.ofMillis(100));
+        assertTrue(fired.isEmpty());
+        assertTrue(timeout.isCancelled());
+        assertEquals(0, timerWheel.pendingTimeouts());
+    }
+
+    @Test
+    public void drivingThreadFiresInRealTime() throws InterruptedException {
+        TimerWheel timerWheel = new TimerWheel(Duration.ofMillis(5), 64);
+        CountDownLatch latch = new CountDownLatch(1000);
+        timerWheel.start("timer-wheel-test");
+        try {
+            for (int i = 0; i < 1000; i++) {
+                timerWheel.schedule(latch::countDown, Duration.ofMillis(i % 100));
+            }
+            assertTrue(latch.await(2, TimeUnit.SECONDS), "All deadlines should fire");
+        } finally {
+            timerWheel.stop();
+        }
+    }
+
+    private void advance(TimerWheel timerWheel, Duration duration) {
+        now += duration.toNanos();
+        timerWheel.advanceTo(now);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.flowbase_backend.scheduling;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Deterministic virtual time for lifecycle tests.
+ * <p>
+ * It is the time source of its {@link TimerWheel} and the executor for the engine and for
+ * delayed activations. Nothing runs on another thread: executed tasks are queued and run by
+ * {@link #runUntilIdle()}, and time only moves in {@link #advance(Duration)}, one tick at a
+ * time. After every tick the tasks released by expired deadlines run before the next tick, so
+ * a deadline scheduled by a task is measured from the tick that task ran in.
+ * <p>
+ * Not thread-safe; everything must be called from the test thread.
+ */
+public class VirtualTime implements Executor {
+
+    private final long tickNanos;
+    private final TimerWheel timerWheel;
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private long nowNanos;
+
+    /**
+     * @param tick resolution of the timer wheel and step of {@link #advance(Duration)}
+     * @param ticksPerWheel number of buckets of the timer wheel
+     */
+    public VirtualTime(Duration tick, int ticksPerWheel) {
+        this.tickNanos = tick.toNanos();
+        this.timerWheel = new TimerWheel(tick, ticksPerWheel, () -> nowNanos);
+    }
+
+    /**
+     * @return timer wheel driven by this virtual time; it must not be started
+     */
+    public TimerWheel getTimerWheel() {
+        return timerWheel;
+    }
+
+    /**
+     * @return virtual time elapsed since this instance was created
+     */
+    public Duration elapsed() {
+        return Duration.ofNanos(nowNanos);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        tasks.add(task);
+    }
+
+    /**
+     * Run queued tasks, including the ones they queue, until none is left
+     * @return number of tasks that were run
+     */
+    public int runUntilIdle() {
+        int ran = 0;
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+            ran++;
+        }
+        return ran;
+    }
+
+    /**
+     * Move time forward tick by tick, firing expired deadlines and running queued tasks
+     * @param duration how far to move
+     */
+    public void advance(Duration duration) {
+        long target = nowNanos + duration.toNanos();
+        runUntilIdle();
+        while (nowNanos < target) {
+            long nextTick = (nowNanos / tickNanos + 1) * tickNanos;
+            nowNanos = Math.min(nextTick, target);
+            timerWheel.advanceTo(nowNanos);
+            runUntilIdle();
+        }
+    }
+
+    /**
+     * Move time forward tick by tick until the condition holds
+     * @param condition checked before the first and after every tick
+     * @param limit how far to move at most
+     * @return true if the condition holds, false if the limit was reached first
+     */
+    public boolean advanceUntil(BooleanSupplier condition, Duration limit) {
+        long target = nowNanos + limit.toNanos();
+        runUntilIdle();
+        while (!condition.getAsBoolean()) {
+            if (nowNanos >= target) {
+                return false;
+            }
+            advance(Duration.ofNanos(Math.min(tickNanos - nowNanos % tickNanos, target - nowNanos)));
+        }
+        return true;
+    }
+}
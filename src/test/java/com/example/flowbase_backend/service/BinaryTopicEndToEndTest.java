@@ -0,0 +1,129 @@
+package com.example.flowbase_backend.service;
+
+import com.example.flowbase_backend.broker.TopicSubscriptionRegistry;
+import com.example.flowbase_backend.engine.NodeState;
+import com.example.flowbase_backend.model.NodeStateMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the binary node state topic through the running broker and its WebSocket endpoints
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"flowbase.websocket.binary.enabled=true", "flowbase.engine.journal.enabled=false"})
+public class BinaryTopicEndToEndTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private WebSocketService webSocketService;
+
+    @Autowired
+    private TopicSubscriptionRegistry subscriptions;
+
+    private final BlockingQueue<byte[]> frames = new LinkedBlockingQueue<>();
+    private final BlockingQueue<String> errors = new LinkedBlockingQueue<>();
+    private WebSocketStompClient nativeClient;
+    private WebSocketStompClient sockJsClient;
+
+    @BeforeEach
+    public void setUp() {
+        nativeClient = new WebSocketStompClient(new StandardWebSocketClient());
+        sockJsClient = new WebSocketStompClient(
+                new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        nativeClient.stop();
+        sockJsClient.stop();
+    }
+
+    @Test
+    public void plainWebSocketReceivesTheFrameByteForByte() throws Exception {
+        StompSession session = nativeClient.connectAsync("ws://localhost:" + port + "/ws-native",
+                new StompSessionHandlerAdapter() { }).get(10, TimeUnit.SECONDS);
+        session.subscribe(WebSocketService.NODE_STATE_BINARY_TOPIC, new FrameCollector());
+        awaitSubscription();
+
+        // A node ID outside ASCII would not survive a round trip through UTF-8 text
+        webSocketService.sendNodeStateUpdate("knoten-äöü", NodeState.RUNNING);
+
+        byte[] frame = frames.poll(10, TimeUnit.SECONDS);
+        assertNotNull(frame, "No binary frame arrived");
+        NodeStateMessage decoded = NodeStateBinaryCodec.decode(frame).get(0);
+        assertEquals("knoten-äöü", decoded.getNodeId());
+        assertEquals(NodeState.RUNNING, decoded.getState());
+        assertArrayEquals(NodeStateBinaryCodec.encode(decoded), frame);
+        session.disconnect();
+    }
+
+    @Test
+    public void sockJsSessionIsRefusedTheBinaryTopic() throws Exception {
+        StompSession session = sockJsClient.connectAsync("http://localhost:" + port + "/ws",
+                new StompSessionHandlerAdapter() {
+                    @Override
+                    public void handleException(StompSession session, StompCommand command, StompHeaders headers,
+                                                byte[] payload, Throwable exception) {
+                        errors.add(String.valueOf(headers.getFirst("message")));
+                    }
+
+                    @Override
+                    public void handleFrame(StompHeaders headers, Object payload) {
+                        errors.add(String.valueOf(headers.getFirst("message")));
+                    }
+                }).get(10, TimeUnit.SECONDS);
+        session.subscribe("/topic/**", new FrameCollector());
+
+        String error = errors.poll(10, TimeUnit.SECONDS);
+        assertNotNull(error, "No ERROR frame arrived");
+        assertTrue(error.contains("/ws-native"), error);
+        assertFalse(subscriptions.hasSubscriptions(WebSocketService.NODE_STATE_BINARY_TOPIC));
+    }
+
+    private void awaitSubscription() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!subscriptions.hasSubscriptions(WebSocketService.NODE_STATE_BINARY_TOPIC)) {
+            assertTrue(System.nanoTime() < deadline, "The subscription never reached the broker");
+            Thread.sleep(10);
+        }
+    }
+
+    private class FrameCollector implements StompFrameHandler {
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return byte[].class;
+        }
+
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            frames.add((byte[]) payload);
+        }
+    }
+}
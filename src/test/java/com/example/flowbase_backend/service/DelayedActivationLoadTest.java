@@ -0,0 +1,95 @@
+package com.example.flowbase_backend.service;
+
+import com.example.flowbase_backend.scheduling.TimerWheel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Load test for delayed activations: a burst of them must neither block the callers nor starve
+ * the common pool while they are pending. NodeService keeps at most one activation of node-A
+ * scheduled, so the burst goes to the delayed activation service directly.
+ */
+public class DelayedActivationLoadTest {
+
+    private static final int TRIGGERS = 10_000;
+    private static final Duration ACTIVATION_DELAY = Duration.ofSeconds(1);
+    private static final Duration TRIGGER_DEADLINE = Duration.ofMillis(500);
+
+    private TimerWheel timerWheel;
+    private ForkJoinPool nodeExecutor;
+    private DelayedActivationService delayedActivationService;
+
+    @BeforeEach
+    public void setUp() {
+        timerWheel = new TimerWheel(Duration.ofMillis(10), 512);
+        timerWheel.start("load-test-timer");
+        nodeExecutor = new ForkJoinPool(4);
+        delayedActivationService = new DelayedActivationService(timerWheel, nodeExecutor);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        timerWheel.stop();
+        nodeExecutor.shutdownNow();
+    }
+
+    @Test
+    public void tenThousandConcurrentTriggersDoNotStarveThreads() throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(64);
+        CountDownLatch startGate = new CountDownLatch(1);
+        CountDownLatch triggered = new CountDownLatch(TRIGGERS);
+        AtomicLong slowestTriggerNanos = new AtomicLong();
+        AtomicInteger activated = new AtomicInteger();
+        try {
+            for (int i = 0; i < TRIGGERS; i++) {
+                callers.execute(() -> {
+                    try {
+                        startGate.await();
+                        long start = System.nanoTime();
+                        delayedActivationService.schedule(activated::incrementAndGet, ACTIVATION_DELAY);
+                        slowestTriggerNanos.accumulateAndGet(System.nanoTime() - start, Math::max);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        triggered.countDown();
+                    }
+                });
+            }
+            startGate.countDown();
+
+            // Every trigger returns long before the activation delay has elapsed; one that waited for
+            // its activation would take the whole delay
+            assertTrue(triggered.await(TRIGGER_DEADLINE.toMillis(), TimeUnit.MILLISECONDS),
+                    "All triggers should return before the first activation is due");
+            assertTrue(slowestTriggerNanos.get() < TRIGGER_DEADLINE.toNanos(),
+                    "Slowest trigger took " + TimeUnit.NANOSECONDS.toMillis(slowestTriggerNanos.get()) + " ms");
+
+            // All of them are pending, and the common pool is untouched meanwhile
+            assertEquals(TRIGGERS, delayedActivationService.pendingActivations());
+            assertEquals(0, activated.get());
+            assertEquals(42, ForkJoinPool.commonPool().submit(() -> 42).get(100, TimeUnit.MILLISECONDS));
+        } finally {
+            callers.shutdownNow();
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (delayedActivationService.pendingActivations() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, delayedActivationService.pendingActivations(), "All activations should have run");
+        assertEquals(TRIGGERS, activated.get());
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.flowbase_backend.service;
+
+import com.example.flowbase_backend.scheduling.VirtualTime;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for counting pending delayed activations when they run, are cancelled or are rejected
+ */
+public class DelayedActivationServiceTest {
+
+    private static final Duration DELAY = Duration.ofSeconds(1);
+
+    private final VirtualTime time = new VirtualTime(Duration.ofMillis(10), 512);
+    private final List<String> ran = new ArrayList<>();
+
+    @Test
+    public void cancelledActivationIsNoLongerPending() {
+        DelayedActivationService service = new DelayedActivationService(time.getTimerWheel(), time);
+        service.schedule(() -> ran.add("first"), DELAY);
+        DelayedActivationService.ScheduledActivation cancelled = service.schedule(() -> ran.add("cancelled"), DELAY);
+        service.schedule(() -> ran.add("last"), DELAY);
+        assertEquals(3, service.pendingActivations());
+
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel(), "A second cancel must not count again");
+        assertTrue(cancelled.isCancelled());
+        assertEquals(2, service.pendingActivations());
+
+        time.advance(DELAY);
+        assertEquals(List.of("first", "last"), ran);
+        assertEquals(0, service.pendingActivations());
+    }
+
+    @Test
+    public void activationThatAlreadyRanCannotBeCancelled() {
+        DelayedActivationService service = new DelayedActivationService(time.getTimerWheel(), time);
+        DelayedActivationService.ScheduledActivation activation = service.schedule(() -> ran.add("ran"), DELAY);
+
+        time.advance(DELAY);
+        assertFalse(activation.cancel());
+        assertEquals(List.of("ran"), ran);
+        assertEquals(0, service.pendingActivations());
+    }
+
+    @Test
+    public void activationRejectedByTheExecutorIsNoLongerPending() {
+        DelayedActivationService service = new DelayedActivationService(time.getTimerWheel(), task -> {
+            throw new RejectedExecutionException("Node executor shut down");
+        });
+        service.schedule(() -> ran.add("rejected"), DELAY);
+        assertEquals(1, service.pendingActivations());
+
+        time.advance(DELAY);
+        assertTrue(ran.isEmpty());
+        assertEquals(0, service.pendingActivations());
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.flowbase_backend.service;
+
+import com.example.flowbase_backend.engine.NodeDefinition;
+import com.example.flowbase_backend.engine.NodeExecutionEngine;
+import com.example.flowbase_backend.scheduling.VirtualTime;
+import com.example.flowbase_backend.trigger.FileWatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for confining file triggers to the base directory
+ */
+public class FileTriggerServiceTest {
+
+    @TempDir
+    Path baseDirectory;
+
+    private VirtualTime time;
+    private NodeService nodeService;
+    private FileWatcher fileWatcher;
+    private FileTriggerService fileTriggerService;
+
+    @BeforeEach
+    public void setUp() {
+        time = new VirtualTime(Duration.ofMillis(10), 512);
+        NodeExecutionEngine engine = new NodeExecutionEngine(time.getTimerWheel(), time, 16);
+        nodeService = new NodeService(new WebSocketService(new SimpMessagingTemplate((message, timeout) -> true)),
+                engine, new DelayedActivationService(time.getTimerWheel(), time), Duration.ofSeconds(10));
+        nodeService.registerNode(NodeDefinition.of("node-C"));
+        fileWatcher = new FileWatcher(null, time.getTimerWheel(), Duration.ofMillis(100), Duration.ofMillis(100));
+        fileTriggerService = new FileTriggerService(nodeService, fileWatcher, "Resources/hello.txt",
+                baseDirectory.toString());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        fileWatcher.stop();
+    }
+
+    @Test
+    public void relativeTriggerIsResolvedAgainstTheBaseDirectory() throws Exception {
+        Files.createDirectories(baseDirectory.resolve("incoming"));
+        Files.writeString(baseDirectory.resolve("incoming/orders.csv"), "id");
+
+        // A matching file that already exists activates the node right away
+        fileTriggerService.setTrigger("node-C", "incoming/*.csv");
+        time.runUntilIdle();
+        assertEquals("RUNNING", nodeService.getNodeStateForTesting("node-C"));
+    }
+
+    @Test
+    public void triggersOutsideTheBaseDirectoryAreRefused() {
+        String inside = baseDirectory.resolve("incoming/*.csv").toString();
+        fileTriggerService.setTrigger("node-C", inside);
+
+        assertThrows(IllegalArgumentException.class, () -> fileTriggerService.setTrigger("node-C", "/etc/*.conf"));
+        assertThrows(IllegalArgumentException.class, () -> fileTriggerService.setTrigger("node-C", "../*.csv"));
+        assertThrows(IllegalArgumentException.class,
+                () -> fileTriggerService.setTrigger("node-C", "incoming/../../outside/*.csv"));
+        assertEquals(inside, fileTriggerService.getTrigger("node-C"), "A refused trigger keeps the previous one");
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.flowbase_backend.service;
+
+import com.example.flowbase_backend.git.RepositoryHandleCache;
+import com.example.flowbase_backend.model.GitJobStatus;
+import com.example.flowbase_backend.model.GitJobUpdate;
+import org.eclipse.jgit.api.Git;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for Git jobs against a local file:// remote
+ */
+public class GitJobServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ExecutorService executor;
+    private GitService gitService;
+    private GitJobService gitJobService;
+    private final List<GitJobUpdate> updates = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+        WebSocketService webSocketService = new WebSocketService(new SimpMessagingTemplate((message, timeout) -> {
+            updates.add((GitJobUpdate) message.getPayload());
+            return true;
+        }));
+        gitService = new GitService(new RepositoryHandleCache(4));
+        gitJobService = new GitJobService(executor, webSocketService, 3, Duration.ZERO);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void cloneRunsInBackgroundAndReportsProgress() throws Exception {
+        Path remote = createRemote();
+        String localPath = tempDir.resolve("clone").toString();
+
+        String jobId = gitJobService.submit("clone", localPath,
+                monitor -> gitService.cloneRepository(remote.toUri().toString(), localPath, null, null, monitor).close());
+
+        awaitFinished(jobId);
+        assertEquals(GitJobStatus.SUCCEEDED, gitJobService.getJob(jobId).getStatus());
+        assertTrue(Files.exists(Path.of(localPath, "README.md")));
+        assertEquals(GitJobStatus.QUEUED, updates.get(0).getStatus());
+        assertTrue(updates.stream().anyMatch(update -> update.getTask() != null), "No progress was reported");
+        assertEquals(0, gitJobService.getPendingJobs());
+    }
+
+    @Test
+    public void jobsOnTheSameRepositoryRunOneAfterAnother() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        String path = tempDir.resolve("repo").toString();
+
+        String first = gitJobService.submit("pull", path, monitor -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            release.await();
+            running.decrementAndGet();
+        });
+        String second = gitJobService.submit("commit", path, monitor -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            running.decrementAndGet();
+        });
+        // A job on another repository is not held up by the first one
+        String other = gitJobService.submit("pull", tempDir.resolve("other").toString(), monitor -> { });
+
+        awaitFinished(other);
+        assertEquals(GitJobStatus.QUEUED, gitJobService.getJob(second).getStatus());
+        assertThrows(RejectedExecutionException.class, () -> {
+            gitJobService.submit("pull", path, monitor -> { });
+            gitJobService.submit("pull", path, monitor -> { });
+        });
+
+        release.countDown();
+        awaitFinished(first);
+        awaitFinished(second);
+        assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    public void cancelledJobDoesNotStart() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        String path = tempDir.resolve("repo").toString();
+        gitJobService.submit("pull", path, monitor -> release.await());
+        String queued = gitJobService.submit("push", path, monitor -> {
+            throw new IllegalStateException("Must not run");
+        });
+
+        assertTrue(gitJobService.cancel(queued));
+        release.countDown();
+        awaitFinished(queued);
+        assertEquals(GitJobStatus.CANCELLED, gitJobService.getJob(queued).getStatus());
+        assertFalse(gitJobService.cancel(queued));
+    }
+
+    private Path createRemote() throws Exception {
+        Path remote = tempDir.resolve("remote.git");
+        Git.init().setBare(true).setDirectory(remote.toFile()).call().close();
+        Path seed = tempDir.resolve("seed");
+        try (Git git = Git.cloneRepository().setURI(remote.toUri().toString()).setDirectory(seed.toFile()).call()) {
+            Files.writeString(seed.resolve("README.md"), "remote");
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("initial").setAuthor("test", "test@example.com").call();
+            git.push().call();
+        }
+        return remote;
+    }
+
+    private void awaitFinished(String jobId) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!gitJobService.getJob(jobId).getStatus().isFinished()) {
+            assertTrue(System.nanoTime() < deadline, "Job " + jobId + " did not finish");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.flowbase_backend.service;
+
+import com.example.flowbase_backend.git.CloneOptions;
+import com.example.flowbase_backend.git.RepositoryHandleCache;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for shallow, single-branch, path-filtered and reference clones
+ */
+public class GitServiceCloneTest {
+
+    @TempDir
+    Path tempDir;
+
+    private GitService gitService;
+    private String remoteUrl;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        gitService = new GitService(new RepositoryHandleCache(4));
+        Path remote = tempDir.resolve("remote.git");
+        Git.init().setBare(true).setDirectory(remote.toFile()).setInitialBranch("main").call().close();
+        remoteUrl = remote.toUri().toString();
+
+        Path seed = tempDir.resolve("seed");
+        try (Git git = Git.init().setDirectory(seed.toFile()).setInitialBranch("main").call()) {
+            Files.createDirectories(seed.resolve("docs"));
+            Files.createDirectories(seed.resolve("src"));
+            for (int i = 0; i < 3; i++) {
+                Files.writeString(seed.resolve("docs/readme.txt"), "docs " + i);
+                Files.writeString(seed.resolve("src/main.txt"), "src " + i);
+                git.add().addFilepattern(".").call();
+                git.commit().setMessage("commit " + i).setAuthor("test", "test@example.com").call();
+            }
+            git.push().setRemote(remoteUrl).add("main").call();
+            git.checkout().setCreateBranch(true).setName("feature").call();
+            Files.writeString(seed.resolve("feature.txt"), "feature");
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("feature").setAuthor("test", "test@example.com").call();
+            git.push().setRemote(remoteUrl).add("feature").call();
+        }
+    }
+
+    @Test
+    public void shallowSingleBranchCloneFetchesOnlyTheTipOfOneBranch() throws Exception {
+        CloneOptions options = CloneOptions.FULL.withDepth(1).withSingleBranch(true);
+        try (Git git = clone("shallow", options)) {
+            assertEquals(1, count(git.log().call()));
+            assertEquals("main", git.getRepository().getBranch());
+            assertNotNull(git.getRepository().findRef(Constants.R_REMOTES + "origin/main"));
+            assertNull(git.getRepository().findRef(Constants.R_REMOTES + "origin/feature"));
+        }
+    }
+
+    @Test
+    public void checkoutPathsWritesOnlySelectedPathsAndKeepsTheRestInCommits() throws Exception {
+        Path localPath = tempDir.resolve("sparse");
+        try (Git git = clone("sparse", CloneOptions.FULL.withCheckoutPaths(List.of("docs")))) {
+            assertTrue(Files.exists(localPath.resolve("docs/readme.txt")));
+            assertFalse(Files.exists(localPath.resolve("src/main.txt")));
+            assertTrue(git.status().call().isClean());
+        }
+
+        Files.writeString(localPath.resolve("docs/readme.txt"), "changed");
+        gitService.commitChanges(localPath.toString(), "docs only", "test", "test@example.com");
+        try (Git git = Git.open(localPath.toFile())) {
+            RevCommit head = git.log().setMaxCount(1).call().iterator().next();
+            assertNotNull(TreeWalk.forPath(git.getRepository(), "src/main.txt", head.getTree()),
+                    "Paths outside the checkout must not be committed as deleted");
+        }
+    }
+
+    @Test
+    public void noCheckoutWritesNoFiles() throws Exception {
+        try (Git git = clone("bare-tree", CloneOptions.FULL.withNoCheckout(true).withBranch("feature"))) {
+            assertEquals("feature", git.getRepository().getBranch());
+            assertFalse(Files.exists(tempDir.resolve("bare-tree/feature.txt")));
+        }
+    }
+
+    @Test
+    public void referenceCloneReadsObjectsFromTheMirror() throws Exception {
+        Path mirror = tempDir.resolve("mirror.git");
+        Git.cloneRepository().setURI(remoteUrl).setDirectory(mirror.toFile()).setMirror(true).call().close();
+
+        try (Git git = clone("referenced", CloneOptions.FULL.withReferenceRepository(mirror.toString()))) {
+            Path objects = git.getRepository().getDirectory().toPath().resolve("objects");
+            assertTrue(Files.readString(objects.resolve("info/alternates")).contains("mirror.git"));
+            assertEquals(3, count(git.log().call()));
+            assertEquals("main", git.getRepository().getBranch());
+            assertTrue(Files.exists(tempDir.resolve("referenced/src/main.txt")));
+            // Everything came from the mirror, so nothing was stored locally
+            try (var packs = Files.list(objects.resolve("pack"))) {
+                assertEquals(0, packs.count());
+            }
+        }
+    }
+
+    private Git clone(String directory, CloneOptions options) throws Exception {
+        return gitService.cloneRepository(remoteUrl, tempDir.resolve(directory).toString(), null, null,
+                options, NullProgressMonitor.INSTANCE);
+    }
+
+    private static long count(Iterable<?> iterable) {
+        return StreamSupport.stream(iterable.spliterator(), false).count();
+    }
+}
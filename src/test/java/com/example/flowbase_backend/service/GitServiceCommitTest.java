@@ -0,0 +1,164 @@
+package com.example.flowbase_backend.service;
+
+import com.example.flowbase_backend.git.RepositoryHandleCache;
+import com.example.flowbase_backend.model.GitCommitRequest;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.Status;
+import org.eclipse.jgit.api.errors.ConcurrentRefUpdateException;
+import org.eclipse.jgit.api.errors.NoMessageException;
+import org.eclipse.jgit.api.errors.WrongRepositoryStateException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for committing explicit paths, scanned changes and batches of commits
+ */
+public class GitServiceCommitTest {
+
+    @TempDir
+    Path repository;
+
+    private GitService gitService;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        gitService = new GitService(new RepositoryHandleCache(4));
+        try (Git git = Git.init().setDirectory(repository.toFile()).call()) {
+            Files.createDirectories(repository.resolve("flows"));
+            Files.writeString(repository.resolve("flows/a.json"), "a");
+            Files.writeString(repository.resolve("flows/b.json"), "b");
+            Files.writeString(repository.resolve("old.txt"), "old");
+            Files.writeString(repository.resolve(".gitignore"), "*.log\n");
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("initial").setAuthor("test", "test@example.com").call();
+        }
+    }
+
+    @Test
+    public void explicitPathsStageOnlyThosePathsIncludingDeletions() throws Exception {
+        Files.writeString(repository.resolve("flows/a.json"), "a2");
+        Files.writeString(repository.resolve("flows/b.json"), "b2");
+        Files.delete(repository.resolve("old.txt"));
+
+        gitService.commitChanges(repository.toString(), "update a", "flow", "flow@example.com",
+                List.of("flows/a.json", "old.txt"));
+
+        try (Git git = Git.open(repository.toFile())) {
+            RevCommit head = git.log().setMaxCount(1).call().iterator().next();
+            assertEquals("update a", head.getFullMessage());
+            assertEquals("flow", head.getAuthorIdent().getName());
+            assertNull(TreeWalk.forPath(git.getRepository(), "old.txt", head.getTree()));
+            Status status = git.status().call();
+            assertEquals(Set.of("flows/b.json"), status.getModified());
+            assertTrue(status.getMissing().isEmpty());
+        }
+    }
+
+    @Test
+    public void scanStagesModifiedAndUntrackedButNotIgnoredFiles() throws Exception {
+        Files.writeString(repository.resolve("flows/a.json"), "a2");
+        Files.writeString(repository.resolve("flows/c.json"), "c");
+        Files.writeString(repository.resolve("debug.log"), "log");
+
+        gitService.commitChanges(repository.toString(), "scan", "flow", "flow@example.com");
+
+        try (Git git = Git.open(repository.toFile())) {
+            RevCommit head = git.log().setMaxCount(1).call().iterator().next();
+            assertNotNull(TreeWalk.forPath(git.getRepository(), "flows/c.json", head.getTree()));
+            assertNull(TreeWalk.forPath(git.getRepository(), "debug.log", head.getTree()));
+            assertTrue(git.status().call().isClean());
+        }
+    }
+
+    @Test
+    public void batchCreatesOneCommitPerRequestOnTopOfEachOther() throws Exception {
+        Files.writeString(repository.resolve("flows/a.json"), "a2");
+        Files.writeString(repository.resolve("flows/b.json"), "b2");
+
+        gitService.commitBatch(repository.toString(), List.of(
+                new GitCommitRequest("node A finished", "flow", "flow@example.com", List.of("flows/a.json")),
+                new GitCommitRequest("node B finished", "flow", "flow@example.com", List.of("flows/b.json"))));
+
+        try (Git git = Git.open(repository.toFile())) {
+            Iterator<RevCommit> log = git.log().call().iterator();
+            RevCommit second = log.next();
+            RevCommit first = log.next();
+            assertEquals("node B finished", second.getFullMessage());
+            assertEquals("node A finished", first.getFullMessage());
+            assertEquals(first, second.getParent(0));
+            assertEquals("initial", log.next().getFullMessage());
+            // The first commit holds only its own change
+            try (TreeWalk walk = TreeWalk.forPath(git.getRepository(), "flows/b.json", first.getTree())) {
+                assertEquals("b", new String(git.getRepository().open(walk.getObjectId(0)).getBytes()));
+            }
+            assertTrue(git.status().call().isClean());
+        }
+    }
+
+    @Test
+    public void batchWithoutAMessageIsRejectedBeforeAnythingIsCommitted() throws Exception {
+        Files.writeString(repository.resolve("flows/a.json"), "a2");
+        ObjectId head = head();
+
+        assertThrows(NoMessageException.class, () -> gitService.commitBatch(repository.toString(), List.of(
+                new GitCommitRequest("node A finished", "flow", "flow@example.com", List.of("flows/a.json")),
+                new GitCommitRequest(null, "flow", "flow@example.com", null))));
+
+        assertEquals(head, head());
+        try (Git git = Git.open(repository.toFile())) {
+            assertEquals(Set.of("flows/a.json"), git.status().call().getModified());
+        }
+    }
+
+    @Test
+    public void repositoryInTheMiddleOfAMergeIsNotCommittedTo() throws Exception {
+        Files.writeString(repository.resolve("flows/a.json"), "a2");
+        Files.writeString(repository.resolve(".git/MERGE_HEAD"), head().name() + "\n");
+
+        assertThrows(WrongRepositoryStateException.class, () -> gitService.commitChanges(repository.toString(),
+                "merge", "flow", "flow@example.com"));
+        assertTrue(Files.exists(repository.resolve(".git/MERGE_HEAD")));
+    }
+
+    @Test
+    public void failedBranchUpdateLeavesTheIndexAsItWas() throws Exception {
+        Files.writeString(repository.resolve("flows/a.json"), "a2");
+        ObjectId head = head();
+        // Another process is updating the branch
+        Path branchLock = repository.resolve(".git/refs/heads/master.lock");
+        Files.createFile(branchLock);
+
+        assertThrows(ConcurrentRefUpdateException.class, () -> gitService.commitChanges(repository.toString(),
+                "update a", "flow", "flow@example.com", List.of("flows/a.json")));
+
+        Files.delete(branchLock);
+        assertEquals(head, head());
+        try (Git git = Git.open(repository.toFile())) {
+            Status status = git.status().call();
+            assertTrue(status.getChanged().isEmpty(), "Nothing staged against the old HEAD");
+            assertEquals(Set.of("flows/a.json"), status.getModified());
+        }
+    }
+
+    private ObjectId head() throws Exception {
+        try (Git git = Git.open(repository.toFile())) {
+            return git.getRepository().resolve("HEAD");
+        }
+    }
+}
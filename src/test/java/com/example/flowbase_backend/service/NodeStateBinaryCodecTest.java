@@ -0,0 +1,47 @@
+package com.example.flowbase_backend.service;
+
+import com.example.flowbase_backend.engine.NodeState;
+import com.example.flowbase_backend.model.NodeStateMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for the binary layout of node state updates
+ */
+public class NodeStateBinaryCodecTest {
+
+    @Test
+    public void batchRoundTripsInOrder() {
+        List<NodeStateMessage> batch = List.of(
+                new NodeStateMessage("node-A", NodeState.RUNNING, 7),
+                new NodeStateMessage("knoten-ä", NodeState.DONE, 8),
+                new NodeStateMessage("", NodeState.INACTIVE, Long.MAX_VALUE));
+
+        byte[] frame = NodeStateBinaryCodec.encode(batch);
+        List<NodeStateMessage> decoded = NodeStateBinaryCodec.decode(frame);
+
+        // 11 fixed bytes per update, "ä" takes two bytes in UTF-8
+        assertEquals(3 * 11 + 6 + 9, frame.length);
+        assertEquals(3, decoded.size());
+        for (int i = 0; i < batch.size(); i++) {
+            assertEquals(batch.get(i).getNodeId(), decoded.get(i).getNodeId());
+            assertEquals(batch.get(i).getState(), decoded.get(i).getState());
+            assertEquals(batch.get(i).getSequence(), decoded.get(i).getSequence());
+        }
+    }
+
+    @Test
+    public void truncatedOrUnknownUpdatesAreRejected() {
+        byte[] frame = NodeStateBinaryCodec.encode(new NodeStateMessage("node-A", NodeState.DONE, 1));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> NodeStateBinaryCodec.decode(Arrays.copyOf(frame, frame.length - 1)));
+        frame[Long.BYTES] = 9;
+        assertThrows(IllegalArgumentException.class, () -> NodeStateBinaryCodec.decode(frame));
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.flowbase_backend.service;
+
+import com.example.flowbase_backend.engine.NodeState;
+import com.example.flowbase_backend.model.NodeStateMessage;
+import com.example.flowbase_backend.model.NodeStateSync;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for snapshots and delta resyncs of numbered node state updates
+ */
+public class NodeStateHistoryTest {
+
+    @Test
+    public void snapshotHoldsTheLatestUpdatePerNode() {
+        NodeStateHistory history = new NodeStateHistory(8);
+        history.record("node-A", NodeState.RUNNING);
+        history.record("node-B", NodeState.RUNNING);
+        history.record("node-A", NodeState.DONE);
+
+        NodeStateSync snapshot = history.snapshot();
+
+        assertTrue(snapshot.isSnapshot());
+        assertEquals(3, snapshot.getSequence());
+        assertEquals(List.of("node-A DONE 3", "node-B RUNNING 2"), describe(snapshot.getUpdates()));
+    }
+
+    @Test
+    public void reconnectingClientGetsOnlyTheUpdatesItMissed() {
+        NodeStateHistory history = new NodeStateHistory(8);
+        for (int i = 0; i < 6; i++) {
+            history.record("node-" + i, NodeState.RUNNING);
+        }
+
+        NodeStateSync sync = history.since(history.getEpoch(), 4);
+
+        assertFalse(sync.isSnapshot());
+        assertEquals(6, sync.getSequence());
+        assertEquals(List.of("node-4 RUNNING 5", "node-5 RUNNING 6"), describe(sync.getUpdates()));
+        assertEquals(List.of(), history.since(history.getEpoch(), 6).getUpdates());
+    }
+
+    @Test
+    public void clientBehindTheRingOrFromAnotherRunGetsASnapshot() {
+        NodeStateHistory history = new NodeStateHistory(4);
+        for (int i = 0; i < 10; i++) {
+            history.record("node-" + i % 2, i % 2 == 0 ? NodeState.RUNNING : NodeState.DONE);
+        }
+
+        // Sequences 7 to 10 are still kept, so 6 is the oldest position a client can resume from
+        assertFalse(history.since(history.getEpoch(), 6).isSnapshot());
+        assertEquals(4, history.since(history.getEpoch(), 6).getUpdates().size());
+        assertTrue(history.since(history.getEpoch(), 5).isSnapshot());
+        assertTrue(history.since(history.getEpoch() - 1, 9).isSnapshot());
+        assertTrue(history.since(history.getEpoch(), 11).isSnapshot());
+        assertEquals(2, history.since(history.getEpoch(), 5).getUpdates().size());
+    }
+
+    private static List<String> describe(List<NodeStateMessage> updates) {
+        return updates.stream()
+                .map(update -> update.getNodeId() + " " + update.getState() + " " + update.getSequence())
+                .toList();
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.flowbase_backend.service;
+
+import com.example.flowbase_backend.engine.NodeState;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for Server-Sent Events subscribers that stop reading, on the running connector
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"flowbase.sse.sender-threads=1", "flowbase.sse.buffer-size=1000",
+                "flowbase.sse.write-timeout=200ms", "server.tomcat.connection-timeout=60s",
+                "flowbase.engine.journal.enabled=false"})
+public class NodeStateStreamEndToEndTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private WebSocketService webSocketService;
+
+    @Autowired
+    private NodeStateStream stream;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void subscriberThatStopsReadingIsDroppedAndHoldsUpNoOneElse() throws Exception {
+        try (SocketChannel stalled = SocketChannel.open()) {
+            stalled.socket().setReceiveBufferSize(4096);
+            stalled.connect(new InetSocketAddress("localhost", port));
+            write(stalled, "GET /node-state/stream HTTP/1.1\r\nHost: localhost\r\nAccept: text/event-stream\r\n\r\n");
+            await(() -> stream.getSubscriberCount() == 1, "The stream was never opened");
+
+            // Far more than the socket buffers hold, so the only sender blocks in a write to it
+            String nodeId = "x".repeat(100_000);
+            for (int i = 0; i < 200; i++) {
+                webSocketService.sendNodeStateUpdate(nodeId, i % 2 == 0 ? NodeState.RUNNING : NodeState.DONE);
+            }
+            await(() -> stalledCount() == 1, "The stalled subscriber was never dropped");
+            assertEquals(0, stream.getSubscriberCount());
+
+            try (Socket reader = new Socket("localhost", port)) {
+                reader.setSoTimeout(10_000);
+                reader.getOutputStream().write(("GET /node-state/stream HTTP/1.1\r\nHost: localhost\r\n"
+                        + "Accept: text/event-stream\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                // The snapshot reaches the next subscriber while the old write is still stuck
+                byte[] buffer = new byte[8192];
+                StringBuilder received = new StringBuilder();
+                while (received.indexOf("event:snapshot") < 0) {
+                    int read = reader.getInputStream().read(buffer);
+                    assertTrue(read > 0, "The stream ended before the snapshot");
+                    received.append(new String(buffer, 0, read, StandardCharsets.UTF_8));
+                }
+            }
+        }
+    }
+
+    private double stalledCount() {
+        return meterRegistry.get("flowbase.sse.subscribers.stalled").counter().count();
+    }
+
+    private static void write(SocketChannel channel, String request) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(request.getBytes(StandardCharsets.US_ASCII));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void await(BooleanSupplier condition, String message) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, message);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.flowbase_backend.service;
+
+import com.example.flowbase_backend.controller.NodeStateStreamController;
+import com.example.flowbase_backend.engine.NodeState;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * Tests for streaming node state updates as Server-Sent Events and resuming after Last-Event-ID
+ */
+public class NodeStateStreamTest {
+
+    private final NodeStateHistory history = new NodeStateHistory(16);
+    private final List<Runnable> pendingSends = new ArrayList<>();
+
+    @Test
+    public void newSubscriberGetsASnapshotThenEveryUpdate() throws Exception {
+        MockMvc mockMvc = mockMvc(new NodeStateStream(history, 8, Runnable::run, Runnable::run));
+        record("node-A", NodeState.RUNNING);
+        record("node-A", NodeState.DONE);
+
+        MockHttpServletResponse response = open(mockMvc, null);
+        record("node-B", NodeState.RUNNING);
+
+        long epoch = history.getEpoch();
+        assertEquals("text/event-stream", response.getContentType());
+        assertEquals("id:" + epoch + "-2\nevent:snapshot\ndata:{\"epoch\":" + epoch + ",\"sequence\":2,\"snapshot\":true,"
+                + "\"updates\":[{\"nodeId\":\"node-A\",\"state\":\"DONE\",\"sequence\":2}]}\n\n"
+                + "id:" + epoch + "-3\nevent:node-state\ndata:{\"nodeId\":\"node-B\",\"state\":\"RUNNING\",\"sequence\":3}\n\n",
+                response.getContentAsString());
+    }
+
+    @Test
+    public void reconnectingSubscriberGetsOnlyTheUpdatesAfterItsLastEventId() throws Exception {
+        NodeStateStream stream = new NodeStateStream(history, 8, Runnable::run, Runnable::run);
+        MockMvc mockMvc = mockMvc(stream);
+        for (int i = 0; i < 3; i++) {
+            record("node-" + i, NodeState.RUNNING);
+        }
+        long epoch = history.getEpoch();
+
+        String resumed = open(mockMvc, NodeStateStream.eventId(epoch, 1)).getContentAsString();
+        assertFalse(resumed.contains("event:snapshot"));
+        assertEquals(List.of(epoch + "-2", epoch + "-3"), eventIds(resumed));
+
+        String fromAnotherRun = open(mockMvc, NodeStateStream.eventId(epoch - 1, 1)).getContentAsString();
+        assertTrue(fromAnotherRun.startsWith("id:" + epoch + "-3\nevent:snapshot\n"));
+        assertEquals(2, stream.getSubscriberCount());
+    }
+
+    @Test
+    public void subscriberWhoseBufferIsFullIsDisconnected() throws Exception {
+        NodeStateStream stream = new NodeStateStream(history, 2, Runnable::run, pendingSends::add);
+        MockHttpServletResponse response = open(mockMvc(stream), null);
+
+        // Nothing is written until the sender runs, so the third update does not fit
+        for (int i = 0; i < 3; i++) {
+            record("node-" + i, NodeState.RUNNING);
+        }
+        while (!pendingSends.isEmpty()) {
+            pendingSends.remove(0).run();
+        }
+
+        assertEquals(0, stream.getSubscriberCount());
+        assertFalse(response.getContentAsString().contains("event:node-state"));
+        assertTrue(response.getContentAsString().contains("event:snapshot"));
+    }
+
+    // Records and hands the update to the listeners, as WebSocketService's publisher does
+    private void record(String nodeId, NodeState state) {
+        history.dispatch(history.record(nodeId, state));
+    }
+
+    private static MockMvc mockMvc(NodeStateStream stream) {
+        return MockMvcBuilders.standaloneSetup(new NodeStateStreamController(stream)).build();
+    }
+
+    private static MockHttpServletResponse open(MockMvc mockMvc, String lastEventId) throws Exception {
+        var request = get("/node-state/stream");
+        if (lastEventId != null) {
+            request.header("Last-Event-ID", lastEventId);
+        }
+        return mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn().getResponse();
+    }
+
+    private static List<String> eventIds(String stream) {
+        return stream.lines().filter(line -> line.startsWith("id:")).map(line -> line.substring(3)).toList();
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.flowbase_backend.service;
+
+import com.example.flowbase_backend.broker.TopicSubscriptionRegistry;
+import com.example.flowbase_backend.engine.NodeState;
+import com.example.flowbase_backend.model.NodeStateMessage;
+import org.junit.jupiter.api.Test;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for single-message and batched node state broadcasting
+ */
+public class WebSocketServiceTest {
+
+    private final List<Message<?>> sent = new CopyOnWriteArrayList<>();
+    private final SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> sent.add(message));
+
+    @Test
+    public void singleModeSendsEveryUpdate() {
+        WebSocketService webSocketService = new WebSocketService(template);
+
+        webSocketService.sendNodeStateUpdate("node-A", NodeState.RUNNING);
+        webSocketService.sendNodeStateUpdate("node-A", NodeState.DONE);
+
+        assertEquals(2, sent.size());
+        assertEquals(1, assertInstanceOf(NodeStateMessage.class, sent.get(0).getPayload()).getSequence());
+        assertEquals(2, assertInstanceOf(NodeStateMessage.class, sent.get(1).getPayload()).getSequence());
+    }
+
+    @Test
+    public void batchModeKeepsLatestStatePerNodeInOneFrame() throws InterruptedException {
+        WebSocketService webSocketService = new WebSocketService(template, true, Duration.ofMillis(20));
+        try {
+            webSocketService.sendNodeStateUpdate("node-A", NodeState.RUNNING);
+            webSocketService.sendNodeStateUpdate("node-B", NodeState.RUNNING);
+            webSocketService.sendNodeStateUpdate("node-A", NodeState.DONE);
+            assertEquals(0, sent.size(), "Nothing is sent before the window closes");
+
+            long deadline = System.currentTimeMillis() + 2000;
+            while (sent.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+
+            assertEquals(1, sent.size());
+            List<?> batch = assertInstanceOf(List.class, sent.get(0).getPayload());
+            assertEquals(2, batch.size());
+            for (Object update : batch) {
+                NodeStateMessage message = (NodeStateMessage) update;
+                assertEquals(message.getNodeId().equals("node-A") ? NodeState.DONE : NodeState.RUNNING, message.getState());
+            }
+            // Ordered by sequence; the replaced RUNNING of node-A had number 1
+            assertEquals(2, ((NodeStateMessage) batch.get(0)).getSequence());
+            assertEquals(3, ((NodeStateMessage) batch.get(1)).getSequence());
+        } finally {
+            webSocketService.shutdown();
+        }
+    }
+
+    @Test
+    public void binaryTopicGetsTheSameUpdatesInTheCompactLayout() {
+        WebSocketService webSocketService = new WebSocketService(template, false, Duration.ZERO, true,
+                new SimpleMeterRegistry(), new NodeStateHistory(16), null);
+
+        webSocketService.sendNodeStateUpdate("node-A", NodeState.RUNNING);
+
+        assertEquals(2, sent.size());
+        assertEquals("/topic/node-activated", SimpMessageHeaderAccessor.getDestination(sent.get(0).getHeaders()));
+        assertEquals("/topic/node-activated.bin", SimpMessageHeaderAccessor.getDestination(sent.get(1).getHeaders()));
+        byte[] frame = assertInstanceOf(byte[].class, sent.get(1).getPayload());
+        assertEquals(17, frame.length);
+        NodeStateMessage decoded = NodeStateBinaryCodec.decode(frame).get(0);
+        assertEquals("node-A", decoded.getNodeId());
+        assertEquals(NodeState.RUNNING, decoded.getState());
+        assertEquals(1, decoded.getSequence());
+    }
+
+    @Test
+    public void binaryTopicIsOnlySentToWhileSubscribed() {
+        TopicSubscriptionRegistry subscriptions = new TopicSubscriptionRegistry();
+        WebSocketService webSocketService = new WebSocketService(template, false, Duration.ZERO, true,
+                new SimpleMeterRegistry(), new NodeStateHistory(16), subscriptions);
+
+        webSocketService.sendNodeStateUpdate("node-A", NodeState.RUNNING);
+        SimpMessageHeaderAccessor subscribe = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        subscribe.setSessionId("session-1");
+        subscribe.setSubscriptionId("sub-1");
+        subscribe.setDestination(WebSocketService.NODE_STATE_BINARY_TOPIC);
+        subscriptions.registerSubscription(MessageBuilder.createMessage(new byte[0], subscribe.getMessageHeaders()));
+        webSocketService.sendNodeStateUpdate("node-A", NodeState.DONE);
+
+        List<String> destinations = sent.stream()
+                .map(message -> SimpMessageHeaderAccessor.getDestination(message.getHeaders()))
+                .toList();
+        assertEquals(List.of("/topic/node-activated", "/topic/node-activated", "/topic/node-activated.bin"),
+                destinations);
+    }
+
+    @Test
+    public void nodeTopicIsOnlySentToWhenASubscriptionMatchesIt() {
+        TopicSubscriptionRegistry subscriptions = new TopicSubscriptionRegistry();
+        WebSocketService webSocketService = new WebSocketService(template, false, Duration.ZERO, false,
+                new SimpleMeterRegistry(), new NodeStateHistory(16), subscriptions);
+        SimpMessageHeaderAccessor subscribe = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        subscribe.setSessionId("session-1");
+        subscribe.setSubscriptionId("sub-1");
+        subscribe.setDestination("/topic/flows/billing/**");
+        subscriptions.registerSubscription(MessageBuilder.createMessage(new byte[0], subscribe.getMessageHeaders()));
+
+        webSocketService.sendNodeStateUpdate("import", "node-A", NodeState.RUNNING);
+        webSocketService.sendNodeStateUpdate("billing", "node B/1", NodeState.RUNNING);
+
+        List<String> destinations = sent.stream()
+                .map(message -> SimpMessageHeaderAccessor.getDestination(message.getHeaders()))
+                .toList();
+        assertEquals(List.of("/topic/node-activated", "/topic/node-activated",
+                "/topic/flows/billing/nodes/node%20B%2F1"), destinations);
+        // Both destinations of the second update share one payload
+        assertEquals(sent.get(1).getPayload(), sent.get(2).getPayload());
+    }
+
+    @Test
+    public void slowBrokerSendHoldsUpNoOtherPublisherAndKeepsTheOrder() throws Exception {
+        CountDownLatch firstSendStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstSend = new CountDownLatch(1);
+        SimpMessagingTemplate slowTemplate = new SimpMessagingTemplate((message, timeout) -> {
+            if (sent.isEmpty()) {
+                firstSendStarted.countDown();
+                try {
+                    releaseFirstSend.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return sent.add(message);
+        });
+        WebSocketService webSocketService = new WebSocketService(slowTemplate);
+        Thread publisher = new Thread(() -> webSocketService.sendNodeStateUpdate("node-A", NodeState.RUNNING));
+        publisher.start();
+        assertTrue(firstSendStarted.await(5, TimeUnit.SECONDS));
+
+        // Numbered and queued behind the send in progress, without waiting for it
+        for (int i = 0; i < 100; i++) {
+            webSocketService.sendNodeStateUpdate("node-" + i, NodeState.DONE);
+        }
+        assertTrue(sent.isEmpty());
+
+        releaseFirstSend.countDown();
+        publisher.join(5000);
+        assertEquals(101, sent.size());
+        for (int i = 0; i < sent.size(); i++) {
+            assertEquals(i + 1, assertInstanceOf(NodeStateMessage.class, sent.get(i).getPayload()).getSequence());
+        }
+    }
+}
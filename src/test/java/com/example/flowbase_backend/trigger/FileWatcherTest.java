@@ -0,0 +1,89 @@
+package com.example.flowbase_backend.trigger;
+
+import com.example.flowbase_backend.scheduling.TimerWheel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for native and polled file watching
+ */
+public class FileWatcherTest {
+
+    @TempDir
+    Path tempDir;
+
+    private TimerWheel timerWheel;
+    private FileWatcher nativeWatcher;
+    private FileWatcher pollingWatcher;
+    private final BlockingQueue<Path> reported = new LinkedBlockingQueue<>();
+
+    @BeforeEach
+    public void setUp() {
+        timerWheel = new TimerWheel(Duration.ofMillis(5), 64);
+        timerWheel.start("file-watcher-test-timer");
+        nativeWatcher = new FileWatcher(FileWatcher.nativeWatchService(FileSystems.getDefault()),
+                timerWheel, Duration.ofMillis(20), Duration.ofMillis(200));
+        nativeWatcher.start("file-watcher-test");
+        pollingWatcher = new FileWatcher(null, timerWheel, Duration.ofMillis(20), Duration.ofMillis(200));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        nativeWatcher.stop();
+        pollingWatcher.stop();
+        timerWheel.stop();
+    }
+
+    @Test
+    public void reportsExistingAndNewFilesByNameAndGlob() throws Exception {
+        Files.writeString(tempDir.resolve("hello.txt"), "hi");
+        nativeWatcher.watch(tempDir, "hello.txt", reported::add);
+        assertEquals(tempDir.resolve("hello.txt"), next());
+
+        nativeWatcher.watch(tempDir, "*.csv", reported::add);
+        Files.writeString(tempDir.resolve("other.txt"), "ignored");
+        Files.writeString(tempDir.resolve("data.csv"), "a,b");
+        assertEquals(tempDir.resolve("data.csv"), next());
+        assertEquals(1, nativeWatcher.watchedDirectories());
+    }
+
+    @Test
+    public void pollsDirectoryThatDoesNotExistYet() throws Exception {
+        Path missing = tempDir.resolve("Resources");
+        nativeWatcher.watch(missing, "hello.txt", reported::add);
+        assertEquals(1, nativeWatcher.polledDirectories());
+
+        Files.createDirectory(missing);
+        Files.writeString(missing.resolve("hello.txt"), "hi");
+        assertEquals(missing.resolve("hello.txt"), next());
+    }
+
+    @Test
+    public void pollingFallbackReportsNewFilesAndStopsAfterCancel() throws Exception {
+        FileWatcher.Registration registration = pollingWatcher.watch(tempDir, "*.txt", reported::add);
+        Files.writeString(tempDir.resolve("hello.txt"), "hi");
+        assertEquals(tempDir.resolve("hello.txt"), next());
+
+        registration.cancel();
+        assertEquals(0, pollingWatcher.watchedDirectories());
+        Files.writeString(tempDir.resolve("later.txt"), "hi");
+        assertNull(reported.poll(300, TimeUnit.MILLISECONDS));
+    }
+
+    private Path next() throws InterruptedException {
+        return reported.poll(5, TimeUnit.SECONDS);
+    }
+}
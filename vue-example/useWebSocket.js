@@ -11,12 +11,29 @@ export function useWebSocket() {
   // STOMP client reference
   let client = null;
 
+  // Server run and highest sequence seen, sent back on reconnect to receive only missed updates
+  let epoch = null;
+  let lastSequence = 0;
+  // Sequence of the update each node is showing
+  let nodeSequences = {};
+
   // Function to update node state
   const updateNodeState = (nodeId, state) => {
     nodes.value[nodeId] = state;
     console.log(`Node ${nodeId} state updated to ${state}`);
   };
 
+  // Apply numbered updates; an update older than the one a node is showing is skipped
+  const applyUpdates = (updates) => {
+    for (const { nodeId, state, sequence } of updates) {
+      if (sequence > (nodeSequences[nodeId] ?? 0)) {
+        updateNodeState(nodeId, state);
+        nodeSequences[nodeId] = sequence;
+      }
+      lastSequence = Math.max(lastSequence, sequence);
+    }
+  };
+
   // Connect to WebSocket
   const connectWebSocket = () => {
     // Create STOMP client
@@ -54,13 +71,29 @@ export function useWebSocket() {
         console.groupEnd();
 
         try {
-          const { nodeId, state } = JSON.parse(payload);
-          console.log(`→ updateNodeState("${nodeId}", "${state}")`);
-          updateNodeState(nodeId, state);
+          // Batch mode sends an array of updates per frame
+          const parsed = JSON.parse(payload);
+          applyUpdates(Array.isArray(parsed) ? parsed : [parsed]);
         } catch (e) {
           console.error('❌ JSON.parse failed:', e);
         }
       });
+
+      // Subscribed to the topic first, so nothing falls between the sync and the live updates.
+      // The first connect gets a snapshot, a reconnect only the updates missed in between.
+      const syncDestination = epoch === null ? '/app/node-state' : `/app/node-state/${epoch}/${lastSequence}`;
+      const sync = client.subscribe(syncDestination, message => {
+        const { epoch: serverEpoch, sequence, updates } = JSON.parse(message.body);
+        if (serverEpoch !== epoch) {
+          // The server restarted and numbers from 1 again
+          nodeSequences = {};
+          lastSequence = 0;
+        }
+        epoch = serverEpoch;
+        applyUpdates(updates);
+        lastSequence = Math.max(lastSequence, sequence);
+        sync.unsubscribe();
+      });
       // ─────────────────────────────────────────────────────────
     };
 